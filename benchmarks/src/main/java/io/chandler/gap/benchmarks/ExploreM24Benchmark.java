@@ -0,0 +1,47 @@
+package io.chandler.gap.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.chandler.gap.GroupExplorer;
+import io.chandler.gap.GroupExplorer.KernelMode;
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.Generators;
+import io.chandler.gap.cache.M24StateCache;
+
+/**
+ * The first stateLimit states of M24 through M24StateCache (the whole group is 244M states;
+ *   -p stateLimit=0 explores all of it)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ExploreM24Benchmark {
+
+    @Param({"2000000"})
+    public int stateLimit;
+
+    @Param
+    public KernelMode kernel;
+
+    @Benchmark
+    public long exploreStates() {
+        GroupExplorer explorer = new GroupExplorer(Generators.m24, MemorySettings.DEFAULT, new M24StateCache());
+        explorer.setKernelMode(kernel);
+        explorer.exploreStates(false, stateLimit, null);
+        return explorer.order();
+    }
+}
@@ -0,0 +1,58 @@
+package io.chandler.gap.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.chandler.gap.GroupExplorer;
+import io.chandler.gap.GroupExplorer.KernelMode;
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.Generators;
+
+/**
+ * Full exploration of the bundled generators with each MemorySettings state encoding,
+ *   walking cycles or through compiled kernels
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExploreStatesBenchmark {
+
+    @Param({"m11", "m12", "l2_13"})
+    public String group;
+
+    @Param({"DEFAULT", "FASTEST", "COMPACT"})
+    public MemorySettings mem;
+
+    @Param
+    public KernelMode kernel;
+
+    private String generator() {
+        switch (group) {
+            case "m11": return Generators.m11;
+            case "m12": return Generators.m12;
+            case "l2_13": return Generators.l2_13;
+            default: throw new IllegalArgumentException(group);
+        }
+    }
+
+    @Benchmark
+    public long exploreStates() {
+        GroupExplorer explorer = new GroupExplorer(generator(), mem);
+        explorer.setKernelMode(kernel);
+        explorer.exploreStates(false, null);
+        return explorer.order();
+    }
+}
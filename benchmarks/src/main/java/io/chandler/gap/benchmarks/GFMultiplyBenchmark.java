@@ -0,0 +1,63 @@
+package io.chandler.gap.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.chandler.gap.GFGenerator.GF2_8x8_Cache;
+
+/**
+ * GF(2) 8x8 matrix products on the long encoding
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GFMultiplyBenchmark {
+    private static final int N = 1024;
+
+    private long[] a;
+    private long[] b;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        a = new long[N];
+        b = new long[N];
+        for (int i = 0; i < N; i++) {
+            a[i] = random.nextLong();
+            b[i] = random.nextLong();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void multiplyEncoded(Blackhole bh) {
+        for (int i = 0; i < N; i++) bh.consume(GF2_8x8_Cache.multiplyEncoded(a[i], b[i]));
+    }
+
+    /**
+     * Dependent chain, as when taking powers of a generator
+     */
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long multiplyChain() {
+        long x = a[0];
+        for (int i = 0; i < N; i++) x = GF2_8x8_Cache.multiplyEncoded(x, b[i]);
+        return x;
+    }
+}
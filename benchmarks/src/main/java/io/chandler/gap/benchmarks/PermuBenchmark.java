@@ -0,0 +1,49 @@
+package io.chandler.gap.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.chandler.gap.GroupExplorer;
+import io.chandler.gap.Permu;
+
+/**
+ * Isomorphism enumeration: every cycle order and rotation of a generator
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PermuBenchmark {
+
+    @Param({
+        "[(1,2,3)(4,5,6),(7,1,2)(4,8,5),(2,1,3)(4,8,10)]", // Permu.main's example
+        "[(1,2,3)(4,5,6)(7,8,9),(1,4,7)(2,5,10)(3,11,12)]",
+    })
+    public String generator;
+
+    private int[][][] parsed;
+
+    @Setup
+    public void setup() {
+        parsed = GroupExplorer.parseOperationsArr(generator);
+    }
+
+    @Benchmark
+    public void applyGeneratorPermutationsAndRotations(Blackhole bh) {
+        Permu.applyGeneratorPermutationsAndRotations(parsed, bh::consume);
+    }
+}
@@ -0,0 +1,120 @@
+package io.chandler.gap.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+
+/**
+ * LMDBCache add / contains on random 24-element states, in a scratch environment
+ *
+ * add() inserts BATCH states per invocation into a database cleared each iteration
+ *   (once the N_STORED fresh states wrap around, adds become duplicate checks);
+ *   contains() probes a database of N_STORED states, half hits and half misses.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LMDBCacheBenchmark {
+    private static final int N_ELEMENTS = 24;
+    private static final int N_STORED = 200_000;
+    private static final int BATCH = 10_000;
+
+    @Param({"1000", "100000"})
+    public int operationsTillFlush;
+
+    private Path directory;
+    private LMDBManager manager;
+    private LMDBCache stored;
+    private LMDBCache added;
+
+    private Random random;
+    private State[] probes;
+    private State[] fresh;
+    private int freshIndex;
+
+    private State randomState() {
+        int[] state = new int[N_ELEMENTS];
+        for (int j = 0; j < N_ELEMENTS; j++) state[j] = j + 1;
+        for (int j = N_ELEMENTS - 1; j > 0; j--) {
+            int k = random.nextInt(j + 1);
+            int t = state[j];
+            state[j] = state[k];
+            state[k] = t;
+        }
+        return State.of(state, N_ELEMENTS, MemorySettings.COMPACT);
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        random = new Random(1);
+        directory = Files.createTempDirectory("lmdb-bench");
+        manager = new LMDBManager(directory, 4);
+
+        stored = new LMDBCache(manager, "stored", N_ELEMENTS, MemorySettings.COMPACT, operationsTillFlush);
+        probes = new State[BATCH];
+        for (int i = 0; i < N_STORED; i++) {
+            State s = randomState();
+            stored.add(s);
+            if (i < BATCH / 2) probes[2 * i] = s;
+        }
+        for (int i = 0; i < BATCH / 2; i++) probes[2 * i + 1] = randomState();
+
+        added = new LMDBCache(manager, "added", N_ELEMENTS, MemorySettings.COMPACT, operationsTillFlush);
+        fresh = new State[N_STORED];
+        for (int i = 0; i < N_STORED; i++) fresh[i] = randomState();
+    }
+
+    @Setup(Level.Iteration)
+    public void clearAdded() {
+        added.clear();
+        freshIndex = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        stored.close(); // Closes the environment too
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void add(Blackhole bh) {
+        // Cycles through the fresh states; includes the flushes every operationsTillFlush adds
+        for (int i = 0; i < BATCH; i++) {
+            bh.consume(added.add(fresh[freshIndex]));
+            if (++freshIndex == fresh.length) freshIndex = 0;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void contains(Blackhole bh) {
+        for (State s : probes) bh.consume(stored.contains(s));
+    }
+}
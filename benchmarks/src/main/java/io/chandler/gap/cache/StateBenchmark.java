@@ -0,0 +1,111 @@
+package io.chandler.gap.cache;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+
+/**
+ * Construct / hash / equals / decode for each State encoding, on random 24-element states
+ *
+ * Lives in the cache package so it can reach the legacy StateFactorial encoding,
+ *   which State.of no longer picks for degree <= 34.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StateBenchmark {
+    private static final int N_STATES = 1024;
+    private static final int N_ELEMENTS = 24;
+
+    public enum Encoding {
+        FAST,      // StateFast
+        BYTE,      // StateByte
+        COMPACT,   // StateCompact, 5 bits per element
+        FACTORIAL, // StateFactorial, BigInteger rank
+        RANKED,    // StateRanked, two-long rank
+    }
+
+    @Param
+    public Encoding encoding;
+
+    private int[][] raw;
+    private State[] states;
+    private State[] copies;
+
+    static State encode(Encoding encoding, int[] state) {
+        switch (encoding) {
+            case FAST: return State.of(state, N_ELEMENTS, MemorySettings.FASTEST);
+            case BYTE: return State.of(state, 255, MemorySettings.DEFAULT);
+            case COMPACT: return State.of(state, N_ELEMENTS, MemorySettings.DEFAULT);
+            case FACTORIAL: return State.StateFactorial.legacy(state);
+            case RANKED: return State.of(state, N_ELEMENTS, MemorySettings.COMPACT);
+            default: throw new IllegalArgumentException(encoding.toString());
+        }
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        raw = new int[N_STATES][N_ELEMENTS];
+        states = new State[N_STATES];
+        copies = new State[N_STATES];
+        for (int i = 0; i < N_STATES; i++) {
+            for (int j = 0; j < N_ELEMENTS; j++) raw[i][j] = j + 1;
+            for (int j = N_ELEMENTS - 1; j > 0; j--) {
+                int k = random.nextInt(j + 1);
+                int t = raw[i][j];
+                raw[i][j] = raw[i][k];
+                raw[i][k] = t;
+            }
+            states[i] = encode(encoding, raw[i]);
+            copies[i] = encode(encoding, raw[i].clone());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N_STATES)
+    public void construct(Blackhole bh) {
+        for (int[] s : raw) bh.consume(encode(encoding, s));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N_STATES)
+    public void hash(Blackhole bh) {
+        for (State s : states) bh.consume(s.hashCode());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N_STATES)
+    public void equalsEqual(Blackhole bh) {
+        for (int i = 0; i < N_STATES; i++) bh.consume(states[i].equals(copies[i]));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N_STATES)
+    public void equalsDifferent(Blackhole bh) {
+        for (int i = 0; i < N_STATES; i++) bh.consume(states[i].equals(copies[(i + 1) % N_STATES]));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N_STATES)
+    public void decode(Blackhole bh) {
+        for (State s : states) bh.consume(s.state());
+    }
+}
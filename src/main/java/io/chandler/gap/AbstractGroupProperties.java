@@ -4,6 +4,6 @@ import io.chandler.gap.GroupExplorer.MemorySettings;
 
 public interface AbstractGroupProperties {
 	public MemorySettings mem();
-	public int order();
+	public long order();
 	public int elements();
 }
@@ -0,0 +1,356 @@
+package io.chandler.gap;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.chandler.gap.GroupExplorer.Generator;
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+
+/**
+ * Early-exit classification of candidate generators
+ *
+ * Runs the cheap tests first and only enumerates the group when a test needs every
+ *   element (an exact cycle type count on a group under the order limit):
+ *
+ *   ORBITS         union-find over the generator cycles; transitivity
+ *   PARITY         every generator even
+ *   PRIMITIVITY    no nontrivial block system (Atkinson's minimal blocks)
+ *   RANDOM_ORDERS  product-replacement samples; cycle types and element orders
+ *   SCHREIER_SIMS  order, bounded by the order limit; no two elements agreeing
+ *                    on the first fixedPrefix positions
+ *   ENUMERATION    exact cycle type checks by exploring the group
+ *
+ * Tests that are switched off cost nothing.  The random samples are only used to
+ *   reject (a cycle type that was seen exists), so the result doesn't depend on them.
+ *
+ * classify() follows the iterateExploration convention: REJECTED, TOO_LARGE, or the
+ *   order.  Counters are thread-safe so one classifier can serve a parallel search.
+ */
+public class CandidateClassifier {
+    public static final int REJECTED = -2;
+    public static final int TOO_LARGE = -1;
+
+    public static enum Stage {
+        ORBITS,
+        PARITY,
+        PRIMITIVITY,
+        RANDOM_ORDERS,
+        SCHREIER_SIMS,
+        ENUMERATION,
+    }
+
+    private final int orderLimit;
+    private boolean requireTransitive = false;
+    private boolean requireEven = false;
+    private boolean requirePrimitive = false;
+    private int maxCycleTypes = Integer.MAX_VALUE;
+    private Set<String> rejectedCycleTypes = new HashSet<>();
+    private int maxElementOrder = Integer.MAX_VALUE;
+    private int samples = 200;
+    private int fixedPrefix = -1;
+
+    private final AtomicLongArray rejections = new AtomicLongArray(Stage.values().length);
+    private final AtomicLongArray outcomes = new AtomicLongArray(2); // too large, accepted
+
+    /**
+     * @param orderLimit groups larger than this are TOO_LARGE
+     */
+    public CandidateClassifier(int orderLimit) {
+        this.orderLimit = orderLimit;
+    }
+
+    public CandidateClassifier requireTransitive(boolean requireTransitive) {
+        this.requireTransitive = requireTransitive;
+        return this;
+    }
+
+    public CandidateClassifier requireEven(boolean requireEven) {
+        this.requireEven = requireEven;
+        return this;
+    }
+
+    /**
+     * Implies requireTransitive
+     */
+    public CandidateClassifier requirePrimitive(boolean requirePrimitive) {
+        this.requirePrimitive = requirePrimitive;
+        if (requirePrimitive) this.requireTransitive = true;
+        return this;
+    }
+
+    /**
+     * Reject groups with more distinct describeStateForCache() cycle types than this
+     *   (identity excluded)
+     */
+    public CandidateClassifier setMaxCycleTypes(int maxCycleTypes) {
+        this.maxCycleTypes = maxCycleTypes;
+        return this;
+    }
+
+    /**
+     * Reject groups containing an element with this describeStateForCache() cycle type
+     */
+    public CandidateClassifier rejectCycleType(String cycleType) {
+        rejectedCycleTypes.add(cycleType);
+        return this;
+    }
+
+    public CandidateClassifier setMaxElementOrder(int maxElementOrder) {
+        this.maxElementOrder = maxElementOrder;
+        return this;
+    }
+
+    public CandidateClassifier setSamples(int samples) {
+        this.samples = samples;
+        return this;
+    }
+
+    /**
+     * Reject groups where two elements agree on the first nPositions positions,
+     *   as the ParityStateCache + Long*StateCache(nPositions, n) pairs did
+     */
+    public CandidateClassifier setFixedPrefix(int nPositions) {
+        this.fixedPrefix = nPositions;
+        return this;
+    }
+
+    public int classify(Generator g) {
+        int nElements = 0;
+        for (int[][] op : g.generator()) for (int[] cycle : op) for (int e : cycle) nElements = Math.max(nElements, e);
+        return classify(g, nElements);
+    }
+
+    public int classify(Generator g, int nElements) {
+        int[][][] ops = g.generator();
+        int[][] perms = new int[ops.length][];
+        for (int i = 0; i < ops.length; i++) perms[i] = PermutationKernel.sourceTable(ops[i], nElements);
+
+        if (requireTransitive && countOrbits(perms, nElements) > 1) return reject(Stage.ORBITS);
+
+        if (requireEven) {
+            for (int[][] op : ops) {
+                int transpositions = 0;
+                for (int[] cycle : op) transpositions += Math.max(0, cycle.length - 1);
+                if (transpositions % 2 != 0) return reject(Stage.PARITY);
+            }
+        }
+
+        if (requirePrimitive && !isPrimitive(perms, nElements)) return reject(Stage.PRIMITIVITY);
+
+        if (checksCycleTypes() || maxElementOrder != Integer.MAX_VALUE) {
+            if (!checkSamples(perms, nElements, ThreadLocalRandom.current())) return reject(Stage.RANDOM_ORDERS);
+        }
+
+        SchreierSims group = new SchreierSims(Arrays.asList(ops), nElements, MemorySettings.FASTEST, orderLimit);
+        // Partial orbit products are lower bounds, so this holds even when cut short
+        if (fixedPrefix >= 0 && !group.stabilizerOrder(fixedPrefix).equals(BigInteger.ONE)) {
+            return reject(Stage.SCHREIER_SIMS);
+        }
+        if (group.exceedsBound()) {
+            outcomes.incrementAndGet(0);
+            return TOO_LARGE;
+        }
+        int order = Math.toIntExact(group.order()); // exceedsBound() above caps it at orderLimit
+
+        if (checksCycleTypes() && !checkAllElements(g, nElements)) return reject(Stage.ENUMERATION);
+
+        outcomes.incrementAndGet(1);
+        return order;
+    }
+
+    private boolean checksCycleTypes() {
+        return maxCycleTypes != Integer.MAX_VALUE || !rejectedCycleTypes.isEmpty();
+    }
+
+    private int reject(Stage stage) {
+        rejections.incrementAndGet(stage.ordinal());
+        return REJECTED;
+    }
+
+    public long rejections(Stage stage) {
+        return rejections.get(stage.ordinal());
+    }
+
+    public long tooLarge() {
+        return outcomes.get(0);
+    }
+
+    public long accepted() {
+        return outcomes.get(1);
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder("Rejected by");
+        for (Stage stage : Stage.values()) {
+            sb.append(' ').append(stage).append('=').append(rejections(stage));
+        }
+        sb.append("; too large=").append(tooLarge()).append(", accepted=").append(accepted());
+        return sb.toString();
+    }
+
+    /**
+     * Number of orbits of the generated group on points 0 .. nElements-1
+     */
+    static int countOrbits(int[][] perms, int nElements) {
+        int[] parent = new int[nElements];
+        for (int i = 0; i < nElements; i++) parent[i] = i;
+        int orbits = nElements;
+        for (int[] perm : perms) {
+            for (int i = 0; i < nElements; i++) {
+                if (union(parent, i, perm[i])) orbits--;
+            }
+        }
+        return orbits;
+    }
+
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    private static boolean union(int[] parent, int a, int b) {
+        a = find(parent, a);
+        b = find(parent, b);
+        if (a == b) return false;
+        parent[b] = a;
+        return true;
+    }
+
+    /**
+     * Transitive group with no block system besides the trivial ones.  For each b, the
+     *   finest block system joining 0 and b is built by merging the images of merged
+     *   pairs; if it doesn't collapse to one block the group is imprimitive.
+     */
+    static boolean isPrimitive(int[][] perms, int nElements) {
+        if (countOrbits(perms, nElements) > 1) return false;
+        int[] parent = new int[nElements];
+        int[] queue = new int[2 * nElements];
+        for (int b = 1; b < nElements; b++) {
+            for (int i = 0; i < nElements; i++) parent[i] = i;
+            union(parent, 0, b);
+            int blocks = nElements - 1;
+            int head = 0, tail = 0;
+            queue[tail++] = 0;
+            queue[tail++] = b;
+            while (head < tail && blocks > 1) {
+                int x = queue[head++];
+                int y = queue[head++];
+                for (int[] perm : perms) {
+                    int gx = perm[x], gy = perm[y];
+                    if (union(parent, gx, gy)) {
+                        blocks--;
+                        queue[tail++] = gx;
+                        queue[tail++] = gy;
+                    }
+                }
+            }
+            if (blocks > 1) return false;
+        }
+        return true;
+    }
+
+    // Random elements by product replacement; false if one of them fails a test
+    private boolean checkSamples(int[][] perms, int nElements, Random random) {
+        int nSlots = Math.max(10, perms.length);
+        int[][] slots = new int[nSlots][];
+        for (int i = 0; i < nSlots; i++) slots[i] = perms[i % perms.length].clone();
+        int[] accumulator = new int[nElements];
+        for (int i = 0; i < nElements; i++) accumulator[i] = i;
+
+        Set<String> cycleTypes = new HashSet<>();
+        int[] state = new int[nElements];
+        int warmup = 50;
+        for (int step = 0; step < warmup + samples; step++) {
+            int i = random.nextInt(nSlots);
+            int j = random.nextInt(nSlots - 1);
+            if (j >= i) j++;
+            int[] a = slots[i], b = slots[j];
+            int[] product = new int[nElements];
+            if (random.nextBoolean()) {
+                for (int k = 0; k < nElements; k++) product[k] = a[b[k]];
+            } else {
+                for (int k = 0; k < nElements; k++) product[b[k]] = a[k];
+            }
+            slots[i] = product;
+            int[] next = new int[nElements];
+            for (int k = 0; k < nElements; k++) next[k] = accumulator[product[k]];
+            accumulator = next;
+            if (step < warmup) continue;
+
+            for (int k = 0; k < nElements; k++) state[k] = accumulator[k] + 1;
+            if (elementOrder(accumulator) > maxElementOrder) return false;
+            if (checksCycleTypes()) {
+                if (isIdentity(accumulator)) continue;
+                String desc = GroupExplorer.describeStateForCache(nElements, state);
+                if (rejectedCycleTypes.contains(desc)) return false;
+                cycleTypes.add(desc);
+                if (cycleTypes.size() > maxCycleTypes) return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIdentity(int[] perm) {
+        for (int i = 0; i < perm.length; i++) if (perm[i] != i) return false;
+        return true;
+    }
+
+    private static long elementOrder(int[] perm) {
+        boolean[] seen = new boolean[perm.length];
+        long order = 1;
+        for (int i = 0; i < perm.length; i++) {
+            if (seen[i]) continue;
+            int length = 0;
+            for (int x = i; !seen[x]; x = perm[x]) {
+                seen[x] = true;
+                length++;
+            }
+            order = order / gcd(order, length) * length;
+        }
+        return order;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private boolean checkAllElements(Generator g, int nElements) {
+        GroupExplorer explorer = new GroupExplorer(g, nElements, MemorySettings.FASTEST, new ObjectOpenHashSet<>());
+        Set<String> cycleTypes = new HashSet<>();
+        try {
+            explorer.exploreStates(false, (states, depth) -> {
+                for (int[] s : states) {
+                    String desc = GroupExplorer.describeStateForCache(nElements, s);
+                    if (rejectedCycleTypes.contains(desc)) throw new CycleTypeRejected();
+                    cycleTypes.add(desc);
+                    if (cycleTypes.size() > maxCycleTypes) throw new CycleTypeRejected();
+                }
+            });
+        } catch (CycleTypeRejected e) {
+            return false;
+        }
+        return true;
+    }
+
+    private static class CycleTypeRejected extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CycleTypeRejected() {
+            super(null, null, false, false);
+        }
+    }
+}
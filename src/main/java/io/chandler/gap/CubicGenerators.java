@@ -621,7 +621,7 @@ public class CubicGenerators {
 
         Set<State> stateCache = new LongStateCache(9,24);
         ArrayList<String> results = new ArrayList<>();
-        HashMap<Integer, List<String>> smallGroupGenerators = new HashMap<>();
+        HashMap<Long, List<String>> smallGroupGenerators = new HashMap<>();
 
         List<int[][][]> generators0 = getEdgeAnd4x4FoldGeneratorsForFaceOrEdge(12);
     
@@ -744,14 +744,14 @@ public class CubicGenerators {
             if (debug) System.out.println("Checking transitivity " + transitivity);
             Set<State> stateCache = new LongStateCache(transitivity,24);
             ArrayList<String> results = new ArrayList<>();
-            HashMap<Integer, List<String>> smallGroupGenerators = new HashMap<>();
+            HashMap<Long, List<String>> smallGroupGenerators = new HashMap<>();
 
             checkGenerator(debug, g, results, smallGroupGenerators, stateCache);
 
             if (results.size() > 0 || smallGroupGenerators.size() > 0) {
 
                 System.out.println("Found generator at transitivity " + transitivity);
-                for (Map.Entry<Integer, List<String>> e : smallGroupGenerators.entrySet()) {
+                for (Map.Entry<Long, List<String>> e : smallGroupGenerators.entrySet()) {
                     System.out.println("Order " + e.getKey() + ":");
                     for (String genString : e.getValue()) {
                         System.out.println(genString);
@@ -872,7 +872,7 @@ public class CubicGenerators {
 
         // Synchronized
         List<String> results = Collections.synchronizedList(new ArrayList<String>());
-        Map<Integer, List<String>> smallGroupGenerators = Collections.synchronizedMap(new TreeMap<>());
+        Map<Long, List<String>> smallGroupGenerators = Collections.synchronizedMap(new TreeMap<>());
 
         for (Generator vertices : validVertexCombinations) {
 
@@ -911,7 +911,7 @@ public class CubicGenerators {
         Files.deleteIfExists(Paths.get("generators_results.txt"));
 
         PrintStream out2 = new PrintStream("generators_results.txt");
-        for (Map.Entry<Integer, List<String>> e : smallGroupGenerators.entrySet()) {
+        for (Map.Entry<Long, List<String>> e : smallGroupGenerators.entrySet()) {
             out2.println("Order " + e.getKey() + ":");
             for (String genString : e.getValue()) {
                 out2.println(genString);
@@ -965,7 +965,7 @@ public class CubicGenerators {
 
         // Synchronized
         List<String> results = Collections.synchronizedList(new ArrayList<String>());
-        Map<Integer, List<String>> smallGroupGenerators = Collections.synchronizedMap(new TreeMap<>());
+        Map<Long, List<String>> smallGroupGenerators = Collections.synchronizedMap(new TreeMap<>());
 
         for (Generator vertices : validVertexCombinations) {
 
@@ -1004,7 +1004,7 @@ public class CubicGenerators {
         Files.deleteIfExists(Paths.get("generators_results.txt"));
 
         PrintStream out2 = new PrintStream("generators_results.txt");
-        for (Map.Entry<Integer, List<String>> e : smallGroupGenerators.entrySet()) {
+        for (Map.Entry<Long, List<String>> e : smallGroupGenerators.entrySet()) {
             out2.println("Order " + e.getKey() + ":");
             for (String genString : e.getValue()) {
                 out2.println(genString);
@@ -1038,7 +1038,7 @@ public class CubicGenerators {
 
         // Synchronized
         List<String> results = Collections.synchronizedList(new ArrayList<String>());
-        Map<Integer, List<String>> smallGroupGenerators = Collections.synchronizedMap(new TreeMap<>());
+        Map<Long, List<String>> smallGroupGenerators = Collections.synchronizedMap(new TreeMap<>());
 
         for (Generator vertices : validVertexCombinations) {
 
@@ -1076,7 +1076,7 @@ public class CubicGenerators {
         Files.deleteIfExists(Paths.get("generators_results.txt"));
 
         PrintStream out2 = new PrintStream("generators_results.txt");
-        for (Map.Entry<Integer, List<String>> e : smallGroupGenerators.entrySet()) {
+        for (Map.Entry<Long, List<String>> e : smallGroupGenerators.entrySet()) {
             out2.println("Order " + e.getKey() + ":");
             for (String genString : e.getValue()) {
                 out2.println(genString);
@@ -1111,7 +1111,7 @@ public class CubicGenerators {
 
         // Synchronized
         List<String> results = Collections.synchronizedList(new ArrayList<String>());
-        Map<Integer, List<String>> smallGroupGenerators = Collections.synchronizedMap(new TreeMap<>());
+        Map<Long, List<String>> smallGroupGenerators = Collections.synchronizedMap(new TreeMap<>());
 
         for (Generator vertices : validVertexCombinations) {
 
@@ -1149,7 +1149,7 @@ public class CubicGenerators {
         Files.deleteIfExists(Paths.get("generators_results.txt"));
 
         PrintStream out2 = new PrintStream("generators_results.txt");
-        for (Map.Entry<Integer, List<String>> e : smallGroupGenerators.entrySet()) {
+        for (Map.Entry<Long, List<String>> e : smallGroupGenerators.entrySet()) {
             out2.println("Order " + e.getKey() + ":");
             for (String genString : e.getValue()) {
                 out2.println(genString);
@@ -1180,7 +1180,7 @@ public class CubicGenerators {
 
         // Synchronized
         List<String> results = Collections.synchronizedList(new ArrayList<String>());
-        Map<Integer, List<String>> smallGroupGenerators =Collections.synchronizedMap(new TreeMap<>());
+        Map<Long, List<String>> smallGroupGenerators =Collections.synchronizedMap(new TreeMap<>());
 
         for (Generator vertices : validVertexCombinations) {
 
@@ -1256,7 +1256,7 @@ public class CubicGenerators {
         Files.deleteIfExists(Paths.get("generators_results.txt"));
 
         PrintStream out2 = new PrintStream("generators_results.txt");
-        for (Map.Entry<Integer, List<String>> e : smallGroupGenerators.entrySet()) {
+        for (Map.Entry<Long, List<String>> e : smallGroupGenerators.entrySet()) {
             out2.println("Order " + e.getKey() + ":");
             for (String genString : e.getValue()) {
                 out2.println(genString);
@@ -1402,11 +1402,11 @@ public class CubicGenerators {
 
     }
 
-    private static void checkGenerator(boolean debug, Generator g, List<String> lgGroupResults, Map<Integer, List<String>> smallGroupGenerators) {
+    private static void checkGenerator(boolean debug, Generator g, List<String> lgGroupResults, Map<Long, List<String>> smallGroupGenerators) {
         checkGenerator(debug, g, lgGroupResults, smallGroupGenerators, new M24StateCache());
     }
 
-    private static void checkGenerator(boolean debug, Generator g, List<String> lgGroupResults, Map<Integer, List<String>> smallGroupGenerators, Set<State> cache) {
+    private static void checkGenerator(boolean debug, Generator g, List<String> lgGroupResults, Map<Long, List<String>> smallGroupGenerators, Set<State> cache) {
         String genString = GroupExplorer.generatorsToString(g.generator());
         GroupExplorer candidate = new GroupExplorer(
             genString,
@@ -0,0 +1,158 @@
+package io.chandler.gap;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import io.chandler.gap.cache.SortedRunFiles;
+import io.chandler.gap.cache.SortedRunFiles.RowStream;
+import io.chandler.gap.cache.SortedRunFiles.RowWriter;
+import io.chandler.gap.cache.SortedRunFiles.RunWriter;
+import io.chandler.gap.cache.StatePacker;
+
+/**
+ * External-memory BFS for GroupExplorer: each layer is a sorted lz4 file of packed
+ *   states, so memory use is a run buffer no matter how large the group is
+ *
+ * With an inverse-closed generating set every neighbour of layer d is in layer d-1,
+ *   d or d+1.  The next layer is then the merged children of layer d minus layers d
+ *   and d-1, which is a streaming merge with no visited set.  Missing inverses are
+ *   added to the generators; that can change the depth a state is reported at, but
+ *   not which states are reported.
+ */
+class ExternalExploration {
+    // Parents expanded together (in parallel if multithreaded)
+    private static final int PARENT_BATCH = 1 << 14;
+
+    private final SortedRunFiles files;
+    private final StatePacker packer;
+    private final PermutationKernel[] kernels;
+    private final int nElements;
+    private final boolean multithread;
+
+    private Path previous, current;
+    private long order, layerSize;
+
+    ExternalExploration(List<int[][]> operations, int nElements, Path dir, int runStates, boolean multithread) throws IOException {
+        this.nElements = nElements;
+        this.multithread = multithread;
+        this.packer = new StatePacker(nElements);
+        this.files = new SortedRunFiles(packer, dir, runStates);
+
+        List<int[][]> closed = new ArrayList<>();
+        List<int[]> tables = new ArrayList<>();
+        for (int[][] op : operations) addIfNew(closed, tables, op);
+        for (int[][] op : operations) addIfNew(closed, tables, GroupExplorer.reverseOperation(op));
+        this.kernels = PermutationKernel.compileAll(closed, nElements);
+    }
+
+    private void addIfNew(List<int[][]> ops, List<int[]> tables, int[][] op) {
+        int[] table = PermutationKernel.sourceTable(op, nElements);
+        for (int[] t : tables) if (Arrays.equals(t, table)) return;
+        tables.add(table);
+        ops.add(op);
+    }
+
+    void init(int[] root) throws IOException {
+        deleteLayers();
+        long[] row = new long[files.words];
+        packer.pack(root, row, 0);
+        current = files.newFile("layer");
+        try (RowWriter out = files.new RowWriter(current)) {
+            out.add(row, 0);
+        }
+        order = 1;
+        layerSize = 1;
+    }
+
+    long order() {
+        return order;
+    }
+
+    long layerSize() {
+        return layerSize;
+    }
+
+    /**
+     * Builds the next layer from the current one
+     * @param peek receives the new states in lists of at most peekBatch
+     * @return the size of the new layer
+     */
+    long expand(Consumer<List<int[]>> peek, int peekBatch) throws IOException {
+        RunWriter children = files.new RunWriter("children");
+        long[] parentRows = new long[PARENT_BATCH * files.words];
+        try (RowStream parents = files.open(current)) {
+            int n;
+            do {
+                n = 0;
+                while (n < PARENT_BATCH && parents.next()) {
+                    System.arraycopy(parents.row(), 0, parentRows, n * files.words, files.words);
+                    n++;
+                }
+                long[] childRows = expandBatch(parentRows, n);
+                for (int c = 0; c < n * kernels.length; c++) children.add(childRows, c * files.words);
+            } while (n == PARENT_BATCH);
+        }
+        List<Path> runs = children.finish();
+
+        Path next = files.newFile("layer");
+        long count = 0;
+        List<int[]> peekList = new ArrayList<>();
+        try (RowStream merged = files.merge(runs);
+                RowStream inCurrent = files.open(current);
+                RowStream inPrevious = previous == null ? null : files.open(previous);
+                RowWriter out = files.new RowWriter(next)) {
+            while (merged.next()) {
+                long[] row = merged.row();
+                if (inCurrent.skipTo(row, 0)) continue;
+                if (inPrevious != null && inPrevious.skipTo(row, 0)) continue;
+                out.add(row, 0);
+                count++;
+                if (peek != null) {
+                    int[] state = new int[nElements];
+                    packer.unpack(row, 0, state);
+                    peekList.add(state);
+                    if (peekList.size() >= peekBatch) {
+                        peek.accept(peekList);
+                        peekList = new ArrayList<>();
+                    }
+                }
+            }
+        }
+        if (peek != null && !peekList.isEmpty()) peek.accept(peekList);
+
+        SortedRunFiles.delete(runs);
+        if (previous != null) SortedRunFiles.delete(previous);
+        previous = current;
+        current = next;
+        order += count;
+        layerSize = count;
+        return count;
+    }
+
+    private long[] expandBatch(long[] parentRows, int n) {
+        int words = files.words;
+        long[] childRows = new long[n * kernels.length * words];
+        IntStream parents = IntStream.range(0, n);
+        (multithread && n > 1000 ? parents.parallel() : parents).forEach(p -> {
+            int[] state = new int[nElements];
+            int[] child = new int[nElements];
+            packer.unpack(parentRows, p * words, state);
+            for (int k = 0; k < kernels.length; k++) {
+                kernels[k].apply(state, child);
+                packer.pack(child, childRows, (p * kernels.length + k) * words);
+            }
+        });
+        return childRows;
+    }
+
+    void deleteLayers() {
+        if (previous != null) SortedRunFiles.delete(previous);
+        if (current != null) SortedRunFiles.delete(current);
+        previous = current = null;
+    }
+}
@@ -5,13 +5,10 @@ import static io.chandler.gap.Generators.l2_7;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 
 import io.chandler.gap.GroupExplorer.MemorySettings;
 import io.chandler.gap.GroupExplorer.PeekData;
-import io.chandler.gap.cache.State;
-import javafx.util.Pair;
 
 public class FanoGem {
 
@@ -37,17 +34,15 @@ public class FanoGem {
 
         int[][][] g = GroupExplorer.parseOperationsArr(turns);
 
-        GroupExplorer group = new GroupExplorer(
+        GroupExplorer group = GroupExplorer.withPathTracking(
             GroupExplorer.generatorsToString(g),
-            MemorySettings.COMPACT,
-            new HashSet<>(), new HashSet<>(), new HashSet<>(), true);
+            MemorySettings.COMPACT);
         // I want to iteratively explore states until I find a match to this state:
         // Zeroes should be ignored in comparison
         // 1,2,9, 10  are the fixed pcs
        // int[] stateMatch =   {1,2,3,4,5,6,7,8,9,10,11,12, 13,14,15, 16,17,18};
         int[] stateMatch =   {2,4,6,1,3,5,7};
 
-        group.setTrackPath(true);
         group.initIterativeExploration();
 
         /*
@@ -60,14 +55,11 @@ public class FanoGem {
         System.out.println(Arrays.toString(stateMatch));
         System.out.println(Arrays.toString(group.copyCurrentState()));
 
-        HashMap<State, Pair<State, Integer>> backtrack = new HashMap<>();
-
         for (int iter = 0; iter < 11; iter++) {
 
             group.iterateExploration(false, 300_000_000, true, (states, depth) -> {
                 for (Object x : states) {
                     PeekData data = (PeekData) x;
-                    backtrack.put(data.newState, new Pair<>(data.oldState, data.operation));
                     int[] state = data.newState.state();
                     boolean matches = true;
                     for (int i = 0; i < state.length; i++) {
@@ -81,14 +73,12 @@ public class FanoGem {
                         System.out.println(Arrays.toString(state));
                         matchingStates.add(state);
                         // Figure out path
-                        State current = State.of(state, group.nElements, group.mem);
                         String op = "";
                         String inverseOp = "";
-                        while (backtrack.containsKey(current)) {
-                            Pair<State, Integer> d = backtrack.get(current);
-                            op = namesLookup[d.getValue()] + " " + op;
-                            inverseOp = inverseOp + " " + inverseNamesLookup[d.getValue()];
-                            current = d.getKey();
+                        int[] word = group.pathTo(state);
+                        for (int w = word.length - 1; w >= 0; w--) {
+                            op = namesLookup[word[w]] + " " + op;
+                            inverseOp = inverseOp + " " + inverseNamesLookup[word[w]];
                         }
                         System.out.println("Fwd: " + op);
                         System.out.println("Inv: " + inverseOp);
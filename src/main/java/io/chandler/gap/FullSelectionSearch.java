@@ -2,6 +2,8 @@ package io.chandler.gap;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -14,10 +16,18 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import io.chandler.gap.GroupExplorer.Generator;
 import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.ElementStore;
+import io.chandler.gap.cache.GroupMemo;
 import io.chandler.gap.cache.LongStateCache;
 import io.chandler.gap.cache.LongLongStateCache;
 import io.chandler.gap.cache.ParityStateCache;
@@ -39,7 +49,37 @@ public class FullSelectionSearch {
 
 
 
+    /**
+     * Group check without enumerating the group
+     * @return -2 if two elements agree on the first elementsToStore positions (what the
+     *   ParityStateCache + LongStateCache pair used to reject), -1 if larger than
+     *   maxGroupSize, otherwise the order
+     */
+    static int checkGroup(int[][][] generator, int elementsToStore, int maxGroupSize) {
+        SchreierSims group = new SchreierSims(GroupExplorer.generatorsToString(generator), MemorySettings.FASTEST);
+        if (!group.stabilizerOrder(elementsToStore).equals(BigInteger.ONE)) return -2;
+        if (group.orderExceeds(maxGroupSize)) return -1;
+        return Math.toIntExact(group.order());
+    }
+
+    // Memos stay open for the life of the process, and GroupMemo wants each file opened only once
+    private static final Map<String, GroupMemo> openMemos = new ConcurrentHashMap<>();
+
+    static GroupMemo openMemo(String name) {
+        return openMemos.computeIfAbsent(name, n -> {
+            try {
+                return GroupMemo.open(n);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
     static FullSelectionSearch getCubeEdgeSearch(boolean considerReverse, boolean reduceMirror) {
+        return getCubeEdgeSearch(considerReverse, reduceMirror, true);
+    }
+
+    static FullSelectionSearch getCubeEdgeSearch(boolean considerReverse, boolean reduceMirror, boolean useMemo) {
         int elementsToStore = 6; // Limits the transitivity in results
         int maxGroupSize = 95040+2;
 
@@ -65,23 +105,8 @@ public class FullSelectionSearch {
             1,
             (i) -> cuboctahedron.getFaceVertices(i-1),
             cuboctahedron::getPosOrNegFaceFromGenerator,
-            (generator) -> {
-                // Renumber is important for cache behavior
-                GroupExplorer group = new GroupExplorer(
-                    GroupExplorer.generatorsToString((generator)),
-                    MemorySettings.FASTEST, new ParityStateCache(new LongStateCache(elementsToStore,12)));
-                try {
-                    int iterations = group.exploreStates(false, maxGroupSize, null);
-                    if (iterations <= 0) {
-                        return iterations;
-                    }
-                    
-                } catch (Exception e) {
-                    //System.out.println("Error exploring states: " + e.getMessage());
-                    return -2;
-                }
-                return group.order();
-            });
+            (generator) -> checkGroup(generator, elementsToStore, maxGroupSize));
+        if (useMemo) search.setMemo(openMemo("cube-edge-orbits-" + elementsToStore + "-" + maxGroupSize + (reduceMirror ? "-m" : "")));
 
         return search;
     }
@@ -160,23 +185,8 @@ public class FullSelectionSearch {
             1,
             (i) -> Dodecahedron.vertexFaces[i-1],
             icosa::getPosOrNegFaceFromGenerator,
-            (generator) -> {
-                // Renumber is important for cache behavior
-                GroupExplorer group = new GroupExplorer(
-                    GroupExplorer.generatorsToString((generator)),
-                    MemorySettings.FASTEST, new ParityStateCache(new LongStateCache(elementsToStore,12)));
-                try {
-                    int iterations = group.exploreStates(false, maxGroupSize, null);
-                    if (iterations <= 0) {
-                        return iterations;
-                    }
-                    
-                } catch (Exception e) {
-                    //System.out.println("Error exploring states: " + e.getMessage());
-                    return -2;
-                }
-                return group.order();
-            });
+            (generator) -> checkGroup(generator, elementsToStore, maxGroupSize));
+        search.setMemo(openMemo("icosahedral-orbits-" + elementsToStore + "-" + maxGroupSize + (reduceMirror ? "-m" : "")));
 
         return search;
     }
@@ -186,6 +196,7 @@ public class FullSelectionSearch {
         boolean considerReverse = true;
         boolean reduceMirror = true;
         FullSelectionSearch search = getIcosahedralSearch(considerReverse, reduceMirror);
+        search.setParallelDepth(3);
 
         System.out.println("Searching for misc selections");
         search.exhaustiveMultiAxisSearch(Arrays.asList(3, 4), considerReverse, true);
@@ -333,8 +344,9 @@ public class FullSelectionSearch {
                 }
                 //System.out.println("Order: " + group.order());
                 
-                return group.order();
+                return Math.toIntExact(group.order());
             });
+        search.setMemo(openMemo("icosidodecahedral-orbits-" + elementsToStore + "-" + maxGroupSize + (reduceMirror ? "-m" : "")));
 
         return search;
     }
@@ -429,10 +441,11 @@ public class FullSelectionSearch {
                 }
                 //System.out.println("Order: " + group.order());
                 
-                return group.order();
+                return Math.toIntExact(group.order());
             });
         
 
+        search.setParallelDepth(3);
         System.out.println("Searching for 3x20 selections");
         search.exhaustiveMultiAxisSearch(3, 20, considerReverse, false);
 
@@ -516,9 +529,9 @@ public class FullSelectionSearch {
                 }
                 //System.out.println("Order: " + group.order());
                 
-                return group.order();
+                return Math.toIntExact(group.order());
             });
-        
+        search.setMemo(openMemo("snub-cube-" + (includeOctahedral ? 32 : 24) + "-orbits-" + elementsToStore + "-" + maxGroupSize));
 
         System.out.println("Searching for 2x4 selections");
         search.exhaustiveMultiAxisSearch(2, 4, considerReverse, false);
@@ -541,7 +554,16 @@ public class FullSelectionSearch {
     Function<Integer, int[]> getFaceAboutVertex;
     Function<int[], Integer> getVertexFromFacesReversable;
 
-    long cacheHits = 0, totalCacheChecks = 0;
+    // Symmetries that reverse every axis or none; the rest only map into the search with reverses
+    boolean[] uniformOrientation;
+
+    final AtomicLong canonicalChecks = new AtomicLong(), nonCanonical = new AtomicLong(), memoHits = new AtomicLong();
+
+    // Checker results and GAP descriptions from earlier runs, or null to always recompute
+    GroupMemo memo;
+
+    // Selections made before the search tree is split into fork-join tasks; 0 searches serially
+    int parallelDepth = 0;
 
     public FullSelectionSearch(Generator symmG, int nAxes, int initialAxis, Function<Integer, int[]> getFaceAboutVertex, Function<int[], Integer> getVertexFromFaces, Function<int[][][], Integer> groupChecker) {
         this.symmG = symmG;
@@ -551,25 +573,56 @@ public class FullSelectionSearch {
         this.getVertexFromFacesReversable = getVertexFromFaces;
         this.groupChecker = groupChecker;
 
-        HashSet<State> symm = new HashSet<>();
-        GroupExplorer symmEx = new GroupExplorer(GroupExplorer.generatorsToString(symmG.generator()), MemorySettings.FASTEST, symm);
-        Generators.exploreGroup(symmEx, null);
-        ArrayList<State> symmList = new ArrayList<>();
-        for (State state : symm) {
-            symmList.add(state);
+        // The symmetry group comes from the element store after the first run
+        ArrayList<int[]> symmList = new ArrayList<>();
+        try (ElementStore symm = ElementStore.open(GroupExplorer.generatorsToString(symmG.generator()))) {
+            for (long i = 0; i < symm.size(); i++) {
+                symmList.add(symm.state(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
         this.axisSymm = new int[nAxes][];
         for (int i = 0; i < nAxes; i++) {
             int[] face = getFaceAboutVertex.apply(i+1);
-            axisSymm[i] = new int[symm.size()];
-            for (int j = 0; j < symm.size(); j++) {
+            axisSymm[i] = new int[symmList.size()];
+            for (int j = 0; j < symmList.size(); j++) {
                 int[] faceCopy = face.clone();
                 for (int k = 0; k < faceCopy.length; k++) {
-                    faceCopy[k] = symmList.get(j).state()[face[k] - 1];
+                    faceCopy[k] = symmList.get(j)[face[k] - 1];
                 }
                 axisSymm[i][j] = getVertexFromFacesReversable.apply(faceCopy);
             }
         }
+        this.uniformOrientation = new boolean[symmList.size()];
+        for (int j = 0; j < symmList.size(); j++) {
+            boolean allPositive = true, allNegative = true;
+            for (int i = 0; i < nAxes; i++) {
+                if (axisSymm[i][j] > 0) allNegative = false;
+                else allPositive = false;
+            }
+            uniformOrientation[j] = allPositive || allNegative;
+        }
+    }
+
+    /**
+     * Splits the search into fork-join tasks, one for every branch above this many
+     *   selections.  Branches don't share any state, so results match the serial
+     *   search whatever the depth.
+     */
+    public void setParallelDepth(int parallelDepth) {
+        this.parallelDepth = parallelDepth;
+    }
+
+    /**
+     * Remembers orbit check results by the orbit's canonical image, so other layouts
+     *   (and later runs) don't check the same orbit twice.  Keys use the real face
+     *   labels and say whether reversing symmetries were used, but results depend on
+     *   axisSymm, so the memo must belong to this solid, symmetry group (mirrors
+     *   included or not) and checker.
+     */
+    public void setMemo(GroupMemo memo) {
+        this.memo = memo;
     }
 
     /**
@@ -714,12 +767,18 @@ public class FullSelectionSearch {
      * Example: List {4, 3, 3} selects 10 axes in groups of 4, 3, and 3.
      */
     public void exhaustiveMultiAxisSearch(List<Integer> axesPerSelection, boolean considerReverse, boolean useGap) {        
-        Map<Integer, List<int[][][]>> results = new TreeMap<>();
-        List<Integer> selections = new ArrayList<>();
-        FSSCache cache = new FSSCache();
+        canonicalChecks.set(0);
+        nonCanonical.set(0);
+        memoHits.set(0);
 
-        cacheHits = 0;
-        totalCacheChecks = 0;
+        printResults(System.out, true, useGap, search(axesPerSelection, considerReverse));
+    }
+
+    /**
+     * One representative of every orbit the checker accepts, by group order
+     */
+    Map<Integer, List<int[][][]>> search(List<Integer> axesPerSelection, boolean considerReverse) {
+        List<Integer> selections = new ArrayList<>();
 
         int n = 0;
         for (int i = 0; i < axesPerSelection.size(); i++) {
@@ -730,9 +789,17 @@ public class FullSelectionSearch {
         int axis0 = initialAxis;
         selections.add(axis0);
 
-        exhaustiveMultiAxisSearchRecursive(cache, considerReverse, n, axesPerSelection, selections, results);
-
-        printResults(System.out, true, useGap, results);
+        SearchTask root = new SearchTask(considerReverse, n, axesPerSelection, selections, new TreeMap<>());
+        if (parallelDepth > 0) {
+            ForkJoinPool pool = new ForkJoinPool();
+            try {
+                return pool.invoke(root);
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            return root.compute();
+        }
     }
 
     private void printResults(PrintStream out, boolean printDetails, boolean printGap, Map<Integer, List<int[][][]>> results) {
@@ -766,7 +833,12 @@ public class FullSelectionSearch {
                 nElements = elements.size();
                 out.print("   " + GroupExplorer.generatorsToString(result) + " - elements=" + nElements);
                 if (printGap) try {
-                    String gapResult = gap.runGapCommands(GroupExplorer.generatorsToString(result), 3).get(2).trim();
+                    String key = GroupExplorer.generatorsToString(GroupExplorer.renumberGenerators_fast(result));
+                    String gapResult = memo == null ? null : memo.description(key);
+                    if (gapResult == null) {
+                        gapResult = gap.runGapCommands(GroupExplorer.generatorsToString(result), 3).get(2).trim();
+                        if (memo != null) memo.putDescription(key, gapResult);
+                    }
                     out.print(" - " + gapResult);
                 } catch (Exception e) {
                     out.print(" - Error");
@@ -796,12 +868,12 @@ public class FullSelectionSearch {
     }
 
     /**
-     * Recursive helper method for exhaustiveMultiAxisSearch.
+     * Selections split into their complete axis groups, or null if the last group
+     *   isn't complete yet
      */
-    private void exhaustiveMultiAxisSearchRecursive(FSSCache cache, boolean considerReverse, int n, List<Integer> axesPerSelection, List<Integer> selections, Map<Integer, List<int[][][]>> results) {
+    private int[][] completeGroups(List<Integer> axesPerSelection, List<Integer> selections) {
         // If on boundary
         boolean onBoundary = false;
-        int[][] addBoundarySelectionToCache = null;
         int completeGroups = 0;
         int temp = 0;
         for (int nAxesInGroup : axesPerSelection) {
@@ -812,93 +884,263 @@ public class FullSelectionSearch {
                 break;
             }
         }
-        
-        if (onBoundary) {
-            // Cull
-            int[][][] generator = new int[completeGroups][][];
-            int[][] axesSelectionsForCache = new int[completeGroups][];
-            int[][] boundarySelection = new int[1][];
-            int iCumulative = 0;
-            for (int i = 0; i < generator.length; i++) {
-                int nAxesInGroup = axesPerSelection.get(i);
-                generator[i] = new int[nAxesInGroup][];
-                axesSelectionsForCache[i] = new int[nAxesInGroup];
-                // Boundary selection is the last axis group in the set
-                boundarySelection[0] = new int[nAxesInGroup];
-                for (int j = 0; j < nAxesInGroup; j++) {
-                    int selection = selections.get(iCumulative);
-                    int axis = Math.abs(selection);
-                    int[] face = getFaceAboutVertex.apply(axis);
-                    if (selection < 0) {
-                        face = reverseArray(face);
-                    }
-                    generator[i][j] = face;
-                    axesSelectionsForCache[i][j] = selection;
-                    iCumulative++;
-                    boundarySelection[0][j] = selection;
+        if (!onBoundary) return null;
+
+        int[][] axesSelections = new int[completeGroups][];
+        int iCumulative = 0;
+        for (int i = 0; i < completeGroups; i++) {
+            axesSelections[i] = new int[axesPerSelection.get(i)];
+            for (int j = 0; j < axesSelections[i].length; j++) {
+                axesSelections[i][j] = selections.get(iCumulative++);
+            }
+        }
+        return axesSelections;
+    }
+
+    private int[][][] toGenerator(int[][] axesSelections) {
+        int[][][] generator = new int[axesSelections.length][][];
+        for (int i = 0; i < generator.length; i++) {
+            generator[i] = new int[axesSelections[i].length][];
+            for (int j = 0; j < axesSelections[i].length; j++) {
+                int selection = axesSelections[i][j];
+                int[] face = getFaceAboutVertex.apply(Math.abs(selection));
+                if (selection < 0) {
+                    face = reverseArray(face);
                 }
+                generator[i][j] = face;
             }
+        }
+        return generator;
+    }
 
-            if (completeGroups == 1) totalCacheChecks++;
-            if (cache.checkContains(axesSelectionsForCache)) {
-                if (completeGroups == 1) cacheHits++;
-                return;
+    /**
+     * True if the complete groups are the canonical form of their orbit under axisSymm.
+     *   Each image is put in the order the search picks axes (groups sorted by axis
+     *   and signed so the first is positive, same-size groups ordered by first axis),
+     *   and none may come before the selection itself.
+     *
+     * Every prefix of a canonical selection is canonical too, so branches can be culled
+     *   at each boundary without remembering what's been seen.
+     */
+    boolean isCanonical(int[][] axesSelections, boolean considerReverse) {
+        int nGroups = axesSelections.length;
+        int[][] image = new int[nGroups][];
+        for (int g = 0; g < nGroups; g++) image[g] = new int[axesSelections[g].length];
+        boolean[] used = new boolean[nGroups];
+
+        int symmSize = axisSymm[0].length;
+        for (int i = 0; i < symmSize; i++) {
+            if (!considerReverse && !uniformOrientation[i]) continue;
+            for (int g = 0; g < nGroups; g++) {
+                int[] group = axesSelections[g];
+                int[] mapped = image[g];
+                for (int j = 0; j < group.length; j++) {
+                    int axis = axisSymm[Math.abs(group[j]) - 1][i];
+                    mapped[j] = group[j] < 0 ? -axis : axis;
+                }
+                sortByAxis(mapped);
+                if (mapped[0] < 0) {
+                    for (int j = 0; j < mapped.length; j++) mapped[j] = -mapped[j];
+                }
+            }
+
+            Arrays.fill(used, false);
+            for (int pos = 0; pos < nGroups; pos++) {
+                int[] target = axesSelections[pos];
+                int next = -1;
+                for (int g = 0; g < nGroups; g++) {
+                    if (used[g] || image[g].length != target.length) continue;
+                    if (next < 0 || image[g][0] < image[next][0]) next = g;
+                }
+                used[next] = true;
+                int c = Arrays.compare(image[next], target);
+                if (c < 0) return false;
+                if (c > 0) break;
             }
+        }
+        return true;
+    }
+
+    /**
+     * Every image of the selection under axisSymm, smallest first, with the groups in a
+     *   fixed order (by size, then by axes) so it doesn't depend on the layout that found it
+     */
+    TreeSet<int[][]> orbit(int[][] axesSelections, boolean considerReverse) {
+        Comparator<int[]> groupOrder = Comparator.<int[]>comparingInt(g -> g.length).thenComparing(Arrays::compare);
+        TreeSet<int[][]> images = new TreeSet<>((a, b) -> Arrays.compare(a, b, groupOrder));
+        int nGroups = axesSelections.length;
+
+        int symmSize = axisSymm[0].length;
+        for (int i = 0; i < symmSize; i++) {
+            if (!considerReverse && !uniformOrientation[i]) continue;
+            int[][] image = new int[nGroups][];
+            for (int g = 0; g < nGroups; g++) {
+                int[] group = axesSelections[g];
+                int[] mapped = new int[group.length];
+                for (int j = 0; j < group.length; j++) {
+                    int axis = axisSymm[Math.abs(group[j]) - 1][i];
+                    mapped[j] = group[j] < 0 ? -axis : axis;
+                }
+                sortByAxis(mapped);
+                if (mapped[0] < 0) {
+                    for (int j = 0; j < mapped.length; j++) mapped[j] = -mapped[j];
+                }
+                image[g] = mapped;
+            }
+            Arrays.sort(image, groupOrder);
+            images.add(image);
+        }
+        return images;
+    }
+
+    // Smallest image of the selection under axisSymm
+    int[][] orbitCanonical(int[][] axesSelections, boolean considerReverse) {
+        return orbit(axesSelections, considerReverse).first();
+    }
+
+    /**
+     * Checker result for the whole orbit: the order if any image passes, otherwise -2.
+     *   The checker may reject some images and not others (checkGroup's stabilizer
+     *   depends on which faces are labelled first), so culling on a single image
+     *   would lose groups.  The order itself is the same for every image.
+     */
+    private int orbitOrder(int[][] axesSelections, boolean considerReverse) {
+        for (int[][] image : orbit(axesSelections, considerReverse)) {
+            int order = groupChecker.apply(toGenerator(image));
+            if (order >= -1) return order;
+        }
+        return -2;
+    }
 
-            // Cull further by checking if cache contains new boundary selection
-            // This is why we wait until later to add current selection to cache
-            if (completeGroups != 1 && cache.checkContains(boundarySelection)) {
-                // Stop this branch; it's already been explored by a previous branch
+    // Checker result for the selection's orbit, from the memo if an earlier run had it
+    private int checkOrbit(int[][] axesSelections, boolean considerReverse) {
+        if (memo == null) return orbitOrder(axesSelections, considerReverse);
+        // Not renumbered: which faces get which labels decides the check.  Reversing
+        //   symmetries add images, so they get their own keys
+        String key = (considerReverse ? "r" : "f") + GroupExplorer.generatorsToString(toGenerator(orbitCanonical(axesSelections, considerReverse)));
+        Integer order = memo.order(key);
+        if (order != null) {
+            memoHits.incrementAndGet();
+            return order;
+        }
+        order = orbitOrder(axesSelections, considerReverse);
+        memo.putOrder(key, order);
+        return order;
+    }
+
+    private static void sortByAxis(int[] axes) {
+        for (int i = 1; i < axes.length; i++) {
+            int a = axes[i];
+            int j = i - 1;
+            while (j >= 0 && Math.abs(axes[j]) > Math.abs(a)) {
+                axes[j + 1] = axes[j];
+                j--;
+            }
+            axes[j + 1] = a;
+        }
+    }
+
+    /**
+     * One branch of the search, with its results by group order
+     */
+    private class SearchTask extends RecursiveTask<Map<Integer, List<int[][][]>>> {
+        private static final long serialVersionUID = 1L;
+
+        final boolean considerReverse;
+        final int n;
+        final List<Integer> axesPerSelection;
+        final List<Integer> selections;
+        // Every result so far, for the progress keys
+        final Map<Integer, List<int[][][]>> found;
+
+        SearchTask(boolean considerReverse, int n, List<Integer> axesPerSelection, List<Integer> selections, Map<Integer, List<int[][][]>> found) {
+            this.considerReverse = considerReverse;
+            this.n = n;
+            this.axesPerSelection = axesPerSelection;
+            this.selections = selections;
+            this.found = found;
+        }
+
+        @Override
+        protected Map<Integer, List<int[][][]>> compute() {
+            Map<Integer, List<int[][][]>> results = new TreeMap<>();
+            exhaustiveMultiAxisSearchRecursive(this, selections, results);
+            return results;
+        }
+    }
+
+    /**
+     * Recursive helper method for exhaustiveMultiAxisSearch.
+     */
+    private void exhaustiveMultiAxisSearchRecursive(SearchTask task, List<Integer> selections, Map<Integer, List<int[][][]>> results) {
+        int[][] axesSelections = completeGroups(task.axesPerSelection, selections);
+        
+        if (axesSelections != null) {
+            // Cull
+            canonicalChecks.incrementAndGet();
+            if (!isCanonical(axesSelections, task.considerReverse)) {
+                nonCanonical.incrementAndGet();
                 return;
             }
             
-            int order = groupChecker.apply(generator);
+            // Checked over the whole orbit, so culling the other images doesn't lose anything
+            int order = checkOrbit(axesSelections, task.considerReverse);
             if (order < -1) {
                 return;
-            } else {
-                // Add boundary selection to cache after this branch is explored
-                addBoundarySelectionToCache = axesSelectionsForCache;
             }
             
             // Add result if this is the full generator
-            if (selections.size() == n) {
-                List<int[][][]> resultsForOrder = results.get(order);
-                if (resultsForOrder == null) {
-                    resultsForOrder = new ArrayList<>();
-                    results.put(order, resultsForOrder);
+            if (selections.size() == task.n) {
+                int[][][] generator = toGenerator(axesSelections);
+                results.computeIfAbsent(order, k -> new ArrayList<>()).add(generator);
+                synchronized (task.found) {
+                    task.found.computeIfAbsent(order, k -> new ArrayList<>()).add(generator);
                 }
-                resultsForOrder.add(generator.clone());
-                // Cache here before returning
-                cache.cache(axesSelectionsForCache);
                 return;
             }
 
         }
 
         try {
-            if (System.in.available() > 0) {
-                int in = System.in.read();
-                if (in == ' ') {
-                    System.err.println("Results: " + results.size() + ", Selections: " + selections);
-                } else if (in == 'd') {
-                    System.err.println("Cache size: " + cache.cache.size() + ", Cache hits: " + cacheHits + ", Total cache checks: " + totalCacheChecks + " (" + (100.0 * cacheHits / totalCacheChecks) + "%)");
+            synchronized (System.in) {
+                if (System.in.available() > 0) {
+                    int in = System.in.read();
+                    Map<Integer, List<int[][][]>> found = new TreeMap<>();
+                    synchronized (task.found) {
+                        task.found.forEach((order, generators) -> found.put(order, new ArrayList<>(generators)));
+                    }
+                    if (in == ' ') {
+                        System.err.println("Results: " + found.size() + ", Selections: " + selections);
+                    } else if (in == 'd') {
+                        System.err.println("Non-canonical: " + nonCanonical + ", Canonical checks: " + canonicalChecks + " (" + (100.0 * nonCanonical.get() / canonicalChecks.get()) + "%), Memo hits: " + memoHits);
+                    }
+                    else if (in == 'g') printResults(System.err, true, true, found);
+                    else if (in == 'p') printResults(System.err, true, false, found);
+                    else if (in == '\t') printResults(System.err, false, false, found);
                 }
-                else if (in == 'g') printResults(System.err, true, true, results);
-                else if (in == 'p') printResults(System.err, true, false, results);
-                else if (in == '\t') printResults(System.err, false, false, results);
             }
         } catch (Exception e) {}
         //System.out.println("Remaining axes: " + getRemainingAxes(selections, axesPerSelection));
-        Collection<Integer> remainingAxes = getRemainingAxes(considerReverse, selections, axesPerSelection);
-
-        for (int signedAxis : remainingAxes) {
-            selections.add(signedAxis);
-            exhaustiveMultiAxisSearchRecursive(cache, considerReverse, n, axesPerSelection, selections, results);
-            selections.remove(selections.size() - 1);
-        }
-
-        if (addBoundarySelectionToCache != null) {
-            cache.cache(addBoundarySelectionToCache);
+        Collection<Integer> remainingAxes = getRemainingAxes(task.considerReverse, selections, task.axesPerSelection);
+
+        if (selections.size() < parallelDepth) {
+            List<SearchTask> children = new ArrayList<>();
+            for (int signedAxis : remainingAxes) {
+                List<Integer> childSelections = new ArrayList<>(selections);
+                childSelections.add(signedAxis);
+                children.add(new SearchTask(task.considerReverse, task.n, task.axesPerSelection, childSelections, task.found));
+            }
+            ForkJoinTask.invokeAll(children);
+            // Merge in branch order, so the results come out as the serial search lists them
+            for (SearchTask child : children) {
+                child.join().forEach((order, generators) -> results.computeIfAbsent(order, k -> new ArrayList<>()).addAll(generators));
+            }
+        } else {
+            for (int signedAxis : remainingAxes) {
+                selections.add(signedAxis);
+                exhaustiveMultiAxisSearchRecursive(task, selections, results);
+                selections.remove(selections.size() - 1);
+            }
         }
     }
 
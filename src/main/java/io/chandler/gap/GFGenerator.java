@@ -89,6 +89,17 @@ public class GFGenerator {
 			return new GF2_8x8_Cache(value, new byte[0], 0);
 		}
 
+		/**
+		 * Matrix reached from the identity by the given generator choices
+		 */
+		public static GF2_8x8_Cache fromPath(long value, boolean[] operations) {
+			byte[] path = new byte[(operations.length + 7) >> 3];
+			for (int i = 0; i < operations.length; i++) {
+				if (operations[i]) path[i >> 3] |= (byte) (1 << (i & 7));
+			}
+			return new GF2_8x8_Cache(value, path, operations.length);
+		}
+
 		public static long multiplyEncoded(long a, long b) {
 			// Treat each row as a byte. Row i of result is XOR of rows k of B where bit k in row i of A is 1.
 			long result = 0L;
@@ -5,27 +5,26 @@ import static io.chandler.gap.GFGenerator.GF2_8x8_Cache;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
 import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.ConcurrentLongSet;
 import io.chandler.gap.util.TimeEstimator;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.booleans.BooleanArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongLists;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
 
 /**
  * Explores matrix groups generated over GF(2) using {@link GFGenerator} data.
@@ -35,6 +34,10 @@ import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
  * of permutation cycles. Only the first two generator matrices (indices 0 and 1)
  * are utilised, corresponding to the bitstring encoding expected by
  * {@link GF2_8x8_Cache}.
+ * <p>
+ * Visited matrices are primitive longs in a concurrent set, each tagged with the
+ * generator bit that first reached it.  Paths aren't stored; {@link #pathTo}
+ * rebuilds one by multiplying back through the inverse generators.
  */
 public class GFGroupExplorer implements AbstractGroupProperties {
 
@@ -45,13 +48,18 @@ public class GFGroupExplorer implements AbstractGroupProperties {
     private final int field;
     private final GF2_8x8_Cache identity;
 
-    private final Deque<GF2_8x8_Cache> frontier = new ArrayDeque<>();
-    private final Set<Long> visited;
+    private final long inverseGeneratorZero;
+    private final long inverseGeneratorOne;
+
+    // Tagged with the generator bit that first reached each matrix (parent pointers)
+    private final ConcurrentLongSet visited;
+    private LongArrayList frontier = new LongArrayList();
 
     private boolean explored;
     private boolean multithread = false;
 
     private static final int BATCH_SIZE = 300_000;
+    private static final int CHUNK_SIZE = 2048;
     private static final int PARALLEL_THRESHOLD = 10_000;
 
     public static void main(String[] args) throws Exception {
@@ -64,6 +72,7 @@ public class GFGroupExplorer implements AbstractGroupProperties {
 
 	public static void runGenerator(GFGenerator generator, String permGen, String groupName, int orderEst) throws Exception {
 		GFGroupExplorer explorer = new GFGroupExplorer(generator, orderEst+1);
+		explorer.setMultithread(true);
 
 		File root = new File("PlanarStudyMulti/" + groupName);
 		root.mkdirs();
@@ -83,14 +92,14 @@ public class GFGroupExplorer implements AbstractGroupProperties {
         ThreadLocal<HashMap<String, Long>> directoryLocal = ThreadLocal.withInitial(() -> {HashMap<String, Long> map = new HashMap<>(); directories.add(map); return map;});
 
         explorer.explore(resultsBatch -> {
-            resultsBatch.parallelStream().forEach(result -> {
+            resultsBatch.longParallelStream().forEach(result -> {
                 boolean[][] prevState = prevStateLocal.get();
                 GroupExplorer groupExplorer = groupExplorerLocal.get();
                 
                 HashMap<String, Long> directory = directoryLocal.get();
 
                 boolean[] prevOps = prevState[0] == null ? new boolean[0] : prevState[0];
-                boolean[] ops = result.operations();
+                boolean[] ops = explorer.pathTo(result);
 
                 // Find common prefix length
                 int minLen = Math.min(prevOps.length, ops.length);
@@ -139,7 +148,7 @@ public class GFGroupExplorer implements AbstractGroupProperties {
                     maxCycleLength = Math.max(maxCycleLength, cycle.length);
                 }
                 if (maxCycleLength == 2) {
-                    if (result.getOrder() != 2) throw new RuntimeException("Order is not 2");
+                    if (GF2_8x8_Cache.fromEncoded(result).getOrder() != 2) throw new RuntimeException("Order is not 2");
                     synchronized (cycles2Out) {
                         cycles2Out.println(GroupExplorer.cyclesToNotation(cycles));
                     }
@@ -196,13 +205,19 @@ public class GFGroupExplorer implements AbstractGroupProperties {
         this.identity = GF2_8x8_Cache.identity();
         this.encodedGeneratorZero = GF2_8x8_Cache.encode(generatorZero);
         this.encodedGeneratorOne  = GF2_8x8_Cache.encode(generatorOne);
-        if (initialCacheSize != null) {
-            this.visited = Collections.synchronizedSet(new ObjectOpenHashSet<>(initialCacheSize));
-        } else {
-            this.visited = Collections.synchronizedSet(new ObjectOpenHashSet<>());
-        }
+        this.inverseGeneratorZero = inverse(encodedGeneratorZero);
+        this.inverseGeneratorOne  = inverse(encodedGeneratorOne);
+        this.visited = new ConcurrentLongSet(initialCacheSize != null ? initialCacheSize : 1 << 16, 1);
 
-        enqueue(identity, null, null, null);
+        visited.add(identity.value);
+        frontier.add(identity.value);
+    }
+
+    private static long inverse(long encoded) {
+        int order = GF2_8x8_Cache.fromEncoded(encoded).getOrder();
+        long power = GF2_8x8_Cache.identityValue();
+        for (int i = 1; i < order; i++) power = GF2_8x8_Cache.multiplyEncoded(power, encoded);
+        return power;
     }
 
     private static void require8x8(byte[][] matrix) {
@@ -217,90 +232,85 @@ public class GFGroupExplorer implements AbstractGroupProperties {
         }
     }
 
-    private void enqueue(GF2_8x8_Cache cache,
-                         Consumer<? super Collection<GF2_8x8_Cache>> consumer,
-                         Collection<GF2_8x8_Cache> buffer,
-                         Collection<GF2_8x8_Cache> consumerBuffer) {
-        if (visited.add(cache.value)) {
-            if (buffer != null) {
-                buffer.add(cache);
-            } else {
-                frontier.addLast(cache);
-            }
-            if (consumerBuffer != null) {
-                consumerBuffer.add(cache);
-            }
-        }
-    }
-
-
-    public void explore(Consumer<? super Collection<GF2_8x8_Cache>> consumer) {
+    public void explore(Consumer<? super LongList> consumer) {
         explore(consumer, -1);
     }
 
-    public void explore(Consumer<? super Collection<GF2_8x8_Cache>> consumer, long orderEst) {
+    /**
+     * Breadth-first over the whole group.  Each layer is expanded BATCH_SIZE parents
+     *   at a time; with multithreading a batch is split into CHUNK_SIZE pieces on the
+     *   fork-join pool, so idle workers steal chunks from busy ones.
+     * @param consumer receives every encoded matrix once, as a read-only view of the
+     *   new frontier; {@link #pathTo} gives the generator path for any of them
+     */
+    public void explore(Consumer<? super LongList> consumer, long orderEst) {
         TimeEstimator timeEstimator = orderEst > 0 ? new TimeEstimator(orderEst) : null;
         if (explored) {
             return;
         }
         // Ensure the initial identity element is delivered to the consumer exactly once
         if (consumer != null) {
-            consumer.accept(Collections.singletonList(identity));
+            consumer.accept(LongLists.singleton(identity.value));
         }
         while (!frontier.isEmpty()) {
-            if (timeEstimator != null) {
-                timeEstimator.checkProgressEstimate(visited.size(), null);
-            }
-            int batchSize = Math.min(frontier.size(), BATCH_SIZE);
-            List<GF2_8x8_Cache> batch = new ArrayList<>(batchSize);
-            for (int i = 0; i < batchSize; i++) {
-                batch.add(frontier.removeFirst());
-            }
-
-            boolean parallel = multithread && batch.size() >= PARALLEL_THRESHOLD;
-            Collection<GF2_8x8_Cache> additions = parallel ? new ConcurrentLinkedQueue<GF2_8x8_Cache>() : new ArrayDeque<>();
-            Collection<GF2_8x8_Cache> consumerAdditions = consumer == null ? null : new ConcurrentLinkedQueue<>();
-
-            Stream<GF2_8x8_Cache> stream = parallel ? batch.parallelStream() : batch.stream();
-            stream.forEach(state -> applyGenerators(state, consumer, additions, consumerAdditions));
-
-            frontier.addAll(additions);
-
-            if (consumer != null && !consumerAdditions.isEmpty()) {
-                consumer.accept(new ArrayList<>(consumerAdditions));
+            LongArrayList layer = frontier;
+            frontier = new LongArrayList();
+            for (int start = 0; start < layer.size(); start += BATCH_SIZE) {
+                if (timeEstimator != null) {
+                    timeEstimator.checkProgressEstimate(visited.sizeLong(), null);
+                }
+                int end = Math.min(layer.size(), start + BATCH_SIZE);
+                expandBatch(layer.elements(), start, end, consumer);
             }
         }
         explored = true;
     }
 
-    private void applyGenerators(GF2_8x8_Cache state,
-                                 Consumer<? super Collection<GF2_8x8_Cache>> consumer,
-                                 Collection<GF2_8x8_Cache> additions,
-                                 Collection<GF2_8x8_Cache> consumerAdditions) {
-        long stateValue = state.value;
-        long nextZero = GFGenerator.GF2_8x8_Cache.multiplyEncoded(stateValue, encodedGeneratorZero);
-        long nextOne  = GFGenerator.GF2_8x8_Cache.multiplyEncoded(stateValue, encodedGeneratorOne);
-        enqueueEncoded(state, false, nextZero, consumer, additions, consumerAdditions);
-        enqueueEncoded(state, true,  nextOne,  consumer, additions, consumerAdditions);
+    private void expandBatch(long[] parents, int start, int end, Consumer<? super LongList> consumer) {
+        int nChunks = (end - start + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        LongArrayList[] children = new LongArrayList[nChunks];
+
+        IntStream chunks = IntStream.range(0, nChunks);
+        boolean parallel = multithread && end - start >= PARALLEL_THRESHOLD;
+        (parallel ? chunks.parallel() : chunks).forEach(c -> {
+            LongArrayList found = new LongArrayList();
+            int chunkEnd = Math.min(end, start + (c + 1) * CHUNK_SIZE);
+            for (int p = start + c * CHUNK_SIZE; p < chunkEnd; p++) {
+                long parent = parents[p];
+                for (int bit = 0; bit < 2; bit++) {
+                    long child = GF2_8x8_Cache.multiplyEncoded(parent, bit == 0 ? encodedGeneratorZero : encodedGeneratorOne);
+                    if (visited.add(child, bit)) found.add(child);
+                }
+            }
+            children[c] = found;
+        });
+
+        int before = frontier.size();
+        for (LongArrayList found : children) frontier.addAll(found);
+        if (consumer != null && frontier.size() > before) {
+            consumer.accept(LongLists.unmodifiable(frontier.subList(before, frontier.size())));
+        }
     }
 
-    private void enqueueEncoded(GF2_8x8_Cache parent,
-                                 boolean bit,
-                                 long childValue,
-                                 Consumer<? super Collection<GF2_8x8_Cache>> consumer,
-                                 Collection<GF2_8x8_Cache> buffer,
-                                 Collection<GF2_8x8_Cache> consumerBuffer) {
-        if (visited.add(childValue)) {
-            GF2_8x8_Cache child = parent.copyAndUpdateEncoded(bit, childValue);
-            if (buffer != null) {
-                buffer.add(child);
-            } else {
-                frontier.addLast(child);
-            }
-            if (consumerBuffer != null) {
-                consumerBuffer.add(child);
+    /**
+     * Generator choices (false for matrix 0, true for matrix 1) that reach the
+     *   element from the identity, following the parent bits back
+     */
+    public boolean[] pathTo(long value) {
+        BooleanArrayList reversed = new BooleanArrayList();
+        long current = value;
+        while (current != identity.value) {
+            int tag = visited.tag(current);
+            if (tag < 0) {
+                throw new IllegalArgumentException("Matrix not in group: " + Long.toHexString(value));
             }
+            boolean bit = tag == 1;
+            reversed.add(bit);
+            current = GF2_8x8_Cache.multiplyEncoded(current, bit ? inverseGeneratorOne : inverseGeneratorZero);
         }
+        boolean[] path = new boolean[reversed.size()];
+        for (int i = 0; i < path.length; i++) path[i] = reversed.getBoolean(path.length - 1 - i);
+        return path;
     }
 
     public void setMultithread(boolean multithread) {
@@ -313,8 +323,8 @@ public class GFGroupExplorer implements AbstractGroupProperties {
     }
 
     @Override
-    public int order() {
-        return visited.size();
+    public long order() {
+        return visited.sizeLong();
     }
 
     @Override
@@ -326,9 +336,7 @@ public class GFGroupExplorer implements AbstractGroupProperties {
         return identity;
     }
 
-    public Set<Long> matrices() {
-        return Collections.unmodifiableSet(visited);
+    public LongSet matrices() {
+        return LongSets.unmodifiable(visited);
     }
 }
-
-
@@ -0,0 +1,234 @@
+package io.chandler.gap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import io.chandler.gap.GroupExplorer.Generator;
+
+/**
+ * Canonical form of a generator tuple under relabeling, cycle order, cycle rotation
+ *   and powering each generator to another generator of its cyclic group, so
+ *   isomorphic tuples come out equal without listing their isomorphs
+ *
+ * For each choice of powers, every orbit is walked breadth first from a start point,
+ *   numbering points as they're reached and recording each generator's image of each
+ *   point.  The smallest code over start points (orbits sorted) and powers wins, and
+ *   is read back as cycles.  Start points are limited to one cell of the partition
+ *   by cycle lengths through each point, picked the same way in every relabeling.
+ *
+ * Generators stay in their given order, as in genIsomorphisms.
+ */
+public class GeneratorCanonicalForm {
+
+    public static Generator key(int[][][] generators) {
+        return new Generator(of(generators));
+    }
+
+    public static int[][][] of(int[][][] generators) {
+        return new GeneratorCanonicalForm(generators).canonical();
+    }
+
+    private final int nGens;
+    private final int n; // Points, renumbered 0..n-1
+    private final boolean[][] listed; // listed[i][x]: x is in one of generator i's cycles
+    private final int[][] colors; // Cycle length through each point, per generator
+    private final int[][][] powers; // powers[i][p][x]: x under generator i's p-th power
+    private final List<int[]> orbits = new ArrayList<>();
+    private final List<int[]> startCells = new ArrayList<>();
+
+    // Scratch for encode()
+    private final int[] label, queue;
+
+    private GeneratorCanonicalForm(int[][][] generators) {
+        this.nGens = generators.length;
+        int maxElement = 0;
+        for (int[][] generator : generators) {
+            for (int[] cycle : generator) {
+                for (int e : cycle) maxElement = Math.max(maxElement, e);
+            }
+        }
+        int[] dense = new int[maxElement + 1];
+        Arrays.fill(dense, -1);
+        int points = 0;
+        for (int[][] generator : generators) {
+            for (int[] cycle : generator) {
+                for (int e : cycle) {
+                    if (dense[e] < 0) dense[e] = points++;
+                }
+            }
+        }
+        this.n = points;
+        this.listed = new boolean[nGens][n];
+        this.colors = new int[n][nGens];
+        this.powers = new int[nGens][][];
+        for (int i = 0; i < nGens; i++) {
+            int[][] cycles = generators[i];
+            for (int[] cycle : cycles) {
+                for (int e : cycle) {
+                    listed[i][dense[e]] = true;
+                    colors[dense[e]][i] = cycle.length;
+                }
+            }
+            int[] exponents = exponents(cycles);
+            powers[i] = new int[exponents.length][n];
+            for (int p = 0; p < exponents.length; p++) {
+                int[] image = powers[i][p];
+                for (int x = 0; x < n; x++) image[x] = x;
+                for (int[] cycle : cycles) {
+                    int len = cycle.length;
+                    int step = Math.floorMod(exponents[p], len);
+                    for (int j = 0; j < len; j++) {
+                        image[dense[cycle[j]]] = dense[cycle[(j + step) % len]];
+                    }
+                }
+            }
+        }
+
+        // Coprime powers generate the same cyclic groups, so the orbits are shared
+        this.label = new int[n];
+        this.queue = new int[n];
+        boolean[] seen = new boolean[n];
+        for (int start = 0; start < n; start++) {
+            if (seen[start]) continue;
+            int size = 0;
+            queue[size++] = start;
+            seen[start] = true;
+            for (int head = 0; head < size; head++) {
+                int x = queue[head];
+                for (int i = 0; i < nGens; i++) {
+                    int y = powers[i][0][x];
+                    if (!seen[y]) {
+                        seen[y] = true;
+                        queue[size++] = y;
+                    }
+                }
+            }
+            int[] orbit = Arrays.copyOf(queue, size);
+            orbits.add(orbit);
+            startCells.add(startCell(orbit));
+        }
+    }
+
+    /**
+     * Every power that generates the same cyclic group (coprime to the generator's
+     *   order).  That covers genIsomorphisms' repeats and reverses, whichever cycle
+     *   happens to come first.
+     */
+    private static int[] exponents(int[][] cycles) {
+        int order = 1;
+        for (int[] cycle : cycles) order = order / gcd(order, cycle.length) * cycle.length;
+        int[] exponents = new int[order];
+        int count = 0;
+        for (int e = 1; e <= order; e++) {
+            if (gcd(e, order) == 1) exponents[count++] = e;
+        }
+        return Arrays.copyOf(exponents, count);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    // Smallest cell of the orbit's cycle length partition, ties to the smaller colour
+    private int[] startCell(int[] orbit) {
+        Comparator<Integer> byColor = (a, b) -> Arrays.compare(colors[a], colors[b]);
+        Integer[] sorted = new Integer[orbit.length];
+        for (int k = 0; k < orbit.length; k++) sorted[k] = orbit[k];
+        Arrays.sort(sorted, byColor);
+        int bestFrom = 0, bestSize = Integer.MAX_VALUE;
+        for (int from = 0; from < sorted.length; ) {
+            int to = from + 1;
+            while (to < sorted.length && byColor.compare(sorted[from], sorted[to]) == 0) to++;
+            if (to - from < bestSize) {
+                bestFrom = from;
+                bestSize = to - from;
+            }
+            from = to;
+        }
+        int[] cell = new int[bestSize];
+        for (int k = 0; k < bestSize; k++) cell[k] = sorted[bestFrom + k];
+        return cell;
+    }
+
+    private int[][][] canonical() {
+        int[] choice = new int[nGens];
+        int[] best = null;
+        int[][] orbitCodes = new int[orbits.size()][];
+        Comparator<int[]> codeOrder = Comparator.<int[]>comparingInt(c -> c.length).thenComparing(Arrays::compare);
+        while (true) {
+            for (int o = 0; o < orbits.size(); o++) {
+                int[] orbitBest = null;
+                for (int start : startCells.get(o)) {
+                    int[] code = encode(start, orbits.get(o).length, choice);
+                    if (orbitBest == null || Arrays.compare(code, orbitBest) < 0) orbitBest = code;
+                }
+                orbitCodes[o] = orbitBest;
+            }
+            Arrays.sort(orbitCodes, codeOrder);
+
+            int[] code = new int[n * nGens];
+            int offset = 0, at = 0;
+            for (int[] orbitCode : orbitCodes) {
+                for (int v : orbitCode) code[at++] = v == 0 ? 0 : v + offset;
+                offset += orbitCode.length / nGens;
+            }
+            if (best == null || Arrays.compare(code, best) < 0) best = code;
+
+            // Next choice of powers
+            int i = 0;
+            while (i < nGens && ++choice[i] == powers[i].length) choice[i++] = 0;
+            if (i == nGens) break;
+        }
+        return decode(best);
+    }
+
+    // Each point in the order it's reached, then each generator's image of it (0 if unlisted)
+    private int[] encode(int start, int orbitSize, int[] choice) {
+        int[] code = new int[orbitSize * nGens];
+        Arrays.fill(label, -1);
+        int size = 0;
+        label[start] = size;
+        queue[size++] = start;
+        for (int head = 0; head < size; head++) {
+            int x = queue[head];
+            for (int i = 0; i < nGens; i++) {
+                if (!listed[i][x]) continue;
+                int y = powers[i][choice[i]][x];
+                if (label[y] < 0) {
+                    label[y] = size;
+                    queue[size++] = y;
+                }
+                code[head * nGens + i] = label[y] + 1;
+            }
+        }
+        return code;
+    }
+
+    // Cycles in order of their smallest point, each starting from it
+    private int[][][] decode(int[] code) {
+        int[][][] result = new int[nGens][][];
+        boolean[] visited = new boolean[n];
+        for (int i = 0; i < nGens; i++) {
+            Arrays.fill(visited, false);
+            List<int[]> cycles = new ArrayList<>();
+            for (int x = 0; x < n; x++) {
+                if (visited[x] || code[x * nGens + i] == 0) continue;
+                int len = 0;
+                for (int y = x; !visited[y]; y = code[y * nGens + i] - 1) {
+                    visited[y] = true;
+                    queue[len++] = y + 1;
+                }
+                cycles.add(Arrays.copyOf(queue, len));
+            }
+            result[i] = cycles.toArray(new int[0][]);
+        }
+        return result;
+    }
+}
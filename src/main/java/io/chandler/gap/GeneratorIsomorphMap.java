@@ -0,0 +1,68 @@
+package io.chandler.gap;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Set;
+
+import io.chandler.gap.GroupExplorer.Generator;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Map keyed by isomorphism class, one entry per class under its canonical form
+ *
+ * Every key is put through GeneratorCanonicalForm, so any isomorph (renumbered or
+ *   not) finds its class's entry, which is what filling a map with genIsomorphisms
+ *   used to give.  Iteration sees the canonical forms only.
+ */
+public class GeneratorIsomorphMap extends AbstractMap<Generator, Integer> {
+    private final Object2IntOpenHashMap<Generator> classes = new Object2IntOpenHashMap<>();
+
+    private static Generator canonical(Object key) {
+        return key instanceof Generator ? GeneratorCanonicalForm.key(((Generator) key).generator()) : null;
+    }
+
+    public boolean containsKey(int[][][] generator) {
+        return classes.containsKey(GeneratorCanonicalForm.key(generator));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Generator c = canonical(key);
+        return c != null && classes.containsKey(c);
+    }
+
+    @Override
+    public Integer get(Object key) {
+        Generator c = canonical(key);
+        return c != null && classes.containsKey(c) ? classes.getInt(c) : null;
+    }
+
+    /**
+     * Adds the generator's class if it's new
+     * @return false if an isomorph was already present
+     */
+    public boolean putIfAbsent(int[][][] generator, int value) {
+        Generator c = GeneratorCanonicalForm.key(generator);
+        if (classes.containsKey(c)) return false;
+        classes.put(c, value);
+        return true;
+    }
+
+    @Override
+    public Integer put(Generator key, Integer value) {
+        Generator c = canonical(key);
+        Integer previous = classes.containsKey(c) ? classes.getInt(c) : null;
+        classes.put(c, value.intValue());
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return classes.size();
+    }
+
+    @Override
+    public Set<Entry<Generator, Integer>> entrySet() {
+        return Collections.unmodifiableSet(classes.object2IntEntrySet());
+    }
+}
@@ -1,11 +1,11 @@
 package io.chandler.gap;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import io.chandler.gap.GroupExplorer.Generator;
-import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 
 public class GeneratorPairSearch {
 
@@ -42,25 +42,10 @@ public class GeneratorPairSearch {
                 int[][][] generator = new int[][][] { aCycles, bCycles };
                 String composite = "[" + GroupExplorer.cyclesToNotation(aCycles) + "," + GroupExplorer.cyclesToNotation(bCycles) + "]";
                 
-                boolean[] success = new boolean[]{false};
-                int[] order = new int[]{0};
+                // Schreier-Sims order instead of exploring until the limit
+                SchreierSims compositeGroup = new SchreierSims(composite, group.mem());
 
-                try {
-                    GroupExplorer compositeGAP = new GroupExplorer(composite, group.mem());
-                    compositeGAP.exploreStates(false, (states, depth) -> {
-                        order[0] += states.size();
-                        if (order[0] > satisfactoryOrder) {
-                            success[0] = true;
-                            throw new RuntimeException();
-                        }
-                        //if (depth <= 30) System.out.print(depth + " " + states.size() + " ");
-
-                    });
-
-                } catch (RuntimeException e) {}
-                //System.out.println();
-
-                if (success[0]) {
+                if (compositeGroup.orderExceeds(satisfactoryOrder)) {
                     generatorPairs.add(new Generator(generator));
                 } else {
                     //System.out.println("Failed to generate group: " + order[0]);
@@ -93,7 +78,8 @@ public class GeneratorPairSearch {
         // Make a list of generator pairs : src index
         //HashMap<Generator, Integer> generatorPairs = new HashMap<>();
 
-        Object2IntOpenHashMap<Generator> generatorPairs = new Object2IntOpenHashMap<>();
+        // One entry per isomorphism class; lookups canonicalize, so any isomorph finds it
+        GeneratorIsomorphMap generatorPairs = new GeneratorIsomorphMap();
         int lastSize = 0;
         // Loop thru pairs of generator candidates
         for (int i = 0; i < generatorCandidates.size(); i++) {
@@ -106,17 +92,12 @@ public class GeneratorPairSearch {
                 if (!GroupExplorer.cyclesContainsAllElements(group.elements(), aCycles, bCycles)) continue;
 
                 int[][][] generator = new int[][][] { aCycles, bCycles };
-                generator = GroupExplorer.renumberGenerators_fast(generator);
-                if (generatorPairs.containsKey(new Generator(generator))) continue;
+                if (generatorPairs.containsKey(generator)) continue;
 
                 String composite = "[" + GroupExplorer.cyclesToNotation(aCycles) + "," + GroupExplorer.cyclesToNotation(bCycles) + "]";
-                GroupExplorer compositeGAP = new GroupExplorer(composite, group.mem());
-                compositeGAP.exploreStates(false, null);
-                int order = compositeGAP.order();
-                if (order == group.order()) {
-                    for (int[][][] iso : GroupExplorer.genIsomorphisms(generator)) {
-                        generatorPairs.put(new Generator(iso), i * generatorCandidates.size() + j);
-                    }
+                SchreierSims compositeGroup = new SchreierSims(composite, group.mem());
+                if (compositeGroup.orderExact().equals(BigInteger.valueOf(group.order()))) {
+                    generatorPairs.putIfAbsent(generator, i * generatorCandidates.size() + j);
                 }
                 if (generatorPairs.size() > lastSize) {
                     if (verbose) System.out.println("Checking generator "+i+"/"+j+" of " + generatorCandidates.size() + " - " + generatorPairs.size() + " pairs found");
@@ -125,7 +106,7 @@ public class GeneratorPairSearch {
             }
         }
 
-        System.out.println("Isomorphic Generator pairs: " + generatorPairs.size());
+        System.out.println("Generator pairs up to isomorphism: " + generatorPairs.size());
         return generatorPairs;
     }
    
@@ -1,23 +1,47 @@
 package io.chandler.gap;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import io.chandler.gap.cache.ConcurrentStateSet;
+import io.chandler.gap.cache.FactorialCodec;
+import io.chandler.gap.cache.GroupArchive;
+import io.chandler.gap.cache.LMDBCache;
+import io.chandler.gap.cache.LongSized;
+import io.chandler.gap.cache.LongStateCache;
+import io.chandler.gap.cache.PackedStateSet;
 import io.chandler.gap.cache.ParityStateCache;
+import io.chandler.gap.cache.RankedBitsetStateCache;
 import io.chandler.gap.cache.State;
+import io.chandler.gap.cache.StatePacker;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
 
 public class GroupExplorer implements AbstractGroupProperties {
 
@@ -31,6 +55,11 @@ public class GroupExplorer implements AbstractGroupProperties {
     public final MemorySettings mem;
     public boolean multithread;
     public boolean trackPath = false;
+    public KernelMode kernelMode = KernelMode.COMPILED;
+
+    private PermutationKernel[] kernels;
+    // True when the incomplete/tmp layer sets were created here rather than supplied
+    private boolean ownsLayerSets = false;
 
     public static class Generator {
         byte[][][] generator;
@@ -116,14 +145,39 @@ public class GroupExplorer implements AbstractGroupProperties {
         DEFAULT,
         COMPACT,
     }
+
+    /**
+     * How generators are applied during exploration
+     * 
+     * CYCLES walks the cycle lists for every state
+     * COMPILED gathers through a precompiled PermutationKernel per generator
+     */
+    public static enum KernelMode {
+        CYCLES,
+        COMPILED,
+    }
     public GroupExplorer(String cycleNotation, MemorySettings mem) {
         this(cycleNotation, mem, new ObjectOpenHashSet<State>());
     }
+    /**
+     * Explorer whose stateMap is a PackedStateSet recording each state's last generator,
+     *   so words can be rebuilt with pathTo() at a few bits per state
+     */
+    public static GroupExplorer withPathTracking(String cycleNotation, MemorySettings mem) {
+        GroupExplorer parsed = new GroupExplorer(cycleNotation, mem, new HashSet<>(), new HashSet<>(), new HashSet<>(), false);
+        PackedStateSet visited = new PackedStateSet(parsed.nElements, mem, 1024, parsed.parsedOperations.size());
+        GroupExplorer explorer = new GroupExplorer(cycleNotation, mem, visited);
+        explorer.setTrackPath(true);
+        return explorer;
+    }
+
     public GroupExplorer(Generator g, int nElements, MemorySettings mem, Set<State> stateMap) {
         this(g, nElements, mem, stateMap,  new ObjectOpenHashSet<State>(), new ObjectOpenHashSet<State>(), true);
+        this.ownsLayerSets = true;
     }
     public GroupExplorer(String cycleNotation, MemorySettings mem, Set<State> stateMap) {
         this(cycleNotation, mem, stateMap,  new ObjectOpenHashSet<State>(), new ObjectOpenHashSet<State>(), true);
+        this.ownsLayerSets = true;
     }
     public GroupExplorer(String cycleNotation, MemorySettings mem, Set<State> stateMap, Set<State> stateMapIncomplete, Set<State> stateMapTmp, boolean multithread) {
         for (String s : cycleNotation.split("\\(|\\)|,|\\[|\\]")) {
@@ -158,6 +212,24 @@ public class GroupExplorer implements AbstractGroupProperties {
         this.trackPath = trackPath;
     }
 
+    public void setKernelMode(KernelMode kernelMode) {
+        this.kernelMode = kernelMode;
+        this.kernels = null;
+    }
+
+    /**
+     * Compiles parsedOperations for the COMPILED kernel mode
+     * @return the compiled kernels, or null when walking cycles
+     */
+    public PermutationKernel[] compileKernels() {
+        if (kernelMode != KernelMode.COMPILED) {
+            kernels = null;
+        } else if (kernels == null || kernels.length != parsedOperations.size()) {
+            kernels = PermutationKernel.compileAll(parsedOperations, nElements);
+        }
+        return kernels;
+    }
+
     public void resetElements(boolean addInitialState) {
         elements = initializeElements(nElements);
         stateMap.clear();
@@ -230,9 +302,222 @@ public class GroupExplorer implements AbstractGroupProperties {
         }
     }
         
+    /**
+     * Writes the explored states to a GroupArchive, tagged with the generators
+     */
+    public void writeArchive(Path file) throws IOException {
+        if (packedFrontier != null || external != null) {
+            throw new UnsupportedOperationException("Archive the states from the exploreStates callback instead");
+        }
+        try (GroupArchive.Writer writer = new GroupArchive.Writer(file, generatorsToString(parsedOperations.toArray(new int[0][][])), nElements)) {
+            for (State state : stateMap) writer.add(state);
+        }
+    }
+
+    // Checkpoints - a compact lz4 snapshot taken between layers
+    private static final int CHECKPOINT_MAGIC = 0x4758434b; // GXCK
+    private static final int CHECKPOINT_VERSION = 3;
+    private static final byte SET_INLINE_RANKS = 0, SET_INLINE_PACKED = 1, SET_LMDB = 2;
+
+    private Path checkpointFile;
+    private long checkpointIntervalMillis;
+    private long lastCheckpoint;
+    // LMDB snapshots the checkpoint at snapshotsOf points at (last written or resumed)
+    private List<Path> checkpointSnapshots = new ArrayList<>();
+    private Path snapshotsOf;
+
+    /**
+     * Write a checkpoint to file after each layer once intervalMillis has passed since
+     *   the last one (0 for every layer).  Not supported for packed or external exploration.
+     */
+    public void setCheckpoint(Path file, long intervalMillis) {
+        this.checkpointFile = file;
+        this.checkpointIntervalMillis = intervalMillis;
+        this.lastCheckpoint = System.currentTimeMillis();
+    }
+
+    /**
+     * Saves the explored and frontier sets, iteration and lastSize.  Only valid between
+     *   layers; the file is replaced atomically so a crash leaves the previous one.
+     *
+     * In-memory sets are written inline as factorial ranks (or packed rows past 34
+     *   points).  LMDBCache sets are copied to a snapshot environment next to the file
+     *   and recorded by db name, snapshot and size; the live databases keep changing
+     *   with later layers.  Once the new file is in place, the snapshots of the one it
+     *   replaced are deleted.
+     */
+    public void writeCheckpoint(Path file) throws IOException {
+        if (packedFrontier != null || external != null) {
+            throw new UnsupportedOperationException("Checkpoints aren't supported for packed or external exploration");
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        List<Path> snapshots = new ArrayList<>();
+        try (DataOutputStream dos = new DataOutputStream(new LZ4BlockOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))) {
+            dos.writeInt(CHECKPOINT_MAGIC);
+            dos.writeInt(CHECKPOINT_VERSION);
+            dos.writeUTF(generatorsToString(parsedOperations.toArray(new int[0][][])));
+            dos.writeInt(nElements);
+            for (int e : elements) dos.writeInt(e);
+            dos.writeInt(iteration);
+            dos.writeLong(lastSize);
+            writeCheckpointSet(dos, stateMap, file, snapshots);
+            writeCheckpointSet(dos, stateMapIncomplete, file, snapshots);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (file.toAbsolutePath().equals(snapshotsOf)) {
+            for (Path old : checkpointSnapshots) LMDBCache.deleteSnapshot(old);
+        }
+        checkpointSnapshots = snapshots;
+        snapshotsOf = file.toAbsolutePath();
+    }
+
+    private void writeCheckpointSet(DataOutputStream dos, Set<State> set, Path file, List<Path> snapshots) throws IOException {
+        if (set instanceof LMDBCache) {
+            LMDBCache lmdb = (LMDBCache) set;
+            Path dir = file.toAbsolutePath().getParent();
+            Path snapshot = Files.createTempDirectory(dir, file.getFileName() + "-" + lmdb.dbName() + "-");
+            snapshots.add(snapshot);
+            lmdb.snapshot(snapshot);
+            dos.writeByte(SET_LMDB);
+            dos.writeUTF(lmdb.dbName());
+            dos.writeUTF(snapshot.toString());
+            dos.writeLong(lmdb.sizeLong());
+            return;
+        }
+        boolean ranks = FactorialCodec.supports(nElements);
+        dos.writeByte(ranks ? SET_INLINE_RANKS : SET_INLINE_PACKED);
+        dos.writeLong(LongSized.sizeOf(set));
+        if (ranks) {
+            FactorialCodec codec = FactorialCodec.of(nElements);
+            ByteBuffer key = ByteBuffer.allocate(codec.keyBytes);
+            for (State state : set) {
+                key.clear();
+                codec.writeKey(state.state(), key);
+                dos.write(key.array());
+            }
+        } else {
+            StatePacker packer = new StatePacker(nElements);
+            long[] row = new long[packer.wordsPerRow];
+            for (State state : set) {
+                packer.pack(state.state(), row, 0);
+                for (long word : row) dos.writeLong(word);
+            }
+        }
+    }
+
+    /**
+     * Restores a checkpoint written by writeCheckpoint, after which continueExploration
+     *   carries on from the next layer.  The explorer must have the same generators.
+     *
+     * LMDB-backed sets must be open on the recorded databases, and are refilled from
+     *   the checkpoint's snapshots; the frontier and tmp sets are swapped if they had
+     *   been swapped when the checkpoint was taken.
+     */
+    public void resume(Path file) throws IOException {
+        try (DataInputStream dis = new DataInputStream(new LZ4BlockInputStream(new BufferedInputStream(Files.newInputStream(file))))) {
+            if (dis.readInt() != CHECKPOINT_MAGIC) throw new IOException(file + " is not a checkpoint");
+            int version = dis.readInt();
+            if (version != CHECKPOINT_VERSION) throw new IOException("Unsupported checkpoint version " + version);
+            String generators = dis.readUTF();
+            if (!generators.equals(generatorsToString(parsedOperations.toArray(new int[0][][])))) {
+                throw new IllegalArgumentException("Checkpoint is for a different generator: " + generators);
+            }
+            if (dis.readInt() != nElements) throw new IllegalArgumentException("Checkpoint has a different number of elements");
+            int[] root = new int[nElements];
+            for (int i = 0; i < nElements; i++) root[i] = dis.readInt();
+
+            packedFrontier = null;
+            external = null;
+            kernels = null;
+            compileKernels();
+            elements = root;
+            iteration = dis.readInt();
+            lastSize = dis.readLong();
+
+            CheckpointSet explored = new CheckpointSet(dis);
+            explored.restore(dis, stateMap);
+
+            CheckpointSet frontier = new CheckpointSet(dis);
+            if (frontier.dbName != null && stateMapTmp instanceof LMDBCache
+                    && ((LMDBCache) stateMapTmp).dbName().equals(frontier.dbName)) {
+                Set<State> tmp = stateMapIncomplete;
+                stateMapIncomplete = stateMapTmp;
+                stateMapTmp = tmp;
+            }
+            frontier.restore(dis, stateMapIncomplete);
+            stateMapTmp.clear();
+
+            checkpointSnapshots = new ArrayList<>();
+            if (explored.snapshot != null) checkpointSnapshots.add(explored.snapshot);
+            if (frontier.snapshot != null) checkpointSnapshots.add(frontier.snapshot);
+            snapshotsOf = file.toAbsolutePath();
+        }
+    }
+
+    // Header of a set in a checkpoint; inline states follow it
+    private class CheckpointSet {
+        final byte kind;
+        final String dbName;
+        final Path snapshot;
+        final long size;
+
+        CheckpointSet(DataInputStream dis) throws IOException {
+            kind = dis.readByte();
+            if (kind == SET_LMDB) {
+                dbName = dis.readUTF();
+                snapshot = Path.of(dis.readUTF());
+            } else {
+                dbName = null;
+                snapshot = null;
+            }
+            size = dis.readLong();
+        }
+
+        // Refills set with the checkpointed states
+        void restore(DataInputStream dis, Set<State> set) throws IOException {
+            if (dbName != null) {
+                if (!(set instanceof LMDBCache && ((LMDBCache) set).dbName().equals(dbName))) {
+                    throw new IllegalStateException("Checkpoint expects LMDB database " + dbName);
+                }
+                ((LMDBCache) set).restore(snapshot);
+            } else {
+                set.clear();
+                readStates(dis, set);
+            }
+            if (LongSized.sizeOf(set) != size) {
+                throw new IllegalStateException("Set has " + LongSized.sizeOf(set) + " states, checkpoint recorded " + size);
+            }
+        }
+
+        private void readStates(DataInputStream dis, Set<State> set) throws IOException {
+            if (kind == SET_INLINE_RANKS) {
+                FactorialCodec codec = FactorialCodec.of(nElements);
+                ByteBuffer key = ByteBuffer.allocate(codec.keyBytes);
+                for (long i = 0; i < size; i++) {
+                    key.clear();
+                    dis.readFully(key.array());
+                    set.add(State.of(codec.readKey(key), nElements, mem));
+                }
+            } else {
+                StatePacker packer = new StatePacker(nElements);
+                long[] row = new long[packer.wordsPerRow];
+                for (long i = 0; i < size; i++) {
+                    for (int w = 0; w < row.length; w++) row[w] = dis.readLong();
+                    int[] state = new int[nElements];
+                    packer.unpack(row, 0, state);
+                    set.add(State.of(state, nElements, mem));
+                }
+            }
+        }
+
+    }
+
     @Override
-    public int order() {
-        return stateMap.size();
+    public long order() {
+        if (external != null) return external.order();
+        long size = LongSized.sizeOf(stateMap);
+        if (packedFrontier != null) return size - packedFrontier.size();
+        return size;
     }
 
     @Override
@@ -351,7 +636,7 @@ public class GroupExplorer implements AbstractGroupProperties {
     }
 
 
-    int lastSize = 0;
+    long lastSize = 0;
     int iteration = 0;
     int maxPeekSize = -1;
 
@@ -368,12 +653,30 @@ public class GroupExplorer implements AbstractGroupProperties {
     }
 
     public void initIterativeExploration() {
-        stateMapIncomplete.add(State.of(elements.clone(), nElements, mem));
+        kernels = null;
+        compileKernels();
+        if (external != null) {
+            packedFrontier = null;
+            try {
+                external.init(elements);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else if (stateMap instanceof PackedStateSet) {
+            initPackedExploration((PackedStateSet) stateMap);
+        } else {
+            packedFrontier = null;
+            stateMapIncomplete.add(State.of(elements.clone(), nElements, mem));
+        }
 
         lastSize = 0;
         iteration = 0;
     }
 
+    /**
+     * With trackPath, oldState is the parent - unless the stateMap is a PackedStateSet
+     *   tracking generators, where it is left null and pathTo() rebuilds the word
+     */
     public static class PeekData {
         public int operation;
         public State oldState;
@@ -396,50 +699,54 @@ public class GroupExplorer implements AbstractGroupProperties {
     }
 
     public int iterateExploration(boolean debug, int stateLimit, boolean peekData, BiConsumer<List<?>, Integer> peekStateAndDepth) {
-        int size = stateMap.size() + stateMapIncomplete.size();
+        if (external != null) {
+            return iterateExternalExploration(debug, stateLimit, peekData, peekStateAndDepth);
+        }
+        if (packedFrontier != null) {
+            return iteratePackedExploration(debug, stateLimit, peekData, peekStateAndDepth);
+        }
+        long size = LongSized.sizeOf(stateMap) + LongSized.sizeOf(stateMapIncomplete);
         if (debug) System.out.println("Depth: " + iteration + " - " + (size - lastSize) + " - " + size);
         lastSize = size;
         iteration++;
 
         long sizeInit = size;
 
-        Set<State> incompleteAdditions;
-        final List<?> peekList;
-        final List<PeekData> peekDataList;
-        final List<int[]> peekArrList;
-        boolean parallelStream;
+        final boolean parallelStream = multithread && sizeInit > 10000;
+        // LMDB-backed maps are checked and added to a batch at a time, on this thread
+        final boolean sortedBatches = stateMap instanceof LMDBCache;
+        final Set<State> incompleteAdditions;
+        final List<Object> peekList;
+        final ThreadLocal<List<Object>> workerPeekLists;
+        final Queue<List<Object>> allWorkerPeekLists = new ConcurrentLinkedQueue<>();
 
         // Parallelize
-        if (multithread && sizeInit > 10000) {
-            incompleteAdditions = Collections.synchronizedSet(stateMapTmp);
-            if (peekData) {
-                peekDataList = Collections.synchronizedList(new ArrayList<PeekData>());
-                peekArrList = null;
-                peekList = peekDataList;
+        if (parallelStream && !sortedBatches) {
+            incompleteAdditions = concurrentLayerAdditions(sizeInit);
+            if (maxPeekSize > 0) {
+                // Flushing mid-layer needs one shared list
+                peekList = Collections.synchronizedList(new ArrayList<>());
+                workerPeekLists = null;
             } else {
-                peekArrList = Collections.synchronizedList(new ArrayList<int[]>());
-                peekDataList = null;
-                peekList = peekArrList;
+                // Each worker collects its own peeks, merged once the layer is done
+                peekList = new ArrayList<>();
+                workerPeekLists = ThreadLocal.withInitial(() -> {
+                    List<Object> list = new ArrayList<>();
+                    allWorkerPeekLists.add(list);
+                    return list;
+                });
             }
-            parallelStream = true;
         } else {
             incompleteAdditions = stateMapTmp;
-            if (peekData) {
-                peekDataList = new ArrayList<PeekData>();
-                peekArrList = null;
-                peekList = peekDataList;
-            } else {
-                peekArrList = new ArrayList<int[]>();
-                peekDataList = null;
-                peekList = peekArrList;
-            }
-            parallelStream = false;
+            peekList = new ArrayList<>();
+            workerPeekLists = null;
         }
 
+        final PermutationKernel[] kernels = compileKernels();
         Iterator<State> iterator = stateMapIncomplete.iterator();
 
 
-        // LMDB cache iterator is not multithreaded so let's create batches
+        // Set iterators are sequential so let's create batches
         //     on main thread and process them in parallel
         while (iterator.hasNext()) {
             ArrayList<State> batch = new ArrayList<>();
@@ -447,6 +754,11 @@ public class GroupExplorer implements AbstractGroupProperties {
                 batch.add(iterator.next());
             }
 
+            if (sortedBatches) {
+                expandSortedBatch(batch, kernels, parallelStream, incompleteAdditions, peekData, peekStateAndDepth, peekList);
+                continue;
+            }
+
             Stream<State> stream;
             if (parallelStream) {
                 stream = batch.parallelStream();
@@ -458,25 +770,31 @@ public class GroupExplorer implements AbstractGroupProperties {
                 int[] currentState = state.state();
 
                 for (int i = 0; i < parsedOperations.size(); i++) {
-                    int[][] operation = parsedOperations.get(i);
-                    int[] newState = applyOperation(currentState, operation);
+                    int[] newState;
+                    if (kernels != null) {
+                        newState = kernels[i].apply(currentState);
+                    } else {
+                        newState = applyOperation(currentState, parsedOperations.get(i));
+                    }
                     State s = State.of(newState, nElements, mem);
 
-                    if (!stateMapIncomplete.contains(s) && !stateMap.contains(s)) {
-                        boolean addedFresh = incompleteAdditions.add(s);
+                    if (!contains(stateMapIncomplete, s, newState) && !contains(stateMap, s, newState)) {
+                        boolean addedFresh = add(incompleteAdditions, s, newState);
                         if (addedFresh && peekStateAndDepth != null) {
+                            Object peek;
                             if (peekData) {
-                                if (trackPath) {
-                                    peekDataList.add(new PeekData(i, state, s));
-                                } else {
-                                    peekDataList.add(new PeekData(s));
-                                }
+                                peek = trackPath ? new PeekData(i, state, s) : new PeekData(s);
+                            } else {
+                                peek = newState;
+                            }
+                            if (workerPeekLists != null) {
+                                workerPeekLists.get().add(peek);
                             } else {
-                                peekArrList.add(newState);
-                                if (maxPeekSize > 0 && peekArrList.size() >= maxPeekSize) {
+                                peekList.add(peek);
+                                if (!peekData && maxPeekSize > 0 && peekList.size() >= maxPeekSize) {
                                     // Process callback and clear
-                                    peekStateAndDepth.accept(peekArrList, iteration);
-                                    peekArrList.clear();
+                                    peekStateAndDepth.accept(peekList, iteration);
+                                    peekList.clear();
                                 }
                             }
                         }
@@ -485,21 +803,24 @@ public class GroupExplorer implements AbstractGroupProperties {
             });
         }
 
+        for (List<Object> workerPeeks : allWorkerPeekLists) {
+            peekList.addAll(workerPeeks);
+        }
         if (peekList.size() > 0) {
             peekStateAndDepth.accept(peekList, iteration);
         }
-        int preTransferSize = stateMap.size();
-        int amntToTransfer = stateMapIncomplete.size();
+        long preTransferSize = LongSized.sizeOf(stateMap);
+        long amntToTransfer = LongSized.sizeOf(stateMapIncomplete);
         stateMap.addAll(stateMapIncomplete);
-        if (stateMap.size() != preTransferSize + amntToTransfer) {
-            throw new ParityStateCache.StateRejectedException("State map size mismatch: " + stateMap.size() + " != " + preTransferSize + " + " + amntToTransfer);
+        if (LongSized.sizeOf(stateMap) != preTransferSize + amntToTransfer) {
+            throw new ParityStateCache.StateRejectedException("State map size mismatch: " + LongSized.sizeOf(stateMap) + " != " + preTransferSize + " + " + amntToTransfer);
         }
         Set<State> tmp = stateMapIncomplete;
         stateMapIncomplete = stateMapTmp;
         stateMapTmp = tmp;
         stateMapTmp.clear();
         
-        long sizeEnd = stateMap.size() + stateMapIncomplete.size();
+        long sizeEnd = LongSized.sizeOf(stateMap) + LongSized.sizeOf(stateMapIncomplete);
         if (sizeInit == sizeEnd) {
             //System.out.println("Finished - " + stateMap.size() + " / " + stateMapIncomplete.size());
             return iteration;
@@ -509,15 +830,308 @@ public class GroupExplorer implements AbstractGroupProperties {
         return -2;
     }
 
+    /**
+     * Expands a batch of the frontier against disk-backed sets
+     *
+     * The children are generated (in parallel if enabled), then filtered and added
+     *   with sorted sweeps instead of a random LMDB lookup per child.  The lookups
+     *   are split into key ranges between threads; the adds are one write.
+     */
+    private void expandSortedBatch(List<State> batch, PermutationKernel[] kernels, boolean parallel, Set<State> additions,
+            boolean peekData, BiConsumer<List<?>, Integer> peekStateAndDepth, List<Object> peekList) {
+        int nOps = parsedOperations.size();
+        State[] children = new State[batch.size() * nOps];
+        IntStream parents = IntStream.range(0, batch.size());
+        (parallel ? parents.parallel() : parents).forEach(j -> {
+            int[] currentState = batch.get(j).state();
+            for (int i = 0; i < nOps; i++) {
+                int[] newState = kernels != null ? kernels[i].apply(currentState) : applyOperation(currentState, parsedOperations.get(i));
+                children[j * nOps + i] = State.of(newState, nElements, mem);
+            }
+        });
+
+        List<State> childList = Arrays.asList(children);
+        boolean[] inFrontier = containsBatch(stateMapIncomplete, childList, parallel);
+        boolean[] explored = containsBatch(stateMap, childList, parallel);
+        List<State> fresh = new ArrayList<>();
+        IntArrayList freshIndex = new IntArrayList();
+        for (int k = 0; k < children.length; k++) {
+            if (!inFrontier[k] && !explored[k]) {
+                fresh.add(children[k]);
+                freshIndex.add(k);
+            }
+        }
+        boolean[] added = addBatch(additions, fresh);
+        if (peekStateAndDepth == null) return;
+
+        for (int f = 0; f < added.length; f++) {
+            if (!added[f]) continue;
+            int k = freshIndex.getInt(f);
+            State s = children[k];
+            if (peekData) {
+                peekList.add(trackPath ? new PeekData(k % nOps, batch.get(k / nOps), s) : new PeekData(s));
+            } else {
+                peekList.add(s.state());
+                if (maxPeekSize > 0 && peekList.size() >= maxPeekSize) {
+                    peekStateAndDepth.accept(peekList, iteration);
+                    peekList.clear();
+                }
+            }
+        }
+    }
+
+    private static boolean[] containsBatch(Set<State> set, List<State> states, boolean parallel) {
+        if (set instanceof LMDBCache) return ((LMDBCache) set).containsSorted(states, parallel);
+        boolean[] present = new boolean[states.size()];
+        for (int i = 0; i < present.length; i++) present[i] = set.contains(states.get(i));
+        return present;
+    }
+
+    private static boolean[] addBatch(Set<State> set, List<State> states) {
+        if (set instanceof LMDBCache) return ((LMDBCache) set).addSorted(states);
+        boolean[] added = new boolean[states.size()];
+        for (int i = 0; i < added.length; i++) added[i] = set.add(states.get(i));
+        return added;
+    }
+
+    /**
+     * Set that parallel workers add the next layer to
+     * 
+     * Thread-safe sets are used as-is; layer sets created by the convenience
+     *   constructors are swapped for a ConcurrentStateSet, and anything else
+     *   falls back to a synchronized wrapper.
+     */
+    private Set<State> concurrentLayerAdditions(long expectedSize) {
+        if (isThreadSafe(stateMapTmp)) return stateMapTmp;
+        if (ownsLayerSets && stateMapTmp.isEmpty()) {
+            stateMapTmp = new ConcurrentStateSet(nElements, mem, expectedSize);
+            return stateMapTmp;
+        }
+        return Collections.synchronizedSet(stateMapTmp);
+    }
+
+    // Concurrent sets take the raw array directly, which skips decoding compact states
+    private static boolean contains(Set<State> set, State s, int[] state) {
+        if (set instanceof ConcurrentStateSet) return ((ConcurrentStateSet) set).contains(state);
+        if (set instanceof RankedBitsetStateCache) return ((RankedBitsetStateCache) set).contains(state);
+        return set.contains(s);
+    }
+
+    private static boolean add(Set<State> set, State s, int[] state) {
+        if (set instanceof ConcurrentStateSet) return ((ConcurrentStateSet) set).add(state);
+        if (set instanceof RankedBitsetStateCache) return ((RankedBitsetStateCache) set).add(state);
+        return set.add(s);
+    }
+
+    private static boolean isThreadSafe(Set<State> set) {
+        if (set instanceof ConcurrentStateSet) return true;
+        if (set instanceof RankedBitsetStateCache) return true;
+        if (set instanceof LMDBCache) return true;
+        if (set instanceof LongStateCache) return ((LongStateCache) set).isConcurrent();
+        return false;
+    }
+
+    // External exploration - enabled by setExternalMemory
+    //   Layers are sorted files on disk and the state map sets aren't used
+    private ExternalExploration external;
+
+    /**
+     * Keep each BFS layer in sorted lz4 files under dir instead of in the state map,
+     *   for groups that don't fit in memory (see ExternalExploration)
+     * @param runStates states sorted in memory at a time
+     */
+    public void setExternalMemory(Path dir, int runStates) throws IOException {
+        external = new ExternalExploration(parsedOperations, nElements, dir, runStates, multithread);
+    }
+
+    private int iterateExternalExploration(boolean debug, int stateLimit, boolean peekData, BiConsumer<List<?>, Integer> peekStateAndDepth) {
+        if (debug) System.out.println("Depth: " + iteration + " - " + external.layerSize() + " - " + external.order());
+        iteration++;
+
+        final int depth = iteration;
+        long added;
+        try {
+            added = external.expand(peekStateAndDepth == null ? null : states -> {
+                if (!peekData) {
+                    peekStateAndDepth.accept(states, depth);
+                    return;
+                }
+                List<PeekData> peeks = new ArrayList<>(states.size());
+                for (int[] state : states) peeks.add(new PeekData(State.of(state, nElements, mem)));
+                peekStateAndDepth.accept(peeks, depth);
+            }, maxPeekSize > 0 ? maxPeekSize : 10000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (added == 0) {
+            external.deleteLayers();
+            return iteration;
+        }
+        if (stateLimit > 0 && external.order() > stateLimit) return -1;
+        return -2;
+    }
+
+    // Packed exploration - enabled by passing a PackedStateSet as the stateMap
+    //   The set holds every discovered state (including the frontier) and the
+    //   frontier layers are contiguous rows, so no State or int[] is created per child
+    private PackedStateSet.Rows packedFrontier;
+    private PackedStateSet.Rows packedNext;
+
+    private void initPackedExploration(PackedStateSet visited) {
+        if (visited.nElements != nElements) {
+            throw new IllegalArgumentException("Packed state set has " + visited.nElements + " elements, expected " + nElements);
+        }
+        packedFrontier = new PackedStateSet.Rows(visited.wordsPerRow());
+        packedNext = new PackedStateSet.Rows(visited.wordsPerRow());
+        long[] row = new long[visited.wordsPerRow()];
+        visited.pack(elements, row, 0);
+        if (visited.addPacked(row, 0)) {
+            packedFrontier.append(row, 0);
+        }
+    }
+
+    private int iteratePackedExploration(boolean debug, int stateLimit, boolean peekData, BiConsumer<List<?>, Integer> peekStateAndDepth) {
+        final PackedStateSet visited = (PackedStateSet) stateMap;
+        int size = visited.size();
+        if (debug) System.out.println("Depth: " + iteration + " - " + (size - lastSize) + " - " + size);
+        lastSize = size;
+        iteration++;
+
+        final long sizeInit = size;
+        final PermutationKernel[] kernels = compileKernels();
+        final int nOperations = parsedOperations.size();
+
+        final List<PeekData> peekDataList = peekData ? new ArrayList<>() : null;
+        final List<int[]> peekArrList = peekData ? null : new ArrayList<>();
+        final List<?> peekList = peekData ? peekDataList : peekArrList;
+
+        final int[] currentState = new int[nElements];
+        final int[] newState = new int[nElements];
+        final long[] row = new long[visited.wordsPerRow()];
+        final long[] frontier = packedFrontier.array();
+
+        for (int f = 0; f < packedFrontier.size(); f++) {
+            visited.unpack(frontier, packedFrontier.offset(f), currentState);
+
+            for (int i = 0; i < nOperations; i++) {
+                if (kernels != null) {
+                    kernels[i].apply(currentState, newState);
+                } else {
+                    System.arraycopy(currentState, 0, newState, 0, nElements);
+                    applyOperation(currentState, parsedOperations.get(i), newState);
+                }
+                visited.pack(newState, row, 0);
+
+                if (visited.addPacked(row, 0, i)) {
+                    packedNext.append(row, 0);
+                    if (peekStateAndDepth != null) {
+                        if (peekData) {
+                            State s = State.of(newState.clone(), nElements, mem);
+                            if (trackPath && visited.tracksGenerators()) {
+                                // The set already holds the parent pointer, see pathTo
+                                peekDataList.add(new PeekData(i, null, s));
+                            } else if (trackPath) {
+                                peekDataList.add(new PeekData(i, State.of(currentState.clone(), nElements, mem), s));
+                            } else {
+                                peekDataList.add(new PeekData(s));
+                            }
+                        } else {
+                            peekArrList.add(newState.clone());
+                            if (maxPeekSize > 0 && peekArrList.size() >= maxPeekSize) {
+                                peekStateAndDepth.accept(peekArrList, iteration);
+                                peekArrList.clear();
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        if (peekList.size() > 0) {
+            peekStateAndDepth.accept(peekList, iteration);
+        }
+
+        PackedStateSet.Rows tmp = packedFrontier;
+        packedFrontier = packedNext;
+        packedNext = tmp;
+        packedNext.clear();
+
+        long sizeEnd = visited.size();
+        if (sizeInit == sizeEnd) {
+            return iteration;
+        }
+        if (stateLimit > 0 && sizeEnd > stateLimit) return -1;
+
+        return -2;
+    }
+
+    /**
+     * Shortest word from the initial state to state, as generator indices in the order applied
+     *
+     * Needs the stateMap to be a PackedStateSet built with the generator count; each step
+     *   back reads the state's last generator and applies that generator's inverse.
+     */
+    public int[] pathTo(int[] state) {
+        if (!(stateMap instanceof PackedStateSet) || !((PackedStateSet) stateMap).tracksGenerators()) {
+            throw new IllegalStateException("Path reconstruction needs a PackedStateSet that tracks generators");
+        }
+        PackedStateSet visited = (PackedStateSet) stateMap;
+        int nOperations = parsedOperations.size();
+        int[][] inverseSource = new int[nOperations][nElements];
+        for (int g = 0; g < nOperations; g++) {
+            int[] source = PermutationKernel.sourceTable(parsedOperations.get(g), nElements);
+            for (int j = 0; j < nElements; j++) inverseSource[g][source[j]] = j;
+        }
+
+        List<Integer> reversed = new ArrayList<>();
+        long[] row = new long[visited.wordsPerRow()];
+        int[] current = state.clone();
+        int[] parent = new int[nElements];
+        while (true) {
+            visited.pack(current, row, 0);
+            int g = visited.lastGenerator(row, 0);
+            if (g == -1) break;
+            if (g == -2) throw new IllegalArgumentException("State was not explored: " + Arrays.toString(state));
+            reversed.add(g);
+            int[] inv = inverseSource[g];
+            for (int j = 0; j < nElements; j++) parent[j] = current[inv[j]];
+            int[] tmp = current;
+            current = parent;
+            parent = tmp;
+        }
+
+        int[] word = new int[reversed.size()];
+        for (int i = 0; i < word.length; i++) word[i] = reversed.get(word.length - 1 - i);
+        return word;
+    }
+
     public int exploreStates(boolean debug, BiConsumer<List<int[]>, Integer> peekStateAndDepth) {
        return exploreStates(debug, -1, peekStateAndDepth);
     }
     public int exploreStates(boolean debug, int stateLimit, BiConsumer<List<int[]>, Integer> peekStateAndDepth) {
         initIterativeExploration();
-        
+        return continueExploration(debug, stateLimit, peekStateAndDepth);
+    }
+
+    /**
+     * exploreStates without the initialization, e.g. after resume()
+     */
+    public int continueExploration(boolean debug, int stateLimit, BiConsumer<List<int[]>, Integer> peekStateAndDepth) {
         while (true) {
             int ret = iterateExploration(debug, stateLimit, peekStateAndDepth);
-            if (ret == -2) continue;
+            if (ret == -2) {
+                if (checkpointFile != null && System.currentTimeMillis() - lastCheckpoint >= checkpointIntervalMillis) {
+                    try {
+                        writeCheckpoint(checkpointFile);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    lastCheckpoint = System.currentTimeMillis();
+                    if (debug) System.out.println("Checkpoint written at depth " + iteration);
+                }
+                continue;
+            }
             return ret;
         }
     }
@@ -571,16 +1185,23 @@ public class GroupExplorer implements AbstractGroupProperties {
     }
 
     private int[] applyOperation(int[] state, int[][] operation) {
-        int[] newState = Arrays.copyOf(state, state.length);
+        return applyOperation(state, operation, Arrays.copyOf(state, state.length));
+    }
+
+    /**
+     * @param newState must start as a copy of state
+     */
+    private int[] applyOperation(int[] state, int[][] operation, int[] newState) {
+        // Walk newState in place, so overlapping cycles compose like the kernels do
         for (int[] cycle : operation) {
             if (cycle.length > 1) {
-                int first = cycle[0];
+                int first = newState[cycle[0] - 1];
                 for (int i = 0; i < cycle.length - 1; i++) {
                     int current = cycle[i];
                     int next = cycle[i + 1];
-                    newState[current - 1] = state[next - 1];
+                    newState[current - 1] = newState[next - 1];
                 }
-                newState[cycle[cycle.length - 1] - 1] = state[first - 1];
+                newState[cycle[cycle.length - 1] - 1] = first;
             }
         }
         return newState;
@@ -669,8 +1290,9 @@ public class GroupExplorer implements AbstractGroupProperties {
 
     public static List<int[][][]> genIsomorphisms(int[][][] a) {
         List<int[][][]> checks = new ArrayList<>();
-        Permu.applyGeneratorPermutationsAndRotations(a, (aPerm) -> {
-            checks.add(renumberGenerators_fast(aPerm));
+        Permu.forEachIsomorph(a, true, (aPerm) -> {
+            checks.add(CycleInverter.deepCopy(aPerm));
+            return true;
         });
         return checks;
     }
@@ -680,9 +1302,10 @@ public class GroupExplorer implements AbstractGroupProperties {
     }
 
     public static void genIsomorphisms_Callback(int[][][] a, boolean renumber, Consumer<int[][][]> callback) {
-        Permu.applyGeneratorPermutationsAndRotations(a, (aPerm) -> {
-            int[][][] check = renumber ? renumberGenerators_fast(aPerm) : aPerm;
-            callback.accept(check);
+        // The callbacks keep what they're given, so hand each one a copy
+        Permu.forEachIsomorph(a, renumber, (aPerm) -> {
+            callback.accept(CycleInverter.deepCopy(aPerm));
+            return true;
         });
     }
 
@@ -5,13 +5,10 @@ import static io.chandler.gap.Generators.l2_7;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 
 import io.chandler.gap.GroupExplorer.MemorySettings;
 import io.chandler.gap.GroupExplorer.PeekData;
-import io.chandler.gap.cache.State;
-import javafx.util.Pair;
 
 public class ISCCube {
 
@@ -55,10 +52,9 @@ public class ISCCube {
 
         int[][][] g = GroupExplorer.parseOperationsArr(turns);
 
-        GroupExplorer group = new GroupExplorer(
+        GroupExplorer group = GroupExplorer.withPathTracking(
             GroupExplorer.generatorsToString(g),
-            MemorySettings.COMPACT,
-            new HashSet<>(), new HashSet<>(), new HashSet<>(), true);
+            MemorySettings.COMPACT);
         // I want to iteratively explore states until I find a match to this state:
         // Zeroes should be ignored in comparison
         // 1,2,9, 10  are the fixed pcs
@@ -67,7 +63,6 @@ public class ISCCube {
       //int[] stateMatch =   { 9, 2, 3, 0, 0, 6, 7, 0, 0,10,11, 0,13,14,15,16,17,18,19,20,21,22,23,24,25,26,27,28,29,30, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
         int[] stateMatch =   { 1, 2, 3, 4, 5, 6, 7, 8, 9,10,11,12,13,14,15,16,17,18,19,20,21,22,23,24,25,26,27,28,29,30, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
 
-        group.setTrackPath(true);
         group.initIterativeExploration();
 
         /*
@@ -80,14 +75,11 @@ public class ISCCube {
         System.out.println(Arrays.toString(stateMatch));
         System.out.println(Arrays.toString(group.copyCurrentState()));
 
-        HashMap<State, Pair<State, Integer>> backtrack = new HashMap<>();
-
         for (int iter = 0; iter < 20; iter++) {
 
             group.iterateExploration(false, 300_000_000, true, (states, depth) -> {
                 for (Object x : states) {
                     PeekData data = (PeekData) x;
-                    backtrack.put(data.newState, new Pair<>(data.oldState, data.operation));
                     int[] state = data.newState.state();
                     boolean matches = true;
                     for (int i = 0; i < state.length; i++) {
@@ -100,14 +92,12 @@ public class ISCCube {
 
                         matchingStates.add(state);
                         // Figure out path
-                        State current = State.of(state, group.nElements, group.mem);
                         String op = "";
                         String inverseOp = "";
-                        while (backtrack.containsKey(current)) {
-                            Pair<State, Integer> d = backtrack.get(current);
-                            op = namesLookup[d.getValue()] + " " + op;
-                            inverseOp = inverseOp + " " + inverseNamesLookup[d.getValue()];
-                            current = d.getKey();
+                        int[] word = group.pathTo(state);
+                        for (int w = word.length - 1; w >= 0; w--) {
+                            op = namesLookup[word[w]] + " " + op;
+                            inverseOp = inverseOp + " " + inverseNamesLookup[word[w]];
                         }
                         String notn = GroupExplorer.stateToNotation(state);
                         if (notn.length() < 3 || notn.length() > 23) continue;
@@ -223,7 +223,7 @@ public class IcosahedralGenerators {
                 int iterations = check.exploreStates(false, wantOrder+1, null);
 
                 if (iterations > 0 && wantOrder == check.order()) {
-                    matchingGenerators.put(GroupExplorer.generatorsToString(genCandidate), check.order());
+                    matchingGenerators.put(GroupExplorer.generatorsToString(genCandidate), Math.toIntExact(check.order()));
                     System.out.println(check.order() + " " + GroupExplorer.generatorsToString(new int[][][]{genCandidate[genCandidate.length - 1]}));
                 }
 
@@ -253,7 +253,7 @@ public class IcosahedralGenerators {
 
         AbstractGroupProperties group = new AbstractGroupProperties() {
             public int elements() { return 24; }
-            public int order() { return 244823040; }
+            public long order() { return 244823040; }
             public MemorySettings mem() { return MemorySettings.DEFAULT; }
         };
 
@@ -1500,7 +1500,7 @@ public class IcosahedralGenerators {
                     GroupExplorer compositeGAP = new GroupExplorer(composite, group.mem);
                     //System.out.println("Exploring " + composite);
                     int iterations = compositeGAP.exploreStates(false, stateLimit, null);
-                    int order = compositeGAP.order();
+                    long order = compositeGAP.order();
                     //System.out.println("Generating isomorphisms for " + composite);
                     if (iterations > 0 && order % group.order() == 0) {
                         int[][][] genPartial = new int[][][] {generator[1], generator[2]};
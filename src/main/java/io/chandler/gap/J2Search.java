@@ -374,7 +374,7 @@ public class J2Search {
 		GroupExplorer verify = new GroupExplorer(gen, 100, MemorySettings.FASTEST, new HashSet<>());
 		int iter = verify.exploreStates(false, 604801, null);
 		if (iter < 0) return iter;
-		return verify.order();
+		return Math.toIntExact(verify.order());
 	}
 
 	public static void old(String[] args) {
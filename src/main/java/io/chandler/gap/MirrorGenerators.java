@@ -68,7 +68,7 @@ public class MirrorGenerators {
 
         // Synchronized
         List<String> results = Collections.synchronizedList(new ArrayList<String>());
-        Map<Integer, List<String>> smallGroupGenerators =Collections.synchronizedMap(new TreeMap<>());
+        Map<Long, List<String>> smallGroupGenerators =Collections.synchronizedMap(new TreeMap<>());
 
         for (Generator vertices : validVertexCombinations) {
 
@@ -144,7 +144,7 @@ public class MirrorGenerators {
         Files.deleteIfExists(Paths.get("generators_results.txt"));
 
         PrintStream out2 = new PrintStream("generators_results.txt");
-        for (Map.Entry<Integer, List<String>> e : smallGroupGenerators.entrySet()) {
+        for (Map.Entry<Long, List<String>> e : smallGroupGenerators.entrySet()) {
             out2.println("Order " + e.getKey() + ":");
             for (String genString : e.getValue()) {
                 out2.println(genString);
@@ -238,7 +238,7 @@ public class MirrorGenerators {
 
     }
 
-    private static void checkGenerator(Generator g, List<String> lgGroupResults, Map<Integer, List<String>> smallGroupGenerators) {
+    private static void checkGenerator(Generator g, List<String> lgGroupResults, Map<Long, List<String>> smallGroupGenerators) {
         ParityStateCache cache = new ParityStateCache(new M24StateCache());
         String genString = GroupExplorer.generatorsToString(g.generator());
         GroupExplorer candidate = new GroupExplorer(
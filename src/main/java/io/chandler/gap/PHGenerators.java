@@ -12,14 +12,12 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import io.chandler.gap.GroupExplorer.Generator;
 import io.chandler.gap.GroupExplorer.MemorySettings;
 import io.chandler.gap.VertexColorSearch.ColorMapping;
-import io.chandler.gap.cache.BigStateCache;
-import io.chandler.gap.cache.LongLongStateCache;
-import io.chandler.gap.cache.ParityStateCache;
 import io.chandler.gap.cache.State;
 import io.chandler.gap.util.TimeEstimator;
 
@@ -78,6 +76,7 @@ public class PHGenerators {
     // This is the second most common cycle in M60, it would likely
     //   not occur in any interesting groups
     private final static String REJECTED_CYCLE_DESC = "1 2 1 58 ";
+    private static final Map<Integer, CandidateClassifier> classifiers = new ConcurrentHashMap<>();
 
     public static void main(String[] args) throws Exception {
         File out = new File("/home/cjgriscom/Programming/GroupTxt/ph_results.txt");
@@ -212,6 +211,7 @@ public class PHGenerators {
             });
 
         }
+        printClassifierReports();
 
 
     }
@@ -320,18 +320,31 @@ public class PHGenerators {
         }
     }
 
+    /**
+     * One classifier per transitivity, so the rejection counts accumulate over a run
+     */
+    private static CandidateClassifier classifier(Integer transitivity) {
+        return classifiers.computeIfAbsent(transitivity == null ? -1 : transitivity, t -> {
+            CandidateClassifier classifier = new CandidateClassifier(7_000_000).rejectCycleType(REJECTED_CYCLE_DESC);
+            // Two elements agreeing on the first t faces is what the transitivity caches rejected
+            if (t >= 0) classifier.setFixedPrefix(t);
+            return classifier;
+        });
+    }
+
+    private static void printClassifierReports() {
+        for (Map.Entry<Integer, CandidateClassifier> e : classifiers.entrySet()) {
+            System.out.println("Transitivity " + (e.getKey() < 0 ? "any" : e.getKey()) + ": " + e.getValue().report());
+        }
+    }
+
     private static boolean checkGenerator(boolean debug, Integer transitivity, Generator g) {
         if (debug) System.out.println("Checking transitivity " + transitivity);
 
-        // TODO check actual numbers
-        Set<State> stateCache = 
-            transitivity == null ? new HashSet<>() :
-            transitivity > 23 ? new ParityStateCache(new BigStateCache(transitivity,60) ):
-                                new ParityStateCache(new LongLongStateCache(transitivity,60));
         ArrayList<String> results = new ArrayList<>();
         HashMap<Integer, List<String>> smallGroupGenerators = new HashMap<>();
 
-        checkGenerator(debug, g, results, smallGroupGenerators, stateCache);
+        checkGenerator(debug, classifier(transitivity), g, results, smallGroupGenerators);
 
         if (results.size() > 0 || smallGroupGenerators.size() > 0) {
 
@@ -546,96 +559,20 @@ public class PHGenerators {
             
     }
 
-    private static void checkGenerator(boolean debug, Generator g, List<String> lgGroupResults, Map<Integer, List<String>> smallGroupGenerators, Set<State> cache) {
-        GroupExplorer candidate = new GroupExplorer(
-            g, 60,
-            MemorySettings.FASTEST, cache);
-            
-
-        ArrayList<String> depthPeek = new ArrayList<>();
-        int limit = 7_000_000;
-        int[] stateCount = new int[2];
-        int iters = -2;
-
-        //System.out.println(genString);
-        
-        candidate.initIterativeExploration();
-        //HashMap<String, Integer> cycleDescriptions = new HashMap<>();
-        while (iters == -2) {
-            int[] depthA = new int[] {0};
-            try {
-                iters = candidate.iterateExploration(debug, limit, (states, depth) -> {
-                    stateCount[0] = stateCount[1];
-                    stateCount[1] += states.size();
-                    depthA[0] = depth;
-                    for (int[] s : states) {
-                        String desc = GroupExplorer.describeStateForCache(candidate.nElements, s);
-                        if (desc.equals(REJECTED_CYCLE_DESC)) {
-                            throw new RuntimeException();
-                        }
-                        //cycleDescriptions.merge(desc, 1, Integer::sum);
-                    }
-                });
-            } catch (ParityStateCache.StateRejectedException e) {
-                // Heuristic 1:
-                //    If the 7-transitive cache is too small we've generated a non-M24 group
-                
-                // Fail because this can't happen for valid M24 generators
-                iters = -2;
-                //System.out.println("Parity cache fails");
-                break;
-            } catch (RuntimeException e) {
-                iters = -2;
-                //System.out.println("Reject " + e.getMessage());
-                break;
-            }
-            int depth = depthA[0];
-            double ratio = depth < 2 ? 10000 : stateCount[1]/(double)stateCount[0];
-            if (depth > 5 ) depthPeek.add(ratio+" " + stateCount[1] + ",");
-
-            //System.out.println(stateCountB[0] + " " + stateCount[1]);
-
-            
-            // Heuristic 3: If there are more than 1000 cycle descriptions, we're probably not going to find anything
-           /*  if (cycleDescriptions.size() > 500) {
-                iters = -2;
-                //System.out.println("Too many cycle descriptions");
-                break;
-            }*/
-
-        }
-
-        if (iters == -2) {
-            /*if (depthPeek.size() > 4) {
-                System.out.println("Reject " + iters + " Last iter states: " + depthPeek.get(depthPeek.size() - 1) + " Depth: " + depthPeek.size());
-                System.out.println(depthPeek.toString());
-            }*/
-        } else if (iters == -1) {
-            System.out.println("Iters: " + iters + " Last iter states: " + depthPeek.get(depthPeek.size() - 1) + " Depth: " + depthPeek.size());
-            System.out.println( GroupExplorer.generatorsToString(g.generator()));
-            System.out.println(depthPeek.toString());
-            lgGroupResults.add(GroupExplorer.generatorsToString(g.generator()));
-
-            /*
-            HashMap<String, Integer> cycleDescriptions = new HashMap<>();
-            for (State state : cache) {
-                String cycleDescription = GroupExplorer.describeState(candidate.nElements, state.state());
-                cycleDescriptions.merge(cycleDescription, 1, Integer::sum);
-                if (cycleDescriptions.size() % 100_000 == 0) {
-                    System.out.println("Processed " + cycleDescriptions.size() + " / " + cache.size() + " states");
-                }
-            }
+    private static void checkGenerator(boolean debug, CandidateClassifier classifier, Generator g, List<String> lgGroupResults, Map<Integer, List<String>> smallGroupGenerators) {
+        String genString = GroupExplorer.generatorsToString(g.generator());
+        int order = classifier.classify(g, 60);
+        if (debug) System.out.println(genString + ": " + order);
 
-            printCycleDescriptions(cycleDescriptions);
-            */
-        } else if (candidate.order() >= 1) {
+        if (order == CandidateClassifier.TOO_LARGE) {
+            System.out.println("Large group: " + genString);
+            lgGroupResults.add(genString);
+        } else if (order >= 1) {
             // Add genString to smallGroupGenerators
-            List<String> gens = smallGroupGenerators.computeIfAbsent(candidate.order(), k -> Collections.synchronizedList(new ArrayList<String>()));
-            gens.add(GroupExplorer.generatorsToString(g.generator()));
-            System.out.println("Found order " + (candidate.order()) + ": " + GroupExplorer.generatorsToString(g.generator()));
+            List<String> gens = smallGroupGenerators.computeIfAbsent(order, k -> Collections.synchronizedList(new ArrayList<String>()));
+            gens.add(genString);
+            System.out.println("Found order " + order + ": " + genString);
         }
-        
-
     }
 
 
@@ -1,8 +1,10 @@
 package io.chandler.gap;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class Permu {
     public static void main(String[] args) {
@@ -68,47 +70,177 @@ public class Permu {
     
 
     public static void applyGeneratorPermutationsAndRotations(int[][][] a, Consumer<int[][][]> results) {
-        List<int[][][]> result = new ArrayList<>();
-        List<List<int[][]>> statePermutations = new ArrayList<>();
-    
-        // Apply permutations and repetitions to each state
-        for (int[][] state : a) {
-            statePermutations.add(applyStatePermutationsAndRepetitions(state));
+        forEachIsomorph(a, false, (iso) -> {
+            results.accept(CycleInverter.deepCopy(iso));
+            return true;
+        });
+    }
+
+    /**
+     * Streams every reordering, power, reversal and rotation of each generator's
+     *   cycles (the same isomorphs applyGeneratorPermutationsAndRotations lists)
+     *   without allocating per isomorph.
+     *
+     * The consumer always gets the same working arrays, so it must copy anything it
+     *   keeps and must not modify them.
+     * @param renumber relabel each isomorph like renumberGenerators_fast
+     * @param isomorphConsumer return true to continue, false to stop
+     * @return false if the consumer stopped early
+     */
+    public static boolean forEachIsomorph(int[][][] a, boolean renumber, Function<int[][][], Boolean> isomorphConsumer) {
+        return new IsomorphStream(a, renumber, isomorphConsumer).arrange(0);
+    }
+
+    /**
+     * Working state for forEachIsomorph.  Each generator's cycles are ordered with
+     *   Heap's algorithm (one swap per step), then powered and reversed from the
+     *   original cycles, and every cycle is rotated in place through its length
+     *   before moving on, which leaves it where it started.
+     */
+    private static final class IsomorphStream {
+        final int[][][] base;
+        final Function<int[][][], Boolean> consumer;
+        final int[][][] work; // work[g][k] is one of rows[g], the cycle at position k
+        final int[][][] rows;
+        final int[][] order; // Which original cycle is at each position
+        final int[][] heap; // Heap's algorithm counters
+        final int[] reps;
+        final int[] flatGenerator, flatPosition;
+
+        // Renumbering, if asked for
+        final int[][][] out;
+        final int[][][] outRows;
+        final int[] labels, labelStamps;
+        int stamp = 0;
+
+        IsomorphStream(int[][][] a, boolean renumber, Function<int[][][], Boolean> consumer) {
+            this.base = a;
+            this.consumer = consumer;
+            int nGens = a.length;
+            work = new int[nGens][][];
+            rows = new int[nGens][][];
+            order = new int[nGens][];
+            heap = new int[nGens][];
+            reps = new int[nGens];
+            out = renumber ? new int[nGens][][] : null;
+            outRows = renumber ? new int[nGens][][] : null;
+
+            int nCycles = 0, maxElement = 0;
+            for (int g = 0; g < nGens; g++) {
+                int n = a[g].length;
+                work[g] = new int[n][];
+                rows[g] = new int[n][];
+                order[g] = new int[n];
+                heap[g] = new int[n];
+                if (renumber) {
+                    out[g] = new int[n][];
+                    outRows[g] = new int[n][];
+                }
+                for (int i = 0; i < n; i++) {
+                    rows[g][i] = new int[a[g][i].length];
+                    if (renumber) outRows[g][i] = new int[a[g][i].length];
+                    for (int e : a[g][i]) maxElement = Math.max(maxElement, e);
+                }
+                // Same powers as applyStatePermutationsAndRepetitions
+                int cycleOrder = n == 0 ? 0 : a[g][0].length;
+                reps[g] = cycleOrder % 2 == 0 ? 1 : cycleOrder / 2;
+                nCycles += n;
+            }
+            flatGenerator = new int[nCycles];
+            flatPosition = new int[nCycles];
+            int c = 0;
+            for (int g = 0; g < nGens; g++) {
+                for (int k = 0; k < a[g].length; k++) {
+                    flatGenerator[c] = g;
+                    flatPosition[c++] = k;
+                }
+            }
+            labels = renumber ? new int[maxElement + 1] : null;
+            labelStamps = renumber ? new int[maxElement + 1] : null;
         }
-    
-        // Generate all combinations of permuted states
-        generateCombinations(statePermutations, 0, new int[a.length][][], result);
-        
-        // Now loop through the result and apply all rotations to each state
-        for (int i = 0; i < result.size(); i++) {
-            int[][][] gen = result.get(i);
 
-            int nCycles = 0;
-            for (int[][] group : gen) {
-                nCycles += group.length;
+        // Every ordering, power and reversal of generator g, then the ones after it
+        boolean arrange(int g) {
+            if (g == base.length) return rotate(0);
+            int n = base[g].length;
+            int[] order = this.order[g], heap = this.heap[g];
+            for (int k = 0; k < n; k++) {
+                order[k] = k;
+                heap[k] = 0;
+            }
+            int k = 1;
+            while (true) {
+                if (!powers(g)) return false;
+                // Next ordering, Heap's algorithm
+                while (k < n && heap[k] >= k) heap[k++] = 0;
+                if (k >= n) return true;
+                int swap = (k & 1) == 0 ? 0 : heap[k];
+                int t = order[swap];
+                order[swap] = order[k];
+                order[k] = t;
+                heap[k]++;
+                k = 1;
             }
-            int[][] genFlattened = new int[nCycles][];
-            int flatIndex = 0;
-            for (int[][] group : gen) {
-                for (int[] cycle : group) {
-                    genFlattened[flatIndex++] = cycle;
+        }
 
+        private boolean powers(int g) {
+            int[][] cycles = base[g];
+            for (int k = 0; k < cycles.length; k++) work[g][k] = rows[g][order[g][k]];
+            for (int rep = 0; rep < reps[g]; rep++) {
+                for (int reverse = 0; reverse < 2; reverse++) {
+                    for (int k = 0; k < cycles.length; k++) {
+                        int[] src = cycles[order[g][k]];
+                        int[] row = work[g][k];
+                        int len = src.length;
+                        for (int j = 0; j < len; j++) {
+                            int value = src[(int) ((long) j * (rep + 1) % len)];
+                            row[reverse == 0 ? j : len - 1 - j] = value;
+                        }
+                    }
+                    if (!arrange(g + 1)) return false;
                 }
             }
+            return true;
+        }
+
+        // Every rotation of flattened cycle c and the ones after it
+        private boolean rotate(int c) {
+            if (c == flatGenerator.length) return emit();
+            int[] row = work[flatGenerator[c]][flatPosition[c]];
+            if (row.length == 0) return rotate(c + 1);
+            for (int r = 0; r < row.length; r++) {
+                if (r > 0) ArrayRotator.rotateLeft(row);
+                if (!rotate(c + 1)) return false;
+            }
+            // Back where it started for the next arrangement
+            ArrayRotator.rotateLeft(row);
+            return true;
+        }
 
-            ArrayRotator.rotateSubArrays(genFlattened, (int[][] rotated) -> {
-                int[][][] genRotated = new int[gen.length][][];
-                int flatIndex2 = 0;
-                for (int genI = 0; genI < gen.length; genI++) {
-                    genRotated[genI] = new int[gen[genI].length][];
-                    for (int genJ = 0; genJ < gen[genI].length; genJ++) {
-                        genRotated[genI][genJ] = rotated[flatIndex2];
-                        flatIndex2++;
+        private boolean emit() {
+            if (out == null) return consumer.apply(work);
+            // renumberGenerators_fast into the reused rows
+            if (++stamp == 0) {
+                Arrays.fill(labelStamps, 0);
+                stamp = 1;
+            }
+            int next = 1;
+            for (int g = 0; g < work.length; g++) {
+                for (int k = 0; k < work[g].length; k++) {
+                    int[] src = work[g][k];
+                    int[] dst = outRows[g][order[g][k]];
+                    for (int j = 0; j < src.length; j++) {
+                        int e = src[j];
+                        if (labelStamps[e] != stamp) {
+                            labelStamps[e] = stamp;
+                            labels[e] = next++;
+                        }
+                        dst[j] = labels[e];
                     }
+                    out[g][k] = dst;
                 }
-                results.accept(genRotated);
-            });
-            
+            }
+            return consumer.apply(out);
         }
     }
 
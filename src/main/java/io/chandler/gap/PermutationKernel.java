@@ -0,0 +1,160 @@
+package io.chandler.gap;
+
+import java.util.List;
+
+/**
+ * A generator precompiled into a flat source-position table.
+ *
+ * Applying the generator is a single gather:
+ *   newState[i] = state[source[i]]
+ *
+ * which is equivalent to GroupExplorer's cycle walk but without
+ *   branching on cycle lengths for every state.
+ */
+public abstract class PermutationKernel {
+
+    public static PermutationKernel compile(int[][] operation, int nElements) {
+        int[] source = sourceTable(operation, nElements);
+        if (nElements <= 256) {
+            return new ByteKernel(source);
+        } else if (nElements <= 65536) {
+            return new ShortKernel(source);
+        } else {
+            return new IntKernel(source);
+        }
+    }
+
+    public static PermutationKernel[] compileAll(List<int[][]> operations, int nElements) {
+        PermutationKernel[] kernels = new PermutationKernel[operations.size()];
+        for (int i = 0; i < kernels.length; i++) {
+            kernels[i] = compile(operations.get(i), nElements);
+        }
+        return kernels;
+    }
+
+    /**
+     * Builds the 0-indexed source table for a cycle-notation operation
+     *   (same convention as GroupExplorer.applyOperation)
+     *
+     * Cycles are applied one after another to an identity table, so operations whose
+     *   cycles overlap compose the same way the in-place walk does.
+     */
+    public static int[] sourceTable(int[][] operation, int nElements) {
+        int[] source = new int[nElements];
+        for (int i = 0; i < nElements; i++) {
+            source[i] = i;
+        }
+        for (int[] cycle : operation) {
+            if (cycle.length > 1) {
+                int first = source[cycle[0] - 1];
+                for (int i = 0; i < cycle.length - 1; i++) {
+                    source[cycle[i] - 1] = source[cycle[i + 1] - 1];
+                }
+                source[cycle[cycle.length - 1] - 1] = first;
+            }
+        }
+        return source;
+    }
+
+    public abstract int length();
+
+    /**
+     * Position that element i is gathered from
+     */
+    public abstract int source(int i);
+
+    /**
+     * Writes the image of state into out; state and out must not alias
+     */
+    public abstract void apply(int[] state, int[] out);
+
+    public int[] apply(int[] state) {
+        int[] out = new int[state.length];
+        apply(state, out);
+        return out;
+    }
+
+    static class ByteKernel extends PermutationKernel {
+        private final byte[] source;
+
+        private ByteKernel(int[] source) {
+            this.source = new byte[source.length];
+            for (int i = 0; i < source.length; i++) {
+                this.source[i] = (byte) source[i];
+            }
+        }
+
+        @Override
+        public int length() {
+            return source.length;
+        }
+
+        @Override
+        public int source(int i) {
+            return source[i] & 0xff;
+        }
+
+        @Override
+        public void apply(int[] state, int[] out) {
+            final byte[] src = source;
+            for (int i = 0; i < src.length; i++) {
+                out[i] = state[src[i] & 0xff];
+            }
+        }
+    }
+
+    static class ShortKernel extends PermutationKernel {
+        private final short[] source;
+
+        private ShortKernel(int[] source) {
+            this.source = new short[source.length];
+            for (int i = 0; i < source.length; i++) {
+                this.source[i] = (short) source[i];
+            }
+        }
+
+        @Override
+        public int length() {
+            return source.length;
+        }
+
+        @Override
+        public int source(int i) {
+            return source[i] & 0xffff;
+        }
+
+        @Override
+        public void apply(int[] state, int[] out) {
+            final short[] src = source;
+            for (int i = 0; i < src.length; i++) {
+                out[i] = state[src[i] & 0xffff];
+            }
+        }
+    }
+
+    static class IntKernel extends PermutationKernel {
+        private final int[] source;
+
+        private IntKernel(int[] source) {
+            this.source = source;
+        }
+
+        @Override
+        public int length() {
+            return source.length;
+        }
+
+        @Override
+        public int source(int i) {
+            return source[i];
+        }
+
+        @Override
+        public void apply(int[] state, int[] out) {
+            final int[] src = source;
+            for (int i = 0; i < src.length; i++) {
+                out[i] = state[src[i]];
+            }
+        }
+    }
+}
@@ -8,17 +8,17 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 
 import io.chandler.gap.GroupExplorer.Generator;
-import io.chandler.gap.GroupExplorer.MemorySettings;
-import io.chandler.gap.cache.ParityStateCache;
-import io.chandler.gap.cache.State;
 import io.chandler.gap.util.TimeEstimator;
 
 public class PyraSearch {
 
+    // Heuristic: more than 20 cycle descriptions means it's the alternating group
+    private static final CandidateClassifier classifier = new CandidateClassifier(99000)
+        .setMaxCycleTypes(20);
+
     private static final int[][][] vertexEdgeSymmetries = {
         {{1, 10, 7}, {3, 11, 8}, {2, 12, 9}, {5, 6, 4}},
         {{6, 9, 11}, {4, 7, 12}, {5, 8, 10}, {2, 1, 3}},
@@ -189,8 +189,7 @@ public class PyraSearch {
                         checkedIcosahedralGenerators++;
 						ArrayList<String> lgGroupResults = new ArrayList<>();
 						HashMap<Integer, List<String>> smallGroupGenerators = new HashMap<>();
-						Set<State> cache = new HashSet<>();
-						checkGenerator(false, g, lgGroupResults, smallGroupGenerators, cache);
+						checkGenerator(false, g, lgGroupResults, smallGroupGenerators);
                         if (lgGroupResults.size() > 0 || smallGroupGenerators.size() > 0) {
 							Integer order = smallGroupGenerators.size() > 0 ?smallGroupGenerators.keySet().iterator().next() : null;
                             if (!foundMatch) {
@@ -208,6 +207,7 @@ public class PyraSearch {
         System.out.println("Checked " + checkedIcosahedralGenerators + " icosahedral generators");
         
         System.out.println("Matching generators: " + matchingGenerators.size());
+        System.out.println(classifier.report());
 
 
 
@@ -246,95 +246,19 @@ public class PyraSearch {
 
 
 
-    private static void checkGenerator(boolean debug, Generator g, List<String> lgGroupResults, Map<Integer, List<String>> smallGroupGenerators, Set<State> cache) {
+    private static void checkGenerator(boolean debug, Generator g, List<String> lgGroupResults, Map<Integer, List<String>> smallGroupGenerators) {
         String genString = GroupExplorer.generatorsToString(g.generator());
-        GroupExplorer candidate = new GroupExplorer(
-            genString,
-            MemorySettings.FASTEST, cache);
-            
-
-        ArrayList<String> depthPeek = new ArrayList<>();
-        int limit = 99000;
-        int[] stateCount = new int[2];
-        int iters = -2;
-
-        //System.out.println(genString);
-        
-        double lastRatio = 0;
-        candidate.initIterativeExploration();
-        HashMap<String, Integer> cycleDescriptions = new HashMap<>();
-        while (iters == -2) {
-            int[] depthA = new int[] {0};
-            try {
-                iters = candidate.iterateExploration(debug, limit, (states, depth) -> {
-                    stateCount[0] = stateCount[1];
-                    stateCount[1] += states.size();
-                    depthA[0] = depth;
-                    for (int[] s : states) {
-                        String desc = GroupExplorer.describeStateForCache(candidate.nElements, s);
-                        cycleDescriptions.merge(desc, 1, Integer::sum);
-                        // Heuristic 3: If there are more than 50 cycle descriptions, it's the alternating group
-                        if (cycleDescriptions.size() > 20) {
-                            throw new RuntimeException("Too many cycle descriptions");
-                        }
-                    }
-                });
-            } catch (ParityStateCache.StateRejectedException e) {
-                // Heuristic 1:
-                //    If the 7-transitive cache is too small we've generated a non-M24 group
-                
-                // Fail because this can't happen for valid M24 generators
-                iters = -2;
-                //System.out.println("M24 cache is different");
-                break;
-            } catch (RuntimeException e) {
-                iters = -2;
-                break;
-            }
-            int depth = depthA[0];
-            double ratio = depth < 2 ? 10000 : stateCount[1]/(double)stateCount[0];
-            if (depth > 5 ) depthPeek.add(ratio+" " + stateCount[1] + ",");
+        int order = classifier.classify(g);
+        if (debug) System.out.println(genString + ": " + order);
 
-            //System.out.println(stateCountB[0] + " " + stateCount[1]);
-
-            
-            
-            
-            lastRatio = ratio;
-        }
-
-        if (iters == -2) {
-            /*if (depthPeek.size() > 4) {
-                System.out.println("Reject " + iters + " Last iter states: " + depthPeek.get(depthPeek.size() - 1) + " Depth: " + depthPeek.size());
-                System.out.println(depthPeek.toString());
-            }*/
-        } else if (iters == -1) {
-            System.out.println("Iters: " + iters + " Last iter states: " + depthPeek.get(depthPeek.size() - 1) + " Depth: " + depthPeek.size());
-            System.out.println( GroupExplorer.generatorsToString(g.generator()));
-            System.out.println(depthPeek.toString());
-            lgGroupResults.add(GroupExplorer.generatorsToString(g.generator()));
-
-
-            /*
-            HashMap<String, Integer> cycleDescriptions = new HashMap<>();
-            for (State state : cache) {
-                String cycleDescription = GroupExplorer.describeState(candidate.nElements, state.state());
-                cycleDescriptions.merge(cycleDescription, 1, Integer::sum);
-                if (cycleDescriptions.size() % 100_000 == 0) {
-                    System.out.println("Processed " + cycleDescriptions.size() + " / " + cache.size() + " states");
-                }
-            }
-
-            printCycleDescriptions(cycleDescriptions);
-            */
-        } else if (candidate.order() > 10) {
+        if (order == CandidateClassifier.TOO_LARGE) {
+            System.out.println("Large group: " + genString);
+            lgGroupResults.add(genString);
+        } else if (order > 10) {
             // Add genString to smallGroupGenerators
-            List<String> gens = smallGroupGenerators.computeIfAbsent(candidate.order(), k -> Collections.synchronizedList(new ArrayList<String>()));
+            List<String> gens = smallGroupGenerators.computeIfAbsent(order, k -> Collections.synchronizedList(new ArrayList<String>()));
             gens.add(genString);
-            //System.out.println("Found order " + (candidate.order()) + ": " + GroupExplorer.generatorsToString(g.generator()));
         }
-        
-
     }
 
 
@@ -160,14 +160,14 @@ public class STGenerators {
             if (debug) System.out.println("Checking transitivity " + transitivity);
             Set<State> stateCache = new LongStateCache(transitivity,12);
             ArrayList<String> results = new ArrayList<>();
-            HashMap<Integer, List<String>> smallGroupGenerators = new HashMap<>();
+            HashMap<Long, List<String>> smallGroupGenerators = new HashMap<>();
 
             checkGenerator(debug, g, results, smallGroupGenerators, stateCache);
 
             if (results.size() > 0 || smallGroupGenerators.size() > 0) {
 
                 System.out.println("Found generator at transitivity " + transitivity);
-                for (Map.Entry<Integer, List<String>> e : smallGroupGenerators.entrySet()) {
+                for (Map.Entry<Long, List<String>> e : smallGroupGenerators.entrySet()) {
                     System.out.println("Order " + e.getKey() + ":");
                     for (String genString : e.getValue()) {
                         System.out.println(genString);
@@ -183,7 +183,7 @@ public class STGenerators {
             }
         }
     }
-    private static void checkGenerator(boolean debug, Generator g, List<String> lgGroupResults, Map<Integer, List<String>> smallGroupGenerators, Set<State> cache) {
+    private static void checkGenerator(boolean debug, Generator g, List<String> lgGroupResults, Map<Long, List<String>> smallGroupGenerators, Set<State> cache) {
         cache = new ParityStateCache(new HashSet<>(), cache);
         debug = true;
         String genString = GroupExplorer.generatorsToString(g.generator());
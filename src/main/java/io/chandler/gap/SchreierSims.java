@@ -0,0 +1,316 @@
+package io.chandler.gap;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import io.chandler.gap.GroupExplorer.Generator;
+import io.chandler.gap.GroupExplorer.MemorySettings;
+
+/**
+ * Base and strong generating set for a permutation group (Schreier-Sims)
+ *
+ * Answers order() and membership without enumerating the group: level k of the
+ *   stabilizer chain fixes points 0..k-1 and keeps a transversal of the orbit of k,
+ *   so the order is the product of the orbit lengths.  M24 takes milliseconds here
+ *   versus minutes for exploreStates.
+ *
+ * Permutations follow GroupExplorer's gather convention: a generator is its
+ *   PermutationKernel source table, and a state s (1-indexed, as returned by
+ *   exploreStates) is the permutation j -> s[j] - 1.  Every state GroupExplorer
+ *   reaches from the same generators is contained() here.
+ *
+ * With an order bound, construction stops as soon as the product of the orbits found
+ *   so far exceeds it.  That product is always a lower bound on the order, so
+ *   exceedsBound() is exact, but the chain is then incomplete: the order methods
+ *   only give lower bounds and contains() shouldn't be used.
+ */
+public class SchreierSims implements AbstractGroupProperties {
+
+    public final int nElements;
+    private final MemorySettings mem;
+    private final int[] identity;
+
+    // Strong generators fixing points 0..k-1; level 0 holds them all
+    private final List<List<int[]>> strongGenerators = new ArrayList<>();
+    // transversal[k][x] maps k to x (null when x is not in the orbit of k), inverses alongside
+    private final int[][][] transversal;
+    private final int[][][] transversalInverse;
+    private final int[][] orbit;
+    private final int[] orbitSize;
+
+    private final long orderBound;
+    private long lowerBound = 1;
+    private boolean exceeded = false;
+
+    public SchreierSims(String cycleNotation, MemorySettings mem) {
+        this(GroupExplorer.parseOperations(cycleNotation), maxElement(cycleNotation), mem);
+    }
+
+    public SchreierSims(Generator g, int nElements, MemorySettings mem) {
+        this(Arrays.asList(g.generator()), nElements, mem);
+    }
+
+    public SchreierSims(List<int[][]> operations, int nElements, MemorySettings mem) {
+        this(operations, nElements, mem, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param orderBound stop once the group is known to be larger than this
+     */
+    public SchreierSims(List<int[][]> operations, int nElements, MemorySettings mem, long orderBound) {
+        this.nElements = nElements;
+        this.mem = mem;
+        this.orderBound = orderBound;
+        this.identity = new int[nElements];
+        for (int i = 0; i < nElements; i++) identity[i] = i;
+
+        transversal = new int[nElements][][];
+        transversalInverse = new int[nElements][][];
+        orbit = new int[nElements][];
+        orbitSize = new int[nElements];
+        for (int k = 0; k < nElements; k++) {
+            strongGenerators.add(new ArrayList<>());
+            transversal[k] = new int[nElements][];
+            transversalInverse[k] = new int[nElements][];
+            transversal[k][k] = identity;
+            transversalInverse[k][k] = identity;
+            orbit[k] = new int[nElements];
+            orbit[k][0] = k;
+            orbitSize[k] = 1;
+        }
+
+        for (int[][] operation : operations) {
+            sift(PermutationKernel.sourceTable(operation, nElements), 0);
+        }
+    }
+
+    private static int maxElement(String cycleNotation) {
+        int nElements = 0;
+        for (String s : cycleNotation.split("\\(|\\)|,|\\[|\\]")) {
+            if (!s.trim().isEmpty()) nElements = Math.max(nElements, Integer.parseInt(s.trim()));
+        }
+        return nElements;
+    }
+
+    // (a * b)[i] = a[b[i]]: apply b, then a
+    private int[] compose(int[] a, int[] b) {
+        int[] c = new int[nElements];
+        for (int i = 0; i < nElements; i++) c[i] = a[b[i]];
+        return c;
+    }
+
+    private int[] invert(int[] a) {
+        int[] inv = new int[nElements];
+        for (int i = 0; i < nElements; i++) inv[a[i]] = i;
+        return inv;
+    }
+
+    private boolean isIdentity(int[] a) {
+        for (int i = 0; i < nElements; i++) if (a[i] != i) return false;
+        return true;
+    }
+
+    /**
+     * Strips g through the chain from level k; a nontrivial residue becomes a new
+     *   strong generator at the level where it got stuck
+     */
+    private void sift(int[] g, int k) {
+        for (int i = k; i < nElements && !exceeded; i++) {
+            int x = g[i];
+            if (x == i) continue;
+            int[] uInv = transversalInverse[i][x];
+            if (uInv == null) {
+                addGenerator(g, i);
+                return;
+            }
+            g = compose(uInv, g);
+        }
+    }
+
+    private void addGenerator(int[] g, int k) {
+        // g fixes 0..k-1, so it belongs to every level up to k
+        for (int j = k; j >= 0 && !exceeded; j--) {
+            strongGenerators.get(j).add(g);
+            // The new generator applied to every known coset representative
+            int known = orbitSize[j];
+            for (int i = 0; i < known && !exceeded; i++) {
+                extend(j, compose(g, transversal[j][orbit[j][i]]));
+            }
+        }
+    }
+
+    // t maps k to t[k]: either a new orbit point, or a Schreier generator to sift
+    private void extend(int k, int[] t) {
+        if (exceeded) return;
+        int x = t[k];
+        int[] uInv = transversalInverse[k][x];
+        if (uInv != null) {
+            int[] schreier = compose(uInv, t);
+            if (!isIdentity(schreier)) sift(schreier, k + 1);
+            return;
+        }
+        transversal[k][x] = t;
+        transversalInverse[k][x] = invert(t);
+        int size = orbitSize[k]++;
+        orbit[k][size] = x;
+        if (orderBound != Long.MAX_VALUE) {
+            // The orbit product is divisible by the old orbit size
+            lowerBound = lowerBound / size;
+            if (lowerBound > orderBound / (size + 1)) {
+                exceeded = true;
+                return;
+            }
+            lowerBound *= size + 1;
+        }
+        // Generators added while this runs have already seen x (addGenerator)
+        List<int[]> generators = strongGenerators.get(k);
+        int known = generators.size();
+        for (int i = 0; i < known && !exceeded; i++) {
+            extend(k, compose(generators.get(i), t));
+        }
+    }
+
+    public BigInteger orderExact() {
+        return stabilizerOrder(0);
+    }
+
+    /**
+     * True if construction stopped because the order passed the bound
+     */
+    public boolean exceedsBound() {
+        return exceeded;
+    }
+
+    public boolean orderExceeds(long bound) {
+        return orderExact().compareTo(BigInteger.valueOf(bound)) > 0;
+    }
+
+    /**
+     * Order of the subgroup fixing each of the points 1..nFixed
+     *   (1 means no two elements agree on those positions)
+     */
+    public BigInteger stabilizerOrder(int nFixed) {
+        BigInteger order = BigInteger.ONE;
+        for (int k = nFixed; k < nElements; k++) order = order.multiply(BigInteger.valueOf(orbitSize[k]));
+        return order;
+    }
+
+    /**
+     * @throws ArithmeticException if the order doesn't fit in a long
+     */
+    @Override
+    public long order() {
+        return orderExact().longValueExact();
+    }
+
+    @Override
+    public int elements() {
+        return nElements;
+    }
+
+    @Override
+    public MemorySettings mem() {
+        return mem;
+    }
+
+    /**
+     * @param state 1-indexed state, as produced by GroupExplorer
+     */
+    public boolean contains(int[] state) {
+        if (state.length != nElements) return false;
+        int[] g = new int[nElements];
+        boolean[] seen = new boolean[nElements];
+        for (int i = 0; i < nElements; i++) {
+            int v = state[i] - 1;
+            if (v < 0 || v >= nElements || seen[v]) return false;
+            seen[v] = true;
+            g[i] = v;
+        }
+        for (int i = 0; i < nElements; i++) {
+            int x = g[i];
+            if (x == i) continue;
+            int[] uInv = transversalInverse[i][x];
+            if (uInv == null) return false;
+            g = compose(uInv, g);
+        }
+        return true;
+    }
+
+    /**
+     * Uniformly random element, as a 1-indexed state
+     */
+    public int[] randomElement(Random random) {
+        int[] g = identity;
+        for (int k = nElements - 1; k >= 0; k--) {
+            if (orbitSize[k] == 1) continue;
+            int x = orbit[k][random.nextInt(orbitSize[k])];
+            g = compose(transversal[k][x], g);
+        }
+        int[] state = new int[nElements];
+        for (int i = 0; i < nElements; i++) state[i] = g[i] + 1;
+        return state;
+    }
+
+    /**
+     * @return the 1-indexed orbit of a 1-indexed point under the whole group
+     */
+    public int[] orbit(int point) {
+        int p = point - 1;
+        boolean[] seen = new boolean[nElements];
+        int[] queue = new int[nElements];
+        int head = 0, tail = 0;
+        queue[tail++] = p;
+        seen[p] = true;
+        while (head < tail) {
+            int x = queue[head++];
+            for (int[] g : strongGenerators.get(0)) {
+                int y = g[x];
+                if (!seen[y]) {
+                    seen[y] = true;
+                    queue[tail++] = y;
+                }
+            }
+        }
+        int[] result = new int[tail];
+        for (int i = 0; i < tail; i++) result[i] = queue[i] + 1;
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * True when the group acts transitively on all nElements points
+     */
+    public boolean isTransitive() {
+        return orbitSize[0] == nElements;
+    }
+
+    /**
+     * Number of points moved by some element of the group
+     */
+    public int degree() {
+        int moved = 0;
+        for (int x = 0; x < nElements; x++) {
+            for (int[] g : strongGenerators.get(0)) {
+                if (g[x] != x) {
+                    moved++;
+                    break;
+                }
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Base points (1-indexed) with nontrivial basic orbits
+     */
+    public int[] base() {
+        int n = 0;
+        for (int k = 0; k < nElements; k++) if (orbitSize[k] > 1) n++;
+        int[] base = new int[n];
+        for (int k = 0, i = 0; k < nElements; k++) if (orbitSize[k] > 1) base[i++] = k + 1;
+        return base;
+    }
+}
@@ -91,7 +91,7 @@ public class TetrahedralGenerators {
         long combinations = validVertexCombinations.size();
         long startTime = System.currentTimeMillis();
 
-        HashMap<Integer, Integer> orderCounts = new HashMap<>();
+        HashMap<Long, Integer> orderCounts = new HashMap<>();
 
         Iterator<Generator> iter = validVertexCombinations.iterator();
         while (iter.hasNext()) {
@@ -86,7 +86,7 @@ public class ThreeD180Generators {
         long combinations = validVertexCombinations.size();
         long startTime = System.currentTimeMillis();
 
-        HashMap<Integer, Integer> orderCounts = new HashMap<>();
+        HashMap<Long, Integer> orderCounts = new HashMap<>();
 
         Iterator<Generator> iter = validVertexCombinations.iterator();
         while (iter.hasNext()) {
@@ -22,7 +22,7 @@ public class VertexColorSearch {
 	Function<Integer, int[]> getFacesFromVertex;
 	Function<int[], Integer> getMatchingVertexFromFaces;
 	HashSet<State> fullSymmetryStates;
-	int symmetryOrder;
+	long symmetryOrder;
 	int nVertices;
 	Generator colorSymmGen;
 	SubgroupKey colorSymmSubgroup;
@@ -298,13 +298,13 @@ public class VertexColorSearch {
 
     public class SubgroupKey {
         int[] vertex1Positions;
-        int order;
-        public SubgroupKey(int order, int[][][] generator) {
+        long order;
+        public SubgroupKey(long order, int[][][] generator) {
             this(order, findSymmetryCopiesOfVertex(new Generator(generator), 1, null).keySet());
         }
-        public SubgroupKey(int order, int[] vertex1Positions) { this.vertex1Positions = vertex1Positions; this.order = order; }
-        public SubgroupKey(int order, Set<Integer> vertex1Colors) { this.order = order; this.vertex1Positions = vertex1Colors.stream().mapToInt(i -> i).toArray(); }
-        @Override public int hashCode() { return order*31 + Arrays.hashCode(vertex1Positions); }
+        public SubgroupKey(long order, int[] vertex1Positions) { this.vertex1Positions = vertex1Positions; this.order = order; }
+        public SubgroupKey(long order, Set<Integer> vertex1Colors) { this.order = order; this.vertex1Positions = vertex1Colors.stream().mapToInt(i -> i).toArray(); }
+        @Override public int hashCode() { return Long.hashCode(order)*31 + Arrays.hashCode(vertex1Positions); }
         @Override public boolean equals(Object obj) {  return order == ((SubgroupKey)obj).order && Arrays.equals(vertex1Positions, ((SubgroupKey)obj).vertex1Positions); }
     }
     
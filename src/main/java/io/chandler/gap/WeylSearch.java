@@ -52,7 +52,7 @@ public class WeylSearch {
 
         // For each combination, get the group order
 
-        int maxOrder = 0;
+        long maxOrder = 0;
 
         for (int[] state_a : states_a) {
             for (int[] state_b : states_b) {
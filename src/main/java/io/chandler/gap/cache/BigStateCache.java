@@ -1,57 +1,80 @@
 package io.chandler.gap.cache;
 
-import java.math.BigInteger;
 import java.util.AbstractSet;
-import java.util.Arrays;
-import java.util.HashSet;
 import java.util.Iterator;
 
-public class BigStateCache extends AbstractSet<State> {
-    private final HashSet<BA> map;
-
-
+/**
+ * Like LongStateCache for prefixes too long for one long: the first elementsToStore
+ *   elements are bit-packed into as many words as they need
+ */
+public class BigStateCache extends AbstractSet<State> implements LongSized {
+    private final SegmentedRowSet map;
 
     final long elementsToStore;
     final int nElements;
+    private final int bitsPerElement;
+    private final int elementsPerWord;
+    private final int keyWords;
 
     public BigStateCache(long elementsToStore, int nElements) {
-        this.map = new HashSet<>();
+        this(elementsToStore, nElements, 1024, 0.75f, false);
+    }
+
+    /**
+     * @param offHeap keep the table in direct memory, outside the Java heap
+     */
+    public BigStateCache(long elementsToStore, int nElements, long expectedSize, float loadFactor, boolean offHeap) {
         this.elementsToStore = elementsToStore;
         this.nElements = nElements;
+        this.bitsPerElement = 32 - Integer.numberOfLeadingZeros(nElements);
+        this.elementsPerWord = 64 / bitsPerElement;
+        this.keyWords = (int) ((elementsToStore + elementsPerWord - 1) / elementsPerWord);
+        this.map = new SegmentedRowSet(keyWords, expectedSize, loadFactor, offHeap);
     }
 
-    BA cvt(int[] state) {
-        BigInteger value = BigInteger.ZERO;
-        BigInteger x = BigInteger.valueOf(nElements + 1);
-        for (int i = 0; i < elementsToStore; i++) {
-            value = value.multiply(x);
-            value = value.add(BigInteger.valueOf(state[i]));
+    // Fresh key each call, so concurrent lookups don't share it
+    long[] cvt(int[] state) {
+        long[] key = new long[keyWords];
+        for (int w = 0; w < keyWords; w++) {
+            long word = 0;
+            int start = w * elementsPerWord;
+            int end = (int) Math.min(start + elementsPerWord, elementsToStore);
+            for (int i = end - 1; i >= start; i--) {
+                word = (word << bitsPerElement) | state[i];
+            }
+            key[w] = word;
         }
-        return new BA(value.toByteArray());
+        return key;
     }
 
     @Override
     public boolean add(State state) {
         int[] s = state.state();
 
-        return map.add(cvt(s));
+        return map.add(cvt(s), 0);
     }
 
     @Override
     public boolean contains(Object o) {
-        return map.contains(cvt(((State)o).state()));
+        return map.contains(cvt(((State)o).state()), 0);
     }
 
     @Override
     public boolean remove(Object o) {
-        return map.remove(cvt(((State)o).state()));
+        return map.remove(cvt(((State)o).state()), 0);
     }
 
     @Override
-    public int size() {
+
+    public long sizeLong() {
         return map.size();
     }
 
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, map.size());
+    }
+
     @Override
     public void clear() {
         map.clear();
@@ -62,25 +85,4 @@ public class BigStateCache extends AbstractSet<State> {
         // Since the full state is not stored we can't retrieve the original states
         throw new UnsupportedOperationException("Not implemented");
     }
-
-    public static class BA {
-        public final byte[] value;
-
-        public BA(byte[] value) {
-            this.value = value;
-        }
-
-        @Override
-        public int hashCode() {
-            return Arrays.hashCode(value);
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (o instanceof BA) {
-                return Arrays.equals(value, ((BA)o).value);
-            }
-            return false;
-        }
-    }
 }
@@ -0,0 +1,166 @@
+package io.chandler.gap.cache;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import it.unimi.dsi.fastutil.longs.AbstractLongSet;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+/**
+ * Thread-safe primitive long set on the same CAS table as ConcurrentStateSet
+ *
+ * Intended for encoded keys like LongStateCache's, without boxing.
+ *   Iteration and clear() are not safe against concurrent adds.
+ *
+ * A tagged set also keeps a few bits per key, set by the add that inserted it; used
+ *   for parent pointers, like PackedStateSet's generator codes.
+ *
+ * The table reserves zero (empty slot) and Long.MIN_VALUE (slot being written), so
+ *   those two keys are kept on the side.
+ */
+public class ConcurrentLongSet extends AbstractLongSet implements LongSized {
+    private final ConcurrentRowTable table;
+    private final SideKey zero = new SideKey(0), busy = new SideKey(Long.MIN_VALUE);
+    private final int tagBits;
+    private final ThreadLocal<long[]> rowBuffer = ThreadLocal.withInitial(() -> new long[1]);
+
+    public ConcurrentLongSet() {
+        this(1 << 16);
+    }
+
+    public ConcurrentLongSet(long expectedSize) {
+        this(expectedSize, 0);
+    }
+
+    // A key the table can't hold
+    private static final class SideKey {
+        final long key;
+        final AtomicBoolean present = new AtomicBoolean();
+        volatile int tag;
+
+        SideKey(long key) {
+            this.key = key;
+        }
+
+        synchronized boolean add(int tag) {
+            if (present.get()) return false;
+            this.tag = tag; // Published by the set below
+            present.set(true);
+            return true;
+        }
+    }
+
+    private SideKey sideKey(long key) {
+        return key == 0 ? zero : key == Long.MIN_VALUE ? busy : null;
+    }
+
+    /**
+     * @param tagBits bits kept per key (at most 32), 0 for a plain set
+     */
+    public ConcurrentLongSet(long expectedSize, int tagBits) {
+        if (tagBits < 0 || tagBits > 32) throw new IllegalArgumentException("Tag bits must be in [0, 32]: " + tagBits);
+        this.tagBits = tagBits;
+        this.table = new ConcurrentRowTable(1, tagBits, expectedSize);
+    }
+
+    /**
+     * Adds key with its tag; if key was already present its tag is unchanged
+     */
+    public boolean add(long key, int tag) {
+        if (tagBits == 0) throw new UnsupportedOperationException("Set is not tagged");
+        if (tag >>> tagBits != 0 && tagBits < 32) throw new IllegalArgumentException("Tag doesn't fit in " + tagBits + " bits: " + tag);
+        SideKey side = sideKey(key);
+        if (side != null) return side.add(tag);
+        long[] row = rowBuffer.get();
+        row[0] = key;
+        return table.add(row, 0, tag);
+    }
+
+    /**
+     * @return key's tag, or -1 if it isn't present (with 32 tag bits, check contains() for a tag of -1)
+     */
+    public int tag(long key) {
+        if (tagBits == 0) throw new UnsupportedOperationException("Set is not tagged");
+        SideKey side = sideKey(key);
+        if (side != null) return side.present.get() ? side.tag : -1;
+        long[] row = rowBuffer.get();
+        row[0] = key;
+        return table.tag(row, 0);
+    }
+
+    @Override
+    public boolean add(long key) {
+        if (tagBits != 0) return add(key, 0);
+        SideKey side = sideKey(key);
+        if (side != null) return side.add(0);
+        long[] row = rowBuffer.get();
+        row[0] = key;
+        return table.add(row, 0);
+    }
+
+    @Override
+    public boolean contains(long key) {
+        SideKey side = sideKey(key);
+        if (side != null) return side.present.get();
+        long[] row = rowBuffer.get();
+        row[0] = key;
+        return table.contains(row, 0);
+    }
+
+    @Override
+    public boolean remove(long key) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public long sizeLong() {
+        return table.size() + (zero.present.get() ? 1 : 0) + (busy.present.get() ? 1 : 0);
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, sizeLong());
+    }
+
+    @Override
+    public void clear() {
+        table.clear();
+        zero.present.set(false);
+        busy.present.set(false);
+    }
+
+    @Override
+    public LongIterator iterator() {
+        ConcurrentRowTable.RowCursor cursor = table.new RowCursor();
+        return new LongIterator() {
+            boolean zeroPending = zero.present.get(), busyPending = busy.present.get();
+            boolean ready = false;
+            boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (zeroPending || busyPending) return true;
+                if (!ready) {
+                    hasNext = cursor.advance();
+                    ready = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) throw new NoSuchElementException();
+                if (zeroPending) {
+                    zeroPending = false;
+                    return 0;
+                }
+                if (busyPending) {
+                    busyPending = false;
+                    return Long.MIN_VALUE;
+                }
+                ready = false;
+                return cursor.words()[cursor.offset()];
+            }
+        };
+    }
+}
@@ -0,0 +1,303 @@
+package io.chandler.gap.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * Concurrent open-addressing table of fixed-width long rows
+ *
+ * Slots are claimed with a CAS on the row's first word, so threads only contend
+ *   when they probe the same slot.  The table is split into segments (by the high
+ *   bits of the hash) that resize independently; an insert holds its segment's
+ *   read stamp, lookups read optimistically, and only a resize of that segment
+ *   takes the write lock.
+ *
+ * A zero first word marks an empty slot, so callers must never insert one.
+ *   Multi-word rows are published by claiming the slot with BUSY, writing the tail
+ *   words and then releasing the real first word, which readers spin on.
+ *
+ * With tagBits, every slot also carries a small tag in a packed side array, written
+ *   by the insert that wins the slot and published the same way (so a tagged first
+ *   word can't be BUSY either).
+ */
+class ConcurrentRowTable {
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long BUSY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MIN_SEGMENT_SLOTS = 1024;
+
+    final int wordsPerRow;
+    final int tagBits;
+    private final int tagsPerWord;
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    private static final class Table {
+        final long[] words;
+        final long[] tags;
+        final int mask;
+        final int maxFill;
+
+        Table(int slots, int wordsPerRow, int tagsPerWord) {
+            if ((long) slots * wordsPerRow > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Concurrent table segment exceeds array limits: " + slots + " slots");
+            }
+            this.words = new long[slots * wordsPerRow];
+            this.tags = tagsPerWord == 0 ? null : new long[(slots + tagsPerWord - 1) / tagsPerWord];
+            this.mask = slots - 1;
+            this.maxFill = HashCommon.maxFill(slots, LOAD_FACTOR);
+        }
+    }
+
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        final AtomicInteger size = new AtomicInteger();
+        volatile Table table;
+    }
+
+    ConcurrentRowTable(int wordsPerRow, long expectedSize) {
+        this(wordsPerRow, 0, expectedSize);
+    }
+
+    /**
+     * @param tagBits bits of tag per slot, 0 for none
+     */
+    ConcurrentRowTable(int wordsPerRow, int tagBits, long expectedSize) {
+        this.wordsPerRow = wordsPerRow;
+        this.tagBits = tagBits;
+        this.tagsPerWord = tagBits == 0 ? 0 : 64 / tagBits;
+        int nSegments = HashCommon.nextPowerOfTwo(Math.max(16, Runtime.getRuntime().availableProcessors() * 8));
+        this.segments = new Segment[nSegments];
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(nSegments);
+
+        int slots = HashCommon.arraySize((int) Math.min(Integer.MAX_VALUE / 2, Math.max(MIN_SEGMENT_SLOTS, expectedSize / nSegments)), LOAD_FACTOR);
+        for (int i = 0; i < nSegments; i++) {
+            segments[i] = new Segment();
+            segments[i].table = new Table(slots, wordsPerRow, tagsPerWord);
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> segmentShift)];
+    }
+
+    /**
+     * @return true if the row was inserted, false if it was already present
+     */
+    boolean add(long[] row, int offset) {
+        return add(row, offset, 0);
+    }
+
+    /**
+     * Adds the row with a tag; an existing row keeps its tag
+     */
+    boolean add(long[] row, int offset, int tag) {
+        if (row[offset] == 0 || row[offset] == BUSY) {
+            throw new IllegalArgumentException("Row can't start with reserved word " + row[offset]);
+        }
+        long hash = hashRow(row, offset);
+        Segment seg = segmentFor(hash);
+        boolean added;
+        long stamp = seg.lock.readLock();
+        try {
+            added = insert(seg.table, row, offset, (int) hash, tag);
+        } finally {
+            seg.lock.unlockRead(stamp);
+        }
+        if (added && seg.size.incrementAndGet() > seg.table.maxFill) {
+            grow(seg);
+        }
+        return added;
+    }
+
+    boolean contains(long[] row, int offset) {
+        long hash = hashRow(row, offset);
+        Segment seg = segmentFor(hash);
+        // Lookups only conflict with a resize of this segment, so read optimistically
+        long stamp = seg.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            boolean found = find(seg.table, row, offset, (int) hash) >= 0;
+            if (seg.lock.validate(stamp)) return found;
+        }
+        stamp = seg.lock.readLock();
+        try {
+            return find(seg.table, row, offset, (int) hash) >= 0;
+        } finally {
+            seg.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the row's tag, or -1 if it isn't present
+     */
+    int tag(long[] row, int offset) {
+        long hash = hashRow(row, offset);
+        Segment seg = segmentFor(hash);
+        long stamp = seg.lock.readLock();
+        try {
+            Table t = seg.table;
+            int slot = find(t, row, offset, (int) hash);
+            return slot < 0 ? -1 : readTag(t, slot);
+        } finally {
+            seg.lock.unlockRead(stamp);
+        }
+    }
+
+    private int readTag(Table t, int slot) {
+        long word = (long) WORDS.getAcquire(t.tags, slot / tagsPerWord);
+        // 1L, so a 32-bit tag gets a full mask rather than 0
+        return (int) (word >>> ((slot % tagsPerWord) * tagBits)) & (int) ((1L << tagBits) - 1);
+    }
+
+    private void writeTag(Table t, int slot, int tag) {
+        // Neighbouring slots share the word, so merge atomically
+        // Unsigned, or a negative 32-bit tag would spill into its neighbour
+        WORDS.getAndBitwiseOr(t.tags, slot / tagsPerWord, Integer.toUnsignedLong(tag) << ((slot % tagsPerWord) * tagBits));
+    }
+
+    private boolean insert(Table t, long[] row, int offset, int hash, int tag) {
+        final long[] words = t.words;
+        final long first = row[offset];
+        int slot = hash & t.mask;
+        for (int probes = 0; probes <= t.mask; probes++) {
+            int base = slot * wordsPerRow;
+            long current = (long) WORDS.getAcquire(words, base);
+            if (current == 0) {
+                if (wordsPerRow == 1 && tagBits == 0) {
+                    if (WORDS.compareAndSet(words, base, 0L, first)) return true;
+                    continue; // Lost the race, re-examine this slot
+                }
+                if (WORDS.compareAndSet(words, base, 0L, BUSY)) {
+                    System.arraycopy(row, offset + 1, words, base + 1, wordsPerRow - 1);
+                    if (tag != 0) writeTag(t, slot, tag);
+                    WORDS.setRelease(words, base, first);
+                    return true;
+                }
+                continue;
+            }
+            while (current == BUSY) {
+                Thread.onSpinWait();
+                current = (long) WORDS.getAcquire(words, base);
+            }
+            if (current == first && tailEquals(words, base, row, offset)) return false;
+            slot = (slot + 1) & t.mask;
+        }
+        throw new IllegalStateException("Concurrent table segment is full");
+    }
+
+    private int find(Table t, long[] row, int offset, int hash) {
+        final long[] words = t.words;
+        final long first = row[offset];
+        if (first == 0 || first == BUSY) return -1; // Reserved, never stored
+        int slot = hash & t.mask;
+        for (int probes = 0; probes <= t.mask; probes++) {
+            int base = slot * wordsPerRow;
+            long current = (long) WORDS.getAcquire(words, base);
+            while (current == BUSY) {
+                Thread.onSpinWait();
+                current = (long) WORDS.getAcquire(words, base);
+            }
+            if (current == 0) return -1;
+            if (current == first && tailEquals(words, base, row, offset)) return slot;
+            slot = (slot + 1) & t.mask;
+        }
+        return -1;
+    }
+
+    private boolean tailEquals(long[] words, int base, long[] row, int offset) {
+        for (int w = 1; w < wordsPerRow; w++) {
+            if (words[base + w] != row[offset + w]) return false;
+        }
+        return true;
+    }
+
+    private void grow(Segment seg) {
+        long stamp = seg.lock.writeLock();
+        try {
+            Table old = seg.table;
+            if (seg.size.get() <= old.maxFill) return; // Another thread already grew it
+            Table grown = new Table(Math.multiplyExact(old.mask + 1, 2), wordsPerRow, tagsPerWord);
+            for (int slot = 0; slot <= old.mask; slot++) {
+                int base = slot * wordsPerRow;
+                long first = old.words[base];
+                if (first == 0) continue;
+                int dst = (int) hashRow(old.words, base) & grown.mask;
+                while (grown.words[dst * wordsPerRow] != 0) {
+                    dst = (dst + 1) & grown.mask;
+                }
+                System.arraycopy(old.words, base, grown.words, dst * wordsPerRow, wordsPerRow);
+                if (tagsPerWord != 0) {
+                    int tag = readTag(old, slot);
+                    if (tag != 0) writeTag(grown, dst, tag);
+                }
+            }
+            seg.table = grown;
+        } finally {
+            seg.lock.unlockWrite(stamp);
+        }
+    }
+
+    private long hashRow(long[] row, int offset) {
+        long h = 0;
+        for (int w = 0; w < wordsPerRow; w++) {
+            h = HashCommon.mix(h ^ row[offset + w]);
+        }
+        return h;
+    }
+
+    long size() {
+        long total = 0;
+        for (Segment seg : segments) total += seg.size.get();
+        return total;
+    }
+
+    void clear() {
+        for (Segment seg : segments) {
+            long stamp = seg.lock.writeLock();
+            try {
+                seg.table = new Table(seg.table.mask + 1, wordsPerRow, tagsPerWord);
+                seg.size.set(0);
+            } finally {
+                seg.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Walks every stored row; not safe against concurrent writers
+     */
+    class RowCursor {
+        private int segment = 0;
+        private long[] words = segments[0].table.words;
+        private int base = -wordsPerRow;
+
+        /**
+         * Moves to the next stored row
+         * @return false once every segment has been visited
+         */
+        boolean advance() {
+            while (true) {
+                base += wordsPerRow;
+                if (base >= words.length) {
+                    if (++segment >= segments.length) return false;
+                    words = segments[segment].table.words;
+                    base = -wordsPerRow;
+                    continue;
+                }
+                if (words[base] != 0) return true;
+            }
+        }
+
+        long[] words() {
+            return words;
+        }
+
+        int offset() {
+            return base;
+        }
+    }
+}
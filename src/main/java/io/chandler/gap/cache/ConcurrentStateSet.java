@@ -0,0 +1,106 @@
+package io.chandler.gap.cache;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+
+/**
+ * Thread-safe Set of permutations for parallel exploration
+ *
+ * States are packed into fixed-width rows (see StatePacker) and stored in a
+ *   CAS-based open-addressing table, so workers never serialize on a shared monitor.
+ *
+ * Iteration and clear() are not safe against concurrent adds, which matches how
+ *   GroupExplorer uses its layer sets (written in parallel, then iterated).
+ */
+public class ConcurrentStateSet extends AbstractSet<State> implements LongSized {
+    public final int nElements;
+    private final StatePacker packer;
+    private final ConcurrentRowTable table;
+    private final MemorySettings retrievalSettings;
+    private final ThreadLocal<long[]> rowBuffer;
+
+    public ConcurrentStateSet(int nElements) {
+        this(nElements, MemorySettings.DEFAULT, 1 << 16);
+    }
+
+    public ConcurrentStateSet(int nElements, MemorySettings retrievalSettings, long expectedSize) {
+        this.nElements = nElements;
+        this.packer = new StatePacker(nElements);
+        this.table = new ConcurrentRowTable(packer.wordsPerRow, expectedSize);
+        this.retrievalSettings = retrievalSettings;
+        this.rowBuffer = ThreadLocal.withInitial(() -> new long[packer.wordsPerRow]);
+    }
+
+    public boolean add(int[] state) {
+        long[] row = rowBuffer.get();
+        packer.pack(state, row, 0);
+        return table.add(row, 0);
+    }
+
+    public boolean contains(int[] state) {
+        long[] row = rowBuffer.get();
+        packer.pack(state, row, 0);
+        return table.contains(row, 0);
+    }
+
+    @Override
+    public boolean add(State state) {
+        return add(state.state());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return contains(((State) o).state());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+
+    public long sizeLong() {
+        return table.size();
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, table.size());
+    }
+
+    @Override
+    public void clear() {
+        table.clear();
+    }
+
+    @Override
+    public Iterator<State> iterator() {
+        ConcurrentRowTable.RowCursor cursor = table.new RowCursor();
+        return new Iterator<State>() {
+            boolean ready = false;
+            boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) {
+                    hasNext = cursor.advance();
+                    ready = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public State next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = false;
+                int[] state = new int[nElements];
+                packer.unpack(cursor.words(), cursor.offset(), state);
+                return State.of(state, nElements, retrievalSettings);
+            }
+        };
+    }
+}
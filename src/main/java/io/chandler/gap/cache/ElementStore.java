@@ -0,0 +1,267 @@
+package io.chandler.gap.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.chandler.gap.GroupExplorer;
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.SortedRunFiles.RowStream;
+import io.chandler.gap.cache.SortedRunFiles.RunWriter;
+
+/**
+ * Read-only, memory-mapped set of a group's elements, kept on disk between runs
+ *
+ * Files are named after a hash of the canonical generator string (cycles rotated to
+ *   start at their smallest point, then sorted), so the same group written with its
+ *   generators in another order or rotation is found too.  The first open explores
+ *   the group and writes the file; later opens just map it.
+ *
+ * The elements are StatePacker rows in SortedRunFiles order, uncompressed, so the
+ *   dense id of a state is its position and id() is a binary search on the mapping.
+ *   Reads are safe from any number of threads.
+ */
+public class ElementStore implements Closeable {
+    private static final int MAGIC = 0x47584553; // GXES
+    private static final int VERSION = 1;
+    // Overridden with -Dgap.elementStore=<dir>
+    public static final Path DEFAULT_DIR = Paths.get(System.getProperty("gap.elementStore", "element-store"));
+
+    public final String generators;
+    public final int nElements;
+    private final StatePacker packer;
+    private final int words;
+    private final long size;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final int rowsPerSegment;
+
+    public static ElementStore open(String generators) throws IOException {
+        return open(DEFAULT_DIR, generators);
+    }
+
+    /**
+     * Maps the store for the group, exploring it first if there isn't one yet
+     */
+    public static ElementStore open(Path dir, String generators) throws IOException {
+        String canonical = canonicalGenerators(generators);
+        Path file = dir.resolve(hash(canonical) + ".gxes");
+        if (!Files.exists(file)) {
+            Files.createDirectories(dir);
+            build(file, canonical);
+        }
+        ElementStore store = new ElementStore(file);
+        if (!store.generators.equals(canonical)) {
+            store.close();
+            throw new IOException(file + " holds a different group: " + store.generators);
+        }
+        return store;
+    }
+
+    /**
+     * Generators with each cycle starting at its smallest point, cycles sorted within
+     *   a generator, and the generators sorted
+     *
+     * Overlapping cycles are applied one after another, so a generator with any keeps
+     *   its cycle order.  1-cycles are dropped, except that a highest point nothing
+     *   moves stays as a 1-cycle at the end, so the store keeps the caller's degree.
+     */
+    public static String canonicalGenerators(String generators) {
+        List<int[][]> ops = GroupExplorer.parseOperations(generators);
+        List<String> canonical = new ArrayList<>();
+        int degree = 0, moved = 0;
+        for (int[][] op : ops) {
+            List<int[]> cycles = new ArrayList<>();
+            for (int[] cycle : op) {
+                for (int e : cycle) degree = Math.max(degree, e);
+                if (cycle.length <= 1) continue;
+                for (int e : cycle) moved = Math.max(moved, e);
+                int min = 0;
+                for (int i = 1; i < cycle.length; i++) if (cycle[i] < cycle[min]) min = i;
+                int[] rotated = new int[cycle.length];
+                for (int i = 0; i < cycle.length; i++) rotated[i] = cycle[(min + i) % cycle.length];
+                cycles.add(rotated);
+            }
+            if (disjoint(cycles)) cycles.sort((a, b) -> Integer.compare(a[0], b[0]));
+            canonical.add(GroupExplorer.generatorsToString(new int[][][] { cycles.toArray(new int[0][]) }));
+        }
+        canonical.sort(null);
+        StringBuilder sb = new StringBuilder("[");
+        for (String op : canonical) {
+            if (op.equals("[]")) continue;
+            if (sb.length() > 1) sb.append(',');
+            sb.append(op, 1, op.length() - 1);
+        }
+        if (degree > moved) sb.append('(').append(degree).append(')');
+        return sb.append(']').toString();
+    }
+
+    private static boolean disjoint(List<int[]> cycles) {
+        Set<Integer> seen = new HashSet<>();
+        for (int[] cycle : cycles) {
+            for (int e : cycle) if (!seen.add(e)) return false;
+        }
+        return true;
+    }
+
+    private static String hash(String canonical) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 12; i++) sb.append(String.format("%02x", digest[i]));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Explores into sorted runs, then merges them into the store
+    private static void build(Path file, String canonical) throws IOException {
+        GroupExplorer explorer = new GroupExplorer(canonical, MemorySettings.FASTEST);
+        int nElements = explorer.nElements;
+        StatePacker packer = new StatePacker(nElements);
+        Path runDir = Files.createTempDirectory(file.getParent(), "build");
+        SortedRunFiles files = new SortedRunFiles(packer, runDir, 1 << 20);
+        RunWriter runs = files.new RunWriter("elements");
+        long[] row = new long[packer.wordsPerRow];
+
+        packer.pack(explorer.copyCurrentState(), row, 0);
+        runs.add(row, 0);
+        try {
+            explorer.exploreStates(false, (states, depth) -> {
+                for (int[] state : states) {
+                    packer.pack(state, row, 0);
+                    try {
+                        runs.add(row, 0);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        List<Path> runFiles = runs.finish();
+        byte[] gen = canonical.getBytes(StandardCharsets.UTF_8);
+        try (RowStream merged = files.merge(runFiles);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nElements);
+            out.writeLong(explorer.order());
+            out.writeInt(gen.length);
+            out.write(gen);
+            // Pad so rows start on an 8-byte boundary
+            for (int i = (4 * 4 + 8 + gen.length) % 8; i % 8 != 0; i++) out.writeByte(0);
+            while (merged.next()) {
+                for (long word : merged.row()) out.writeLong(word);
+            }
+        }
+        SortedRunFiles.delete(runFiles);
+        Files.deleteIfExists(runDir);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public ElementStore(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(4 * 4 + 8);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {}
+        header.flip();
+        if (header.getInt() != MAGIC) throw new IOException(file + " is not an element store");
+        int version = header.getInt();
+        if (version != VERSION) throw new IOException("Unsupported element store version " + version);
+        this.nElements = header.getInt();
+        this.size = header.getLong();
+        ByteBuffer gen = ByteBuffer.allocate(header.getInt());
+        while (gen.hasRemaining() && channel.read(gen, 4 * 4 + 8 + gen.position()) >= 0) {}
+        this.generators = new String(gen.array(), StandardCharsets.UTF_8);
+
+        this.packer = new StatePacker(nElements);
+        this.words = packer.wordsPerRow;
+        long dataStart = (4 * 4 + 8 + gen.capacity() + 7) / 8 * 8;
+        if (channel.size() != dataStart + size * words * 8) throw new IOException(file + " is truncated");
+
+        this.rowsPerSegment = (1 << 30) / (words * 8);
+        int nSegments = (int) ((size + rowsPerSegment - 1) / rowsPerSegment);
+        this.segments = new MappedByteBuffer[nSegments];
+        for (int s = 0; s < nSegments; s++) {
+            long first = (long) s * rowsPerSegment;
+            long rows = Math.min(rowsPerSegment, size - first);
+            segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + first * words * 8, rows * words * 8);
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    private long word(long id, int w) {
+        return segments[(int) (id / rowsPerSegment)].getLong((int) ((id % rowsPerSegment) * words + w) * 8);
+    }
+
+    /**
+     * Unpacks element id into out
+     */
+    public int[] state(long id, int[] out) {
+        long[] row = new long[words];
+        for (int w = 0; w < words; w++) row[w] = word(id, w);
+        packer.unpack(row, 0, out);
+        return out;
+    }
+
+    public int[] state(long id) {
+        return state(id, new int[nElements]);
+    }
+
+    /**
+     * Dense id of the state, 0 .. size()-1, or -1 if it isn't in the group
+     */
+    public long id(int[] state) {
+        long[] row = new long[words];
+        packer.pack(state, row, 0);
+        long lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            int c = 0;
+            for (int w = 0; w < words && c == 0; w++) c = Long.compareUnsigned(word(mid, w), row[w]);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    public boolean contains(int[] state) {
+        return id(state) >= 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "ElementStore " + generators + " (" + size + " elements)";
+    }
+}
@@ -0,0 +1,107 @@
+package io.chandler.gap.cache;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Factorial number system (full Lehmer rank) of a permutation in 128 bits
+ *
+ * Same value as StateFactorial's BigInteger encoding, but held in two longs:
+ *   34! < 2^128, so up to 34 elements fit.  The ranking itself is LehmerCodec's
+ *   (rankWide / unrankWide); this class adds the fixed-width keys.
+ *
+ * Keys are the rank in keyBytes big-endian bytes, so lexicographic (memcmp) order
+ *   is numeric order and every key in a database has the same width.  A positive
+ *   BigInteger.toByteArray() of matching length is the same bytes, which is what
+ *   lets LMDBCache migrate old databases by rewriting only the short/long keys.
+ */
+public final class FactorialCodec {
+    public static final int MAX_ELEMENTS = 34;
+    // Filled up front, so every thread sees one codec per size (StateRanked compares them by identity)
+    private static final FactorialCodec[] CODECS = new FactorialCodec[MAX_ELEMENTS + 1];
+    static {
+        for (int n = 1; n <= MAX_ELEMENTS; n++) CODECS[n] = new FactorialCodec(n);
+    }
+
+    public final int nElements;
+    public final int keyBytes;
+
+    public static FactorialCodec of(int nElements) {
+        if (nElements < 1 || nElements > MAX_ELEMENTS) {
+            throw new IllegalArgumentException("Factorial codec supports 1 to " + MAX_ELEMENTS + " elements, got " + nElements);
+        }
+        return CODECS[nElements];
+    }
+
+    public static boolean supports(int nElements) {
+        return nElements >= 1 && nElements <= MAX_ELEMENTS;
+    }
+
+    private FactorialCodec(int nElements) {
+        this.nElements = nElements;
+        BigInteger maxRank = BigInteger.ONE;
+        for (int i = 2; i <= nElements; i++) maxRank = maxRank.multiply(BigInteger.valueOf(i));
+        maxRank = maxRank.subtract(BigInteger.ONE);
+        this.keyBytes = Math.max(1, (maxRank.bitLength() + 7) / 8);
+    }
+
+    /**
+     * @param state 1-indexed permutation of nElements
+     * @return the high 64 bits of the rank; the low bits go to lowOut[0]
+     */
+    public long encode(int[] state, long[] lowOut) {
+        return LehmerCodec.rankWide(state, nElements, lowOut);
+    }
+
+    /**
+     * Inverse of encode; writes the permutation into out[0 .. nElements)
+     */
+    public void decode(long hi, long lo, int[] out) {
+        LehmerCodec.unrankWide(hi, lo, nElements, out);
+    }
+
+    public int[] decode(long hi, long lo) {
+        int[] out = new int[nElements];
+        decode(hi, lo, out);
+        return out;
+    }
+
+    /**
+     * Writes the rank as keyBytes big-endian bytes at the buffer's position
+     */
+    public void writeKey(long hi, long lo, ByteBuffer key) {
+        for (int k = keyBytes - 1; k >= 0; k--) {
+            long word = k < 8 ? lo >>> (8 * k) : hi >>> (8 * (k - 8));
+            key.put((byte) word);
+        }
+    }
+
+    public void writeKey(int[] state, ByteBuffer key) {
+        long[] lo = new long[1];
+        long hi = encode(state, lo);
+        writeKey(hi, lo[0], key);
+    }
+
+    /**
+     * Reads a big-endian rank of any width from the buffer's remaining bytes
+     *   (so legacy variable-length BigInteger keys decode too)
+     * @return the high 64 bits of the rank; the low bits go to lowOut[0]
+     */
+    public long readKey(ByteBuffer key, long[] lowOut) {
+        long hi = 0, lo = 0;
+        while (key.hasRemaining()) {
+            long b = key.get() & 0xFF;
+            if ((hi >>> 56) != 0) throw new IllegalArgumentException("Key exceeds 128 bits");
+            hi = (hi << 8) | (lo >>> 56);
+            lo = (lo << 8) | b;
+        }
+        lowOut[0] = lo;
+        return hi;
+    }
+
+    public int[] readKey(ByteBuffer key) {
+        long[] lo = new long[1];
+        long hi = readKey(key, lo);
+        return decode(hi, lo[0]);
+    }
+}
@@ -0,0 +1,335 @@
+package io.chandler.gap.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Compact file of a group's elements
+ *
+ *   header   magic, version, encoding, nElements, statesPerBlock, generators (UTF-8)
+ *   blocks   fixed-width records, lz4 compressed one block at a time
+ *   index    per block: file offset, compressed length, state count
+ *   footer   index offset, block count, total states, magic
+ *
+ * Records are fixed-width factorial ranks when FactorialCodec covers the degree
+ *   (10 bytes for M24, against 96 for serialize()), otherwise StatePacker rows
+ *   (4/5/8.. bits per point).  The index gives random access by element number.
+ *
+ * The reader maps the file and decompresses straight out of the mapping; states are
+ *   decoded only as they're asked for.
+ */
+public class GroupArchive {
+    private static final int MAGIC = 0x47584152; // GXAR
+    private static final int VERSION = 1;
+    private static final int FOOTER_BYTES = 8 + 4 + 8 + 4;
+    public static final int DEFAULT_STATES_PER_BLOCK = 1 << 16;
+
+    public static enum Encoding {
+        RANKS,
+        PACKED,
+    }
+
+    public static Encoding defaultEncoding(int nElements) {
+        return FactorialCodec.supports(nElements) ? Encoding.RANKS : Encoding.PACKED;
+    }
+
+    private static int recordBytes(Encoding encoding, int nElements) {
+        if (encoding == Encoding.RANKS) return FactorialCodec.of(nElements).keyBytes;
+        return new StatePacker(nElements).wordsPerRow * 8;
+    }
+
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final Encoding encoding;
+        private final int nElements, statesPerBlock, recordBytes;
+        private final FactorialCodec codec;
+        private final StatePacker packer;
+        private final long[] row;
+        private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+
+        private final ByteBuffer block, compressed;
+        private int inBlock = 0;
+        private long count = 0;
+        private final LongArrayList blockOffsets = new LongArrayList();
+        private final List<int[]> blockSizes = new ArrayList<>(); // compressed length, states
+
+        public Writer(Path file, String generators, int nElements) throws IOException {
+            this(file, generators, nElements, defaultEncoding(nElements), DEFAULT_STATES_PER_BLOCK);
+        }
+
+        public Writer(Path file, String generators, int nElements, Encoding encoding, int statesPerBlock) throws IOException {
+            if (encoding == Encoding.RANKS && !FactorialCodec.supports(nElements)) {
+                throw new IllegalArgumentException("Ranks only cover up to " + FactorialCodec.MAX_ELEMENTS + " elements");
+            }
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.encoding = encoding;
+            this.nElements = nElements;
+            this.statesPerBlock = statesPerBlock;
+            this.recordBytes = recordBytes(encoding, nElements);
+            this.codec = encoding == Encoding.RANKS ? FactorialCodec.of(nElements) : null;
+            this.packer = encoding == Encoding.PACKED ? new StatePacker(nElements) : null;
+            this.row = packer == null ? null : new long[packer.wordsPerRow];
+            this.block = ByteBuffer.allocateDirect(statesPerBlock * recordBytes);
+            this.compressed = ByteBuffer.allocateDirect(compressor.maxCompressedLength(block.capacity()));
+
+            byte[] gen = generators.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(4 * 5 + 1 + gen.length);
+            header.putInt(MAGIC).putInt(VERSION).put((byte) encoding.ordinal())
+                .putInt(nElements).putInt(statesPerBlock).putInt(gen.length).put(gen).flip();
+            writeFully(header);
+        }
+
+        public void add(int[] state) throws IOException {
+            if (encoding == Encoding.RANKS) {
+                codec.writeKey(state, block);
+            } else {
+                packer.pack(state, row, 0);
+                for (long word : row) block.putLong(word);
+            }
+            count++;
+            if (++inBlock == statesPerBlock) writeBlock();
+        }
+
+        public void add(State state) throws IOException {
+            if (encoding == Encoding.RANKS && state instanceof State.StateRanked) {
+                State.StateRanked ranked = (State.StateRanked) state;
+                codec.writeKey(ranked.hi, ranked.lo, block);
+                count++;
+                if (++inBlock == statesPerBlock) writeBlock();
+            } else {
+                add(state.state());
+            }
+        }
+
+        public long size() {
+            return count;
+        }
+
+        private void writeBlock() throws IOException {
+            if (inBlock == 0) return;
+            block.flip();
+            compressed.clear();
+            int length = compressor.compress(block, 0, block.limit(), compressed, 0, compressed.capacity());
+            compressed.limit(length);
+            blockOffsets.add(channel.position());
+            blockSizes.add(new int[] { length, inBlock });
+            writeFully(compressed);
+            block.clear();
+            inBlock = 0;
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+
+        @Override
+        public void close() throws IOException {
+            writeBlock();
+            long indexOffset = channel.position();
+            ByteBuffer index = ByteBuffer.allocate(blockOffsets.size() * 16 + FOOTER_BYTES);
+            for (int i = 0; i < blockOffsets.size(); i++) {
+                index.putLong(blockOffsets.getLong(i)).putInt(blockSizes.get(i)[0]).putInt(blockSizes.get(i)[1]);
+            }
+            index.putLong(indexOffset).putInt(blockOffsets.size()).putLong(count).putInt(MAGIC).flip();
+            writeFully(index);
+            channel.close();
+        }
+    }
+
+    /**
+     * Read-only view of an archive; safe to share between threads
+     */
+    public static class Reader implements Closeable, Iterable<int[]> {
+        public final Encoding encoding;
+        public final int nElements;
+        public final String generators;
+        private final int statesPerBlock, recordBytes;
+        private final long count;
+        private final FactorialCodec codec;
+        private final StatePacker packer;
+
+        private final FileChannel channel;
+        // Blocks are grouped into mappings of at most MAX_SEGMENT bytes
+        private static final long MAX_SEGMENT = 1L << 30;
+        private final MappedByteBuffer[] segments;
+        private final int[] blockSegment, blockPosition, blockLength, blockStates;
+        private final ThreadLocal<ByteBuffer> decompressed;
+        private final ThreadLocal<int[]> decompressedBlock = ThreadLocal.withInitial(() -> new int[] { -1 });
+        private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+        public Reader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            long fileSize = channel.size();
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, 1 << 20));
+            if (header.getInt() != MAGIC) throw new IOException(file + " is not a group archive");
+            int version = header.getInt();
+            if (version != VERSION) throw new IOException("Unsupported archive version " + version);
+            this.encoding = Encoding.values()[header.get()];
+            this.nElements = header.getInt();
+            this.statesPerBlock = header.getInt();
+            byte[] gen = new byte[header.getInt()];
+            if (gen.length > header.remaining()) {
+                header = channel.map(FileChannel.MapMode.READ_ONLY, 0, header.position() + gen.length);
+                header.position(4 * 5 + 1);
+            }
+            header.get(gen);
+            this.generators = new String(gen, StandardCharsets.UTF_8);
+            this.recordBytes = recordBytes(encoding, nElements);
+            this.codec = encoding == Encoding.RANKS ? FactorialCodec.of(nElements) : null;
+            this.packer = encoding == Encoding.PACKED ? new StatePacker(nElements) : null;
+
+            ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, fileSize - FOOTER_BYTES, FOOTER_BYTES);
+            long indexOffset = footer.getLong();
+            int nBlocks = footer.getInt();
+            this.count = footer.getLong();
+            if (footer.getInt() != MAGIC) throw new IOException(file + " is truncated");
+
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, nBlocks * 16L);
+            long[] offsets = new long[nBlocks];
+            blockLength = new int[nBlocks];
+            blockStates = new int[nBlocks];
+            for (int b = 0; b < nBlocks; b++) {
+                offsets[b] = index.getLong();
+                blockLength[b] = index.getInt();
+                blockStates[b] = index.getInt();
+            }
+
+            blockSegment = new int[nBlocks];
+            blockPosition = new int[nBlocks];
+            List<MappedByteBuffer> mapped = new ArrayList<>();
+            for (int b = 0; b < nBlocks; ) {
+                long start = offsets[b];
+                int first = b;
+                while (b < nBlocks && offsets[b] + blockLength[b] - start <= MAX_SEGMENT) b++;
+                if (b == first) b++; // A single block bigger than a segment still gets its own
+                long end = offsets[b - 1] + blockLength[b - 1];
+                for (int i = first; i < b; i++) {
+                    blockSegment[i] = mapped.size();
+                    blockPosition[i] = (int) (offsets[i] - start);
+                }
+                mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+            }
+            this.segments = mapped.toArray(new MappedByteBuffer[0]);
+            this.decompressed = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(statesPerBlock * recordBytes));
+        }
+
+        public long size() {
+            return count;
+        }
+
+        // This thread's copy of block b, decompressed
+        private ByteBuffer block(int b) {
+            ByteBuffer out = decompressed.get();
+            int[] current = decompressedBlock.get();
+            if (current[0] != b) {
+                decompressor.decompress(segments[blockSegment[b]], blockPosition[b], out, 0, blockStates[b] * recordBytes);
+                current[0] = b;
+            }
+            return out;
+        }
+
+        private long readRank(ByteBuffer block, int position, long[] lowOut) {
+            long hi = 0, lo = 0;
+            for (int k = 0; k < recordBytes; k++) {
+                hi = (hi << 8) | (lo >>> 56);
+                lo = (lo << 8) | (block.get(position + k) & 0xFF);
+            }
+            lowOut[0] = lo;
+            return hi;
+        }
+
+        private int[] decode(ByteBuffer block, int record) {
+            int position = record * recordBytes;
+            if (encoding == Encoding.RANKS) {
+                long[] lo = new long[1];
+                long hi = readRank(block, position, lo);
+                return codec.decode(hi, lo[0]);
+            }
+            long[] row = new long[packer.wordsPerRow];
+            for (int w = 0; w < row.length; w++) row[w] = block.getLong(position + 8 * w);
+            int[] state = new int[nElements];
+            packer.unpack(row, 0, state);
+            return state;
+        }
+
+        private State decodeState(ByteBuffer block, int record, MemorySettings mem) {
+            if (encoding == Encoding.RANKS && mem == MemorySettings.COMPACT) {
+                // Already ranked, so no need to decode and re-encode
+                long[] lo = new long[1];
+                long hi = readRank(block, record * recordBytes, lo);
+                return new State.StateRanked(hi, lo[0], codec);
+            }
+            return State.of(decode(block, record), nElements, mem);
+        }
+
+        /**
+         * The index-th state written
+         */
+        public int[] get(long index) {
+            if (index < 0 || index >= count) throw new IndexOutOfBoundsException(Long.toString(index));
+            return decode(block((int) (index / statesPerBlock)), (int) (index % statesPerBlock));
+        }
+
+        public State getState(long index, MemorySettings mem) {
+            if (index < 0 || index >= count) throw new IndexOutOfBoundsException(Long.toString(index));
+            return decodeState(block((int) (index / statesPerBlock)), (int) (index % statesPerBlock), mem);
+        }
+
+        @Override
+        public Iterator<int[]> iterator() {
+            return new Iterator<int[]>() {
+                long next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < count;
+                }
+
+                @Override
+                public int[] next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return get(next++);
+                }
+            };
+        }
+
+        public Iterable<State> states(MemorySettings mem) {
+            return () -> new Iterator<State>() {
+                long next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < count;
+                }
+
+                @Override
+                public State next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return getState(next++, mem);
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
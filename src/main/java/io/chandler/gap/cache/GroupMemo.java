@@ -0,0 +1,180 @@
+package io.chandler.gap.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Persistent table from a canonical generator string to its group order and
+ *   structure description, so repeated searches only pay for new candidates
+ *
+ * Each table is an append-only text file, one "key TAB order TAB description" line
+ *   per record (either field may be empty), and a later record for a key fills in
+ *   whatever the earlier ones left out.  Appends hold an exclusive file lock and
+ *   misses re-read whatever other processes have appended since, so any number of
+ *   runs can share a table.  Thread safe, but open a file only once per process
+ *   (file locks are held per JVM).
+ *
+ * What the order means is up to the caller (FullSelectionSearch stores its orbit
+ *   check results, -1 and -2 included), so give tables for different checkers and
+ *   solids different names.
+ */
+public class GroupMemo implements Closeable {
+    private static final String HEADER = "# GroupMemo 1\n";
+    // Overridden with -Dgap.groupMemo=<dir>
+    public static final Path DEFAULT_DIR = Paths.get(System.getProperty("gap.groupMemo", "group-memo"));
+
+    private static final class Entry {
+        Integer order;
+        String description;
+    }
+
+    public final Path file;
+    private final FileChannel channel;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private long readOffset = 0;
+    private byte[] pending = new byte[0]; // Bytes of a line that hasn't been read in full
+
+    public static GroupMemo open(String name) throws IOException {
+        return open(DEFAULT_DIR, name);
+    }
+
+    public static GroupMemo open(Path dir, String name) throws IOException {
+        Files.createDirectories(dir);
+        return new GroupMemo(dir.resolve(name + ".memo"));
+    }
+
+    public GroupMemo(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock = channel.lock();
+        try {
+            if (channel.size() == 0) {
+                channel.write(ByteBuffer.wrap(HEADER.getBytes(StandardCharsets.UTF_8)), 0);
+            }
+            readTail();
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * @return the stored order, or null if there isn't one
+     */
+    public synchronized Integer order(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.order == null) entry = refresh(key);
+        return entry == null ? null : entry.order;
+    }
+
+    /**
+     * @return the stored structure description, or null if there isn't one
+     */
+    public synchronized String description(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.description == null) entry = refresh(key);
+        return entry == null ? null : entry.description;
+    }
+
+    public synchronized void putOrder(String key, int order) {
+        append(key, order, null);
+    }
+
+    public synchronized void putDescription(String key, String description) {
+        append(key, null, description);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Another process may have added it since
+    private Entry refresh(String key) {
+        try {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+            try {
+                readTail();
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read group memo " + file, e);
+        }
+        return entries.get(key);
+    }
+
+    private void append(String key, Integer order, String description) {
+        if (key.indexOf('\t') >= 0 || key.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Memo keys can't contain tabs or newlines: " + key);
+        }
+        String desc = description == null ? "" : description.replace('\t', ' ').replace('\n', ' ');
+        byte[] line = (key + "\t" + (order == null ? "" : order) + "\t" + desc + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            FileLock lock = channel.lock();
+            try {
+                ByteBuffer buf = ByteBuffer.wrap(line);
+                long position = channel.size();
+                while (buf.hasRemaining()) position += channel.write(buf, position);
+                readTail();
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write group memo " + file, e);
+        }
+    }
+
+    // Reads every complete line after readOffset; callers hold a file lock
+    private void readTail() throws IOException {
+        long size = channel.size();
+        if (size <= readOffset) return;
+        ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(size - readOffset));
+        while (buf.hasRemaining() && channel.read(buf, readOffset + buf.position()) >= 0) {}
+        readOffset = size;
+
+        byte[] bytes = new byte[pending.length + buf.position()];
+        System.arraycopy(pending, 0, bytes, 0, pending.length);
+        System.arraycopy(buf.array(), 0, bytes, pending.length, buf.position());
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') continue;
+            parse(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+            start = i + 1;
+        }
+        pending = Arrays.copyOfRange(bytes, start, bytes.length);
+    }
+
+    private void parse(String line) {
+        if (line.isEmpty() || line.startsWith("#")) return;
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 3) return; // Skip anything malformed rather than lose the table
+        Integer order;
+        try {
+            order = fields[1].isEmpty() ? null : Integer.valueOf(fields[1]);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        Entry entry = entries.computeIfAbsent(fields[0], k -> new Entry());
+        if (order != null) entry.order = order;
+        if (!fields[2].isEmpty()) entry.description = fields[2];
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "GroupMemo " + file + " (" + size() + " entries)";
+    }
+}
@@ -2,181 +2,477 @@ package io.chandler.gap.cache;
 
 import org.lmdbjava.*;
 
-import io.chandler.gap.GroupExplorer;
 import io.chandler.gap.GroupExplorer.MemorySettings;
-import io.chandler.gap.cache.State.StateFactorial;
+import io.chandler.gap.cache.State.StateRanked;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.AbstractSet;
-import java.util.ConcurrentModificationException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-
-public class LMDBCache extends AbstractSet<State> implements Closeable {
-    private static final int KEY_SIZE = 11; // TODO configurable
-    
-    private final ReadWriteLock batchLock = new ReentrantReadWriteLock();
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+/**
+ * Set of states stored in an LMDB database, safe to share between threads
+ *
+ * Writes go to an in-memory overlay split into lock stripes, so threads adding
+ *   different states rarely contend.  Once operationsTillFlush writes are pending,
+ *   the overlay is merged and written in key order in one write transaction.
+ *
+ * Lookups hold the flush lock shared and borrow a read transaction for one get or
+ *   one sorted sweep (the environment is opened with MDB_NOTLS, so any thread can
+ *   use it).  Returned transactions are reset, so an idle one doesn't pin old pages,
+ *   and only a few are kept so the environment's reader slots aren't used up.  A
+ *   flush takes the lock exclusively, so a state is never between the overlay and
+ *   the database while anyone is looking for it.
+ *
+ * Iterators read a snapshot taken when they're created (after a flush); later writes
+ *   aren't seen, but are allowed.
+ */
+public class LMDBCache extends AbstractSet<State> implements Closeable, LongSized {
+    // Keys are the fixed-width big-endian factorial rank of the state (see FactorialCodec)
+    private final FactorialCodec codec;
+    private final int keySize;
+
+    private static final int STRIPES = 64;
+    // Sorted lookups smaller than this aren't split between threads
+    private static final int PARALLEL_RUN = 1 << 14;
+
+    // Shared by lookups and overlay writes, exclusive for anything that writes the db
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
 
     private final MemorySettings retrievalSettings;
     private final int nElements;
 
-    private final ThreadLocal<TransactionWrapper> txnThreadLocal = new ThreadLocal<>();
-
     private final Env<ByteBuffer> env;
-    private Dbi<ByteBuffer> db;
+    private final Path envPath;
+    private volatile Dbi<ByteBuffer> db;
     private final int operationsTillFlush;
-    private final Map<State, Boolean> batchValues;
+    // Pending writes; true = add, false = remove.  Each stripe is guarded by itself
+    private final Map<State, Boolean>[] overlay;
+    private final AtomicInteger pending = new AtomicInteger(0);
     private final AtomicLong size = new AtomicLong(0);
     private final String dbname;
     private boolean debug = false;
 
+    // Reset read transactions waiting to be renewed
+    private static final int MAX_IDLE_READERS = 16;
+    private final ArrayBlockingQueue<Txn<ByteBuffer>> idleReaders = new ArrayBlockingQueue<>(MAX_IDLE_READERS);
+
+    @SuppressWarnings("unchecked")
     public LMDBCache(LMDBManager manager, String dbName, int nElements, MemorySettings retrievalSettings, int operationsTillFlush) {
         this.env = manager.getEnv();
+        this.envPath = manager.getPath();
         this.db = env.openDbi(dbName, DbiFlags.MDB_CREATE);
         this.retrievalSettings = retrievalSettings;
         this.nElements = nElements;
-        this.keyBuffer_tl = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(KEY_SIZE));
+        this.codec = FactorialCodec.of(nElements);
+        this.keySize = codec.keyBytes;
+        this.keyBuffer_tl = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(keySize));
         this.dbname = dbName;
+        checkKeyFormat();
         this.size.set(initialSize());
         this.operationsTillFlush = operationsTillFlush;
-        this.batchValues = new HashMap<>(operationsTillFlush);
+        this.overlay = (Map<State, Boolean>[]) new Map<?, ?>[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            overlay[i] = new HashMap<>(Math.max(16, operationsTillFlush / STRIPES));
+        }
     }
 
     public void debug(boolean debug) {
         this.debug = debug;
     }
 
-    @Override
-    public boolean add(State state) {
-        boolean added;
-        int batchSize;
-    
-        TransactionWrapper wrapper = getOrCreateTransaction(true);
-        try {
-            Boolean batchResult = batchValues.get(state);
-    
-            if (batchResult == null) { // Not in batch cache
-                boolean dbContains = db_contains_nolock(state, wrapper.txn);
-                if (!dbContains) { // Not in DB, add it
-                    batchValues.put(state, true);
-                    added = true;
-                } else { // Already in DB, do nothing
-                    added = false;
-                }
-            } else if (!batchResult) { // Previously removed in cache, now re-adding
-                batchValues.put(state, true);
-                added = true;
-            } else { // Already added in cache
-                added = false;
-            }
-    
-            if (added) {
-                size.incrementAndGet();
-            }
-            batchSize = batchValues.size();
-        } finally {
-            releaseTransaction(true);
-        }
-    
-        if (batchSize >= operationsTillFlush) {
-            flushBatch();
+    public Path envPath() {
+        return envPath;
+    }
+
+    public String dbName() {
+        return dbname;
+    }
+
+    /**
+     * Writes pending adds and removes to the database
+     */
+    public void flush() {
+        flushBatch();
+    }
+
+    private Map<State, Boolean> stripe(State state) {
+        return overlay[state.hashCode() & (STRIPES - 1)];
+    }
+
+    private static Boolean pendingValue(Map<State, Boolean> stripe, State state) {
+        synchronized (stripe) {
+            return stripe.get(state);
         }
-    
-        return added;
     }
 
+    @Override
+    public boolean add(State state) {
+        return write(state, true);
+    }
 
     @Override
     public boolean remove(Object o) {
         if (!(o instanceof State)) {
             return false;
         }
-        State state = (State) o;
-        return remove(state);
+        return write((State) o, false);
     }
 
     public boolean remove(State state) {
-        boolean removed;
-        int batchSize;
+        return write(state, false);
+    }
 
-        TransactionWrapper wrapper = getOrCreateTransaction(true);
+    // Records an add or remove in the overlay; true if it changed the set
+    private boolean write(State state, boolean add) {
+        boolean changed;
+        Map<State, Boolean> stripe = stripe(state);
+        flushLock.readLock().lock();
         try {
-            Boolean batchResult = batchValues.get(state);
-
-            if (batchResult == null) { // Does not exist in cache
-                boolean dbContains = db_contains_nolock(state, wrapper.txn);
-                if (dbContains) { // It's in the db; remove it
-                    batchValues.put(state, false);
-                    removed = true;
-                } else { // It's not in the db; do nothing
-                    removed = false;
+            Boolean pendingValue = pendingValue(stripe, state);
+            // The db can't change while the flush lock is held, so it's read outside the stripe lock
+            boolean dbContains = pendingValue == null && db_contains(state);
+            synchronized (stripe) {
+                Boolean current = stripe.get(state);
+                boolean present = current != null ? current : dbContains;
+                changed = present != add;
+                if (changed) {
+                    if (stripe.put(state, add) == null) pending.incrementAndGet();
+                    if (add) size.incrementAndGet();
+                    else size.decrementAndGet();
                 }
-            } else if (batchResult == true) { // Was added in cache
-                batchValues.put(state, false);
-                removed = true;
-            } else { // Was already removed in cache
-                removed = false;
-            }
-
-            batchSize = batchValues.size();
-
-            if (removed) {
-                size.decrementAndGet();
             }
         } finally {
-            releaseTransaction(true);
+            flushLock.readLock().unlock();
         }
 
-        if (batchSize >= operationsTillFlush) {
+        if (pending.get() >= operationsTillFlush) {
             flushBatch();
         }
-
-        return removed;
+        return changed;
     }
 
     @Override
     public void clear() {
-        TransactionWrapper wrapper = getOrCreateTransaction(true, true);
-        try {
-            batchValues.clear();
-            db.drop(wrapper.txn, false); // Drop the database but do not delete it
-            wrapper.txn.commit(); // Commit the transaction
+        flushLock.writeLock().lock();
+        try (Txn<ByteBuffer> txn = env.txnWrite()) {
+            clearOverlay();
+            db.drop(txn, false); // Drop the database but do not delete it
+            txn.commit();
             db = env.openDbi(dbname, DbiFlags.MDB_CREATE); // Recreate the database
             size.set(0);
         } finally {
-            releaseTransaction(true);
+            flushLock.writeLock().unlock();
         }
     }
 
     private final ThreadLocal<ByteBuffer> keyBuffer_tl;    
 
+    /**
+     * Copies the flushed database into a new environment in dir, so a checkpoint
+     *   doesn't depend on the live database, which later layers keep changing
+     */
+    public void snapshot(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        flushLock.writeLock().lock();
+        try {
+            flushBatch();
+            LMDBManager target = new LMDBManager(dir, mapGigaBytes());
+            try {
+                copy(env, db, target.getEnv(), target.getEnv().openDbi(dbname, DbiFlags.MDB_CREATE), operationsTillFlush);
+            } finally {
+                target.close();
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the contents with a snapshot written by snapshot()
+     */
+    public void restore(Path dir) {
+        flushLock.writeLock().lock();
+        try {
+            clear();
+            LMDBManager source = new LMDBManager(dir, mapGigaBytes());
+            try {
+                Dbi<ByteBuffer> from = source.getEnv().openDbi(dbname, DbiFlags.MDB_CREATE);
+                copy(source.getEnv(), from, env, db, operationsTillFlush);
+            } finally {
+                source.close();
+            }
+            size.set(initialSize());
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    public static void deleteSnapshot(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    private int mapGigaBytes() {
+        long gb = 1024L * 1024L * 1024L;
+        return (int) ((env.info().mapSize + gb - 1) / gb);
+    }
+
+    // Keys come out of the cursor in order, so they're appended, batch writes at a time
+    private static void copy(Env<ByteBuffer> fromEnv, Dbi<ByteBuffer> from, Env<ByteBuffer> toEnv, Dbi<ByteBuffer> to, int batch) {
+        ByteBuffer value = ByteBuffer.allocateDirect(0);
+        try (Txn<ByteBuffer> read = fromEnv.txnRead(); Cursor<ByteBuffer> cursor = from.openCursor(read)) {
+            boolean hasNext = cursor.first();
+            while (hasNext) {
+                try (Txn<ByteBuffer> write = toEnv.txnWrite()) {
+                    try (Cursor<ByteBuffer> out = to.openCursor(write)) {
+                        for (int n = 0; n < batch && hasNext; n++) {
+                            out.put(cursor.key(), value, PutFlags.MDB_APPEND);
+                            hasNext = cursor.next();
+                        }
+                    }
+                    write.commit();
+                }
+            }
+        }
+    }
+
     private void flushBatch() {
-        ByteBuffer keyBuffer = ByteBuffer.allocateDirect(KEY_SIZE);
+        flushLock.writeLock().lock();
+        try {
+            if (pending.get() == 0) return;
+            try (Txn<ByteBuffer> txn = env.txnWrite()) {
+                writeOverlay(txn);
+                txn.commit();
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+        if (debug) System.out.println("[DEBUG] Flushed batch - new size: " + size());
+    }
+
+    // Merges the stripes and writes them in key order; needs the flush lock exclusively
+    private void writeOverlay(Txn<ByteBuffer> txn) {
+        List<State> states = new ArrayList<>(pending.get());
+        List<Boolean> values = new ArrayList<>(pending.get());
+        for (Map<State, Boolean> stripe : overlay) {
+            for (Map.Entry<State, Boolean> entry : stripe.entrySet()) {
+                states.add(entry.getKey());
+                values.add(entry.getValue());
+            }
+        }
+        SortedKeys keys = new SortedKeys(states, states.size());
+        ByteBuffer keyBuffer = ByteBuffer.allocateDirect(keySize);
         ByteBuffer valueBuffer = ByteBuffer.allocateDirect(0);
-        try (Txn<ByteBuffer> txn = env.txnWrite()) {
-            batchLock.writeLock().lock();
-            for (Entry<State, Boolean> entry : batchValues.entrySet()) {
-                State state = entry.getKey();
-                boolean add = entry.getValue();
-                byte[] key = cvt(state);
+        for (int i : keys.order) {
+            keyBuffer.clear();
+            codec.writeKey(keys.hi[i], keys.lo[i], keyBuffer);
+            keyBuffer.flip();
+            if (values.get(i)) db.put(txn, keyBuffer, valueBuffer);
+            else db.delete(txn, keyBuffer);
+        }
+        clearOverlay();
+    }
+
+    private void clearOverlay() {
+        for (Map<State, Boolean> stripe : overlay) stripe.clear();
+        pending.set(0);
+    }
+
+    /**
+     * Membership for a whole batch: present[i] is set when states.get(i) is in the cache
+     *
+     * The keys are sorted and probed by one cursor sweeping forward through the
+     *   database, so each page is visited at most once per batch rather than once
+     *   per random get.  With parallel, large batches are split into key ranges that
+     *   are swept by separate threads.
+     */
+    public boolean[] containsSorted(List<? extends State> states, boolean parallel) {
+        int n = states.size();
+        boolean[] present = new boolean[n];
+        SortedKeys keys = new SortedKeys(states, n);
+        int runs = parallel ? Math.max(1, n / PARALLEL_RUN) : 1;
+        IntStream range = IntStream.range(0, runs);
+        (runs > 1 ? range.parallel() : range).forEach(r -> {
+            containsSortedRun(states, keys, (int) ((long) n * r / runs), (int) ((long) n * (r + 1) / runs), present);
+        });
+        return present;
+    }
+
+    public boolean[] containsSorted(List<? extends State> states) {
+        return containsSorted(states, false);
+    }
+
+    private void containsSortedRun(List<? extends State> states, SortedKeys keys, int from, int to, boolean[] present) {
+        flushLock.readLock().lock();
+        Txn<ByteBuffer> txn = acquireReader();
+        try (Cursor<ByteBuffer> cursor = db.openCursor(txn)) {
+            ByteBuffer keyBuffer = keyBuffer_tl.get();
+            long[] lo = new long[1];
+            boolean positioned = false, exhausted = false;
+            long curHi = 0, curLo = 0;
+            for (int k = from; k < to; k++) {
+                int i = keys.order[k];
+                State state = states.get(i);
+                Boolean pendingValue = pendingValue(stripe(state), state);
+                if (pendingValue != null) {
+                    present[i] = pendingValue;
+                    continue;
+                }
+                if (exhausted) continue;
+                long hi = keys.hi[i];
+                if (positioned && compareKeys(curHi, curLo, hi, keys.lo[i]) >= 0) {
+                    // Cursor is already at or past this key
+                    present[i] = curHi == hi && curLo == keys.lo[i];
+                    continue;
+                }
                 keyBuffer.clear();
-                keyBuffer.put(key).flip();
-                if (add) db.put(txn, keyBuffer, valueBuffer);
-                else db.delete(txn, keyBuffer);
+                codec.writeKey(hi, keys.lo[i], keyBuffer);
+                keyBuffer.flip();
+                if (!cursor.get(keyBuffer, GetOp.MDB_SET_RANGE)) {
+                    exhausted = true;
+                    continue;
+                }
+                positioned = true;
+                curHi = codec.readKey(cursor.key(), lo);
+                curLo = lo[0];
+                present[i] = curHi == hi && curLo == keys.lo[i];
+            }
+        } finally {
+            releaseReader(txn);
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a whole batch: added[i] is set when states.get(i) wasn't already in the cache
+     *   (a state repeated within the batch is added at its first index only)
+     *
+     * Pending single writes are merged in, then the batch is written in key order
+     *   through one cursor in one write transaction.  MDB_NOOVERWRITE doubles as the
+     *   membership check, and keys past the last key in the database are appended
+     *   with MDB_APPEND.
+     */
+    public boolean[] addSorted(List<? extends State> states) {
+        boolean[] added = new boolean[states.size()];
+        bulkAdd(states, added);
+        return added;
+    }
+
+    /**
+     * Bulk-ingests the collection in sorted runs of operationsTillFlush states,
+     *   e.g. a whole BFS layer at once
+     */
+    @Override
+    public boolean addAll(Collection<? extends State> states) {
+        long added = 0;
+        List<State> run = new ArrayList<>(Math.min(states.size(), operationsTillFlush));
+        for (State state : states) {
+            run.add(state);
+            if (run.size() >= operationsTillFlush) {
+                added += bulkAdd(run, null);
+                run.clear();
+            }
+        }
+        if (!run.isEmpty()) added += bulkAdd(run, null);
+        return added > 0;
+    }
+
+    private int bulkAdd(List<? extends State> states, boolean[] addedOut) {
+        int n = states.size();
+        if (n == 0) return 0;
+        SortedKeys keys = new SortedKeys(states, n);
+
+        ByteBuffer keyBuffer = ByteBuffer.allocateDirect(keySize);
+        ByteBuffer valueBuffer = ByteBuffer.allocateDirect(0);
+        long[] lo = new long[1];
+        int added = 0;
+        flushLock.writeLock().lock();
+        try (Txn<ByteBuffer> txn = env.txnWrite()) {
+            if (pending.get() > 0) writeOverlay(txn);
+            try (Cursor<ByteBuffer> cursor = db.openCursor(txn)) {
+                boolean append = !cursor.last();
+                long lastHi = append ? 0 : codec.readKey(cursor.key(), lo);
+                long lastLo = lo[0];
+                int prev = -1;
+                for (int k = 0; k < n; k++) {
+                    int i = keys.order[k];
+                    long hi = keys.hi[i];
+                    if (prev >= 0 && keys.hi[prev] == hi && keys.lo[prev] == keys.lo[i]) continue;
+                    prev = i;
+                    if (!append && compareKeys(hi, keys.lo[i], lastHi, lastLo) > 0) append = true;
+
+                    keyBuffer.clear();
+                    codec.writeKey(hi, keys.lo[i], keyBuffer);
+                    keyBuffer.flip();
+                    boolean put = append
+                            ? cursor.put(keyBuffer, valueBuffer, PutFlags.MDB_APPEND)
+                            : cursor.put(keyBuffer, valueBuffer, PutFlags.MDB_NOOVERWRITE);
+                    if (put) {
+                        added++;
+                        if (addedOut != null) addedOut[i] = true;
+                    }
+                }
             }
-            batchValues.clear();
-            batchLock.writeLock().unlock();
             txn.commit();
+            size.addAndGet(added);
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+        if (debug) System.out.println("[DEBUG] Bulk added " + added + " / " + n + " - new size: " + size());
+        return added;
+    }
+
+    // Big-endian fixed-width keys sort as the unsigned (hi, lo) pair
+    private static int compareKeys(long hiA, long loA, long hiB, long loB) {
+        int c = Long.compareUnsigned(hiA, hiB);
+        return c != 0 ? c : Long.compareUnsigned(loA, loB);
+    }
+
+    // Ranks of a batch, and the batch indices in key order
+    private class SortedKeys {
+        final long[] hi, lo;
+        final int[] order;
+
+        SortedKeys(List<? extends State> states, int n) {
+            hi = new long[n];
+            lo = new long[n];
+            order = new int[n];
+            long[] low = new long[1];
+            for (int i = 0; i < n; i++) {
+                State state = states.get(i);
+                if (state instanceof StateRanked) {
+                    hi[i] = ((StateRanked) state).hi;
+                    lo[i] = ((StateRanked) state).lo;
+                } else {
+                    hi[i] = codec.encode(state.state(), low);
+                    lo[i] = low[0];
+                }
+                order[i] = i;
+            }
+            IntArrays.quickSort(order, 0, n, (a, b) -> compareKeys(hi[a], lo[a], hi[b], lo[b]));
         }
-        if (debug) System.out.println("[DEBUG] Flushed batch - new size: " + size());
     }
 
     @Override
@@ -184,26 +480,58 @@ public class LMDBCache extends AbstractSet<State> implements Closeable {
         if (!(o instanceof State)) {
             return false;
         }
-        TransactionWrapper wrapper = getOrCreateTransaction();
+        State state = (State) o;
+        flushLock.readLock().lock();
         try {
-            State state = (State) o;
-            Boolean batchResult = batchValues.get(state);
-            if (batchResult != null) {
-                return batchResult;
+            Boolean pendingValue = pendingValue(stripe(state), state);
+            if (pendingValue != null) {
+                return pendingValue;
             }
-            return db_contains_nolock(state, wrapper.txn);
+            return db_contains(state);
         } finally {
-            releaseTransaction();
+            flushLock.readLock().unlock();
         }
     }
 
-    private boolean db_contains_nolock(State state, Txn<ByteBuffer> txn) {
-        byte[] keyBytes = cvt(state);
+    // Caller holds the flush lock
+    private boolean db_contains(State state) {
         ByteBuffer keyBuffer = keyBuffer_tl.get();
         keyBuffer.clear();
-        keyBuffer.put(keyBytes).flip();
+        cvt(state, keyBuffer);
+        keyBuffer.flip();
+
+        Txn<ByteBuffer> txn = acquireReader();
+        try {
+            return db.get(txn, keyBuffer) != null;
+        } finally {
+            releaseReader(txn);
+        }
+    }
 
-        return db.get(txn, keyBuffer) != null;
+    /**
+     * A read transaction on the latest commit.  Caller holds the flush lock, so the
+     *   snapshot can't go stale while in use, and hands it back with releaseReader.
+     */
+    private Txn<ByteBuffer> acquireReader() {
+        Txn<ByteBuffer> txn = idleReaders.poll();
+        if (txn == null) return env.txnRead();
+        txn.renew();
+        return txn;
+    }
+
+    private void releaseReader(Txn<ByteBuffer> txn) {
+        if (idleReaders.remainingCapacity() == 0) {
+            txn.close();
+            return;
+        }
+        txn.reset();
+        if (!idleReaders.offer(txn)) closeReset(txn);
+    }
+
+    // Txn.close() only aborts an active transaction, and a reset one keeps its reader slot
+    private static void closeReset(Txn<ByteBuffer> txn) {
+        txn.renew();
+        txn.close();
     }
 
     private int initialSize() {
@@ -214,20 +542,19 @@ public class LMDBCache extends AbstractSet<State> implements Closeable {
 
     @Override
     public Iterator<State> iterator() {
-        // While the iterator is open, no writes allowed
-        // Flush batch
+        // Flush so the snapshot includes everything written so far
         flushBatch();
         return new LMDBIterator();
     }
     private class LMDBIterator implements Iterator<State> {
-        private final TransactionWrapper txnWrapper;
+        private final Txn<ByteBuffer> txn;
         private final Cursor<ByteBuffer> cursor;
         private boolean hasNext;
         private boolean closed = false;
     
         public LMDBIterator() {
-            this.txnWrapper = getOrCreateTransaction();
-            this.cursor = db.openCursor(txnWrapper.txn);
+            this.txn = env.txnRead();
+            this.cursor = db.openCursor(txn);
             this.hasNext = cursor.first();
         }
     
@@ -247,10 +574,7 @@ public class LMDBCache extends AbstractSet<State> implements Closeable {
             if (closed || !hasNext()) {
                 throw new NoSuchElementException();
             }
-            ByteBuffer keyBuffer = cursor.key();
-            byte[] keyBytes = new byte[keyBuffer.remaining()];
-            keyBuffer.get(keyBytes);
-            State state = cvtBack(keyBytes);
+            State state = cvtBack(cursor.key());
             
             // Move cursor to next entry
             hasNext = cursor.next();
@@ -263,13 +587,10 @@ public class LMDBCache extends AbstractSet<State> implements Closeable {
             throw new UnsupportedOperationException("Remove operation is not supported");
         }
     
-        private void close() {
-            if (batchValues.size() > 0) {
-                throw new ConcurrentModificationException("Writes detected while iterating");
-            }
+        private synchronized void close() {
             if (!closed) {
                 cursor.close();
-                releaseTransaction();
+                txn.close();
                 closed = true;
             }
         }
@@ -281,81 +602,112 @@ public class LMDBCache extends AbstractSet<State> implements Closeable {
         }
     }
 
-    private State cvtBack(byte[] bytes) {
-        return State.of(StateFactorial.stateFromBytes(bytes, this.nElements), nElements, retrievalSettings);
-    }
-
-    private byte[] cvt(State state) {
-        if (!(state instanceof State.StateFactorial)) {
-            int[] arr = state.state();
-            state = State.of(arr, arr.length, GroupExplorer.MemorySettings.COMPACT);
-            
+    private State cvtBack(ByteBuffer key) {
+        long[] lo = new long[1];
+        long hi = codec.readKey(key, lo);
+        if (retrievalSettings == MemorySettings.COMPACT) {
+            // The key is already the rank, no need to decode and re-encode
+            return new StateRanked(hi, lo[0], codec);
         }
-
-        return ((StateFactorial) state).bytes();
+        return State.of(codec.decode(hi, lo[0]), nElements, retrievalSettings);
     }
 
-    @Override
-    public int size() {
-        return (int) size.get();
+    private void cvt(State state, ByteBuffer key) {
+        if (state instanceof StateRanked) {
+            StateRanked ranked = (StateRanked) state;
+            codec.writeKey(ranked.hi, ranked.lo, key);
+        } else {
+            codec.writeKey(state.state(), key);
+        }
     }
 
-    @Override
-    public void close() {
-        flushBatch(); // Ensure any remaining batch items are written
-        db.close();
-        env.close();
+    /**
+     * Databases written before keys were fixed-width hold BigInteger.toByteArray() keys,
+     *   which are the same rank but variable length.  Checks the smallest and largest key
+     *   so an old database isn't silently misread.
+     */
+    private void checkKeyFormat() {
+        try (Txn<ByteBuffer> txn = env.txnRead(); Cursor<ByteBuffer> cursor = db.openCursor(txn)) {
+            boolean legacy = (cursor.first() && cursor.key().remaining() != keySize)
+                    || (cursor.last() && cursor.key().remaining() != keySize);
+            if (legacy) {
+                throw new IllegalStateException("Database " + dbname + " uses variable-length keys; run LMDBCache.migrateLegacyKeys first");
+            }
+        }
     }
 
-
-    private static class TransactionWrapper {
-        final Txn<ByteBuffer> txn;
-        final AtomicInteger refCount;
-        final Exception creatorStackTrace;
-        final String threadName;
-
-        TransactionWrapper(Txn<ByteBuffer> txn) {
-            this.txn = txn;
-            this.refCount = new AtomicInteger(1);
-            this.creatorStackTrace = new Exception();
-            this.threadName = Thread.currentThread().getName();
+    /**
+     * Rewrites a database's legacy BigInteger keys to fixed-width keys, in place
+     *
+     * A legacy key whose length already matches is byte-identical to the new key,
+     *   so only the others are rewritten.  The scan runs on a read snapshot while
+     *   batches are committed in separate write transactions; it can be interrupted
+     *   and rerun.
+     *
+     * @return the number of keys rewritten
+     */
+    public static long migrateLegacyKeys(LMDBManager manager, String dbName, int nElements, int batchSize) {
+        Env<ByteBuffer> env = manager.getEnv();
+        Dbi<ByteBuffer> db = env.openDbi(dbName, DbiFlags.MDB_CREATE);
+        FactorialCodec codec = FactorialCodec.of(nElements);
+        ByteBuffer oldKey = ByteBuffer.allocateDirect(17);
+        ByteBuffer newKey = ByteBuffer.allocateDirect(codec.keyBytes);
+        ByteBuffer value = ByteBuffer.allocateDirect(0);
+
+        long migrated = 0;
+        List<byte[]> batch = new ArrayList<>(batchSize);
+        try (Txn<ByteBuffer> read = env.txnRead(); Cursor<ByteBuffer> cursor = db.openCursor(read)) {
+            boolean hasNext = cursor.first();
+            while (hasNext || !batch.isEmpty()) {
+                if (hasNext) {
+                    ByteBuffer key = cursor.key();
+                    if (key.remaining() != codec.keyBytes) {
+                        byte[] bytes = new byte[key.remaining()];
+                        key.get(bytes);
+                        batch.add(bytes);
+                    }
+                    hasNext = cursor.next();
+                }
+                if (batch.size() >= batchSize || (!hasNext && !batch.isEmpty())) {
+                    try (Txn<ByteBuffer> write = env.txnWrite()) {
+                        for (byte[] bytes : batch) {
+                            oldKey.clear();
+                            oldKey.put(bytes).flip();
+                            long[] lo = new long[1];
+                            long hi = codec.readKey(oldKey.duplicate(), lo);
+                            newKey.clear();
+                            codec.writeKey(hi, lo[0], newKey);
+                            newKey.flip();
+                            db.delete(write, oldKey);
+                            db.put(write, newKey, value);
+                        }
+                        write.commit();
+                    }
+                    migrated += batch.size();
+                    batch.clear();
+                }
+            }
         }
+        return migrated;
     }
 
-    private TransactionWrapper getOrCreateTransaction() {
-        return getOrCreateTransaction(false);
-    }
-    
-    private TransactionWrapper getOrCreateTransaction(boolean writeBatch) {
-        return getOrCreateTransaction(writeBatch, false);
+    @Override
+    public long sizeLong() {
+        return size.get();
     }
 
-    private TransactionWrapper getOrCreateTransaction(boolean writeBatch, boolean writeDb) {
-        TransactionWrapper wrapper = txnThreadLocal.get();
-        if (wrapper == null) {
-            wrapper = new TransactionWrapper(writeDb ? env.txnWrite() : env.txnRead());
-            txnThreadLocal.set(wrapper);
-            if (writeBatch) batchLock.writeLock().lock();
-            else batchLock.readLock().lock();
-        } else {
-            if (writeBatch) throw new ConcurrentModificationException(Thread.currentThread().getName() + " attempted to modify transaction created by " + wrapper.threadName + ": " + wrapper.refCount.get(), wrapper.creatorStackTrace);
-            wrapper.refCount.incrementAndGet();
-        }
-        return wrapper;
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, size.get());
     }
 
-    private void releaseTransaction() {
-        releaseTransaction(false);
-    }
-    private void releaseTransaction(boolean writeBatch) {
-        TransactionWrapper wrapper = txnThreadLocal.get();
-        if (wrapper != null) {
-            if (wrapper.refCount.decrementAndGet() == 0) {
-                wrapper.txn.close();
-                txnThreadLocal.remove();
-                if (writeBatch) batchLock.writeLock().unlock();
-                else batchLock.readLock().unlock();
-            }
+    @Override
+    public void close() {
+        flushBatch(); // Ensure any remaining batch items are written
+        for (Txn<ByteBuffer> txn; (txn = idleReaders.poll()) != null; ) {
+            closeReset(txn);
         }
+        db.close();
+        env.close();
     }
-}
\ No newline at end of file
+}
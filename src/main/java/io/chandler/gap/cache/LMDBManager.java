@@ -8,8 +8,10 @@ import java.nio.file.Path;
 
 public class LMDBManager {
     private final Env<ByteBuffer> env;
+    private final Path directory;
 
     public LMDBManager(Path directory, int gigaBytes) {
+        this.directory = directory;
         File dbFile = directory.toFile();
         env = Env.create()
                 .setMapSize(gigaBytes * 1024L * 1024L * 1024L)
@@ -22,6 +24,10 @@ public class LMDBManager {
         return env;
     }
 
+    public Path getPath() {
+        return directory;
+    }
+
     public void close() {
         env.close();
     }
@@ -0,0 +1,172 @@
+package io.chandler.gap.cache;
+
+/**
+ * Lehmer (factorial number system) rank of a permutation prefix, in a long
+ *
+ * The first elementsToRank positions of a permutation of 1..nElements are ranked
+ *   into [0, nElements! / (nElements - elementsToRank)!).  Ranking the full
+ *   permutation needs nElements <= 20 to fit; prefixes allow larger degrees,
+ *   e.g. the 7 positions that pin down an M24 element.
+ *
+ * Used values are tracked in a 64-bit mask, so each digit is a popcount
+ *   and rank() is O(n) with no allocation.  rankWide() runs the same digits
+ *   into a 128-bit full rank for up to 34 elements (FactorialCodec's keys).
+ */
+public class LehmerCodec {
+    public final int nElements;
+    public final int elementsToRank;
+    /** Number of distinct ranks: nElements! / (nElements - elementsToRank)! */
+    public final long permutations;
+
+    // weights[i] = (n-i-1)! / (n-k)!, the place value of digit i
+    private final long[] weights;
+    private final long fullMask;
+
+    public LehmerCodec(int nElements) {
+        this(nElements, nElements);
+    }
+
+    public LehmerCodec(int elementsToRank, int nElements) {
+        if (nElements > 63) {
+            throw new IllegalArgumentException("Lehmer codec supports at most 63 elements, got " + nElements);
+        }
+        if (elementsToRank > nElements || elementsToRank < 1) {
+            throw new IllegalArgumentException("Cannot rank " + elementsToRank + " of " + nElements + " elements");
+        }
+        this.nElements = nElements;
+        this.elementsToRank = elementsToRank;
+        this.fullMask = (1L << nElements) - 1;
+        this.weights = new long[elementsToRank];
+
+        long weight = 1;
+        try {
+            for (int i = elementsToRank - 1; i >= 0; i--) {
+                weights[i] = weight;
+                weight = Math.multiplyExact(weight, nElements - i);
+            }
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Rank of " + elementsToRank + " of " + nElements + " elements overflows a long");
+        }
+        this.permutations = weight;
+    }
+
+    /**
+     * @param state 1-indexed permutation; only the first elementsToRank positions are read
+     */
+    public long rank(int[] state) {
+        long used = 0;
+        long rank = 0;
+        for (int i = 0; i < elementsToRank; i++) {
+            int v = state[i] - 1;
+            rank += digit(v, used) * weights[i];
+            used |= 1L << v;
+        }
+        return rank;
+    }
+
+    /**
+     * Inverse of rank
+     *
+     * Writes the ranked prefix into out[0 .. elementsToRank); the remaining positions
+     *   get the unused values in ascending order (only meaningful when the prefix
+     *   determines the permutation, i.e. elementsToRank >= nElements - 1).
+     */
+    public void unrank(long rank, int[] out) {
+        long free = fullMask;
+        for (int i = 0; i < elementsToRank; i++) {
+            int digit = (int) (rank / weights[i]);
+            rank -= digit * weights[i];
+            long bit = unused(free, digit);
+            out[i] = Long.numberOfTrailingZeros(bit) + 1;
+            free &= ~bit;
+        }
+        for (int i = elementsToRank; i < nElements; i++) {
+            long bit = Long.lowestOneBit(free);
+            out[i] = Long.numberOfTrailingZeros(bit) + 1;
+            free &= ~bit;
+        }
+    }
+
+    public int[] unrank(long rank) {
+        int[] out = new int[nElements];
+        unrank(rank, out);
+        return out;
+    }
+
+    /**
+     * True if the ranked prefix determines the whole permutation
+     */
+    public boolean isComplete() {
+        return elementsToRank >= nElements - 1;
+    }
+
+    // Lehmer digit of 0-indexed value v: how many smaller values are still unused
+    private static int digit(int v, long used) {
+        return v - Long.bitCount(used & ((1L << v) - 1));
+    }
+
+    // Bit of the digit-th smallest value left in free
+    private static long unused(long free, int digit) {
+        for (int j = 0; j < digit; j++) {
+            free &= free - 1;
+        }
+        return Long.lowestOneBit(free);
+    }
+
+    /**
+     * Full rank of a permutation of 1..n (n <= 34) in 128 bits, by Horner's rule over
+     *   the same digits as rank()
+     * @return the high 64 bits of the rank; the low bits go to lowOut[0]
+     */
+    public static long rankWide(int[] state, int n, long[] lowOut) {
+        long used = 0;
+        long hi = 0, lo = 0;
+        for (int i = 0; i < n; i++) {
+            int v = state[i] - 1;
+            long digit = digit(v, used);
+            used |= 1L << v;
+
+            // (hi, lo) = (hi, lo) * radix + digit
+            long radix = n - i;
+            long carry = Math.multiplyHigh(lo, radix) + ((lo >> 63) & radix);
+            long product = lo * radix;
+            hi = hi * radix + carry;
+            lo = product + digit;
+            if (Long.compareUnsigned(lo, product) < 0) hi++;
+        }
+        lowOut[0] = lo;
+        return hi;
+    }
+
+    /**
+     * Inverse of rankWide; writes the permutation into out[0 .. n).  The radices n-i
+     *   are small, so the 128-bit division is done in 32-bit halves.
+     */
+    public static void unrankWide(long hi, long lo, int n, int[] out) {
+        // Peel off the digits from least significant (radix 1) upward
+        int i = n - 1;
+        for (; i >= 0 && (hi != 0 || lo < 0); i--) {
+            long radix = n - i;
+            long rem = Long.remainderUnsigned(hi, radix);
+            hi = Long.divideUnsigned(hi, radix);
+            long x = (rem << 32) | (lo >>> 32);
+            long q1 = x / radix;
+            long y = ((x % radix) << 32) | (lo & 0xFFFFFFFFL);
+            lo = (q1 << 32) | (y / radix);
+            out[i] = (int) (y % radix);
+        }
+        // Once the remainder fits in a signed long, plain division will do
+        for (; i >= 0; i--) {
+            long radix = n - i;
+            out[i] = (int) (lo % radix);
+            lo /= radix;
+        }
+
+        long free = (1L << n) - 1;
+        for (i = 0; i < n; i++) {
+            long bit = unused(free, out[i]);
+            out[i] = Long.numberOfTrailingZeros(bit) + 1;
+            free &= ~bit;
+        }
+    }
+}
@@ -1,48 +1,32 @@
 package io.chandler.gap.cache;
 
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
-
 import java.util.AbstractSet;
-import java.util.HashSet;
 import java.util.Iterator;
 
 // Not sure if this works
-public class LongIntStateCache extends AbstractSet<State> {
-    private final HashSet<LongInt> map;
+public class LongIntStateCache extends AbstractSet<State> implements LongSized {
+    private final SegmentedRowSet map;
 
     final int elementsToStore;
     final int nElements;
 
-    public static class LongInt {
-        public long l;
-        public int i;
-
-        @Override
-        public int hashCode() {
-            long h = 31L * l + i;
-            h = (h ^ (h >>> 32)) * 0x517cc1b727220a95L;
-            h = (h ^ (h >>> 32)) * 0x517cc1b727220a95L;
-            h = h ^ (h >>> 32);
-            return (int) h;
-        }
-        
-
-        public boolean equals(Object o) {
-            if (o instanceof LongInt) {
-                LongInt li = (LongInt) o;
-                return l == li.l && i == li.i;
-            }
-            return false;
-        }
+    public LongIntStateCache(int elementsToStore, int nElements) {
+        this.map = new SegmentedRowSet(2);
+        this.elementsToStore = elementsToStore;
+        this.nElements = nElements;
     }
 
-    public LongIntStateCache(int elementsToStore, int nElements) {
-        this.map = new HashSet<>();
+    /**
+     * @param offHeap keep the table in direct memory, outside the Java heap
+     */
+    public LongIntStateCache(int elementsToStore, int nElements, long expectedSize, float loadFactor, boolean offHeap) {
+        this.map = new SegmentedRowSet(2, expectedSize, loadFactor, offHeap);
         this.elementsToStore = elementsToStore;
         this.nElements = nElements;
     }
 
-    LongInt cvt(int[] state) {
+    // Low word, then the overflow truncated to 31 bits
+    long[] cvt(int[] state) {
         long value = 0;
         long overflow = 0;
         long x = nElements + 1L;
@@ -59,34 +43,40 @@ public class LongIntStateCache extends AbstractSet<State> {
                 value &= Long.MAX_VALUE;
             }
         }
-        LongInt result = new LongInt();
-        result.l = value;
-        result.i = (int) (overflow & 0x7FFFFFFF);
-        return result;
+        long[] key = new long[2];
+        key[0] = value;
+        key[1] = overflow & 0x7FFFFFFF;
+        return key;
     }
 
     @Override
     public boolean add(State state) {
         int[] s = state.state();
 
-        return map.add(cvt(s));
+        return map.add(cvt(s), 0);
     }
 
     @Override
     public boolean contains(Object o) {
-        return map.contains(cvt(((State)o).state()));
+        return map.contains(cvt(((State)o).state()), 0);
     }
 
     @Override
     public boolean remove(Object o) {
-        return map.remove(cvt(((State)o).state()));
+        return map.remove(cvt(((State)o).state()), 0);
     }
 
     @Override
-    public int size() {
+
+    public long sizeLong() {
         return map.size();
     }
 
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, map.size());
+    }
+
     @Override
     public void clear() {
         map.clear();
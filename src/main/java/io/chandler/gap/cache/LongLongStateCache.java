@@ -1,44 +1,31 @@
 package io.chandler.gap.cache;
 
 import java.util.AbstractSet;
-import java.util.HashSet;
 import java.util.Iterator;
 
-public class LongLongStateCache extends AbstractSet<State> {
-    private final HashSet<LongLong> map;
+public class LongLongStateCache extends AbstractSet<State> implements LongSized {
+    private final SegmentedRowSet map;
 
     final int elementsToStore;
     final int nElements;
 
-    public static class LongLong {
-        public long l1;
-        public long l2;
-
-        @Override
-        public int hashCode() {
-            long h = 31L * l1 + l2;
-            h = (h ^ (h >>> 32)) * 0x517cc1b727220a95L;
-            h = (h ^ (h >>> 32)) * 0x517cc1b727220a95L;
-            h = h ^ (h >>> 32);
-            return (int) h;
-        }
-
-        public boolean equals(Object o) {
-            if (o instanceof LongLong) {
-                LongLong ll = (LongLong) o;
-                return l1 == ll.l1 && l2 == ll.l2;
-            }
-            return false;
-        }
+    public LongLongStateCache(int elementsToStore, int nElements) {
+        this.map = new SegmentedRowSet(2);
+        this.elementsToStore = elementsToStore;
+        this.nElements = nElements;
     }
 
-    public LongLongStateCache(int elementsToStore, int nElements) {
-        this.map = new HashSet<>();
+    /**
+     * @param offHeap keep the table in direct memory, outside the Java heap
+     */
+    public LongLongStateCache(int elementsToStore, int nElements, long expectedSize, float loadFactor, boolean offHeap) {
+        this.map = new SegmentedRowSet(2, expectedSize, loadFactor, offHeap);
         this.elementsToStore = elementsToStore;
         this.nElements = nElements;
     }
 
-    LongLong cvt(int[] state) {
+    // Low word, then overflow
+    long[] cvt(int[] state) {
         long value = 0;
         long overflow = 0;
         long x = nElements + 1L;
@@ -55,10 +42,10 @@ public class LongLongStateCache extends AbstractSet<State> {
                 value &= Long.MAX_VALUE;
             }
         }
-        LongLong result = new LongLong();
-        result.l1 = value;
-        result.l2 = overflow;
-        return result;
+        long[] key = new long[2];
+        key[0] = value;
+        key[1] = overflow;
+        return key;
     }
 
 
@@ -67,24 +54,30 @@ public class LongLongStateCache extends AbstractSet<State> {
     public boolean add(State state) {
         int[] s = state.state();
 
-        return map.add(cvt(s));
+        return map.add(cvt(s), 0);
     }
 
     @Override
     public boolean contains(Object o) {
-        return map.contains(cvt(((State)o).state()));
+        return map.contains(cvt(((State)o).state()), 0);
     }
 
     @Override
     public boolean remove(Object o) {
-        return map.remove(cvt(((State)o).state()));
+        return map.remove(cvt(((State)o).state()), 0);
     }
 
     @Override
-    public int size() {
+
+    public long sizeLong() {
         return map.size();
     }
 
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, map.size());
+    }
+
     @Override
     public void clear() {
         map.clear();
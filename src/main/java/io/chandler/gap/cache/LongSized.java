@@ -0,0 +1,18 @@
+package io.chandler.gap.cache;
+
+import java.util.Collection;
+
+/**
+ * Sets that can hold more than Integer.MAX_VALUE states; their size() saturates
+ */
+public interface LongSized {
+    long sizeLong();
+
+    /**
+     * Exact size of any collection, using sizeLong() where there is one
+     */
+    static long sizeOf(Collection<?> c) {
+        if (c instanceof LongSized) return ((LongSized) c).sizeLong();
+        return c.size();
+    }
+}
@@ -1,21 +1,45 @@
 package io.chandler.gap.cache;
 
 import java.util.AbstractSet;
-import java.util.HashSet;
 import java.util.Iterator;
 
-public class LongStateCache extends AbstractSet<State> {
-    private final HashSet<Long> map;
+public class LongStateCache extends AbstractSet<State> implements LongSized {
+    private final SegmentedRowSet map;
+    private final ConcurrentLongSet concurrentMap;
 
     final long elementsToStore;
     final int nElements;
 
     public LongStateCache(long elementsToStore, int nElements) {
-        this.map = new HashSet<>();
+        this(elementsToStore, nElements, false);
+    }
+
+    /**
+     * @param concurrent back the cache with a ConcurrentLongSet so parallel
+     *   exploration workers can add to it without locking
+     */
+    public LongStateCache(long elementsToStore, int nElements, boolean concurrent) {
+        this.map = concurrent ? null : new SegmentedRowSet(1);
+        this.concurrentMap = concurrent ? new ConcurrentLongSet() : null;
         this.elementsToStore = elementsToStore;
         this.nElements = nElements;
     }
 
+    /**
+     * Single-threaded cache sized up front
+     * @param offHeap keep the table in direct memory, outside the Java heap
+     */
+    public LongStateCache(long elementsToStore, int nElements, long expectedSize, float loadFactor, boolean offHeap) {
+        this.map = new SegmentedRowSet(1, expectedSize, loadFactor, offHeap);
+        this.concurrentMap = null;
+        this.elementsToStore = elementsToStore;
+        this.nElements = nElements;
+    }
+
+    public boolean isConcurrent() {
+        return concurrentMap != null;
+    }
+
     long cvt(int[] state) {
         long value = 0;
         int x = nElements + 1;
@@ -30,27 +54,39 @@ public class LongStateCache extends AbstractSet<State> {
     public boolean add(State state) {
         int[] s = state.state();
 
-        return map.add(cvt(s));
+        if (concurrentMap != null) return concurrentMap.add(cvt(s));
+        return map.add(new long[] {cvt(s)}, 0);
     }
 
     @Override
     public boolean contains(Object o) {
-        return map.contains(cvt(((State)o).state()));
+        // Parallel workers look states up at the same time, so the key isn't kept in a field
+        if (concurrentMap != null) return concurrentMap.contains(cvt(((State)o).state()));
+        return map.contains(new long[] {cvt(((State)o).state())}, 0);
     }
 
     @Override
     public boolean remove(Object o) {
-        return map.remove(cvt(((State)o).state()));
+        if (concurrentMap != null) return concurrentMap.remove(cvt(((State)o).state()));
+        return map.remove(new long[] {cvt(((State)o).state())}, 0);
     }
 
     @Override
-    public int size() {
+
+    public long sizeLong() {
+        if (concurrentMap != null) return concurrentMap.sizeLong();
         return map.size();
     }
 
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, sizeLong());
+    }
+
     @Override
     public void clear() {
-        map.clear();
+        if (concurrentMap != null) concurrentMap.clear();
+        else map.clear();
     }
 
 	@Override
@@ -15,4 +15,8 @@ public class M24StateCache extends LongStateCache {
         super(7, 25);
     }
 
+    public M24StateCache(boolean concurrent) {
+        super(7, 25, concurrent);
+    }
+
 }
@@ -0,0 +1,191 @@
+package io.chandler.gap.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed-size bitset with a 64-bit index, held outside the Java heap
+ *
+ * Bits live in 1 GiB direct buffers, or in a memory-mapped file when a path is
+ *   given (so a visited set can exceed RAM and survive the process).  Words are
+ *   updated with a CAS, so concurrent getAndSet calls are safe.
+ */
+public class OffHeapBitSet implements Closeable {
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int SEGMENT_SHIFT = 33; // 2^33 bits = 1 GiB per segment
+    private static final long SEGMENT_BITS = 1L << SEGMENT_SHIFT;
+
+    private final long nBits;
+    private final ByteBuffer[] segments;
+    private final FileChannel channel;
+
+    /**
+     * Allocates a zeroed bitset in direct memory
+     */
+    public OffHeapBitSet(long nBits) {
+        this.nBits = nBits;
+        this.channel = null;
+        this.segments = new ByteBuffer[segmentCount(nBits)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocateDirect(segmentBytes(i)).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Maps a bitset backed by file, creating it if needed; existing bits are kept
+     */
+    public OffHeapBitSet(long nBits, Path file) throws IOException {
+        this.nBits = nBits;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.segments = new ByteBuffer[segmentCount(nBits)];
+        long position = 0;
+        for (int i = 0; i < segments.length; i++) {
+            int bytes = segmentBytes(i);
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes).order(ByteOrder.nativeOrder());
+            position += bytes;
+        }
+    }
+
+    private static int segmentCount(long nBits) {
+        if (nBits <= 0) throw new IllegalArgumentException("Bitset size must be positive: " + nBits);
+        return (int) ((nBits + SEGMENT_BITS - 1) >>> SEGMENT_SHIFT);
+    }
+
+    private int segmentBytes(int segment) {
+        long bits = Math.min(SEGMENT_BITS, nBits - ((long) segment << SEGMENT_SHIFT));
+        return (int) (((bits + 63) >>> 6) << 3);
+    }
+
+    public long length() {
+        return nBits;
+    }
+
+    private ByteBuffer segment(long bit) {
+        return segments[(int) (bit >>> SEGMENT_SHIFT)];
+    }
+
+    private static int byteOffset(long bit) {
+        return (int) ((bit & (SEGMENT_BITS - 1)) >>> 6) << 3;
+    }
+
+    public boolean get(long bit) {
+        long word = (long) LONGS.getAcquire(segment(bit), byteOffset(bit));
+        return (word & (1L << bit)) != 0;
+    }
+
+    /**
+     * Sets the bit
+     * @return its previous value
+     */
+    public boolean getAndSet(long bit) {
+        ByteBuffer seg = segment(bit);
+        int offset = byteOffset(bit);
+        long mask = 1L << bit;
+        long word = (long) LONGS.getVolatile(seg, offset);
+        while ((word & mask) == 0) {
+            long witness = (long) LONGS.compareAndExchange(seg, offset, word, word | mask);
+            if (witness == word) return false;
+            word = witness;
+        }
+        return true;
+    }
+
+    /**
+     * Clears the bit
+     * @return its previous value
+     */
+    public boolean getAndClear(long bit) {
+        ByteBuffer seg = segment(bit);
+        int offset = byteOffset(bit);
+        long mask = 1L << bit;
+        long word = (long) LONGS.getVolatile(seg, offset);
+        while ((word & mask) != 0) {
+            long witness = (long) LONGS.compareAndExchange(seg, offset, word, word & ~mask);
+            if (witness == word) return true;
+            word = witness;
+        }
+        return false;
+    }
+
+    /**
+     * @return the first set bit at or after from, or -1
+     */
+    public long nextSetBit(long from) {
+        if (from >= nBits) return -1;
+        long wordStart = from & ~63L;
+        long word = segment(from).getLong(byteOffset(from)) & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                long bit = wordStart + Long.numberOfTrailingZeros(word);
+                return bit < nBits ? bit : -1;
+            }
+            wordStart += 64;
+            if (wordStart >= nBits) return -1;
+            word = segment(wordStart).getLong(byteOffset(wordStart));
+        }
+    }
+
+    /**
+     * Sets every bit that is set in other, which must be the same length
+     * @return the number of bits that were newly set
+     */
+    public long or(OffHeapBitSet other) {
+        if (other.nBits != nBits) throw new IllegalArgumentException("Bitset lengths differ: " + nBits + " vs " + other.nBits);
+        long added = 0;
+        for (int s = 0; s < segments.length; s++) {
+            ByteBuffer seg = segments[s], src = other.segments[s];
+            for (int offset = 0; offset < seg.capacity(); offset += 8) {
+                long word = seg.getLong(offset);
+                long merged = word | src.getLong(offset);
+                if (merged != word) {
+                    seg.putLong(offset, merged);
+                    added += Long.bitCount(merged & ~word);
+                }
+            }
+        }
+        return added;
+    }
+
+    public long cardinality() {
+        long count = 0;
+        for (ByteBuffer seg : segments) {
+            for (int offset = 0; offset < seg.capacity(); offset += 8) {
+                count += Long.bitCount(seg.getLong(offset));
+            }
+        }
+        return count;
+    }
+
+    public void clear() {
+        for (ByteBuffer seg : segments) {
+            for (int offset = 0; offset < seg.capacity(); offset += 8) {
+                seg.putLong(offset, 0);
+            }
+        }
+    }
+
+    /**
+     * Flushes a mapped bitset to its file; no-op for direct memory
+     */
+    public void force() {
+        if (channel == null) return;
+        for (ByteBuffer seg : segments) {
+            ((MappedByteBuffer) seg).force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) return;
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,97 @@
+package io.chandler.gap.cache;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+
+/**
+ * Set of full states packed into a direct-memory SegmentedRowSet, for groups too
+ *   large for PackedStateSet's single array or the heap
+ *
+ * Unlike the prefix caches this keeps whole states, so it can be iterated and used
+ *   for every GroupExplorer set.  Lookups may run concurrently with each other,
+ *   but not with changes.
+ */
+public class OffHeapStateSet extends AbstractSet<State> implements LongSized {
+    public final int nElements;
+    private final StatePacker packer;
+    private final SegmentedRowSet rows;
+    private final MemorySettings retrievalSettings;
+
+    public OffHeapStateSet(int nElements) {
+        this(nElements, MemorySettings.DEFAULT, 1 << 16, 0.75f);
+    }
+
+    public OffHeapStateSet(int nElements, MemorySettings retrievalSettings, long expectedSize, float loadFactor) {
+        this.nElements = nElements;
+        this.packer = new StatePacker(nElements);
+        this.rows = new SegmentedRowSet(packer.wordsPerRow, expectedSize, loadFactor, true);
+        this.retrievalSettings = retrievalSettings;
+    }
+
+    // Packed into a new row each time, since parallel workers look states up together
+    private long[] pack(State state) {
+        long[] row = new long[packer.wordsPerRow];
+        packer.pack(state.state(), row, 0);
+        return row;
+    }
+
+    @Override
+    public boolean add(State state) {
+        return rows.add(pack(state), 0);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return rows.contains(pack((State) o), 0);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return rows.remove(pack((State) o), 0);
+    }
+
+    @Override
+    public long sizeLong() {
+        return rows.size();
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, rows.size());
+    }
+
+    @Override
+    public void clear() {
+        rows.clear();
+    }
+
+    @Override
+    public Iterator<State> iterator() {
+        SegmentedRowSet.RowCursor cursor = rows.new RowCursor();
+        return new Iterator<State>() {
+            boolean ready = false;
+            boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) {
+                    hasNext = cursor.advance();
+                    ready = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public State next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = false;
+                int[] state = new int[nElements];
+                packer.unpack(cursor.row(), 0, state);
+                return State.of(state, nElements, retrievalSettings);
+            }
+        };
+    }
+}
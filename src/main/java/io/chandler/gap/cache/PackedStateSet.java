@@ -0,0 +1,287 @@
+package io.chandler.gap.cache;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * Open-addressing set of permutations packed into fixed-width rows of a long[]
+ *   (see StatePacker), so an M24 state is two longs and no objects.
+ *
+ * Passing one of these as GroupExplorer's stateMap switches exploration to the packed
+ *   frontier, which never allocates a State or int[] per child.
+ *
+ * Built with a generator count, each slot also keeps the generator that first reached
+ *   it (log2(nGenerators + 1) bits, so 2 bits for 3 generators) in a parallel bit array.
+ *   That's enough to walk any state back to the root, see GroupExplorer.pathTo.
+ */
+public class PackedStateSet extends AbstractSet<State> {
+    private static final float LOAD_FACTOR = 0.75f;
+
+    public final int nElements;
+    private final StatePacker packer;
+    private final int wordsPerRow;
+    private final MemorySettings retrievalSettings;
+
+    private long[] table;
+    private int mask;
+    private int size;
+    private int maxFill;
+
+    // Last generator per slot, stored as generator + 1 (0 marks the root)
+    private final int generatorBits;
+    private final int generatorsPerWord;
+    private long[] generators;
+
+    public PackedStateSet(int nElements) {
+        this(nElements, MemorySettings.DEFAULT, 1024);
+    }
+
+    public PackedStateSet(int nElements, MemorySettings retrievalSettings, int expectedSize) {
+        this(nElements, retrievalSettings, expectedSize, 0);
+    }
+
+    /**
+     * @param nGenerators if positive, also record the last generator of every state
+     */
+    public PackedStateSet(int nElements, MemorySettings retrievalSettings, int expectedSize, int nGenerators) {
+        this.nElements = nElements;
+        this.packer = new StatePacker(nElements);
+        this.wordsPerRow = packer.wordsPerRow;
+        this.retrievalSettings = retrievalSettings;
+        this.generatorBits = nGenerators > 0 ? 32 - Integer.numberOfLeadingZeros(nGenerators) : 0;
+        this.generatorsPerWord = nGenerators > 0 ? 64 / generatorBits : 0;
+        allocate(HashCommon.arraySize(Math.max(expectedSize, 16), LOAD_FACTOR));
+    }
+
+    private void allocate(int slots) {
+        if ((long) slots * wordsPerRow > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Packed state table exceeds array limits: " + slots + " slots");
+        }
+        table = new long[slots * wordsPerRow];
+        mask = slots - 1;
+        maxFill = HashCommon.maxFill(slots, LOAD_FACTOR);
+        if (generatorBits > 0) generators = new long[(slots + generatorsPerWord - 1) / generatorsPerWord];
+    }
+
+    public boolean tracksGenerators() {
+        return generatorBits > 0;
+    }
+
+    private int generatorCode(int slot) {
+        long word = generators[slot / generatorsPerWord];
+        return (int) (word >>> ((slot % generatorsPerWord) * generatorBits)) & ((1 << generatorBits) - 1);
+    }
+
+    private void setGeneratorCode(int slot, int code) {
+        int shift = (slot % generatorsPerWord) * generatorBits;
+        long fieldMask = ((1L << generatorBits) - 1) << shift;
+        int w = slot / generatorsPerWord;
+        generators[w] = (generators[w] & ~fieldMask) | ((long) code << shift);
+    }
+
+    public int wordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /**
+     * Packs state into rows[offset .. offset + wordsPerRow)
+     */
+    public void pack(int[] state, long[] rows, int offset) {
+        packer.pack(state, rows, offset);
+    }
+
+    /**
+     * Unpacks rows[offset ..] into out
+     */
+    public void unpack(long[] rows, int offset, int[] out) {
+        packer.unpack(rows, offset, out);
+    }
+
+    private int hash(long[] rows, int offset) {
+        long h = packer.hash(rows, offset);
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private boolean rowEquals(long[] rows, int offset, int slot) {
+        int base = slot * wordsPerRow;
+        for (int w = 0; w < wordsPerRow; w++) {
+            if (table[base + w] != rows[offset + w]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the slot holding the row, or the empty slot where it belongs
+     */
+    private int find(long[] rows, int offset) {
+        int slot = hash(rows, offset) & mask;
+        while (table[slot * wordsPerRow] != 0) {
+            if (rowEquals(rows, offset, slot)) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public boolean containsPacked(long[] rows, int offset) {
+        return table[find(rows, offset) * wordsPerRow] != 0;
+    }
+
+    /**
+     * @return true if the row was not already present
+     */
+    public boolean addPacked(long[] rows, int offset) {
+        return addPacked(rows, offset, -1);
+    }
+
+    /**
+     * @param generator the generator that produced this state, or -1 for the root;
+     *   ignored unless the set tracks generators
+     * @return true if the row was not already present
+     */
+    public boolean addPacked(long[] rows, int offset, int generator) {
+        int slot = find(rows, offset);
+        if (table[slot * wordsPerRow] != 0) return false;
+        System.arraycopy(rows, offset, table, slot * wordsPerRow, wordsPerRow);
+        if (generatorBits > 0) setGeneratorCode(slot, generator + 1);
+        if (++size >= maxFill) rehash(Math.multiplyExact(mask + 1, 2));
+        return true;
+    }
+
+    /**
+     * @return the generator that first reached this state, -1 for the root, or -2 if absent
+     */
+    public int lastGenerator(long[] rows, int offset) {
+        if (generatorBits == 0) throw new IllegalStateException("Set was built without generator tracking");
+        int slot = find(rows, offset);
+        if (table[slot * wordsPerRow] == 0) return -2;
+        return generatorCode(slot) - 1;
+    }
+
+    private void rehash(int newSlots) {
+        long[] old = table;
+        long[] oldGenerators = generators;
+        int oldSlots = mask + 1;
+        allocate(newSlots);
+        for (int slot = 0; slot < oldSlots; slot++) {
+            int base = slot * wordsPerRow;
+            if (old[base] != 0) {
+                int dst = find(old, base);
+                System.arraycopy(old, base, table, dst * wordsPerRow, wordsPerRow);
+                if (generatorBits > 0) {
+                    long word = oldGenerators[slot / generatorsPerWord];
+                    int code = (int) (word >>> ((slot % generatorsPerWord) * generatorBits)) & ((1 << generatorBits) - 1);
+                    setGeneratorCode(dst, code);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean add(State state) {
+        long[] row = new long[wordsPerRow];
+        pack(state.state(), row, 0);
+        return addPacked(row, 0);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        long[] row = new long[wordsPerRow];
+        pack(((State) o).state(), row, 0);
+        return containsPacked(row, 0);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        // Open addressing with linear probing would need backward-shift deletion
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(table, 0);
+        if (generators != null) Arrays.fill(generators, 0);
+        size = 0;
+    }
+
+    @Override
+    public Iterator<State> iterator() {
+        return new Iterator<State>() {
+            int slot = -1;
+            int remaining = size;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public State next() {
+                if (remaining <= 0) throw new NoSuchElementException();
+                do {
+                    slot++;
+                } while (table[slot * wordsPerRow] == 0);
+                remaining--;
+                int[] state = new int[nElements];
+                unpack(table, slot * wordsPerRow, state);
+                return State.of(state, nElements, retrievalSettings);
+            }
+        };
+    }
+
+    /**
+     * Growable contiguous list of packed rows, used as a BFS frontier
+     */
+    public static class Rows {
+        private final int wordsPerRow;
+        private long[] rows;
+        private int size;
+
+        public Rows(int wordsPerRow) {
+            this(wordsPerRow, 1024);
+        }
+
+        public Rows(int wordsPerRow, int initialCapacity) {
+            this.wordsPerRow = wordsPerRow;
+            this.rows = new long[Math.max(initialCapacity, 1) * wordsPerRow];
+        }
+
+        public void append(long[] src, int offset) {
+            if ((size + 1) * wordsPerRow > rows.length) {
+                long newLength = Math.min((long) rows.length * 2, Integer.MAX_VALUE - 8);
+                if (newLength < (size + 1L) * wordsPerRow) throw new IllegalStateException("Frontier exceeds array limits");
+                rows = Arrays.copyOf(rows, (int) newLength);
+            }
+            System.arraycopy(src, offset, rows, size * wordsPerRow, wordsPerRow);
+            size++;
+        }
+
+        /**
+         * Backing array; row i starts at offset(i)
+         */
+        public long[] array() {
+            return rows;
+        }
+
+        public int offset(int i) {
+            return i * wordsPerRow;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void clear() {
+            size = 0;
+        }
+    }
+}
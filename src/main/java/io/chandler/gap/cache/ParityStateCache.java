@@ -14,7 +14,7 @@ import java.util.Set;
  * Note that GroupExplorer checks cache parity internally now,
  * so this probably isn't needed anymore
  */
-public class ParityStateCache extends AbstractSet<State> {
+public class ParityStateCache extends AbstractSet<State> implements LongSized {
     private final Set<State> map;
     private final Set<State> mapSupplied;
 
@@ -45,13 +45,18 @@ public class ParityStateCache extends AbstractSet<State> {
     }
 
     @Override
-    public int size() {
-        int r = map.size();
-        int r2 = mapSupplied.size();
+    public long sizeLong() {
+        long r = LongSized.sizeOf(map);
+        long r2 = LongSized.sizeOf(mapSupplied);
         if (r != r2) throw new StateRejectedException();
         return r;
     }
 
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, sizeLong());
+    }
+
     @Override
     public void clear() {
         map.clear();
@@ -0,0 +1,153 @@
+package io.chandler.gap.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+
+/**
+ * Visited set with one bit per permutation prefix
+ *
+ * States are mapped to their Lehmer rank (see LehmerCodec) and marked in an off-heap
+ *   bitset, so there is no hashing, no collisions and no per-state object.  The bitset
+ *   covers every arrangement of the stored prefix, nElements! / (nElements - elementsToStore)!
+ *   bits, so it pays off once the group fills a reasonable fraction of that space:
+ *
+ *   Full S_12:         12! bits = 57 MiB
+ *   M24, 7-prefix:  24!/17! bits = 203 MiB (the same prefix M24StateCache stores)
+ *
+ * Like LongStateCache, a prefix must determine the element for the group being explored.
+ *   Unlike it, iteration works: ranks are unranked back into states.  A prefix of
+ *   nElements - 1 or more yields the original states; shorter prefixes only via forEachPrefix.
+ *
+ * Safe for concurrent add/contains.
+ */
+public class RankedBitsetStateCache extends AbstractSet<State> implements Closeable, LongSized {
+    private final LehmerCodec codec;
+    private final OffHeapBitSet bits;
+    private final AtomicLong size = new AtomicLong();
+    private final MemorySettings retrievalSettings;
+
+    public final int nElements;
+
+    public RankedBitsetStateCache(int nElements) {
+        this(nElements, nElements);
+    }
+
+    public RankedBitsetStateCache(int elementsToStore, int nElements) {
+        this.codec = new LehmerCodec(elementsToStore, nElements);
+        this.bits = new OffHeapBitSet(codec.permutations);
+        this.retrievalSettings = MemorySettings.DEFAULT;
+        this.nElements = nElements;
+    }
+
+    /**
+     * Backs the bitset with a memory-mapped file; reopening the same file resumes
+     *   with its previously marked states
+     */
+    public RankedBitsetStateCache(int elementsToStore, int nElements, Path file) throws IOException {
+        this.codec = new LehmerCodec(elementsToStore, nElements);
+        this.bits = new OffHeapBitSet(codec.permutations, file);
+        this.retrievalSettings = MemorySettings.DEFAULT;
+        this.nElements = nElements;
+        this.size.set(bits.cardinality());
+    }
+
+    public LehmerCodec codec() {
+        return codec;
+    }
+
+    public boolean add(int[] state) {
+        if (bits.getAndSet(codec.rank(state))) return false;
+        size.incrementAndGet();
+        return true;
+    }
+
+    public boolean contains(int[] state) {
+        return bits.get(codec.rank(state));
+    }
+
+    @Override
+    public boolean add(State state) {
+        return add(state.state());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return contains(((State) o).state());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!bits.getAndClear(codec.rank(((State) o).state()))) return false;
+        size.decrementAndGet();
+        return true;
+    }
+
+    @Override
+
+    public long sizeLong() {
+        return size.get();
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, size.get());
+    }
+
+    @Override
+    public void clear() {
+        bits.clear();
+        size.set(0);
+    }
+
+    /**
+     * Visits every stored prefix in rank order; out[0 .. elementsToStore) holds the prefix
+     *   and the array is reused between calls
+     */
+    public void forEachPrefix(Consumer<int[]> action) {
+        int[] out = new int[nElements];
+        for (long rank = bits.nextSetBit(0); rank >= 0; rank = bits.nextSetBit(rank + 1)) {
+            codec.unrank(rank, out);
+            action.accept(out);
+        }
+    }
+
+    @Override
+    public Iterator<State> iterator() {
+        if (!codec.isComplete()) {
+            // The stored prefix doesn't pin down the rest of the permutation
+            throw new UnsupportedOperationException("Prefix of " + codec.elementsToRank + " elements can't be iterated as states; use forEachPrefix");
+        }
+        return new Iterator<State>() {
+            long next = bits.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public State next() {
+                if (next < 0) throw new NoSuchElementException();
+                int[] state = codec.unrank(next);
+                next = bits.nextSetBit(next + 1);
+                return State.of(state, nElements, retrievalSettings);
+            }
+        };
+    }
+
+    /**
+     * Flushes a file-backed cache
+     */
+    @Override
+    public void close() throws IOException {
+        bits.close();
+    }
+}
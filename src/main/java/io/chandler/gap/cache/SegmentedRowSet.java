@@ -0,0 +1,246 @@
+package io.chandler.gap.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+
+/**
+ * Open-addressing set of fixed-width long rows with a 64-bit size
+ *
+ * Slots live in ByteBuffer segments of at most 1 GiB, so the table isn't bound by
+ *   Java array limits.  Segments are heap buffers, or direct buffers outside the
+ *   heap if asked for (those count against -XX:MaxDirectMemorySize, which defaults
+ *   to -Xmx).  Lookups may run concurrently with each other, but
+ *   not with changes.
+ *
+ * A zero first word marks an empty slot, so the rare row that starts with zero is
+ *   kept in a small side set instead.
+ */
+public class SegmentedRowSet {
+    private static final int MAX_SEGMENT_SHIFT = 30;
+
+    public final int wordsPerRow;
+    private final int rowBytes;
+    private final float loadFactor;
+    private final boolean direct;
+    private final long initialSlots;
+
+    private ByteBuffer[] segments;
+    private int slotShift; // log2(slots per segment)
+    private long mask;
+    private long maxFill;
+    private long size;
+
+    private final ObjectOpenHashSet<LongArrayList> zeroFirst = new ObjectOpenHashSet<>();
+
+    public SegmentedRowSet(int wordsPerRow) {
+        this(wordsPerRow, 1024, 0.75f, false);
+    }
+
+    /**
+     * @param loadFactor fill before doubling; lower trades memory for shorter probes
+     * @param direct allocate segments outside the Java heap
+     */
+    public SegmentedRowSet(int wordsPerRow, long expectedSize, float loadFactor, boolean direct) {
+        if (loadFactor <= 0 || loadFactor >= 1) throw new IllegalArgumentException("Load factor must be in (0, 1): " + loadFactor);
+        this.wordsPerRow = wordsPerRow;
+        this.rowBytes = wordsPerRow * 8;
+        this.loadFactor = loadFactor;
+        this.direct = direct;
+        this.initialSlots = HashCommon.bigArraySize(Math.max(16, expectedSize), loadFactor);
+        allocate(initialSlots);
+    }
+
+    private void allocate(long slots) {
+        // Largest power-of-two slot count that fits a segment
+        int maxShift = MAX_SEGMENT_SHIFT - (32 - Integer.numberOfLeadingZeros(rowBytes - 1));
+        int totalShift = 63 - Long.numberOfLeadingZeros(slots);
+        this.slotShift = Math.min(maxShift, totalShift);
+        int nSegments = (int) (slots >>> slotShift);
+        this.segments = new ByteBuffer[nSegments];
+        for (int i = 0; i < nSegments; i++) {
+            int bytes = (1 << slotShift) * rowBytes;
+            segments[i] = (direct ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes)).order(ByteOrder.nativeOrder());
+        }
+        this.mask = slots - 1;
+        this.maxFill = HashCommon.maxFill(slots, loadFactor);
+    }
+
+    private ByteBuffer segment(long slot) {
+        return segments[(int) (slot >>> slotShift)];
+    }
+
+    private int byteOffset(long slot) {
+        return (int) (slot & ((1L << slotShift) - 1)) * rowBytes;
+    }
+
+    private long hashRow(long[] row, int offset) {
+        long h = 0;
+        for (int w = 0; w < wordsPerRow; w++) {
+            h = HashCommon.mix(h ^ row[offset + w]);
+        }
+        return h;
+    }
+
+    private long hashSlot(ByteBuffer seg, int base) {
+        long h = 0;
+        for (int w = 0; w < wordsPerRow; w++) {
+            h = HashCommon.mix(h ^ seg.getLong(base + w * 8));
+        }
+        return h;
+    }
+
+    private static LongArrayList boxRow(long[] row, int offset, int words) {
+        return LongArrayList.wrap(Arrays.copyOfRange(row, offset, offset + words));
+    }
+
+    // Slot holding the row, or -(insertion slot) - 1
+    private long find(long[] row, int offset) {
+        long slot = hashRow(row, offset) & mask;
+        while (true) {
+            ByteBuffer seg = segment(slot);
+            int base = byteOffset(slot);
+            long first = seg.getLong(base);
+            if (first == 0) return -slot - 1;
+            if (first == row[offset]) {
+                int w = 1;
+                while (w < wordsPerRow && seg.getLong(base + w * 8) == row[offset + w]) w++;
+                if (w == wordsPerRow) return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void write(long slot, long[] row, int offset) {
+        ByteBuffer seg = segment(slot);
+        int base = byteOffset(slot);
+        for (int w = 0; w < wordsPerRow; w++) seg.putLong(base + w * 8, row[offset + w]);
+    }
+
+    /**
+     * @return true if the row was added, false if it was already present
+     */
+    public boolean add(long[] row, int offset) {
+        if (row[offset] == 0) {
+            if (!zeroFirst.add(boxRow(row, offset, wordsPerRow))) return false;
+            size++;
+            return true;
+        }
+        long slot = find(row, offset);
+        if (slot >= 0) return false;
+        write(-slot - 1, row, offset);
+        if (++size - zeroFirst.size() > maxFill) rehash(Math.multiplyExact(mask + 1, 2));
+        return true;
+    }
+
+    public boolean contains(long[] row, int offset) {
+        if (row[offset] == 0) return zeroFirst.contains(boxRow(row, offset, wordsPerRow));
+        return find(row, offset) >= 0;
+    }
+
+    public boolean remove(long[] row, int offset) {
+        if (row[offset] == 0) {
+            if (!zeroFirst.remove(boxRow(row, offset, wordsPerRow))) return false;
+            size--;
+            return true;
+        }
+        long slot = find(row, offset);
+        if (slot < 0) return false;
+        shiftRows(slot);
+        size--;
+        return true;
+    }
+
+    // Backward-shift deletion, so probe chains stay intact without tombstones
+    private void shiftRows(long pos) {
+        long last;
+        while (true) {
+            pos = ((last = pos) + 1) & mask;
+            while (true) {
+                ByteBuffer seg = segment(pos);
+                int base = byteOffset(pos);
+                if (seg.getLong(base) == 0) {
+                    ByteBuffer lastSeg = segment(last);
+                    int lastBase = byteOffset(last);
+                    for (int w = 0; w < wordsPerRow; w++) lastSeg.putLong(lastBase + w * 8, 0);
+                    return;
+                }
+                long ideal = hashSlot(seg, base) & mask;
+                if (last <= pos ? last >= ideal || ideal > pos : last >= ideal && ideal > pos) break;
+                pos = (pos + 1) & mask;
+            }
+            ByteBuffer from = segment(pos), to = segment(last);
+            int fromBase = byteOffset(pos), toBase = byteOffset(last);
+            for (int w = 0; w < wordsPerRow; w++) to.putLong(toBase + w * 8, from.getLong(fromBase + w * 8));
+        }
+    }
+
+    private void rehash(long slots) {
+        ByteBuffer[] old = segments;
+        int oldShift = slotShift;
+        allocate(slots);
+        long[] row = new long[wordsPerRow];
+        for (ByteBuffer seg : old) {
+            for (int base = 0; base < (1 << oldShift) * rowBytes; base += rowBytes) {
+                if (seg.getLong(base) == 0) continue;
+                for (int w = 0; w < wordsPerRow; w++) row[w] = seg.getLong(base + w * 8);
+                write(-find(row, 0) - 1, row, 0);
+            }
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Bytes held by the slot segments
+     */
+    public long tableBytes() {
+        return (mask + 1) * rowBytes;
+    }
+
+    /**
+     * Walks every stored row; not safe against concurrent changes
+     */
+    public class RowCursor {
+        private final long[] row = new long[wordsPerRow];
+        private long slot = -1;
+        private Iterator<LongArrayList> zeroRows;
+
+        /**
+         * Moves to the next stored row
+         * @return false once every row has been visited
+         */
+        public boolean advance() {
+            if (zeroRows == null) {
+                while (++slot <= mask) {
+                    ByteBuffer seg = segment(slot);
+                    int base = byteOffset(slot);
+                    if (seg.getLong(base) == 0) continue;
+                    for (int w = 0; w < wordsPerRow; w++) row[w] = seg.getLong(base + w * 8);
+                    return true;
+                }
+                zeroRows = zeroFirst.iterator();
+            }
+            if (!zeroRows.hasNext()) return false;
+            zeroRows.next().getElements(0, row, 0, wordsPerRow);
+            return true;
+        }
+
+        public long[] row() {
+            return row;
+        }
+    }
+
+    public void clear() {
+        zeroFirst.clear();
+        size = 0;
+        allocate(initialSlots);
+    }
+}
@@ -0,0 +1,276 @@
+package io.chandler.gap.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+
+/**
+ * Sorted, duplicate-free files of packed states, lz4 compressed
+ *
+ * Rows are StatePacker rows ordered word by word as unsigned longs.  That isn't the
+ *   order of the states themselves, but any fixed total order will do because files
+ *   are only ever merged with each other.
+ *
+ * A RunWriter buffers rows in memory and spills them as sorted runs; merge() streams
+ *   any number of runs back as one sorted stream, merging in passes of at most
+ *   MAX_FAN_IN files so the number of open files stays bounded.
+ */
+public class SortedRunFiles {
+    public static final int MAX_FAN_IN = 64;
+
+    public final StatePacker packer;
+    public final int words;
+    private final Path dir;
+    private final int runRows;
+    private int nextFile = 0;
+
+    /**
+     * @param runRows rows buffered in memory before a run is spilled
+     */
+    public SortedRunFiles(StatePacker packer, Path dir, int runRows) throws IOException {
+        this.packer = packer;
+        this.words = packer.wordsPerRow;
+        this.dir = dir;
+        this.runRows = runRows;
+        Files.createDirectories(dir);
+    }
+
+    public synchronized Path newFile(String prefix) {
+        return dir.resolve(prefix + "-" + (nextFile++) + ".lz4");
+    }
+
+    public static int compare(long[] a, int aOffset, long[] b, int bOffset, int words) {
+        for (int w = 0; w < words; w++) {
+            int c = Long.compareUnsigned(a[aOffset + w], b[bOffset + w]);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    public static void delete(List<Path> files) {
+        for (Path file : files) delete(file);
+    }
+
+    public static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes rows, which must already be sorted and distinct, to one file
+     */
+    public class RowWriter implements Closeable {
+        public final Path file;
+        private final DataOutputStream out;
+        private long count = 0;
+
+        public RowWriter(Path file) throws IOException {
+            this.file = file;
+            this.out = new DataOutputStream(new LZ4BlockOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)));
+        }
+
+        public void add(long[] rows, int offset) throws IOException {
+            for (int w = 0; w < words; w++) out.writeLong(rows[offset + w]);
+            count++;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Buffers unsorted rows and spills them as sorted, duplicate-free runs
+     */
+    public class RunWriter {
+        private final String prefix;
+        private final long[] buffer;
+        private int count = 0;
+        private final List<Path> runs = new ArrayList<>();
+
+        public RunWriter(String prefix) {
+            this.prefix = prefix;
+            this.buffer = new long[runRows * words];
+        }
+
+        public void add(long[] rows, int offset) throws IOException {
+            System.arraycopy(rows, offset, buffer, count * words, words);
+            if (++count == runRows) spill();
+        }
+
+        private void spill() throws IOException {
+            if (count == 0) return;
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) order[i] = i;
+            IntArrays.quickSort(order, 0, count, (a, b) -> compare(buffer, a * words, buffer, b * words, words));
+
+            Path file = newFile(prefix);
+            try (RowWriter out = new RowWriter(file)) {
+                int prev = -1;
+                for (int i : order) {
+                    if (prev >= 0 && compare(buffer, prev * words, buffer, i * words, words) == 0) continue;
+                    out.add(buffer, i * words);
+                    prev = i;
+                }
+            }
+            runs.add(file);
+            count = 0;
+        }
+
+        /**
+         * Spills what's left; the caller owns (and deletes) the returned runs
+         */
+        public List<Path> finish() throws IOException {
+            spill();
+            return runs;
+        }
+    }
+
+    /**
+     * Sorted stream of rows
+     */
+    public abstract class RowStream implements Closeable {
+        protected final long[] row = new long[words];
+        private boolean hasRow = false, exhausted = false;
+
+        // Reads the next row into row, false at the end
+        protected abstract boolean read() throws IOException;
+
+        public boolean next() throws IOException {
+            hasRow = !exhausted && read();
+            exhausted = !hasRow;
+            return hasRow;
+        }
+
+        public long[] row() {
+            return row;
+        }
+
+        /**
+         * Advances to the first row not below target; true if it equals target.
+         *   Targets must be passed in increasing order.
+         */
+        public boolean skipTo(long[] target, int offset) throws IOException {
+            if (!hasRow && !exhausted) next();
+            while (hasRow && compare(row, 0, target, offset, words) < 0) next();
+            return hasRow && compare(row, 0, target, offset, words) == 0;
+        }
+    }
+
+    public RowStream open(Path file) throws IOException {
+        DataInputStream in = new DataInputStream(new LZ4BlockInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)));
+        return new RowStream() {
+            @Override
+            protected boolean read() throws IOException {
+                try {
+                    row[0] = in.readLong();
+                } catch (EOFException e) {
+                    return false;
+                }
+                for (int w = 1; w < words; w++) row[w] = in.readLong();
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    /**
+     * Streams the union of the runs in order, without duplicates.  With more than
+     *   MAX_FAN_IN runs, groups are first merged into intermediate files, which are
+     *   deleted once read.
+     */
+    public RowStream merge(List<Path> runs) throws IOException {
+        List<Path> level = runs;
+        boolean ownsLevel = false;
+        while (level.size() > MAX_FAN_IN) {
+            List<Path> merged = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += MAX_FAN_IN) {
+                List<Path> group = level.subList(i, Math.min(i + MAX_FAN_IN, level.size()));
+                Path file = newFile("merge");
+                try (RowStream in = mergeDirect(group); RowWriter out = new RowWriter(file)) {
+                    while (in.next()) out.add(in.row(), 0);
+                }
+                if (ownsLevel) delete(group);
+                merged.add(file);
+            }
+            level = merged;
+            ownsLevel = true;
+        }
+        RowStream stream = mergeDirect(level);
+        if (!ownsLevel) return stream;
+        List<Path> intermediate = level;
+        return new RowStream() {
+            @Override
+            protected boolean read() throws IOException {
+                if (!stream.next()) return false;
+                System.arraycopy(stream.row(), 0, row, 0, words);
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                stream.close();
+                delete(intermediate);
+            }
+        };
+    }
+
+    private RowStream mergeDirect(List<Path> runs) throws IOException {
+        List<RowStream> inputs = new ArrayList<>(runs.size());
+        PriorityQueue<RowStream> heap = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> compare(a.row(), 0, b.row(), 0, words));
+        for (Path run : runs) {
+            RowStream in = open(run);
+            inputs.add(in);
+            if (in.next()) heap.add(in);
+        }
+        return new RowStream() {
+            private boolean first = true;
+
+            @Override
+            protected boolean read() throws IOException {
+                while (!heap.isEmpty()) {
+                    RowStream top = heap.poll();
+                    boolean duplicate = !first && compare(top.row(), 0, row, 0, words) == 0;
+                    if (!duplicate) System.arraycopy(top.row(), 0, row, 0, words);
+                    if (top.next()) heap.add(top);
+                    if (!duplicate) {
+                        first = false;
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public void close() throws IOException {
+                for (RowStream in : inputs) in.close();
+            }
+        };
+    }
+}
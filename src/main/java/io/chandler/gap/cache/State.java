@@ -4,10 +4,12 @@ import java.math.BigInteger;
 import java.util.Arrays;
 
 import io.chandler.gap.GroupExplorer.MemorySettings;
+import it.unimi.dsi.fastutil.HashCommon;
 
 public abstract class State {
 	public static State of(int[] state, int maxElement, MemorySettings mem) {
 		if (mem == MemorySettings.COMPACT) {
+			if (FactorialCodec.supports(state.length)) return new StateRanked(state);
 			return new StateFactorial(state, maxElement);
 		} else if (mem == MemorySettings.FASTEST) {
 			return new StateFast(state, maxElement);
@@ -35,6 +37,13 @@ public abstract class State {
             this.factorialRepresentation = encodeFactorial(state).toByteArray();
         }
 
+		/**
+		 * The BigInteger encoding regardless of degree, for comparison with StateRanked
+		 */
+		static StateFactorial legacy(int[] state) {
+			return new StateFactorial(state, state.length);
+		}
+
 		public static int[] stateFromBytes(byte[] bytes, int maxElement) {
 			return decodeFactorial(new BigInteger(bytes), maxElement);
 		}
@@ -172,6 +181,44 @@ public abstract class State {
         }
     }
 
+	/**
+	 * Same factorial-base value as StateFactorial, held as two longs (see FactorialCodec)
+	 */
+	static class StateRanked extends State {
+		final long hi, lo;
+		private final FactorialCodec codec;
+
+		StateRanked(long hi, long lo, FactorialCodec codec) {
+			this.hi = hi;
+			this.lo = lo;
+			this.codec = codec;
+		}
+		private StateRanked(int[] state) {
+			this.codec = FactorialCodec.of(state.length);
+			long[] low = new long[1];
+			this.hi = codec.encode(state, low);
+			this.lo = low[0];
+		}
+
+		@Override
+		public int[] state() {
+			return codec.decode(hi, lo);
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(HashCommon.mix(lo ^ HashCommon.mix(hi)));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof StateRanked)) return false;
+			StateRanked other = (StateRanked) obj;
+			return lo == other.lo && hi == other.hi && codec == other.codec;
+		}
+	}
+
 	static class StateByte extends State {
 		byte[] stateB;
 
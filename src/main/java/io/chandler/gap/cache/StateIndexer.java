@@ -0,0 +1,161 @@
+package io.chandler.gap.cache;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import io.chandler.gap.GroupExplorer;
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * Dense ids for a fixed set of states, both ways, with no objects per state
+ *
+ * Rows are StatePacker rows stored in id order, so state(id) is a straight copy.
+ *   id() probes an open-addressing table of (id + 1) ints keyed by the row hash,
+ *   packing the query word by word as it compares, so it doesn't allocate either.
+ *
+ * Fill it with add() from one thread (or use one of the static builders); once
+ *   it's published, id() and state() are safe from any number of threads.
+ */
+public class StateIndexer {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    public final int nElements;
+    private final StatePacker packer;
+    private final int words;
+
+    private long[] rows;
+    private int size = 0;
+
+    private int[] slots;
+    private int mask;
+    private int maxFill;
+
+    public StateIndexer(int nElements, int expectedSize) {
+        this.nElements = nElements;
+        this.packer = new StatePacker(nElements);
+        this.words = packer.wordsPerRow;
+        this.rows = new long[Math.max(16, expectedSize) * words];
+        allocateSlots(HashCommon.arraySize(Math.max(16, expectedSize), LOAD_FACTOR));
+    }
+
+    /**
+     * Indexes every element of the explorer's group, starting from its current
+     *   state (id 0) in BFS order
+     */
+    public static StateIndexer of(GroupExplorer explorer) {
+        StateIndexer indexer = new StateIndexer(explorer.nElements, 1024);
+        indexer.add(explorer.copyCurrentState());
+        BiConsumer<List<int[]>, Integer> peek = (states, depth) -> {
+            for (int[] state : states) indexer.add(state);
+        };
+        explorer.exploreStates(false, peek);
+        return indexer;
+    }
+
+    /**
+     * Indexes a stored group; ids match the store's
+     */
+    public static StateIndexer of(ElementStore store) {
+        if (store.size() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many elements to index: " + store.size());
+        }
+        StateIndexer indexer = new StateIndexer(store.nElements, (int) store.size());
+        int[] state = new int[store.nElements];
+        for (int id = 0; id < store.size(); id++) {
+            indexer.add(store.state(id, state));
+        }
+        return indexer;
+    }
+
+    private void allocateSlots(int n) {
+        slots = new int[n];
+        mask = n - 1;
+        maxFill = HashCommon.maxFill(n, LOAD_FACTOR);
+    }
+
+    /**
+     * Adds the state if it's new.  Not thread safe.
+     * @return its id
+     */
+    public int add(int[] state) {
+        int existing = id(state);
+        if (existing >= 0) return existing;
+        if ((long) (size + 1) * words > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("State indexer exceeds array limits: " + size + " states");
+        }
+        if ((size + 1) * words > rows.length) {
+            long grown = Math.min((long) rows.length * 2, (long) (Integer.MAX_VALUE - 8) / words * words);
+            long[] next = new long[(int) grown];
+            System.arraycopy(rows, 0, next, 0, size * words);
+            rows = next;
+        }
+        int id = size++;
+        packer.pack(state, rows, id * words);
+        if (size > maxFill) {
+            allocateSlots(slots.length * 2);
+            for (int i = 0; i < size; i++) insert(i);
+        } else {
+            insert(id);
+        }
+        return id;
+    }
+
+    private void insert(int id) {
+        int slot = (int) hashRow(id * words) & mask;
+        while (slots[slot] != 0) slot = (slot + 1) & mask;
+        slots[slot] = id + 1;
+    }
+
+    private long hashRow(int offset) {
+        long h = 0;
+        for (int w = 0; w < words; w++) {
+            h = HashCommon.mix(h ^ rows[offset + w]);
+        }
+        return h;
+    }
+
+    /**
+     * @return the state's id, or -1 if it was never added
+     */
+    public int id(int[] state) {
+        // Same hash as hashRow, packing as we go
+        long h = 0;
+        for (int w = 0; w < words; w++) {
+            h = HashCommon.mix(h ^ packer.packWord(state, w));
+        }
+        final int[] slots = this.slots;
+        final long[] rows = this.rows;
+        final int mask = this.mask;
+        int slot = (int) h & mask;
+        int stored;
+        while ((stored = slots[slot]) != 0) {
+            int base = (stored - 1) * words;
+            int w = 0;
+            while (w < words && rows[base + w] == packer.packWord(state, w)) w++;
+            if (w == words) return stored - 1;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public boolean contains(int[] state) {
+        return id(state) >= 0;
+    }
+
+    /**
+     * Unpacks state id into out
+     */
+    public int[] state(int id, int[] out) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException(id);
+        packer.unpack(rows, id * words, out);
+        return out;
+    }
+
+    public int[] state(int id) {
+        return state(id, new int[nElements]);
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,73 @@
+package io.chandler.gap.cache;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * Packs 1-indexed permutations into fixed-width rows of longs
+ *
+ * Each element takes just enough bits to hold nElements (4 bits up to 15 points,
+ *   5 bits up to 31, 8 bits up to 255...) so an M24 state is two longs.
+ *
+ * The first word of a row is never zero (state[0] >= 1 sits in its low bits),
+ *   so tables can use a zero first word as the empty marker.
+ */
+public class StatePacker {
+    public final int nElements;
+    public final int bitsPerElement;
+    public final int elementsPerWord;
+    public final int wordsPerRow;
+    private final long elementMask;
+
+    public StatePacker(int nElements) {
+        this.nElements = nElements;
+        this.bitsPerElement = 32 - Integer.numberOfLeadingZeros(nElements);
+        this.elementsPerWord = 64 / bitsPerElement;
+        this.wordsPerRow = (nElements + elementsPerWord - 1) / elementsPerWord;
+        this.elementMask = (1L << bitsPerElement) - 1;
+    }
+
+    /**
+     * Packs state into rows[offset .. offset + wordsPerRow)
+     */
+    public void pack(int[] state, long[] rows, int offset) {
+        for (int w = 0; w < wordsPerRow; w++) {
+            rows[offset + w] = packWord(state, w);
+        }
+    }
+
+    /**
+     * Word w of the packed row, for callers that compare rows without a buffer
+     */
+    public long packWord(int[] state, int w) {
+        long word = 0;
+        int start = w * elementsPerWord;
+        int end = Math.min(start + elementsPerWord, nElements);
+        for (int i = end - 1; i >= start; i--) {
+            word = (word << bitsPerElement) | state[i];
+        }
+        return word;
+    }
+
+    /**
+     * Unpacks rows[offset ..] into out
+     */
+    public void unpack(long[] rows, int offset, int[] out) {
+        for (int w = 0; w < wordsPerRow; w++) {
+            long word = rows[offset + w];
+            int start = w * elementsPerWord;
+            int end = Math.min(start + elementsPerWord, nElements);
+            for (int i = start; i < end; i++) {
+                out[i] = (int) (word & elementMask);
+                word >>>= bitsPerElement;
+            }
+        }
+    }
+
+    public long hash(long[] rows, int offset) {
+        long h = 0;
+        for (int w = 0; w < wordsPerRow; w++) {
+            h = HashCommon.mix(h ^ rows[offset + w]);
+        }
+        return h;
+    }
+}
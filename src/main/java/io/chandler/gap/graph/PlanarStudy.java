@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -31,6 +32,7 @@ import io.chandler.gap.GapInterface;
 import io.chandler.gap.Generators;
 import io.chandler.gap.GroupExplorer;
 import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.GroupArchive;
 import io.chandler.gap.graph.genus.MultiGenus;
 
 public class PlanarStudy {
@@ -94,12 +96,9 @@ public class PlanarStudy {
         // --------------------------------------------------------
         if (generate &&
                       !groupName.startsWith("u4_3_") &&
-                      !groupName.startsWith("o8p2") &&
-                      !groupName.startsWith("o8m2") &&
                       !groupName.startsWith("we8") &&
                       !groupName.startsWith("hs") &&
                       !groupName.startsWith("mcl") &&
-                      !groupName.startsWith("co3") &&
                       !generator.equals(Generators.m24)) {
             boolean multithread = true;
             PrintStream[] filesOut = new PrintStream[conj.length];
@@ -107,17 +106,53 @@ public class PlanarStudy {
                 filesOut[i] = new PrintStream(root.getAbsolutePath() + "/" + conj[i] + ".txt");
             }
             
-            GroupExplorer g = new GroupExplorer(generator, mem, new HashSet<>(), new HashSet<>(), new HashSet<>(), multithread);
-            Generators.exploreGroup(g, (state, description) -> {
-                for (int i = 0; i < conj.length; i++) {
-                    boolean match = conjMatches(conj[i], description);
-                    if (match) {
-                        String cycles = GroupExplorer.stateToNotation(state);
-                        filesOut[i].println(cycles);
+            // Elements are archived on the first run so later runs skip the BFS
+            File archive = new File(root, "elements.gxar");
+            if (archive.exists()) {
+                try (GroupArchive.Reader reader = new GroupArchive.Reader(archive.toPath())) {
+                    if (!reader.generators.equals(generator)) {
+                        throw new IllegalStateException(archive + " was written for a different generator");
                     }
+                    int[] identity = new int[reader.nElements];
+                    for (int i = 0; i < identity.length; i++) identity[i] = i + 1;
+                    for (int[] state : reader) {
+                        if (Arrays.equals(state, identity)) continue;
+                        String description = GroupExplorer.describeState(reader.nElements, state);
+                        for (int i = 0; i < conj.length; i++) {
+                            if (conjMatches(conj[i], description)) {
+                                filesOut[i].println(GroupExplorer.stateToNotation(state));
+                            }
+                        }
+                    }
+                    order = reader.size();
+                }
+            } else {
+                GroupExplorer g = new GroupExplorer(generator, mem, new HashSet<>(), new HashSet<>(), new HashSet<>(), multithread);
+                if (groupName.startsWith("o8p2") || groupName.startsWith("o8m2") || groupName.startsWith("co3")) {
+                    // Too large for memory; keep the BFS layers on disk
+                    g.setExternalMemory(new File(root, "bfs").toPath(), 1 << 22);
                 }
-            });
-            order = g.order();
+                File partial = new File(root, "elements.gxar.tmp");
+                try (GroupArchive.Writer writer = new GroupArchive.Writer(partial.toPath(), generator, g.nElements)) {
+                    writer.add(g.copyCurrentState());
+                    Generators.exploreGroup(g, (state, description) -> {
+                        try {
+                            writer.add(state);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        for (int i = 0; i < conj.length; i++) {
+                            boolean match = conjMatches(conj[i], description);
+                            if (match) {
+                                String cycles = GroupExplorer.stateToNotation(state);
+                                filesOut[i].println(cycles);
+                            }
+                        }
+                    });
+                }
+                partial.renameTo(archive);
+                order = g.order();
+            }
             
             // Close the generation files.
             for (int i = 0; i < conj.length; i++) {
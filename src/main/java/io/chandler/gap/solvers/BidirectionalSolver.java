@@ -0,0 +1,360 @@
+package io.chandler.gap.solvers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import io.chandler.gap.GroupExplorer;
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.PermutationKernel;
+import io.chandler.gap.cache.State;
+import it.unimi.dsi.fastutil.objects.Object2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Meet-in-the-middle search for the shortest words reaching a partially specified state
+ *
+ * A target like {0,0,13,14,...} (zeros are wildcards) is a whole coset of the group, so
+ *   the backward search runs over patterns: where each specified value currently sits.
+ *   Applying a generator moves those values independently of the wildcards, so the
+ *   patterns form their own (much smaller) BFS graph rooted at the target.
+ *
+ * The backward ball is built first, to half the depth budget (R).  The forward BFS then
+ *   runs over group elements from the identity, and each new element is joined with every
+ *   walk of exactly R steps from its pattern to the target (any length up to R from the
+ *   identity).  A shortest word of length L splits into a shortest forward word of length
+ *   L - R and some R-step walk, so every element turns up at its true length, even when
+ *   that walk isn't a shortest path between patterns.  Neither side gets near the full
+ *   group, e.g. the 698M-element triskelion at depth 36 only needs both balls to depth 18.
+ *
+ * The forward side stores just the last generator per element (a byte), and paths are
+ *   rebuilt by walking the inverse generators back to the root.  The backward side stores
+ *   each pattern's distance to the target, which prunes the walks.  Walks also never
+ *   undo their previous step (or the element's last forward step): the stored forward
+ *   path plus the rest of a shortest word is still a shortest word, so it never cancels.
+ */
+public class BidirectionalSolver {
+    private static final byte ROOT = -1;
+    private static final byte MISSING = -2;
+    private static final int UNREACHED = -1;
+
+    public final int nElements;
+    private final MemorySettings mem;
+    private final int nGenerators;
+    private final int[] identity;
+    // Forward step: newState[j] = state[source[g][j]]
+    private final int[][] source;
+    private final int[][] inverseSource;
+    // Generator that undoes each generator, or -1 if none is in the list
+    private final int[] inverseGenerator;
+    private Consumer<String> progress = message -> {};
+    // Walks joined with forward elements in the last solve
+    private long walks;
+    // Depth the last backward search actually reached
+    private int lastBackwardDepth;
+
+    public static class Solution {
+        public final int[] state;
+        /** Generator indices in the order they are applied */
+        public final int[] word;
+
+        Solution(int[] state, int[] word) {
+            this.state = state;
+            this.word = word;
+        }
+    }
+
+    public BidirectionalSolver(String generator, MemorySettings mem) {
+        GroupExplorer parsed = new GroupExplorer(generator, mem);
+        this.nElements = parsed.nElements;
+        this.mem = mem;
+        this.identity = parsed.copyCurrentState();
+        this.nGenerators = parsed.parsedOperations.size();
+        if (nGenerators > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many generators for byte parent pointers: " + nGenerators);
+        }
+        this.source = new int[nGenerators][];
+        this.inverseSource = new int[nGenerators][];
+        for (int g = 0; g < nGenerators; g++) {
+            source[g] = PermutationKernel.sourceTable(parsed.parsedOperations.get(g), nElements);
+            inverseSource[g] = new int[nElements];
+            for (int j = 0; j < nElements; j++) inverseSource[g][source[g][j]] = j;
+        }
+        this.inverseGenerator = new int[nGenerators];
+        for (int g = 0; g < nGenerators; g++) {
+            inverseGenerator[g] = -1;
+            for (int h = 0; h < nGenerators && inverseGenerator[g] < 0; h++) {
+                if (Arrays.equals(source[h], inverseSource[g])) inverseGenerator[g] = h;
+            }
+        }
+    }
+
+    /**
+     * Receives a line per BFS layer on either side; nothing is printed by default
+     */
+    public void setProgress(Consumer<String> progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Number of backward walks the last solve joined with forward elements
+     */
+    public long walkCount() {
+        return walks;
+    }
+
+    // A pending meet: forward element plus the backward word to the target
+    private static class Meet {
+        final int[] forward;
+        final int forwardDepth;
+        final int[] backwardWord;
+        final int[] endpoint;
+
+        Meet(int[] forward, int forwardDepth, int[] backwardWord, int[] endpoint) {
+            this.forward = forward;
+            this.forwardDepth = forwardDepth;
+            this.backwardWord = backwardWord;
+            this.endpoint = endpoint;
+        }
+
+        int length() {
+            return forwardDepth + backwardWord.length;
+        }
+    }
+
+    /**
+     * Finds up to matchNStates distinct elements matching stateMatch, in order of word length
+     *
+     * @param stateMatch target state; 0 entries match anything
+     * @param maxDepth longest word to consider, or null to search until the group is exhausted
+     * @param order group order, used to size the backward ball when maxDepth is null
+     * @return the number of solutions reported
+     */
+    public int solve(int[] stateMatch, int matchNStates, Integer maxDepth, long order, Consumer<Solution> results) {
+        // Specified values, and the positions they must end up in
+        int nSpecified = 0;
+        for (int i = 0; i < nElements; i++) if (stateMatch[i] != 0) nSpecified++;
+        int[] values = new int[nSpecified];
+        int[] target = new int[nSpecified];
+        for (int i = 0, k = 0; i < nElements; i++) {
+            if (stateMatch[i] != 0) {
+                values[k] = stateMatch[i];
+                target[k++] = i;
+            }
+        }
+
+        walks = 0;
+        int backwardDepth = maxDepth == null ? Integer.MAX_VALUE : maxDepth / 2;
+        long backwardBudget = maxDepth == null ? (long) Math.sqrt(order) : Long.MAX_VALUE;
+        Object2IntOpenHashMap<State> backward = exploreBackward(target, backwardDepth, backwardBudget);
+        int backwardReach = lastBackwardDepth;
+
+        Object2ByteOpenHashMap<State> forward = new Object2ByteOpenHashMap<>();
+        forward.defaultReturnValue(MISSING);
+        forward.put(State.of(identity, nElements, mem), ROOT);
+
+        Set<State> reported = new HashSet<>();
+        reported.add(State.of(identity, nElements, mem)); // The empty word isn't a solution
+        Map<State, Meet> pending = new HashMap<>();
+        int[] count = {0};
+
+        List<int[]> frontier = new ArrayList<>();
+        frontier.add(identity.clone());
+        // Words shorter than the backward reach are all walks from the identity
+        for (int steps = 0; steps <= backwardReach; steps++) {
+            checkMeet(identity.clone(), 0, -1, steps, values, backward, reported, pending);
+        }
+
+        int depth = 0;
+        while (true) {
+            // Anything found later is at least depth + 1 + backwardReach long
+            if (flush(pending, depth + backwardReach, forward, reported, count, matchNStates, results)) return count[0];
+
+            if (frontier.isEmpty()) break;
+            if (maxDepth != null && depth + 1 + backwardReach > maxDepth) {
+                progress.accept("Max depth reached");
+                break;
+            }
+
+            List<int[]> next = new ArrayList<>();
+            for (int[] state : frontier) {
+                for (int g = 0; g < nGenerators; g++) {
+                    int[] child = new int[nElements];
+                    int[] src = source[g];
+                    for (int j = 0; j < nElements; j++) child[j] = state[src[j]];
+                    State key = State.of(child, nElements, mem);
+                    if (forward.getByte(key) != MISSING) continue;
+                    forward.put(key, (byte) g);
+                    next.add(child);
+                    checkMeet(child, depth + 1, g, backwardReach, values, backward, reported, pending);
+                }
+            }
+            frontier = next;
+            depth++;
+            progress.accept("Forward depth " + depth + ": " + frontier.size() + " states, " + forward.size() + " total");
+        }
+
+        flush(pending, maxDepth == null ? Integer.MAX_VALUE : maxDepth, forward, reported, count, matchNStates, results);
+        return count[0];
+    }
+
+    private Object2IntOpenHashMap<State> exploreBackward(int[] target, int maxDepth, long budget) {
+        Object2IntOpenHashMap<State> backward = new Object2IntOpenHashMap<>();
+        backward.defaultReturnValue(UNREACHED);
+        backward.put(patternKey(target), 0);
+
+        List<int[]> frontier = new ArrayList<>();
+        frontier.add(target);
+        int depth = 0;
+        while (depth < maxDepth && backward.size() < budget && !frontier.isEmpty()) {
+            List<int[]> next = new ArrayList<>();
+            for (int[] pattern : frontier) {
+                for (int g = 0; g < nGenerators; g++) {
+                    // Predecessor: the pattern that generator g carries onto this one
+                    int[] prev = new int[pattern.length];
+                    int[] src = source[g];
+                    for (int k = 0; k < pattern.length; k++) prev[k] = src[pattern[k]];
+                    State key = patternKey(prev);
+                    if (backward.getInt(key) != UNREACHED) continue;
+                    backward.put(key, depth + 1);
+                    next.add(prev);
+                }
+            }
+            if (next.isEmpty()) break;
+            frontier = next;
+            depth++;
+            progress.accept("Backward depth " + depth + ": " + frontier.size() + " patterns, " + backward.size() + " total");
+        }
+        lastBackwardDepth = depth;
+        return backward;
+    }
+
+    private State patternKey(int[] pattern) {
+        int[] key = new int[pattern.length];
+        for (int k = 0; k < pattern.length; k++) key[k] = pattern[k] + 1;
+        return State.of(key, nElements, MemorySettings.DEFAULT);
+    }
+
+    private void checkMeet(int[] state, int depth, int last, int steps, int[] values, Object2IntOpenHashMap<State> backward, Set<State> reported, Map<State, Meet> pending) {
+        int[] positions = new int[nElements + 1];
+        for (int j = 0; j < nElements; j++) positions[state[j]] = j;
+        int[] pattern = new int[values.length];
+        for (int k = 0; k < values.length; k++) pattern[k] = positions[values[k]];
+
+        int distance = backward.getInt(patternKey(pattern));
+        if (distance == UNREACHED || distance > steps) return;
+        walk(state, depth, pattern, new int[steps], 0, last, backward, reported, pending);
+    }
+
+    /**
+     * Every walk filling the rest of word from the pattern to the target, applying the
+     *   same moves to the element.  Distances in the backward ball prune dead ends, and
+     *   a step undoing the previous one (last, -1 for none) can't be part of a shortest word.
+     */
+    private void walk(int[] state, int depth, int[] pattern, int[] word, int at, int last,
+            Object2IntOpenHashMap<State> backward, Set<State> reported, Map<State, Meet> pending) {
+        if (at == word.length) {
+            walks++;
+            // Only the target is at distance 0
+            int[] endpoint = state;
+            for (int g : word) {
+                int[] moved = new int[nElements];
+                int[] src = source[g];
+                for (int j = 0; j < nElements; j++) moved[j] = endpoint[src[j]];
+                endpoint = moved;
+            }
+            State endKey = State.of(endpoint, nElements, mem);
+            if (reported.contains(endKey)) return;
+            Meet meet = new Meet(state, depth, word.clone(), endpoint);
+            Meet existing = pending.get(endKey);
+            if (existing == null || meet.length() < existing.length()) pending.put(endKey, meet);
+            return;
+        }
+        int remaining = word.length - at - 1;
+        int[] next = new int[pattern.length];
+        for (int g = 0; g < nGenerators; g++) {
+            if (last >= 0 && inverseGenerator[last] == g) continue;
+            int[] inv = inverseSource[g];
+            for (int k = 0; k < pattern.length; k++) next[k] = inv[pattern[k]];
+            int distance = backward.getInt(patternKey(next));
+            if (distance == UNREACHED || distance > remaining) continue;
+            word[at] = g;
+            walk(state, depth, next.clone(), word, at + 1, g, backward, reported, pending);
+        }
+    }
+
+    /**
+     * Reports pending meets no longer than maxLength, shortest first
+     * @return true once matchNStates solutions have been reported
+     */
+    private boolean flush(Map<State, Meet> pending, int maxLength, Object2ByteOpenHashMap<State> forward,
+            Set<State> reported, int[] count, int matchNStates, Consumer<Solution> results) {
+        List<Map.Entry<State, Meet>> ready = new ArrayList<>();
+        for (Map.Entry<State, Meet> e : pending.entrySet()) {
+            if (e.getValue().length() <= maxLength) ready.add(e);
+        }
+        ready.sort(Comparator.comparingInt(e -> e.getValue().length()));
+        for (Map.Entry<State, Meet> e : ready) {
+            if (count[0] >= matchNStates) return true;
+            Meet meet = e.getValue();
+            pending.remove(e.getKey());
+            reported.add(e.getKey());
+
+            int[] forwardWord = forwardWord(meet.forward, meet.forwardDepth, forward);
+            int[] word = Arrays.copyOf(forwardWord, forwardWord.length + meet.backwardWord.length);
+            System.arraycopy(meet.backwardWord, 0, word, forwardWord.length, meet.backwardWord.length);
+            results.accept(new Solution(meet.endpoint, word));
+            count[0]++;
+        }
+        return count[0] >= matchNStates;
+    }
+
+    private int[] forwardWord(int[] state, int depth, Object2ByteOpenHashMap<State> forward) {
+        int[] word = new int[depth];
+        int[] current = state;
+        for (int i = depth - 1; i >= 0; i--) {
+            byte g = forward.getByte(State.of(current, nElements, mem));
+            word[i] = g;
+            int[] parent = new int[nElements];
+            int[] inv = inverseSource[g];
+            for (int j = 0; j < nElements; j++) parent[j] = current[inv[j]];
+            current = parent;
+        }
+        return word;
+    }
+
+    /**
+     * Prints solutions in the same format as the old forward-only drawers_analysis
+     */
+    public static void drawersAnalysis(String generator, MemorySettings mem, long order, Integer maxDepth, int[] stateMatch, int matchNStates, String[] namesLookup) {
+        System.out.println("Order: " + order);
+        System.out.println("Max depth: " + maxDepth);
+
+        BidirectionalSolver solver = new BidirectionalSolver(generator, mem);
+        solver.setProgress(System.out::println);
+        System.out.println(Arrays.toString(stateMatch));
+        System.out.println(Arrays.toString(solver.identity));
+
+        solver.solve(stateMatch, matchNStates, maxDepth, order, solution -> {
+            int[] state = solution.state;
+            System.out.println(Arrays.toString(state));
+            System.out.println(GroupExplorer.describeState(13, state));
+            System.out.println(GroupExplorer.stateToNotation(state));
+            String op = "";
+            String inverseOp = "";
+            for (int i = solution.word.length - 1; i >= 0; i--) {
+                op = namesLookup[solution.word[i]] + " " + op;
+                inverseOp = inverseOp + " " + namesLookup[solution.word[i]];
+            }
+            System.out.println("Fwd: " + op);
+            System.out.println("Inv: " + inverseOp);
+            System.out.println(Arrays.toString(state));
+        });
+    }
+}
@@ -2,7 +2,6 @@ package io.chandler.gap.solvers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map.Entry;
 
@@ -11,9 +10,7 @@ import io.chandler.gap.Dodecahedron;
 import io.chandler.gap.GroupExplorer;
 import io.chandler.gap.GroupExplorer.MemorySettings;
 import io.chandler.gap.GroupExplorer.PeekData;
-import io.chandler.gap.cache.State;
 import io.chandler.gap.render.Icosahedron;
-import javafx.util.Pair;
 
 public class MiscSolvers {
 
@@ -123,75 +120,12 @@ public class MiscSolvers {
     }
 
     public static void drawers_analysis(String generator, int order, Integer maxDepth, int[] stateMatch, int matchNStates) {
-
-        System.out.println("Order: " + order);
-        System.out.println("Max depth: " + maxDepth);
-
         String[] namesLookup = new String[] {
             "A", "B", "C"
         };
 
         // 2-cycles; no inverse moves needed
-
-
-        GroupExplorer group = new GroupExplorer(generator,
-            MemorySettings.COMPACT,
-            new HashSet<>(), new HashSet<>(), new HashSet<>(), true);
-
-        group.setTrackPath(true);
-        group.initIterativeExploration();
-
-        ArrayList<int[]> matchingStates = new ArrayList<>();
-
-        System.out.println(Arrays.toString(stateMatch));
-        System.out.println(Arrays.toString(group.copyCurrentState()));
-
-        HashMap<State, Pair<State, Integer>> backtrack = new HashMap<>();
-
-        while (matchingStates.size() < matchNStates) {
-
-            group.iterateExploration(false, order+1, true, (states, depth) -> {
-                for (Object x : states) {
-                    PeekData data = (PeekData) x;
-                    backtrack.put(data.newState, new Pair<>(data.oldState, data.operation));
-                    int[] state = data.newState.state();
-                    boolean matches = true;
-                    for (int i = 0; i < state.length; i++) {
-                        if (stateMatch[i] != 0 && state[i] != stateMatch[i]) {
-                            matches = false;
-                            break;
-                        }
-                    }
-                    if (matches) {
-
-                        System.out.println(Arrays.toString(state));
-                        matchingStates.add(state);
-                        System.out.println(GroupExplorer.describeState(13, state));
-                        System.out.println(GroupExplorer.stateToNotation(state));
-                        // Figure out path
-                        State current = State.of(state, group.nElements, group.mem);
-                        String op = "";
-                        String inverseOp = "";
-                        while (backtrack.containsKey(current)) {
-                            Pair<State, Integer> d = backtrack.get(current);
-                            op = namesLookup[d.getValue()] + " " + op;
-                            inverseOp = inverseOp + " " + namesLookup[d.getValue()];
-                            current = d.getKey();
-                        }
-                        System.out.println("Fwd: " + op);
-                        System.out.println("Inv: " + inverseOp);
-                        System.out.println(Arrays.toString(state));
-                    }
-                }
-            });
-            System.out.println(group.getIteration() + " " + group.order());
-            if (maxDepth != null && group.getIteration() > maxDepth) {
-                System.out.println("Max depth reached");
-                return;
-            }
-        }
-
-
+        BidirectionalSolver.drawersAnalysis(generator, MemorySettings.COMPACT, order, maxDepth, stateMatch, matchNStates, namesLookup);
     }
 	
     public static void crammedCubeSimm() {
@@ -238,17 +172,15 @@ public class MiscSolvers {
 
         // Now g contains the full puzzle generator
 
-        GroupExplorer group = new GroupExplorer(
+        GroupExplorer group = GroupExplorer.withPathTracking(
             GroupExplorer.generatorsToString(g),
-            MemorySettings.COMPACT,
-            new HashSet<>(), new HashSet<>(), new HashSet<>(), true);
+            MemorySettings.COMPACT);
         // I want to iteratively explore states until I find a match to this state:
         // Zeroes should be ignored in comparison
         // 1,2,9, 10  are the fixed pcs
        // int[] stateMatch = {1,2,3,4,5,6,7,8,9,10,11,12, 13,14,15, 16,17,18};
         int[] stateMatch =   {0,0,0,0,0,0,7,0,0,10,0,0, 0,0,0,0,0,0};
 
-        group.setTrackPath(true);
         group.initIterativeExploration();
 
         /*
@@ -261,14 +193,11 @@ public class MiscSolvers {
         System.out.println(Arrays.toString(stateMatch));
         System.out.println(Arrays.toString(group.copyCurrentState()));
 
-        HashMap<State, Pair<State, Integer>> backtrack = new HashMap<>();
-
         while (matchingStates.size() < 10) {
 
             group.iterateExploration(false, 300_000_000, true, (states, depth) -> {
                 for (Object x : states) {
                     PeekData data = (PeekData) x;
-                    backtrack.put(data.newState, new Pair<>(data.oldState, data.operation));
                     int[] state = data.newState.state();
                     boolean matches = true;
                     for (int i = 0; i < state.length; i++) {
@@ -282,14 +211,12 @@ public class MiscSolvers {
                         System.out.println(GroupExplorer.describeState(18, state));
                         matchingStates.add(state);
                         // Figure out path
-                        State current = State.of(state, group.nElements, group.mem);
                         String op = "";
                         String inverseOp = "";
-                        while (backtrack.containsKey(current)) {
-                            Pair<State, Integer> d = backtrack.get(current);
-                            op = namesLookup[d.getValue()] + " " + op;
-                            inverseOp = inverseOp + " " + inverseNamesLookup[d.getValue()];
-                            current = d.getKey();
+                        int[] word = group.pathTo(state);
+                        for (int w = word.length - 1; w >= 0; w--) {
+                            op = namesLookup[word[w]] + " " + op;
+                            inverseOp = inverseOp + " " + inverseNamesLookup[word[w]];
                         }
                         System.out.println("Fwd: " + op);
                         System.out.println("Inv: " + inverseOp);
@@ -369,10 +296,9 @@ public class MiscSolvers {
 
         // Now g contains the full puzzle generator
 
-        GroupExplorer group = new GroupExplorer(
+        GroupExplorer group = GroupExplorer.withPathTracking(
             GroupExplorer.generatorsToString(g),
-            MemorySettings.COMPACT,
-            new HashSet<>(), new HashSet<>(), new HashSet<>(), true);
+            MemorySettings.COMPACT);
         // I want to iteratively explore states until I find a match to this state:
         // Zeroes should be ignored in comparison
        // int[] stateMatch = { 1,2,3,4,5,6,7,8,9,10,11,12, 13,14,15, 16,17,18};
@@ -380,7 +306,6 @@ public class MiscSolvers {
         // 1 GR  2 YR  3 YG  4 YO
         // 5 YB  6 BO  7 WB  8 WO
         // 9 WG 10 WR 11 GO 12 BR
-        group.setTrackPath(true);
         group.initIterativeExploration();
 
         /*
@@ -393,8 +318,6 @@ public class MiscSolvers {
         System.out.println(Arrays.toString(stateMatch));
         System.out.println(Arrays.toString(group.copyCurrentState()));
 
-        HashMap<State, Pair<State, Integer>> backtrack = new HashMap<>();
-
         while (matchingStates.size() < 7) {
             if (group.getIteration() > 24) {
                 System.out.println("Match not found");
@@ -404,7 +327,6 @@ public class MiscSolvers {
             group.iterateExploration(false, 300_000_000, true, (states, depth) -> {
                 for (Object x : states) {
                     PeekData data = (PeekData) x;
-                    backtrack.put(data.newState, new Pair<>(data.oldState, data.operation));
                     int[] state = data.newState.state();
                     boolean matches = true;
                     for (int i = 0; i < state.length; i++) {
@@ -418,14 +340,12 @@ public class MiscSolvers {
                         System.out.println(Arrays.toString(state));
                         matchingStates.add(state);
                         // Figure out path
-                        State current = State.of(state, group.nElements, group.mem);
                         String op = "";
                         String inverseOp = "";
-                        while (backtrack.containsKey(current)) {
-                            Pair<State, Integer> d = backtrack.get(current);
-                            op = namesLookup[d.getValue()] + " " + op;
-                            inverseOp = inverseOp + " " + inverseNamesLookup[d.getValue()];
-                            current = d.getKey();
+                        int[] word = group.pathTo(state);
+                        for (int w = word.length - 1; w >= 0; w--) {
+                            op = namesLookup[word[w]] + " " + op;
+                            inverseOp = inverseOp + " " + inverseNamesLookup[word[w]];
                         }
                         System.out.println("Fwd: " + op);
                         System.out.println("Inv: " + inverseOp);
@@ -494,15 +414,13 @@ public class MiscSolvers {
 
         // Now g contains the full puzzle generator
 
-        GroupExplorer group = new GroupExplorer(
+        GroupExplorer group = GroupExplorer.withPathTracking(
             GroupExplorer.generatorsToString(g),
-            MemorySettings.COMPACT,
-            new HashSet<>(), new HashSet<>(), new HashSet<>(), true);
+            MemorySettings.COMPACT);
         // I want to iteratively explore states until I find a match to this state:
         // Zeroes should be ignored in comparison
        // int[] stateMatch = { 1, 2, 3, 4, 5, 6, 7, 8, 9,10,11,12,13,14, 15,16,17, 18,19,20};
         int[] stateMatch =   { 6,14,11,13, 5, 1, 9,10, 7, 8, 3,12, 4, 2, 15,16,17, 18,19,20};
-        group.setTrackPath(true);
         group.initIterativeExploration();
 
         /*
@@ -515,8 +433,6 @@ public class MiscSolvers {
         System.out.println(Arrays.toString(stateMatch));
         System.out.println(Arrays.toString(group.copyCurrentState()));
 
-        HashMap<State, Pair<State, Integer>> backtrack = new HashMap<>();
-
         while (matchingStates.size() < 1) {
             if (group.getIteration() > 24) {
                 System.out.println("Match not found");
@@ -526,7 +442,6 @@ public class MiscSolvers {
             group.iterateExploration(false, 300_000_000, true, (states, depth) -> {
                 for (Object x : states) {
                     PeekData data = (PeekData) x;
-                    backtrack.put(data.newState, new Pair<>(data.oldState, data.operation));
                     int[] state = data.newState.state();
                     boolean matches = true;
                     for (int i = 0; i < state.length; i++) {
@@ -540,14 +455,12 @@ public class MiscSolvers {
                         System.out.println(Arrays.toString(state));
                         matchingStates.add(state);
                         // Figure out path
-                        State current = State.of(state, group.nElements, group.mem);
                         String op = "";
                         String inverseOp = "";
-                        while (backtrack.containsKey(current)) {
-                            Pair<State, Integer> d = backtrack.get(current);
-                            op = namesLookup[d.getValue()] + " " + op;
-                            inverseOp = inverseOp + " " + inverseNamesLookup[d.getValue()];
-                            current = d.getKey();
+                        int[] word = group.pathTo(state);
+                        for (int w = word.length - 1; w >= 0; w--) {
+                            op = namesLookup[word[w]] + " " + op;
+                            inverseOp = inverseOp + " " + inverseNamesLookup[word[w]];
                         }
                         System.out.println("Fwd: " + op);
                         System.out.println("Inv: " + inverseOp);
@@ -625,10 +538,9 @@ public class MiscSolvers {
 
         // Now g contains the full puzzle generator
 
-        GroupExplorer group = new GroupExplorer(
+        GroupExplorer group = GroupExplorer.withPathTracking(
             GroupExplorer.generatorsToString(g),
-            MemorySettings.COMPACT,
-            new HashSet<>(), new HashSet<>(), new HashSet<>(), true);
+            MemorySettings.COMPACT);
         // I want to iteratively explore states until I find a match to this state:
         // Zeroes should be ignored in comparison
         // 1,2,9, 10  are the fixed pcs
@@ -639,7 +551,6 @@ public class MiscSolvers {
         // Single rotation
         //int[] stateMatch = new int[]{1,2,3,4,5,6,7,8,9,10,11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 26, 22, 23, 24, 21, 25, 27, 28, 29, 31, 42, 32, 33, 34, 35, 36, 37, 38, 39, 40, 41, 30, 43, 45, 46, 44, 47, 48, 49, 50};
 
-        group.setTrackPath(true);
         group.initIterativeExploration();
 
         /*
@@ -652,14 +563,11 @@ public class MiscSolvers {
         System.out.println(Arrays.toString(stateMatch));
         System.out.println(Arrays.toString(group.copyCurrentState()));
 
-        HashMap<State, Pair<State, Integer>> backtrack = new HashMap<>();
-
         while (matchingStates.size() < 7) {
 
             group.iterateExploration(false, 300_000_000, true, (states, depth) -> {
                 for (Object x : states) {
                     PeekData data = (PeekData) x;
-                    backtrack.put(data.newState, new Pair<>(data.oldState, data.operation));
                     int[] state = data.newState.state();
                     boolean matches = true;
                     for (int i = 0; i < state.length; i++) {
@@ -673,14 +581,12 @@ public class MiscSolvers {
                         System.out.println(Arrays.toString(state));
                         matchingStates.add(state);
                         // Figure out path
-                        State current = State.of(state, group.nElements, group.mem);
                         String op = "";
                         String inverseOp = "";
-                        while (backtrack.containsKey(current)) {
-                            Pair<State, Integer> d = backtrack.get(current);
-                            op = namesLookup[d.getValue()] + " " + op;
-                            inverseOp = inverseOp + " " + inverseNamesLookup[d.getValue()];
-                            current = d.getKey();
+                        int[] word = group.pathTo(state);
+                        for (int w = word.length - 1; w >= 0; w--) {
+                            op = namesLookup[word[w]] + " " + op;
+                            inverseOp = inverseOp + " " + inverseNamesLookup[word[w]];
                         }
                         System.out.println("Fwd: " + op);
                         System.out.println("Inv: " + inverseOp);
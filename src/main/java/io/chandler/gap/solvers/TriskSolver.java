@@ -1,21 +1,23 @@
 package io.chandler.gap.solvers;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.BiConsumer;
-import java.util.function.Supplier;
 
 import io.chandler.gap.GroupExplorer;
 import io.chandler.gap.GroupExplorer.MemorySettings;
-import io.chandler.gap.GroupExplorer.PeekData;
+import io.chandler.gap.cache.ElementStore;
+import io.chandler.gap.cache.LongSized;
+import io.chandler.gap.cache.OffHeapBitSet;
 import io.chandler.gap.cache.State;
-import javafx.util.Pair;
+import io.chandler.gap.cache.StateIndexer;
 
 public class TriskSolver {
 
@@ -33,11 +35,8 @@ public class TriskSolver {
 	int s = 12;
 	int n = s*3;
 	int o = 14;
-	HashMap<State, Integer> linMap = new HashMap<>();
-	HashMap<State, Integer> map = new HashMap<>();
-
-	State[] linIntToState;
-	State[] intToState;
+	StateIndexer lin;
+	StateIndexer rgbIndex;
 
 	public static void main(String[] args) {
 		TriskSolver solver = new TriskSolver();
@@ -58,51 +57,24 @@ public class TriskSolver {
             rgb[(i+2)%3] += "("+(o+(j+11)%n)+","+(o+(j+s+10)%n)+")";
         }
 
-        GroupExplorer cacheHelper = new GroupExplorer(l3_3_gen, MemorySettings.FASTEST);
-        int[] x = new int[2];
-        // Add solved state
-        linMap.put(State.of(cacheHelper.copyCurrentState(), 13, MemorySettings.FASTEST), x[0]++);
-        cacheHelper.exploreStates(false, (states, depth) -> {
-            for (int[] state : states) {
-                State statesm = State.of(state, 13, MemorySettings.FASTEST);
-                linMap.put(statesm, x[0]++);
+        // Both groups come from the element store after the first run
+        //   rgb acts on o..o+n-1; its tail states are stored shifted down by 13
+        List<int[][]> rgbShifted = GroupExplorer.parseOperations("["+rgb[0]+","+rgb[1]+","+rgb[2]+"]");
+        for (int[][] op : rgbShifted) {
+            for (int[] cycle : op) {
+                for (int i = 0; i < cycle.length; i++) cycle[i] -= 13;
             }
-        });
-        this.linIntToState = new State[linMap.size()];
-        for (State state : linMap.keySet()) {
-            linIntToState[linMap.get(state)] = state;
         }
-
-        cacheHelper = new GroupExplorer("["+rgb[0]+","+rgb[1]+","+rgb[2]+"]", MemorySettings.FASTEST);
-        // Add solved state
-        // Copy after 13th element
-        int[] stateCopySolved = Arrays.copyOfRange(cacheHelper.copyCurrentState(), 13, cacheHelper.copyCurrentState().length);
-        // Subtract 13 from each element
-        for (int i = 0; i < stateCopySolved.length; i++) {
-            stateCopySolved[i] -= 13;
-        }
-        map.put(State.of(stateCopySolved, n+o, MemorySettings.FASTEST), x[1]++);
-        cacheHelper.exploreStates(false, (states, depth) -> {
-            for (int[] state : states) {
-                // Copy 
-                int[] stateCopy = Arrays.copyOfRange(state, 13, state.length);
-                for (int i = 0; i < stateCopy.length; i++) {
-                    stateCopy[i] -= 13;
-                }
-                State statesm = State.of(stateCopy, n+o, MemorySettings.FASTEST);
-                map.put(statesm, x[1]++);
-                if (map.size() == 10) for (State ss : map.keySet()) {
-                    System.out.println(Arrays.toString(ss.state()));
-                }
-            }
-        });
-        this.intToState = new State[map.size()];
-        for (State state : map.keySet()) {
-            intToState[map.get(state)] = state;
+        try (ElementStore linStore = ElementStore.open(l3_3_gen);
+                ElementStore rgbStore = ElementStore.open(GroupExplorer.generatorsToString(rgbShifted.toArray(new int[0][][])))) {
+            this.lin = StateIndexer.of(linStore);
+            this.rgbIndex = StateIndexer.of(rgbStore);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
 
-        System.out.println("Cached " + linMap.size() + " states");
-        System.out.println("Cached " + map.size() + " states");
+        System.out.println("Cached " + lin.size() + " states");
+        System.out.println("Cached " + rgbIndex.size() + " states");
 
 
         String trisk = "["+l3_3[0]+rgb[0]+","+l3_3[1]+rgb[1]+","+l3_3[2]+rgb[2]+"]";
@@ -136,114 +108,47 @@ public class TriskSolver {
             System.out.println("Order: " + groudp.order());
 			System.out.println("Depth: " + groudp.getIteration());
         }
-        drawers_analysis(trisk, order, maxDepth, stateMatch, matchNStates, () -> new TriskStateCache());
+        drawers_analysis(trisk, order, maxDepth, stateMatch, matchNStates);
 
     }
 
 
-    public static void drawers_analysis(String generator, int order, Integer maxDepth, int[] stateMatch, int matchNStates, Supplier<TriskStateCache> cache) {
-
-        System.out.println("Order: " + order);
-        System.out.println("Max depth: " + maxDepth);
-
+    public static void drawers_analysis(String generator, int order, Integer maxDepth, int[] stateMatch, int matchNStates) {
         String[] namesLookup = new String[] {
             "A", "B", "C"
         };
 
         // 2-cycles; no inverse moves needed
-
-
-        GroupExplorer group = new GroupExplorer(generator,
-            MemorySettings.FASTEST,
-            cache.get(), cache.get(), cache.get(), false);
-
-        group.setTrackPath(true);
-        group.initIterativeExploration();
-
-        ArrayList<int[]> matchingStates = new ArrayList<>();
-
-        System.out.println(Arrays.toString(stateMatch));
-        System.out.println(Arrays.toString(group.copyCurrentState()));
-
-        HashMap<State, Pair<State, Integer>> backtrack = new HashMap<>();
-
-        while (matchingStates.size() < matchNStates) {
-
-            group.iterateExploration(false, order+1, true, (states, depth) -> {
-                for (Object x : states) {
-                    PeekData data = (PeekData) x;
-                    backtrack.put(data.newState, new Pair<>(data.oldState, data.operation));
-                    int[] state = data.newState.state();
-                    boolean matches = true;
-                    for (int i = 0; i < state.length; i++) {
-                        if (stateMatch[i] != 0 && state[i] != stateMatch[i]) {
-                            matches = false;
-                            break;
-                        }
-                    }
-                    if (matches) {
-
-                        System.out.println(Arrays.toString(state));
-                        matchingStates.add(state);
-                        System.out.println(GroupExplorer.describeState(13, state));
-                        System.out.println(GroupExplorer.stateToNotation(state));
-                        // Figure out path
-                        State current = State.of(state, group.nElements, group.mem);
-                        String op = "";
-                        String inverseOp = "";
-                        while (backtrack.containsKey(current)) {
-                            Pair<State, Integer> d = backtrack.get(current);
-                            op = namesLookup[d.getValue()] + " " + op;
-                            inverseOp = inverseOp + " " + namesLookup[d.getValue()];
-                            current = d.getKey();
-                        }
-                        System.out.println("Fwd: " + op);
-                        System.out.println("Inv: " + inverseOp);
-                        System.out.println(Arrays.toString(state));
-                    }
-                }
-            });
-            System.out.println(group.getIteration() + " " + group.order());
-            if (maxDepth != null && group.getIteration() > maxDepth) {
-                System.out.println("Max depth reached");
-                return;
-            }
-        }
-
-
+        // Meets in the middle, so neither side materializes the whole group
+        BidirectionalSolver.drawersAnalysis(generator, MemorySettings.FASTEST, order, maxDepth, stateMatch, matchNStates, namesLookup);
     }
 
 
-	class TriskStateCache extends AbstractSet<State> {
+	class TriskStateCache extends AbstractSet<State> implements LongSized {
 
-		int[] cache = new int[536870912 / 4]; // Full uint32 cache
 		long max_value = (long) 536870912L * 8L;
+		OffHeapBitSet cache = new OffHeapBitSet(max_value); // Full uint32 cache
 		long size = 0;
 
-		// Reusable probe buffers and wrappers to avoid per-call allocations
+		// Reusable probe buffers to avoid per-call allocations
 		private final int[] probeState1Arr = new int[13];
-		private final State probeState1 = State.of(probeState1Arr, 13, MemorySettings.FASTEST);
-		private final int tailLength = intToState[0].state().length; // constant for this problem
+		private final int tailLength = rgbIndex.nElements; // constant for this problem
 		private final int[] probeState2Arr = new int[tailLength];
-		private final State probeState2 = State.of(probeState2Arr, n+o, MemorySettings.FASTEST);
-		private final int mapSizeCached = map.size();
+		private final int mapSizeCached = rgbIndex.size();
 
 		@Override
 		public boolean addAll(Collection<? extends State> arg0) {
 			if (arg0 instanceof TriskStateCache) {
 				TriskStateCache other = (TriskStateCache) arg0;
 				// Merge the cache into this one
-				for (int i = 0; i < cache.length; i++) {
-					this.size -= Long.bitCount(cache[i] & 0xFFFFFFFFL);
-					cache[i] |= other.cache[i];
-					this.size += Long.bitCount(cache[i] & 0xFFFFFFFFL);
-				}
-				return true;
+				long added = cache.or(other.cache);
+				this.size += added;
+				return added > 0;
 			}
 			return super.addAll(arg0);
 		}
 
-		private int cvt(State state) {
+		private long cvt(State state) {
 			final int[] src = state.state();
 			// Copy first 13 elements directly
 			System.arraycopy(src, 0, probeState1Arr, 0, 13);
@@ -251,65 +156,50 @@ public class TriskSolver {
 			for (int i = 0, s = 13; i < tailLength; i++, s++) {
 				probeState2Arr[i] = src[s] - 13;
 			}
-			// Lookups using reusable probe states
-			final Integer state1Id = linMap.get(probeState1);
-			if (state1Id == null) {
-				throw new IllegalArgumentException("State1Id is null: " + Arrays.toString(probeState1Arr));
+			final int state1Id = lin.id(probeState1Arr);
+			if (state1Id < 0) {
+				throw new IllegalArgumentException("State1 not in group: " + Arrays.toString(probeState1Arr));
 			}
-			final Integer state2Id = map.get(probeState2);
-			if (state2Id == null) {
-				throw new IllegalArgumentException("State2Id is null: " + Arrays.toString(probeState2Arr));
+			final int state2Id = rgbIndex.id(probeState2Arr);
+			if (state2Id < 0) {
+				throw new IllegalArgumentException("State2 not in group: " + Arrays.toString(probeState2Arr));
 			}
 			final long stored = (long) state1Id * (long) mapSizeCached + (long) state2Id;
-			if (stored > max_value) {
+			if (stored >= max_value) {
 				throw new IllegalArgumentException("Stored value is greater than max value: " + stored + " > " + max_value);
 			}
-			return (int) stored;
-		}
-
-		private boolean isBitSet(int index) {
-			return (cache[index / 32] & (1 << (index % 32))) != 0;
-		}
-
-		private void setBit(int index) {
-			cache[index / 32] |= (1 << (index % 32));
+			return stored;
 		}
 
 		@Override
 		public boolean add(State state) {
-			int s = cvt(state);
-			boolean added = !isBitSet(s);
-			if (added) {
-				setBit(s);
-				size++;
-			}
+			boolean added = !cache.getAndSet(cvt(state));
+			if (added) size++;
 			return added;
 		}
 
 		@Override
 		public boolean contains(Object o) {
-			return isBitSet(cvt(((State)o)));
+			return cache.get(cvt(((State)o)));
 		}
 
 		@Override
 		public Iterator<State> iterator() {
 			return new Iterator<State>() {
-				int i = 0;
-				int counted = 0;
+				long i = 0;
+				long counted = 0;
 				@Override
 				public boolean hasNext() { return counted < size; }
 				@Override
 				public State next() { 
 					if (!hasNext()) return null;
-					int stored = i++;
-					while (!isBitSet(stored)) {
-						stored = i++;
-					}
+					long stored = cache.nextSetBit(i);
+					i = stored + 1;
 					counted++;
-					int state1Id = stored / map.size();
-					int state2Id = stored % map.size();
-					int[] state1 = linIntToState[state1Id].state();
-					int[] state2 = intToState[state2Id].state().clone();
+					int state1Id = (int) (stored / mapSizeCached);
+					int state2Id = (int) (stored % mapSizeCached);
+					int[] state1 = lin.state(state1Id);
+					int[] state2 = rgbIndex.state(state2Id);
 					// add 13 to each element of state2
 					for (int j = 0; j < state2.length; j++) {
 						state2[j] += 13;
@@ -325,11 +215,13 @@ public class TriskSolver {
 		}
 
 		@Override
-		public void clear() { Arrays.fill(cache, (byte)0); size = 0; }
+		public void clear() { cache.clear(); size = 0; }
+
 
 
+		@Override public long sizeLong() { return size; }
 
-		@Override public int size() { return (int) size; }
+		@Override public int size() { return (int) Math.min(Integer.MAX_VALUE, size); }
 
 	}
 
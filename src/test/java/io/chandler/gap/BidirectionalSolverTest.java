@@ -0,0 +1,96 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.State;
+import io.chandler.gap.solvers.BidirectionalSolver;
+
+class BidirectionalSolverTest {
+
+    @Test
+    void testMatchesForwardBfs() {
+        List<Integer> found = checkAgainstBfs(Generators.m22, new int[] {0,5,0,0,0,0,13,0,0,0,0,0,0,10,0,0,0,0,0,0,0,0}, 9, 443520, 100);
+        assertEquals(Arrays.asList(7, 8), new ArrayList<>(new TreeSet<>(found)));
+    }
+
+    @Test
+    void testInvolutionWalksBounded() {
+        // drawers_m22_2's generators without the drawer stops: three 2-cycle moves
+        String generator = "[(5,12)(6,11)(7,15)(9,17)(10,18)(13,14)(16,19),(1,10)(2,3)(4,6)(5,19)(7,14)(8,13)(9,16)(15,21),(2,16)(4,14)(5,22)(6,20)(7,18)(9,10)(15,17)]";
+        int[] stateMatch = new int[22];
+        stateMatch[0] = 1;
+        stateMatch[1] = 2;
+        BidirectionalSolver solver = new BidirectionalSolver(generator, MemorySettings.DEFAULT);
+        List<Integer> found = checkAgainstBfs(solver, generator, stateMatch, 16, 887040, 100000);
+        assertTrue(found.size() > 50);
+        // Taking a move twice in a row would give a few hundred walks per solution here
+        assertTrue(solver.walkCount() < 16L * found.size(), "walks: " + solver.walkCount());
+    }
+
+    private static List<Integer> checkAgainstBfs(String generator, int[] stateMatch, int maxDepth, long order, int matchNStates) {
+        return checkAgainstBfs(new BidirectionalSolver(generator, MemorySettings.DEFAULT), generator, stateMatch, maxDepth, order, matchNStates);
+    }
+
+    // Solves, checking every solution against a plain BFS; returns the word lengths found
+    private static List<Integer> checkAgainstBfs(BidirectionalSolver solver, String generator, int[] stateMatch, int maxDepth, long order, int matchNStates) {
+        // Plain BFS, generators only, as the solver applies them
+        GroupExplorer group = new GroupExplorer(generator, MemorySettings.DEFAULT);
+        int n = group.nElements;
+        List<PermutationKernel> kernels = new ArrayList<>();
+        for (int[][] op : group.parsedOperations) kernels.add(PermutationKernel.compile(op, n));
+        Map<State, Integer> lengths = new HashMap<>();
+        List<int[]> frontier = new ArrayList<>();
+        frontier.add(group.copyCurrentState());
+        lengths.put(State.of(frontier.get(0), n, MemorySettings.DEFAULT), 0);
+        List<Integer> expected = new ArrayList<>();
+        for (int depth = 1; depth <= maxDepth && !frontier.isEmpty(); depth++) {
+            List<int[]> next = new ArrayList<>();
+            for (int[] state : frontier) {
+                for (PermutationKernel kernel : kernels) {
+                    int[] child = kernel.apply(state);
+                    if (lengths.putIfAbsent(State.of(child, n, MemorySettings.DEFAULT), depth) != null) continue;
+                    next.add(child);
+                    if (matches(child, stateMatch)) expected.add(depth);
+                }
+            }
+            frontier = next;
+        }
+        assertTrue(expected.size() > 1);
+
+        List<Integer> found = new ArrayList<>();
+        Set<State> seen = new HashSet<>();
+        int count = solver.solve(stateMatch, matchNStates, maxDepth, order, solution -> {
+            assertTrue(matches(solution.state, stateMatch));
+            State key = State.of(solution.state, n, MemorySettings.DEFAULT);
+            assertTrue(seen.add(key));
+            // Shortest word for that element, and the word really reaches it
+            assertEquals(lengths.get(key), (Integer) solution.word.length);
+            int[] state = group.copyCurrentState();
+            for (int g : solution.word) state = kernels.get(g).apply(state);
+            assertArrayEquals(solution.state, state);
+            found.add(solution.word.length);
+        });
+
+        assertEquals(expected.subList(0, Math.min(matchNStates, expected.size())), found);
+        assertEquals(found.size(), count);
+        return found;
+    }
+
+    private static boolean matches(int[] state, int[] stateMatch) {
+        for (int i = 0; i < state.length; i++) {
+            if (stateMatch[i] != 0 && state[i] != stateMatch[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,52 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.chandler.gap.CandidateClassifier.Stage;
+import io.chandler.gap.GroupExplorer.Generator;
+
+class CandidateClassifierTest {
+
+    private static Generator gen(String notation) {
+        return new Generator(GroupExplorer.parseOperationsArr(notation));
+    }
+
+    @Test
+    void testCheapStagesReject() {
+        CandidateClassifier classifier = new CandidateClassifier(100_000).requirePrimitive(true).requireEven(true);
+
+        // Two orbits
+        assertEquals(CandidateClassifier.REJECTED, classifier.classify(gen("[(1,2,3),(4,5,6)]")));
+        // Odd generator
+        assertEquals(CandidateClassifier.REJECTED, classifier.classify(gen("[(1,2,3,4,5,6),(1,2,3)]")));
+        // Blocks {1,2},{3,4},{5,6}
+        assertEquals(CandidateClassifier.REJECTED, classifier.classify(gen("[(1,3,5)(2,4,6),(1,2)(3,4)]")));
+        assertEquals(7920, classifier.classify(gen(Generators.m11)));
+
+        assertEquals(1, classifier.rejections(Stage.ORBITS));
+        assertEquals(1, classifier.rejections(Stage.PARITY));
+        assertEquals(1, classifier.rejections(Stage.PRIMITIVITY));
+        assertEquals(1, classifier.accepted());
+    }
+
+    @Test
+    void testBoundedOrder() {
+        CandidateClassifier classifier = new CandidateClassifier(95040);
+        assertEquals(95040, classifier.classify(gen(Generators.m12)));
+        assertEquals(CandidateClassifier.TOO_LARGE, classifier.classify(gen(Generators.m24)));
+
+        SchreierSims bounded = new SchreierSims(GroupExplorer.parseOperations(Generators.m24), 24, null, 95040);
+        assertTrue(bounded.exceedsBound());
+        assertTrue(bounded.orderExceeds(95040));
+    }
+
+    @Test
+    void testCycleTypesAndFixedPrefix() {
+        // M11 is sharply 4-transitive with 7 nontrivial cycle types
+        assertEquals(7920, new CandidateClassifier(100_000).setFixedPrefix(4).classify(gen(Generators.m11)));
+        assertEquals(CandidateClassifier.REJECTED, new CandidateClassifier(100_000).setFixedPrefix(3).classify(gen(Generators.m11)));
+        assertEquals(7920, new CandidateClassifier(100_000).setMaxCycleTypes(7).classify(gen(Generators.m11)));
+        assertEquals(CandidateClassifier.REJECTED, new CandidateClassifier(100_000).setMaxCycleTypes(6).classify(gen(Generators.m11)));
+    }
+}
@@ -0,0 +1,109 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.LMDBCache;
+import io.chandler.gap.cache.LMDBManager;
+
+class CheckpointTest {
+
+    private static class Interrupted extends RuntimeException {
+    }
+
+    private interface Explorers {
+        GroupExplorer create() throws Exception;
+    }
+
+    // Explores until depth stopAt, then resumes in a new explorer; returns the order
+    private static long exploreInterrupted(String generator, int stopAt, Set<List<Integer>> seen) throws Exception {
+        Path dir = Files.createTempDirectory("checkpoint");
+        try {
+            return exploreInterrupted(() -> new GroupExplorer(generator, MemorySettings.DEFAULT), dir, stopAt - 1, stopAt, seen);
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    // Checkpoints every layer up to depth lastCheckpoint, then carries on until depth stopAt
+    private static long exploreInterrupted(Explorers explorers, Path dir, int lastCheckpoint, int stopAt, Set<List<Integer>> seen) throws Exception {
+        Path file = dir.resolve("explore.gxck");
+        GroupExplorer first = explorers.create();
+        first.setCheckpoint(file, 0);
+        assertThrows(Interrupted.class, () -> first.exploreStates(false, (states, depth) -> {
+            if (depth == stopAt) throw new Interrupted();
+            if (depth == lastCheckpoint + 1) first.setCheckpoint(file, Long.MAX_VALUE);
+            for (int[] s : states) seen.add(IntStream.of(s).boxed().collect(Collectors.toList()));
+        }));
+
+        GroupExplorer resumed = explorers.create();
+        resumed.resume(file);
+        assertEquals(lastCheckpoint, resumed.getIteration());
+        resumed.continueExploration(false, -1, (states, depth) -> {
+            for (int[] s : states) seen.add(IntStream.of(s).boxed().collect(Collectors.toList()));
+        });
+        return resumed.order();
+    }
+
+    private static void deleteDir(Path dir) throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testResumeM12() throws Exception {
+        Set<List<Integer>> seen = new HashSet<>();
+        assertEquals(95040, exploreInterrupted(Generators.m12, 6, seen));
+        assertEquals(95039, seen.size());
+    }
+
+    @Test
+    void testResumePackedRows() throws Exception {
+        // 40 points is past FactorialCodec, so states are written as packed rows
+        StringBuilder a = new StringBuilder("[(");
+        StringBuilder b = new StringBuilder("(");
+        for (int i = 1; i <= 20; i++) {
+            a.append(i).append(i < 20 ? "," : ")");
+            b.append(i + 20).append(i < 20 ? "," : ")]");
+        }
+        Set<List<Integer>> seen = new HashSet<>();
+        assertEquals(400, exploreInterrupted(a + "," + b, 5, seen));
+        assertEquals(399, seen.size());
+    }
+
+    @Test
+    void testResumeLMDB() throws Exception {
+        Path dir = Files.createTempDirectory("checkpoint-lmdb");
+        try {
+            List<LMDBCache> caches = new ArrayList<>();
+            for (String name : new String[] {"main", "tmp1", "tmp2"}) {
+                Path envDir = Files.createDirectories(dir.resolve(name));
+                caches.add(new LMDBCache(new LMDBManager(envDir, 1), name, 12, MemorySettings.DEFAULT, 1000));
+            }
+            try {
+                // The databases keep changing for two layers after the last checkpoint
+                Set<List<Integer>> seen = new HashSet<>();
+                Explorers explorers = () -> new GroupExplorer(Generators.m12, MemorySettings.DEFAULT, caches.get(0), caches.get(1), caches.get(2), false);
+                assertEquals(95040, exploreInterrupted(explorers, dir, 4, 7, seen));
+                assertEquals(95039, seen.size());
+            } finally {
+                for (LMDBCache cache : caches) cache.close();
+            }
+        } finally {
+            deleteDir(dir);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.ConcurrentLongSet;
+import io.chandler.gap.cache.ConcurrentStateSet;
+import io.chandler.gap.cache.State;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+class ConcurrentSetTest {
+
+    private static long key(int i) {
+        return (i + 1) * 0x9E3779B97F4A7C15L;
+    }
+
+    @Test
+    void testLongSetParallel() {
+        // Starts small so segments grow while threads insert
+        ConcurrentLongSet set = new ConcurrentLongSet(16);
+        int n = 200000;
+        AtomicInteger added = new AtomicInteger();
+        // Every key twice, from any thread
+        IntStream.range(0, 2 * n).parallel().forEach(i -> {
+            if (set.add(key(i % n))) added.incrementAndGet();
+        });
+        assertEquals(n, added.get());
+        assertEquals(n, set.sizeLong());
+        IntStream.range(0, n).parallel().forEach(i -> assertTrue(set.contains(key(i))));
+        assertFalse(set.contains(key(n)));
+
+        int seen = 0;
+        for (LongIterator it = set.iterator(); it.hasNext(); it.nextLong()) seen++;
+        assertEquals(n, seen);
+    }
+
+    @Test
+    void testLongSetReservedKeys() {
+        ConcurrentLongSet set = new ConcurrentLongSet();
+        assertFalse(set.contains(Long.MIN_VALUE));
+        assertTrue(set.add(Long.MIN_VALUE));
+        assertFalse(set.add(Long.MIN_VALUE));
+        assertTrue(set.contains(Long.MIN_VALUE));
+        assertTrue(set.add(0));
+        assertTrue(set.add(5));
+        assertEquals(3, set.sizeLong());
+
+        Set<Long> keys = new HashSet<>();
+        for (LongIterator it = set.iterator(); it.hasNext(); ) keys.add(it.nextLong());
+        assertEquals(Set.of(0L, 5L, Long.MIN_VALUE), keys);
+
+        set.clear();
+        assertFalse(set.contains(Long.MIN_VALUE));
+        assertEquals(0, set.sizeLong());
+    }
+
+    @Test
+    void testLongSetTags() {
+        for (int tagBits : new int[] {1, 3, 32}) {
+            ConcurrentLongSet set = new ConcurrentLongSet(16, tagBits);
+            int mask = tagBits == 32 ? -1 : (1 << tagBits) - 1;
+            int n = 50000;
+            IntStream.range(0, n).parallel().forEach(i -> set.add(key(i), (i * 7919) & mask));
+            // A second add keeps the first tag
+            assertFalse(set.add(key(1), (7919 + 1) & mask));
+            for (int i = 0; i < n; i++) {
+                assertEquals((i * 7919) & mask, set.tag(key(i)));
+            }
+            assertEquals(-1, set.tag(key(n)));
+            assertTrue(set.add(Long.MIN_VALUE, 1));
+            assertEquals(1, set.tag(Long.MIN_VALUE));
+            assertTrue(set.add(0, mask));
+            assertEquals(mask, set.tag(0));
+        }
+
+        // Full-width tags, including negative ones, next to each other in a tag word
+        ConcurrentLongSet wide = new ConcurrentLongSet(16, 32);
+        for (int i = 0; i < 1000; i++) assertTrue(wide.add(key(i), i % 2 == 0 ? -1 - i : Integer.MAX_VALUE - i));
+        for (int i = 0; i < 1000; i++) assertEquals(i % 2 == 0 ? -1 - i : Integer.MAX_VALUE - i, wide.tag(key(i)));
+    }
+
+    @Test
+    void testStateSetParallel() {
+        GroupExplorer group = new GroupExplorer(Generators.m11, MemorySettings.DEFAULT);
+        Set<State> reference = new HashSet<>();
+        group.exploreStates(false, (states, depth) -> {
+            for (int[] state : states) reference.add(State.of(state, group.nElements, MemorySettings.DEFAULT));
+        });
+
+        ConcurrentStateSet set = new ConcurrentStateSet(group.nElements, MemorySettings.DEFAULT, 16);
+        AtomicInteger added = new AtomicInteger();
+        reference.parallelStream().forEach(s -> {
+            if (set.add(s)) added.incrementAndGet();
+            assertFalse(set.add(s));
+        });
+        assertEquals(reference.size(), added.get());
+        assertEquals(reference.size(), set.size());
+        reference.parallelStream().forEach(s -> assertTrue(set.contains(s)));
+        assertEquals(reference, new HashSet<>(set));
+    }
+}
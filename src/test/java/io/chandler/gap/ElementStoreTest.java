@@ -0,0 +1,91 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.ElementStore;
+
+class ElementStoreTest {
+
+    @Test
+    void testM11() throws Exception {
+        Path dir = Files.createTempDirectory("element-store");
+        try {
+            try (ElementStore store = ElementStore.open(dir, Generators.m11)) {
+                assertEquals(7920, store.size());
+                assertEquals(11, store.nElements);
+                for (long i = 0; i < store.size(); i++) {
+                    assertEquals(i, store.id(store.state(i)));
+                }
+                assertEquals(-1, store.id(new int[] {2, 1, 3, 4, 5, 6, 7, 8, 9, 10, 11}));
+            }
+
+            // Same group with the generators swapped and cycles rotated reuses the file
+            String reordered = "[(6,4,10,5)(8,3,7,11),(5,6,7,8,9,10,11,1,2,3,4)]";
+            assertEquals(ElementStore.canonicalGenerators(Generators.m11), ElementStore.canonicalGenerators(reordered));
+            try (ElementStore store = ElementStore.open(dir, reordered)) {
+                assertEquals(7920, store.size());
+            }
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(1, files.count());
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    void testOverlappingCycles() throws Exception {
+        // (3,4) then (1,2,3) isn't the same permutation as (1,2,3) then (3,4)
+        String generators = "[(4,3)(2,3,1),(5,6)]";
+        assertEquals("[(3,4)(1,2,3),(5,6)]", ElementStore.canonicalGenerators(generators));
+
+        GroupExplorer group = new GroupExplorer(generators, MemorySettings.DEFAULT);
+        List<int[]> elements = new ArrayList<>();
+        elements.add(group.copyCurrentState());
+        group.exploreStates(false, (states, depth) -> elements.addAll(states));
+
+        Path dir = Files.createTempDirectory("element-store");
+        try (ElementStore store = ElementStore.open(dir, generators)) {
+            assertEquals(elements.size(), store.size());
+            for (int[] element : elements) assertTrue(store.id(element) >= 0);
+            assertEquals(-1, store.id(new int[] {2, 3, 4, 1, 5, 6}));
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    void testFixedHighestPoint() throws Exception {
+        // Point 5 is only in a 1-cycle, but callers index states by it
+        String generators = "[(2,3,1),(4,1)(5)]";
+        assertEquals("[(1,2,3),(1,4)(5)]", ElementStore.canonicalGenerators(generators));
+        assertEquals("[(1,2)(5)]", ElementStore.canonicalGenerators("[(5),(2,1)]"));
+
+        Path dir = Files.createTempDirectory("element-store");
+        try (ElementStore store = ElementStore.open(dir, generators)) {
+            assertEquals(5, store.nElements);
+            assertEquals(24, store.size());
+            for (long i = 0; i < store.size(); i++) assertEquals(5, store.state(i)[4]);
+            assertTrue(store.id(new int[] {2, 3, 1, 4, 5}) >= 0);
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+}
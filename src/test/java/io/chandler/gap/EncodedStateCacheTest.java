@@ -0,0 +1,35 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Set;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.BigStateCache;
+import io.chandler.gap.cache.LongIntStateCache;
+import io.chandler.gap.cache.LongLongStateCache;
+import io.chandler.gap.cache.LongStateCache;
+import io.chandler.gap.cache.OffHeapStateSet;
+import io.chandler.gap.cache.State;
+
+class EncodedStateCacheTest {
+
+    // Layers past 10000 states are expanded by parallel workers, all looking up the same cache
+    private static long exploreParallel(Set<State> cache) {
+        GroupExplorer group = new GroupExplorer(Generators.m12, MemorySettings.DEFAULT, cache);
+        group.exploreStates(false, null);
+        return group.order();
+    }
+
+    @Test
+    void testParallelExploration() {
+        // M12 is sharply 5-transitive, so 5 points pin down an element
+        assertEquals(95040, exploreParallel(new LongStateCache(5, 12)));
+        assertEquals(95040, exploreParallel(new LongStateCache(5, 12, true)));
+        assertEquals(95040, exploreParallel(new LongLongStateCache(12, 12)));
+        assertEquals(95040, exploreParallel(new LongIntStateCache(12, 12)));
+        assertEquals(95040, exploreParallel(new BigStateCache(12, 12)));
+        assertEquals(95040, exploreParallel(new OffHeapStateSet(12)));
+    }
+}
@@ -0,0 +1,107 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.SortedRunFiles;
+import io.chandler.gap.cache.SortedRunFiles.RowStream;
+import io.chandler.gap.cache.SortedRunFiles.RunWriter;
+import io.chandler.gap.cache.StatePacker;
+
+class ExternalExplorationTest {
+
+    private static void deleteDir(Path dir) throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<Integer> boxed(int[] state) {
+        return IntStream.of(state).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    void testSortedRunFiles() throws Exception {
+        Path dir = Files.createTempDirectory("sorted-runs");
+        try {
+            StatePacker packer = new StatePacker(11);
+            // Tiny runs, so the merge needs an intermediate pass over MAX_FAN_IN
+            SortedRunFiles files = new SortedRunFiles(packer, dir, 16);
+            Random random = new Random(1);
+            Set<List<Integer>> expected = new HashSet<>();
+            RunWriter writer = files.new RunWriter("run");
+            long[] row = new long[files.words];
+            for (int i = 0; i < 5000; i++) {
+                int[] state = new int[11];
+                for (int j = 0; j < 11; j++) state[j] = 1 + random.nextInt(4);
+                expected.add(boxed(state));
+                packer.pack(state, row, 0);
+                writer.add(row, 0);
+            }
+            List<Path> runs = writer.finish();
+            assertTrue(runs.size() > SortedRunFiles.MAX_FAN_IN);
+
+            Set<List<Integer>> seen = new HashSet<>();
+            long[] previous = null;
+            int[] state = new int[11];
+            try (RowStream merged = files.merge(runs)) {
+                while (merged.next()) {
+                    if (previous != null) assertTrue(SortedRunFiles.compare(previous, 0, merged.row(), 0, files.words) < 0);
+                    previous = merged.row().clone();
+                    packer.unpack(merged.row(), 0, state);
+                    assertTrue(seen.add(boxed(state)));
+                }
+            }
+            assertEquals(expected, seen);
+            SortedRunFiles.delete(runs);
+            // Intermediate merge files are gone once the stream is closed
+            try (Stream<Path> left = Files.list(dir)) {
+                assertEquals(0, left.count());
+            }
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    void testExploreM11() throws Exception {
+        Set<List<Integer>> reference = new HashSet<>();
+        GroupExplorer inMemory = new GroupExplorer(Generators.m11, MemorySettings.DEFAULT);
+        inMemory.exploreStates(false, (states, depth) -> {
+            for (int[] s : states) reference.add(boxed(s));
+        });
+
+        Path dir = Files.createTempDirectory("external-bfs");
+        try {
+            for (boolean multithread : new boolean[] {false, true}) {
+                GroupExplorer external = new GroupExplorer(Generators.m11, MemorySettings.DEFAULT, new HashSet<>(), new HashSet<>(), new HashSet<>(), multithread);
+                // Small runs, so every layer past the first few spills several
+                external.setExternalMemory(dir, 500);
+                Set<List<Integer>> seen = new HashSet<>();
+                external.exploreStates(false, (states, depth) -> {
+                    for (int[] s : states) assertTrue(seen.add(boxed(s)));
+                });
+                assertEquals(inMemory.order(), external.order());
+                assertEquals(reference, seen);
+                try (Stream<Path> left = Files.list(dir)) {
+                    assertEquals(0, left.count());
+                }
+            }
+        } finally {
+            deleteDir(dir);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import io.chandler.gap.cache.GroupMemo;
+
+class FullSelectionSearchTest {
+
+    private static final List<List<Integer>> LAYOUTS = Arrays.asList(Arrays.asList(2, 2), Arrays.asList(2, 2, 2));
+
+    // Orbit of a selection as a string, from its smallest image under the search's symmetries
+    private static String orbitKey(FullSelectionSearch search, List<int[]> groups, boolean considerReverse) {
+        String best = null;
+        for (int i = 0; i < search.axisSymm[0].length; i++) {
+            if (!considerReverse && !search.uniformOrientation[i]) continue;
+            List<String> image = new ArrayList<>();
+            for (int[] group : groups) {
+                Integer[] mapped = new Integer[group.length];
+                for (int j = 0; j < group.length; j++) {
+                    int axis = search.axisSymm[Math.abs(group[j]) - 1][i];
+                    mapped[j] = group[j] < 0 ? -axis : axis;
+                }
+                Arrays.sort(mapped, Comparator.comparingInt(Math::abs));
+                int sign = mapped[0] < 0 ? -1 : 1;
+                StringBuilder sb = new StringBuilder();
+                for (int a : mapped) sb.append(sign * a).append(' ');
+                image.add(group.length + ":" + sb);
+            }
+            image.sort(null);
+            String key = image.toString();
+            if (best == null || key.compareTo(best) < 0) best = key;
+        }
+        return best;
+    }
+
+    private static int[][][] toGenerator(FullSelectionSearch search, List<int[]> groups) {
+        int[][][] generator = new int[groups.size()][][];
+        for (int g = 0; g < generator.length; g++) {
+            int[] group = groups.get(g);
+            generator[g] = new int[group.length][];
+            for (int j = 0; j < group.length; j++) {
+                int[] face = search.getFaceAboutVertex.apply(Math.abs(group[j]));
+                int[] cycle = new int[face.length];
+                for (int k = 0; k < face.length; k++) cycle[k] = group[j] < 0 ? face[face.length - 1 - k] : face[k];
+                generator[g][j] = cycle;
+            }
+        }
+        return generator;
+    }
+
+    /*
+     * Every selection with the layout, no culling: each group is a set of axes without
+     *   shared faces, signed so its smallest axis is positive, and the checker runs on
+     *   all of them.  Returns the order of each orbit that has a passing selection.
+     */
+    private static Map<String, Integer> unculled(FullSelectionSearch search, List<Integer> layout, boolean considerReverse) {
+        Map<String, Integer> orbits = new HashMap<>();
+        unculled(search, layout, considerReverse, new ArrayList<>(), new ArrayList<>(), new HashSet<>(), orbits);
+        return orbits;
+    }
+
+    private static void unculled(FullSelectionSearch search, List<Integer> layout, boolean considerReverse,
+            List<int[]> groups, List<Integer> group, Set<Integer> usedAxes, Map<String, Integer> orbits) {
+        int size = layout.get(groups.size());
+        if (group.size() == size) {
+            groups.add(group.stream().mapToInt(Integer::intValue).toArray());
+            if (groups.size() == layout.size()) {
+                int order = search.groupChecker.apply(toGenerator(search, groups));
+                if (order >= -1) {
+                    Integer other = orbits.put(orbitKey(search, groups, considerReverse), order);
+                    // Orders don't depend on labels, even where the checker's rejections do
+                    if (other != null) assertEquals((int) other, order);
+                }
+            } else {
+                unculled(search, layout, considerReverse, groups, new ArrayList<>(), usedAxes, orbits);
+            }
+            groups.remove(groups.size() - 1);
+            return;
+        }
+        int last = group.isEmpty() ? 0 : Math.abs(group.get(group.size() - 1));
+        for (int axis = last + 1; axis <= search.nAxes; axis++) {
+            if (usedAxes.contains(axis)) continue;
+            boolean sharesFace = false;
+            for (int other : group) {
+                for (int face : search.getFaceAboutVertex.apply(Math.abs(other))) {
+                    for (int f : search.getFaceAboutVertex.apply(axis)) sharesFace |= f == face;
+                }
+            }
+            if (sharesFace) continue;
+            for (int sign : group.isEmpty() || !considerReverse ? new int[] {1} : new int[] {1, -1}) {
+                usedAxes.add(axis);
+                group.add(sign * axis);
+                unculled(search, layout, considerReverse, groups, group, usedAxes, orbits);
+                group.remove(group.size() - 1);
+                usedAxes.remove(axis);
+            }
+        }
+    }
+
+    // Results by orbit, checking there's only one per orbit
+    private static Map<String, Integer> byOrbit(FullSelectionSearch search, Map<Integer, List<int[][][]>> results, boolean considerReverse) {
+        Map<String, Integer> orbits = new HashMap<>();
+        for (Map.Entry<Integer, List<int[][][]>> entry : results.entrySet()) {
+            for (int[][][] generator : entry.getValue()) {
+                List<int[]> groups = new ArrayList<>();
+                for (int[][] operation : generator) {
+                    int[] group = new int[operation.length];
+                    for (int j = 0; j < operation.length; j++) group[j] = search.getVertexFromFacesReversable.apply(operation[j]);
+                    groups.add(group);
+                }
+                assertNull(orbits.put(orbitKey(search, groups, considerReverse), entry.getKey()));
+            }
+        }
+        return orbits;
+    }
+
+    private static String describe(Map<Integer, List<int[][][]>> results) {
+        StringBuilder sb = new StringBuilder();
+        results.forEach((order, generators) -> {
+            sb.append(order).append(':');
+            for (int[][][] generator : generators) sb.append(' ').append(GroupExplorer.generatorsToString(generator));
+            sb.append('\n');
+        });
+        return sb.toString();
+    }
+
+    @Test
+    void testCullingKeepsEveryOrbit() {
+        for (boolean considerReverse : new boolean[] {false, true}) {
+            FullSelectionSearch search = FullSelectionSearch.getCubeEdgeSearch(considerReverse, true, false);
+            for (List<Integer> layout : LAYOUTS) {
+                Map<String, Integer> expected = unculled(search, layout, considerReverse);
+                assertFalse(expected.isEmpty());
+                assertEquals(expected, byOrbit(search, search.search(layout, considerReverse), considerReverse));
+            }
+        }
+    }
+
+    @Test
+    void testParallelMatchesSerial() throws Exception {
+        Path dir = Files.createTempDirectory("fss-memo");
+        try (GroupMemo memo = GroupMemo.open(dir, "cube-edge")) {
+            for (boolean considerReverse : new boolean[] {false, true}) {
+                FullSelectionSearch serial = FullSelectionSearch.getCubeEdgeSearch(considerReverse, true, false);
+                FullSelectionSearch parallel = FullSelectionSearch.getCubeEdgeSearch(considerReverse, true, false);
+                // The workers share one memo; the second pass reads what the first wrote
+                parallel.setMemo(memo);
+                for (List<Integer> layout : LAYOUTS) {
+                    String expected = describe(serial.search(layout, considerReverse));
+                    for (int depth : new int[] {1, 2, 4}) {
+                        parallel.setParallelDepth(depth);
+                        assertEquals(expected, describe(parallel.search(layout, considerReverse)));
+                    }
+                }
+            }
+            assertTrue(memo.size() > 0);
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+}
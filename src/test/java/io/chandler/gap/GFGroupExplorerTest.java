@@ -0,0 +1,45 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.chandler.gap.GFGenerator.GF2_8x8_Cache;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+class GFGroupExplorerTest {
+
+    @Test
+    void testL2_8() {
+        GFGenerator generator = Generators.l2_8_gf28;
+        long[] gens = { GF2_8x8_Cache.encode(generator.matrices[0]), GF2_8x8_Cache.encode(generator.matrices[1]) };
+
+        // Plain BFS on the encoded matrices
+        LongSet expected = new LongOpenHashSet();
+        LongArrayList queue = new LongArrayList();
+        expected.add(GF2_8x8_Cache.identityValue());
+        queue.add(GF2_8x8_Cache.identityValue());
+        for (int i = 0; i < queue.size(); i++) {
+            for (long g : gens) {
+                long next = GF2_8x8_Cache.multiplyEncoded(queue.getLong(i), g);
+                if (expected.add(next)) queue.add(next);
+            }
+        }
+        assertEquals(504, expected.size());
+
+        GFGroupExplorer explorer = new GFGroupExplorer(generator, 505);
+        LongSet delivered = new LongOpenHashSet();
+        explorer.explore(batch -> batch.forEach((long value) -> assertTrue(delivered.add(value), "delivered twice")));
+        assertEquals(504L, explorer.order());
+        assertEquals(504, delivered.size());
+        assertEquals(expected, delivered);
+        assertEquals(expected, new LongOpenHashSet(explorer.matrices()));
+
+        for (long value : expected) {
+            long current = GF2_8x8_Cache.identityValue();
+            for (boolean bit : explorer.pathTo(value)) current = GF2_8x8_Cache.multiplyEncoded(current, gens[bit ? 1 : 0]);
+            assertEquals(value, current);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.chandler.gap.GroupExplorer.Generator;
+
+class GeneratorCanonicalFormTest {
+
+    @Test
+    void testIsomorphsShareForm() {
+        int[][][] generator = GroupExplorer.parseOperationsArr("[(1,2,3,4,5)(6,7,8,9,10),(1,6,11)(2,12,3)]");
+        Generator canonical = GeneratorCanonicalForm.key(generator);
+        for (int[][][] iso : GroupExplorer.genIsomorphisms(generator)) {
+            assertEquals(canonical, GeneratorCanonicalForm.key(iso));
+        }
+
+        // Relabeled, cycles swapped and rotated, second generator inverted
+        int[][][] relabeled = GroupExplorer.parseOperationsArr("[(14,12,13,11,15)(18,17,16,20,19),(18,21,19)(22,13,20)]");
+        assertEquals(canonical, GeneratorCanonicalForm.key(relabeled));
+
+        // Squaring the first generator generates the same group
+        int[][][] squared = GroupExplorer.parseOperationsArr("[(1,3,5,2,4)(6,8,10,7,9),(1,6,11)(2,12,3)]");
+        assertEquals(canonical, GeneratorCanonicalForm.key(squared));
+
+        // Same cycle types, different wiring
+        int[][][] other = GroupExplorer.parseOperationsArr("[(1,2,3,4,5)(6,7,8,9,10),(1,6,11)(2,12,4)]");
+        assertFalse(canonical.equals(GeneratorCanonicalForm.key(other)));
+    }
+
+    @Test
+    void testIsomorphMap() {
+        GeneratorIsomorphMap map = new GeneratorIsomorphMap();
+        int[][][] a = GroupExplorer.parseOperationsArr("[(1,2,3)(4,5,6),(1,4)(2,7)]");
+        assertTrue(map.putIfAbsent(a, 7));
+        assertFalse(map.putIfAbsent(GroupExplorer.parseOperationsArr("[(6,4,5)(3,2,1),(7,2)(4,1)]"), 8));
+        assertEquals(1, map.size());
+
+        Generator renumbered = new Generator(GroupExplorer.renumberGenerators(GroupExplorer.parseOperationsArr("[(9,8,7)(3,1,2),(2,9)(1,5)]")));
+        assertTrue(map.containsKey(renumbered));
+        assertEquals(7, (int) map.get(renumbered));
+        assertFalse(map.containsKey(new Generator(GroupExplorer.parseOperationsArr("[(1,2,3)(4,5,6),(1,2)(4,7)]"))));
+    }
+}
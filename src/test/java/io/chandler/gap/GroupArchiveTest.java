@@ -0,0 +1,75 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.GroupArchive;
+import io.chandler.gap.cache.GroupArchive.Encoding;
+import io.chandler.gap.cache.State;
+
+class GroupArchiveTest {
+
+    private static void roundTrip(Encoding encoding) throws Exception {
+        GroupExplorer explorer = new GroupExplorer(Generators.m11, MemorySettings.DEFAULT);
+        List<int[]> states = new ArrayList<>();
+        states.add(explorer.copyCurrentState());
+        explorer.exploreStates(false, (batch, depth) -> states.addAll(batch));
+
+        Path file = Files.createTempFile("m11", ".gxar");
+        try {
+            // Small blocks so reads cross block boundaries
+            try (GroupArchive.Writer writer = new GroupArchive.Writer(file, Generators.m11, 11, encoding, 1000)) {
+                for (int[] state : states) writer.add(state);
+            }
+            try (GroupArchive.Reader reader = new GroupArchive.Reader(file)) {
+                assertEquals(Generators.m11, reader.generators);
+                assertEquals(11, reader.nElements);
+                assertEquals(7920, reader.size());
+                for (int i = states.size() - 1; i >= 0; i -= 7) {
+                    assertArrayEquals(states.get(i), reader.get(i));
+                }
+                Set<State> read = new HashSet<>();
+                for (State state : reader.states(MemorySettings.COMPACT)) read.add(state);
+                assertEquals(7920, read.size());
+                assertTrue(read.contains(State.of(states.get(1234), 11, MemorySettings.COMPACT)));
+                int i = 0;
+                for (int[] state : reader) assertArrayEquals(states.get(i++), state);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testRanks() throws Exception {
+        roundTrip(Encoding.RANKS);
+    }
+
+    @Test
+    void testPacked() throws Exception {
+        roundTrip(Encoding.PACKED);
+    }
+
+    @Test
+    void testWriteArchive() throws Exception {
+        GroupExplorer explorer = new GroupExplorer(Generators.l2_13, MemorySettings.DEFAULT);
+        explorer.exploreStates(false, null);
+        Path file = Files.createTempFile("l2_13", ".gxar");
+        try {
+            explorer.writeArchive(file);
+            try (GroupArchive.Reader reader = new GroupArchive.Reader(file)) {
+                assertEquals(explorer.order(), reader.size());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
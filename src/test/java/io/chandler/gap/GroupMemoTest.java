@@ -0,0 +1,62 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import io.chandler.gap.cache.GroupMemo;
+
+class GroupMemoTest {
+
+    // What another process sharing the table would append
+    private static void appendRaw(Path file, String text) throws Exception {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    @Test
+    void testSharedFile() throws Exception {
+        Path dir = Files.createTempDirectory("group-memo");
+        try {
+            String a5 = "[(1,2,3,4,5),(1,2,3)]";
+            String s4 = "[(1,2,3,4),(1,2)]";
+            String c5 = "[(1,2,3,4,5)]";
+            try (GroupMemo memo = GroupMemo.open(dir, "test")) {
+                memo.putOrder(a5, 60);
+                assertEquals(60, (int) memo.order(a5));
+                assertNull(memo.description(a5));
+
+                // Misses pick up records appended since, and later records fill in the rest of an entry
+                assertNull(memo.order(s4));
+                appendRaw(memo.file, s4 + "\t-2\t\n" + a5 + "\t\tA5\n");
+                assertEquals(-2, (int) memo.order(s4));
+                assertEquals("A5", memo.description(a5));
+                assertEquals(60, (int) memo.order(a5));
+
+                // A line still being written isn't read until it's complete
+                appendRaw(memo.file, c5 + "\t5");
+                assertNull(memo.order(c5));
+                appendRaw(memo.file, "\tC5\n");
+                assertEquals(5, (int) memo.order(c5));
+                assertEquals("C5", memo.description(c5));
+            }
+
+            try (GroupMemo reopened = GroupMemo.open(dir, "test")) {
+                assertEquals(3, reopened.size());
+                assertEquals(60, (int) reopened.order(a5));
+                assertEquals("A5", reopened.description(a5));
+                assertEquals(-2, (int) reopened.order(s4));
+                assertEquals(5, (int) reopened.order(c5));
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.LMDBCache;
+import io.chandler.gap.cache.LMDBManager;
+import io.chandler.gap.cache.State;
+
+class LMDBCacheTest {
+
+    private static List<State> m11States() {
+        GroupExplorer group = new GroupExplorer(Generators.m11, MemorySettings.DEFAULT);
+        List<State> states = new ArrayList<>();
+        // The identity isn't peeked
+        states.add(State.of(group.copyCurrentState(), group.nElements, MemorySettings.DEFAULT));
+        group.exploreStates(false, (layer, depth) -> {
+            for (int[] state : layer) states.add(State.of(state, group.nElements, MemorySettings.DEFAULT));
+        });
+        return states;
+    }
+
+    private static void deleteDir(Path dir) throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(file);
+        }
+    }
+
+    // Each set gets its own environment, since closing a cache closes its environment
+    private static LMDBCache open(Path dir, String name) throws Exception {
+        Path envDir = Files.createDirectories(dir.resolve(name));
+        return new LMDBCache(new LMDBManager(envDir, 1), name, 11, MemorySettings.DEFAULT, 1000);
+    }
+
+    @Test
+    void testSortedBatches() throws Exception {
+        List<State> states = m11States();
+        Collections.shuffle(states, new Random(1));
+        List<State> firstHalf = states.subList(0, states.size() / 2);
+
+        Path dir = Files.createTempDirectory("lmdb-cache");
+        try (LMDBCache cache = open(dir, "main")) {
+            // Single writes still pending in the overlay, plus a repeat within the batch
+            cache.add(firstHalf.get(0));
+            List<State> batch = new ArrayList<>(firstHalf);
+            batch.add(firstHalf.get(1));
+            boolean[] added = cache.addSorted(batch);
+            assertFalse(added[0]);
+            for (int i = 1; i < firstHalf.size(); i++) assertTrue(added[i]);
+            assertFalse(added[firstHalf.size()]);
+            assertEquals(firstHalf.size(), cache.size());
+
+            Set<State> expected = new HashSet<>(firstHalf);
+            for (boolean parallel : new boolean[] {false, true}) {
+                boolean[] present = cache.containsSorted(states, parallel);
+                for (int i = 0; i < states.size(); i++) {
+                    assertEquals(expected.contains(states.get(i)), present[i]);
+                }
+            }
+
+            // Everything after the last key is appended
+            added = cache.addSorted(states);
+            for (int i = 0; i < states.size(); i++) assertEquals(i >= firstHalf.size(), added[i]);
+            assertEquals(states.size(), cache.size());
+            assertEquals(new HashSet<>(states), new HashSet<>(cache));
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    void testManyReaderThreads() throws Exception {
+        List<State> states = m11States();
+        Path dir = Files.createTempDirectory("lmdb-readers");
+        try (LMDBCache cache = open(dir, "main")) {
+            cache.addSorted(states.subList(0, 1000));
+            // More threads than LMDBManager's 100 reader slots, each looking something up once
+            for (int t = 0; t < 250; t++) {
+                int from = t * 4;
+                boolean[] present = new boolean[1003];
+                Thread thread = new Thread(() -> {
+                    present[0] = cache.contains(states.get(from));
+                    present[1] = cache.contains(states.get(from + 1000));
+                    System.arraycopy(cache.containsSorted(states.subList(from, from + 1001)), 0, present, 2, 1001);
+                });
+                thread.start();
+                thread.join();
+                assertTrue(present[0]);
+                assertFalse(present[1]);
+                for (int i = 0; i < 1001; i++) assertEquals(from + i < 1000, present[i + 2]);
+            }
+            // Readers don't hold back later writes
+            cache.addSorted(states);
+            assertEquals(states.size(), cache.size());
+            assertTrue(cache.contains(states.get(states.size() - 1)));
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    void testExploreM11() throws Exception {
+        Set<State> reference = new HashSet<>(m11States());
+
+        Path dir = Files.createTempDirectory("lmdb-explore");
+        try (LMDBCache main = open(dir, "main"); LMDBCache incomplete = open(dir, "tmp1"); LMDBCache tmp = open(dir, "tmp2")) {
+            for (boolean multithread : new boolean[] {false, true}) {
+                main.clear();
+                GroupExplorer group = new GroupExplorer(Generators.m11, MemorySettings.DEFAULT, main, incomplete, tmp, multithread);
+                Set<State> seen = new HashSet<>();
+                group.exploreStates(false, (layer, depth) -> {
+                    for (int[] state : layer) assertTrue(seen.add(State.of(state, 11, MemorySettings.DEFAULT)));
+                });
+                assertEquals(reference.size() - 1, seen.size());
+                assertEquals(reference.size(), group.order());
+                assertEquals(reference, new HashSet<>(main));
+            }
+        } finally {
+            deleteDir(dir);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.PackedStateSet;
+import io.chandler.gap.cache.State;
+
+class PackedExplorationTest {
+
+    @Test
+    void testPackedMatchesDefaultExploration() {
+        for (String generator : new String[] { Generators.m11, Generators.m12, Generators.l2_13, Generators.l3_3 }) {
+            GroupExplorer reference = new GroupExplorer(generator, MemorySettings.DEFAULT);
+            HashMap<String, Integer> referenceCycles = new HashMap<>();
+            int referenceDepth = reference.exploreStates(false, (states, depth) -> {
+                for (int[] state : states) referenceCycles.merge(GroupExplorer.describeState(reference.nElements, state) + " @" + depth, 1, Integer::sum);
+            });
+
+            PackedStateSet packedSet = new PackedStateSet(reference.nElements);
+            GroupExplorer packed = new GroupExplorer(generator, MemorySettings.DEFAULT, packedSet);
+            HashMap<String, Integer> packedCycles = new HashMap<>();
+            int packedDepth = packed.exploreStates(false, (states, depth) -> {
+                for (int[] state : states) packedCycles.merge(GroupExplorer.describeState(packed.nElements, state) + " @" + depth, 1, Integer::sum);
+            });
+
+            assertEquals(reference.order(), packed.order());
+            assertEquals(referenceDepth, packedDepth);
+            assertEquals(referenceCycles, packedCycles);
+
+            // Iterating the packed set must reproduce every element
+            Set<State> unpacked = new HashSet<>(packedSet);
+            assertEquals(reference.order(), unpacked.size());
+            for (State s : unpacked) {
+                assertTrue(packedSet.contains(s));
+            }
+        }
+    }
+
+    @Test
+    void testPathToRebuildsShortestWords() {
+        GroupExplorer group = new GroupExplorer(Generators.m11, MemorySettings.DEFAULT);
+        PackedStateSet visited = new PackedStateSet(group.nElements, MemorySettings.DEFAULT, 1024, group.parsedOperations.size());
+        GroupExplorer tracked = new GroupExplorer(Generators.m11, MemorySettings.DEFAULT, visited);
+        HashMap<State, Integer> depths = new HashMap<>();
+        tracked.exploreStates(false, (states, depth) -> {
+            for (int[] state : states) depths.put(State.of(state, tracked.nElements, MemorySettings.DEFAULT), depth);
+        });
+        assertEquals(7920, tracked.order());
+
+        assertEquals(0, tracked.pathTo(tracked.copyCurrentState()).length);
+        for (State s : depths.keySet()) {
+            int[] word = tracked.pathTo(s.state());
+            assertEquals(depths.get(s).intValue(), word.length);
+
+            GroupExplorer replay = new GroupExplorer(Generators.m11, MemorySettings.DEFAULT);
+            for (int g : word) replay.applyOperation(g, false);
+            assertArrayEquals(s.state(), replay.copyCurrentState());
+        }
+    }
+}
@@ -3,7 +3,9 @@ package io.chandler.gap;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Arrays;
 
@@ -37,6 +39,100 @@ class PermuTest {
         assertEquals(0, perms5.get(0).length);
     }
 
+    @Test
+    void testForEachIsomorph() {
+        int[][][] generator = new int[][][] {
+            {{1, 2, 3, 4, 5}, {6, 7, 8, 9, 10}},
+            {{1, 6, 11}}
+        };
+
+        HashMap<String, Integer> expected = new HashMap<>();
+        bruteForceIsomorphs(generator, 0, new int[generator.length][][], expected);
+        // 2 orderings x 2 powers x 2 directions x 5 x 5 rotations, then 2 directions x 3 rotations
+        assertEquals(1200, expected.values().stream().mapToInt(Integer::intValue).sum());
+
+        HashMap<String, Integer> streamed = new HashMap<>();
+        assertTrue(Permu.forEachIsomorph(generator, true, (iso) -> {
+            streamed.merge(Arrays.deepToString(iso), 1, Integer::sum);
+            return true;
+        }));
+        assertEquals(expected, streamed);
+
+        HashMap<String, Integer> listed = new HashMap<>();
+        Permu.applyGeneratorPermutationsAndRotations(generator, (iso) ->
+            listed.merge(Arrays.deepToString(GroupExplorer.renumberGenerators_fast(iso)), 1, Integer::sum));
+        assertEquals(expected, listed);
+
+        int[] visited = new int[1];
+        assertFalse(Permu.forEachIsomorph(generator, false, (iso) -> ++visited[0] < 10));
+        assertEquals(10, visited[0]);
+    }
+
+    /*
+     * Every isomorph the slow way: each operation's cycles in every order, raised to
+     *   every power up to half the cycle length and in both directions, then every
+     *   cycle in every rotation.  Counted by renumbered form.
+     */
+    private static void bruteForceIsomorphs(int[][][] generator, int op, int[][][] current, HashMap<String, Integer> out) {
+        if (op == generator.length) {
+            bruteForceRotations(current, 0, 0, out);
+            return;
+        }
+        int[][] cycles = generator[op];
+        int len = cycles[0].length;
+        int powers = len % 2 == 0 ? 1 : len / 2;
+        for (int[] order : allOrders(cycles.length)) {
+            for (int power = 1; power <= powers; power++) {
+                for (boolean reverse : new boolean[] {false, true}) {
+                    int[][] mapped = new int[cycles.length][len];
+                    for (int c = 0; c < cycles.length; c++) {
+                        for (int j = 0; j < len; j++) {
+                            int k = reverse ? len - 1 - j : j;
+                            mapped[c][j] = cycles[order[c]][(k * power) % len];
+                        }
+                    }
+                    current[op] = mapped;
+                    bruteForceIsomorphs(generator, op + 1, current, out);
+                }
+            }
+        }
+    }
+
+    private static void bruteForceRotations(int[][][] generator, int op, int cycle, HashMap<String, Integer> out) {
+        if (op == generator.length) {
+            out.merge(Arrays.deepToString(GroupExplorer.renumberGenerators_fast(generator)), 1, Integer::sum);
+            return;
+        }
+        if (cycle == generator[op].length) {
+            bruteForceRotations(generator, op + 1, 0, out);
+            return;
+        }
+        int[] original = generator[op][cycle];
+        for (int r = 0; r < original.length; r++) {
+            int[] rotated = new int[original.length];
+            for (int j = 0; j < original.length; j++) rotated[j] = original[(j + r) % original.length];
+            generator[op][cycle] = rotated;
+            bruteForceRotations(generator, op, cycle + 1, out);
+        }
+        generator[op][cycle] = original;
+    }
+
+    private static List<int[]> allOrders(int n) {
+        List<int[]> orders = new ArrayList<>();
+        if (n == 0) {
+            orders.add(new int[0]);
+            return orders;
+        }
+        for (int[] shorter : allOrders(n - 1)) {
+            for (int at = 0; at < n; at++) {
+                int[] order = new int[n];
+                for (int i = 0, j = 0; i < n; i++) order[i] = i == at ? n - 1 : shorter[j++];
+                orders.add(order);
+            }
+        }
+        return orders;
+    }
+
     private void assertPermutationsNK(List<int[]> permutations, int n, int k) {
         // Check that all permutations are of length k
         for (int[] perm : permutations) {
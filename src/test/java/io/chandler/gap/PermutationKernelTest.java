@@ -0,0 +1,46 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigInteger;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+
+class PermutationKernelTest {
+
+    // One cycle after another, in place, like GroupExplorer.applyOperation
+    private static int[] applySequentially(int[][] operation, int[] state) {
+        int[] out = state.clone();
+        for (int[] cycle : operation) {
+            int first = out[cycle[0] - 1];
+            for (int i = 0; i < cycle.length - 1; i++) {
+                out[cycle[i] - 1] = out[cycle[i + 1] - 1];
+            }
+            out[cycle[cycle.length - 1] - 1] = first;
+        }
+        return out;
+    }
+
+    @Test
+    void testOverlappingCycles() {
+        // (4,6,8) and (7,8,9) share 8
+        int[][][] generators = GroupExplorer.parseOperationsArr(STGenerators.tetAsymGen);
+        int[][] operation = generators[0];
+        int nElements = 12;
+        int[] state = new int[nElements];
+        for (int i = 0; i < nElements; i++) state[i] = i + 1;
+
+        int[] expected = applySequentially(operation, state);
+        assertArrayEquals(expected, PermutationKernel.compile(operation, nElements).apply(state));
+
+        int[][] small = new int[][] {{1, 2, 3}, {3, 4}};
+        assertArrayEquals(new int[] {2, 3, 4, 1}, PermutationKernel.compile(small, 4).apply(new int[] {1, 2, 3, 4}));
+
+        // The explorer and Schreier-Sims agree with the composed permutation
+        GroupExplorer group = new GroupExplorer("[(1,2,3)(3,4)]", MemorySettings.DEFAULT);
+        group.exploreStates(false, null);
+        assertEquals(4, group.order());
+        assertEquals(BigInteger.valueOf(4), new SchreierSims("[(1,2,3)(3,4)]", MemorySettings.DEFAULT).orderExact());
+    }
+}
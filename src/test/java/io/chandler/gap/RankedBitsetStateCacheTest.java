@@ -0,0 +1,100 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.FactorialCodec;
+import io.chandler.gap.cache.LehmerCodec;
+import io.chandler.gap.cache.RankedBitsetStateCache;
+import io.chandler.gap.cache.State;
+
+class RankedBitsetStateCacheTest {
+
+    @Test
+    void testRankIsDenseAndInvertible() {
+        LehmerCodec full = new LehmerCodec(6);
+        assertEquals(720, full.permutations);
+        Set<Long> ranks = new HashSet<>();
+        for (int[] p : Permu.generatePermutations(6)) {
+            long rank = full.rank(p);
+            assertTrue(rank >= 0 && rank < full.permutations);
+            assertArrayEquals(p, full.unrank(rank));
+            ranks.add(rank);
+        }
+        assertEquals(720, ranks.size());
+
+        LehmerCodec prefix = new LehmerCodec(3, 6);
+        assertEquals(120, prefix.permutations);
+        assertEquals(0, prefix.rank(new int[] { 1, 2, 3, 4, 5, 6 }));
+        assertEquals(119, prefix.rank(new int[] { 6, 5, 4, 1, 2, 3 }));
+    }
+
+    @Test
+    void testWideRank() {
+        Random random = new Random(1);
+        for (int n : new int[] { 1, 2, 12, 20, 21, 33, 34 }) {
+            FactorialCodec codec = FactorialCodec.of(n);
+            LehmerCodec narrow = n <= 20 ? new LehmerCodec(n) : null;
+            for (int t = 0; t < 200; t++) {
+                int[] p = new int[n];
+                for (int i = 0; i < n; i++) p[i] = i + 1;
+                // Mostly random, plus the largest rank
+                for (int i = n - 1; i > 0; i--) {
+                    int j = t == 0 ? n - 1 - i : random.nextInt(i + 1);
+                    int x = p[i];
+                    p[i] = p[j];
+                    p[j] = x;
+                }
+                if (t == 0) for (int i = 0; i < n; i++) p[i] = n - i;
+
+                // Digit by digit with BigInteger, counting smaller values to the right
+                BigInteger expected = BigInteger.ZERO;
+                for (int i = 0; i < n; i++) {
+                    int smaller = 0;
+                    for (int j = i + 1; j < n; j++) if (p[j] < p[i]) smaller++;
+                    expected = expected.multiply(BigInteger.valueOf(n - i)).add(BigInteger.valueOf(smaller));
+                }
+
+                long[] lo = new long[1];
+                long hi = codec.encode(p, lo);
+                assertEquals(expected, new BigInteger(Long.toUnsignedString(hi)).shiftLeft(64).add(new BigInteger(Long.toUnsignedString(lo[0]))));
+                assertArrayEquals(p, codec.decode(hi, lo[0]));
+                if (narrow != null) assertEquals(lo[0], narrow.rank(p));
+
+                ByteBuffer key = ByteBuffer.allocate(codec.keyBytes);
+                codec.writeKey(p, key);
+                assertEquals(expected, new BigInteger(1, key.array()));
+                key.flip();
+                assertArrayEquals(p, codec.readKey(key));
+            }
+        }
+    }
+
+    @Test
+    void testExplorationMatchesDefault() {
+        for (String generator : new String[] { Generators.m11, Generators.l3_3 }) {
+            GroupExplorer reference = new GroupExplorer(generator, MemorySettings.DEFAULT);
+            reference.exploreStates(false, null);
+
+            RankedBitsetStateCache ranked = new RankedBitsetStateCache(reference.nElements);
+            GroupExplorer explorer = new GroupExplorer(generator, MemorySettings.DEFAULT, ranked);
+            explorer.exploreStates(false, null);
+
+            assertEquals(reference.order(), explorer.order());
+            assertEquals(reference.order(), ranked.sizeLong());
+
+            Set<State> iterated = new HashSet<>(ranked);
+            assertEquals(reference.order(), iterated.size());
+            for (State s : iterated) {
+                assertTrue(ranked.contains(s));
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+
+class SchreierSimsTest {
+
+    @Test
+    void testOrders() {
+        assertEquals(7920, new SchreierSims(Generators.m11, MemorySettings.DEFAULT).order());
+        assertEquals(95040, new SchreierSims(Generators.m12, MemorySettings.DEFAULT).order());
+        assertEquals(5616, new SchreierSims(Generators.l3_3, MemorySettings.DEFAULT).order());
+
+        SchreierSims m24 = new SchreierSims(Generators.m24, MemorySettings.DEFAULT);
+        assertEquals(244823040, m24.order());
+        assertTrue(m24.isTransitive());
+        assertEquals(24, m24.degree());
+        // M24 is 5-transitive, and only the identity fixes 7 points of a base
+        assertEquals(BigInteger.valueOf(48), m24.stabilizerOrder(5));
+        assertEquals(BigInteger.ONE, m24.stabilizerOrder(7));
+    }
+
+    @Test
+    void testMembershipMatchesExploration() {
+        GroupExplorer explorer = new GroupExplorer(Generators.m11, MemorySettings.DEFAULT);
+        List<int[]> states = new ArrayList<>();
+        explorer.exploreStates(false, (batch, depth) -> states.addAll(batch));
+
+        SchreierSims group = new SchreierSims(Generators.m11, MemorySettings.DEFAULT);
+        assertEquals(explorer.order(), group.order());
+        for (int[] state : states) {
+            assertTrue(group.contains(state));
+        }
+
+        // A transposition is odd, so it can't be in M11
+        int[] swap = explorer.copyCurrentState();
+        swap[0] = 2;
+        swap[1] = 1;
+        assertFalse(group.contains(swap));
+
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(group.contains(group.randomElement(random)));
+        }
+    }
+
+    @Test
+    void testIntransitive() {
+        SchreierSims group = new SchreierSims("[(1,2,3),(4,5)]", MemorySettings.DEFAULT);
+        assertEquals(6, group.order());
+        assertFalse(group.isTransitive());
+        assertArrayEquals(new int[] { 1, 2, 3 }, group.orbit(2));
+        assertArrayEquals(new int[] { 4, 5 }, group.orbit(5));
+    }
+}
@@ -0,0 +1,26 @@
+package io.chandler.gap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.stream.IntStream;
+
+import io.chandler.gap.GroupExplorer.MemorySettings;
+import io.chandler.gap.cache.StateIndexer;
+
+class StateIndexerTest {
+
+    @Test
+    void testM12() {
+        StateIndexer indexer = StateIndexer.of(new GroupExplorer(Generators.m12, MemorySettings.FASTEST));
+        assertEquals(95040, indexer.size());
+        assertArrayEquals(new int[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12}, indexer.state(0));
+        // Lookups from many threads at once
+        IntStream.range(0, indexer.size()).parallel().forEach(id -> {
+            assertEquals(id, indexer.id(indexer.state(id)));
+        });
+        assertEquals(-1, indexer.id(new int[] {2, 1, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12}));
+        assertEquals(17, indexer.add(indexer.state(17)));
+        assertEquals(95040, indexer.size());
+    }
+}